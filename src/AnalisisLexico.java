@@ -1,15 +1,20 @@
 import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import javax.swing.JFileChooser;
 import javax.swing.filechooser.FileNameExtensionFilter;
@@ -32,40 +37,299 @@ public class AnalisisLexico {
         }
     }
 
-    // Clase para representar un elemento (token o error) con su posición
-    static class ElementoAnalisis {
-        boolean esError;
-        int numero;
-        String lexema;
-        String tipoToken;
-        int linea;
-        int columna;
-        String mensajeError;
+    // Instancias que se reutilizan de un archivo al siguiente: en modo por
+    // lotes el token manager se reinicia con ReInit en lugar de crearse de
+    // nuevo para cada archivo
+    static class Analizador {
+        private LexicoTabla lexer;
+        int tokensValidos;
+        List<ErrorLexico> errores;
+        String archivoTokens;
+        // Si además del .tokens se escribe el volcado binario .tkb
+        boolean volcadoBinario;
+        
+        /**
+         * Tokeniza un archivo y escribe su archivo .tokens (y su .tkb si
+         * volcadoBinario está activo) a medida que avanza. Solo se guardan el número de tokens válidos y los errores
+         * léxicos (para la tabla de la consola); archivoTokens queda en null
+         * si el archivo no se pudo escribir
+         */
+        void analizar(String fileName) throws IOException {
+            // El archivo se lee mapeado en memoria, sin copiarlo a un buffer
+            FlujoMapeado stream = new FlujoMapeado(Paths.get(fileName));
+            // Identificadores y literales repetidos comparten un solo String
+            stream.compartirImagenes(new TablaNombres());
+            if (lexer == null) {
+                // Reconoce lo mismo que el token manager generado, con una
+                // tabla de clases de carácter en lugar de su autómata
+                lexer = new LexicoTabla(stream);
+            } else {
+                lexer.ReInit(stream);
+            }
+            
+            // Los tokens y errores llegan en orden de aparición, así que se
+            // escriben en cuanto se reconocen, sin guardarlos ni ordenarlos
+            EscritorTokens escritor = new EscritorTokens(fileName, volcadoBinario);
+            tokensValidos = 0;
+            errores = new ArrayList<>();
+            
+            // Los caracteres no reconocidos llegan aquí en orden, entre los
+            // tokens válidos, sin construir un token ni una excepción
+            lexer.reportarErrores((tipo, offset, linea, columna, codigo) -> {
+                String caracterInvalido = new String(Character.toChars(codigo));
+                String mensaje = "Carácter no reconocido: '" + caracterInvalido + 
+                               "' (ASCII: " + codigo + ")";
+                
+                ErrorLexico error = new ErrorLexico(mensaje, linea, columna, caracterInvalido);
+                errores.add(error);
+                escritor.error(error);
+            });
+            
+            //System.out.println("TOKENS RECONOCIDOS:");
+            //System.out.println("--------------------------------------------------------------------------------------------------");
+            
+            boolean continuar = true;
+            while (continuar) {
+                Token token = lexer.getNextToken();
+                
+                if (token.kind == CarumaLangLexerConstants.EOF) {
+                    escritor.fin(token);
+                    continuar = false;
+                } else {
+                    tokensValidos++;
+                    escritor.token(token);
+                    String tokenName = CarumaLangLexerConstants.tokenImage[token.kind];
+                    /*System.out.printf("%-5d | %-35s | %-30s | Línea: %d, Col: %d%n", 
+                        tokensValidos,
+                        token.image,
+                        tokenName,
+                        token.beginLine,
+                        token.beginColumn);*/
+                }
+            }
+            
+            archivoTokens = escritor.cerrar();
+        }
+    }
+
+    /**
+     * Escribe el archivo .tokens fila por fila mientras avanza el análisis.
+     * 
+     * Las filas se arman en un StringBuilder reutilizado en lugar de
+     * String.format. Como los totales del encabezado no se conocen hasta el
+     * final, las filas van a un archivo temporal junto al de salida y
+     * cerrar() escribe el encabezado ya completo seguido de ellas, así el
+     * archivo queda igual que si se hubiera escrito de una vez. Un fallo de
+     * escritura no detiene el análisis: se recuerda y se informa al cerrar,
+     * como antes.
+     * 
+     * Si se pide, cada fila se agrega también al volcado binario, que
+     * tiene su propio registro de fallos para no perder el archivo de texto
+     * por un error en el binario
+     */
+    static class EscritorTokens {
+        private static final String FIN_LINEA = System.lineSeparator();
+        
+        private final String nombreSalida;
+        private final Charset charset = Charset.defaultCharset();
+        private final StringBuilder fila = new StringBuilder(128);
+        private final String archivoFuente;
+        private final String fechaGeneracion;
+        private Path temporal;
+        private FileChannel canal;
+        private BufferedWriter writer;
+        private int contadorTokens = 0;
+        private int contadorErrores = 0;
+        private IOException fallo;
+        private VolcadoTokens.Escritor volcado;
+        private IOException falloVolcado;
+        private int lineaEOF = 1;
+        private int columnaEOF = 1;
+        
+        EscritorTokens(String archivoFuente, boolean volcadoBinario) {
+            nombreSalida = archivoFuente.replace(".crm", ".tokens");
+            this.archivoFuente = archivoFuente;
+            fechaGeneracion = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+            if (volcadoBinario) {
+                try {
+                    volcado = new VolcadoTokens.Escritor(Paths.get(archivoFuente.replace(".crm", ".tkb")), archivoFuente);
+                } catch (IOException e) {
+                    falloVolcado = e;
+                }
+            }
+            try {
+                temporal = Paths.get(nombreSalida + ".tmp");
+                canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                writer = new BufferedWriter(Channels.newWriter(canal, codificador(), 1 << 16), 1 << 16);
+                
+                // ===== SECCION DE TOKENS =====
+                fila.append("[TOKENS]").append(FIN_LINEA);
+                escribirFila();
+            } catch (IOException e) {
+                fallo = e;
+            }
+        }
+        
+        void token(Token token) {
+            fila.append(++contadorTokens).append('|')
+                .append(token.image).append('|')
+                .append(CarumaLangLexerConstants.tokenImage[token.kind]).append('|')
+                .append(token.beginLine).append('|')
+                .append(token.beginColumn).append("|VALIDO").append(FIN_LINEA);
+            escribirFila();
+            
+            if (volcado != null && falloVolcado == null) {
+                try {
+                    volcado.token(token);
+                } catch (IOException e) {
+                    falloVolcado = e;
+                }
+            }
+        }
         
-        // Constructor para token válido
-        ElementoAnalisis(int numero, Token token) {
-            this.esError = false;
-            this.numero = numero;
-            this.lexema = token.image;
-            this.tipoToken = CarumaLangLexerConstants.tokenImage[token.kind];
-            this.linea = token.beginLine;
-            this.columna = token.beginColumn;
-            this.mensajeError = "";
+        void error(ErrorLexico error) {
+            contadorErrores++;
+            fila.append("ERROR|").append(error.caracterInvalido)
+                .append("|INVALID|")
+                .append(error.linea).append('|')
+                .append(error.columna).append('|')
+                .append(error.mensaje).append(FIN_LINEA);
+            escribirFila();
+            
+            if (volcado != null && falloVolcado == null) {
+                try {
+                    volcado.error(error.caracterInvalido, error.linea, error.columna, error.mensaje);
+                } catch (IOException e) {
+                    falloVolcado = e;
+                }
+            }
         }
         
-        // Constructor para error
-        ElementoAnalisis(ErrorLexico error) {
-            this.esError = true;
-            this.numero = -1;
-            this.lexema = error.caracterInvalido;
-            this.tipoToken = "INVALID";
-            this.linea = error.linea;
-            this.columna = error.columna;
-            this.mensajeError = error.mensaje;
+        // El volcado binario guarda también la posición del EOF
+        void fin(Token eof) {
+            lineaEOF = eof.beginLine;
+            columnaEOF = eof.beginColumn;
+        }
+        
+        /**
+         * Escribe el resumen, completa los totales del encabezado y cierra
+         * el archivo
+         * 
+         * @return Nombre del archivo generado, o null si no se pudo escribir
+         */
+        String cerrar() {
+            if (volcado != null) {
+                try {
+                    if (falloVolcado == null) {
+                        volcado.terminar(lineaEOF, columnaEOF);
+                    }
+                    volcado.close();
+                } catch (IOException e) {
+                    if (falloVolcado == null) {
+                        falloVolcado = e;
+                    }
+                }
+            }
+            if (falloVolcado != null) {
+                System.err.println("Error al generar volcado binario de tokens: " + falloVolcado.getMessage());
+            }
+            
+            if (fallo == null) {
+                // ===== SECCION DE RESUMEN =====
+                String estado = contadorErrores == 0 ? "SIN_ERRORES" : "CON_ERRORES";
+                fila.append(FIN_LINEA)
+                    .append("[RESUMEN]").append(FIN_LINEA)
+                    .append("TOKENS_VALIDOS=").append(contadorTokens).append(FIN_LINEA)
+                    .append("ERRORES_LEXICOS=").append(contadorErrores).append(FIN_LINEA)
+                    .append("ESTADO=").append(estado).append(FIN_LINEA)
+                    .append(FIN_LINEA)
+                    // ===== FIN =====
+                    .append("[FIN]").append(FIN_LINEA);
+                escribirFila();
+            }
+            try {
+                if (fallo == null) {
+                    writer.flush();
+                    escribirSalida();
+                }
+            } catch (IOException e) {
+                if (fallo == null) {
+                    fallo = e;
+                }
+            }
+            try {
+                if (writer != null) {
+                    writer.close();
+                } else if (canal != null) {
+                    canal.close();
+                }
+                if (temporal != null) {
+                    Files.deleteIfExists(temporal);
+                }
+            } catch (IOException e) {
+                if (fallo == null) {
+                    fallo = e;
+                }
+            }
+            
+            if (fallo != null) {
+                System.err.println("Error al generar archivo de tokens: " + fallo.getMessage());
+                System.err.println("El analisis lexico se completo, pero no se pudo guardar el archivo.");
+                return null;
+            }
+            return nombreSalida;
+        }
+        
+        // Los caracteres que el charset no puede representar se
+        // reemplazan, igual que hacía FileWriter
+        private CharsetEncoder codificador() {
+            return charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        
+        // Escribe el archivo de salida: el encabezado con los totales y
+        // después las filas del temporal
+        private void escribirSalida() throws IOException {
+            try (FileChannel salida = FileChannel.open(Paths.get(nombreSalida), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                // ===== ENCABEZADO =====
+                BufferedWriter encabezado = new BufferedWriter(Channels.newWriter(salida, codificador(), 1024));
+                encabezado.append("# ARCHIVO DE TOKENS - CARUMALANG").append(FIN_LINEA)
+                    .append("# Archivo fuente: ").append(archivoFuente).append(FIN_LINEA)
+                    .append("# Fecha generacion: ").append(fechaGeneracion).append(FIN_LINEA)
+                    .append("# Tokens validos: ").append(String.valueOf(contadorTokens)).append(FIN_LINEA)
+                    .append("# Errores lexicos: ").append(String.valueOf(contadorErrores)).append(FIN_LINEA)
+                    .append(FIN_LINEA);
+                encabezado.flush();
+                
+                long total = canal.size();
+                long copiados = 0;
+                while (copiados < total) {
+                    copiados += canal.transferTo(copiados, total - copiados, salida);
+                }
+            }
+        }
+        
+        private void escribirFila() {
+            if (fallo == null) {
+                try {
+                    writer.append(fila);
+                } catch (IOException e) {
+                    fallo = e;
+                }
+            }
+            fila.setLength(0);
         }
     }
-    
+
     public static void main(String[] args) {
+        // Con argumentos se analizan en lote, sin abrir la interfaz gráfica
+        if (args.length > 0) {
+            System.exit(analizarLote(args));
+        }
+        
         JFileChooser fileChooser = new JFileChooser();
         FileNameExtensionFilter filter = new FileNameExtensionFilter("Archivo CarumaLang", "crm");
         fileChooser.setFileFilter(filter);
@@ -81,7 +345,7 @@ public class AnalisisLexico {
 
             try {
                 analizarArchivo(fileName);
-            } catch (FileNotFoundException e) {
+            } catch (FileNotFoundException | NoSuchFileException e) {
                 System.err.println("Error: No se pudo encontrar el archivo: " + fileName);
             } catch (IOException e) {
                 System.err.println("Error al leer el archivo: " + e.getMessage());
@@ -97,73 +361,11 @@ public class AnalisisLexico {
         System.out.println("========================================");
         System.out.println("Archivo: " + fileName + "\n");
         
-        BufferedReader reader = new BufferedReader(new FileReader(fileName));
-        SimpleCharStream stream = new SimpleCharStream(reader);
-        CarumaLangLexerTokenManager lexer = new CarumaLangLexerTokenManager(stream);
-        
-        List<Token> tokensValidos = new ArrayList<>();
-        List<ErrorLexico> errores = new ArrayList<>();
-        
-        //System.out.println("TOKENS RECONOCIDOS:");
-        //System.out.println("--------------------------------------------------------------------------------------------------");
-        
-        boolean continuar = true;
-        while (continuar) {
-            try {
-                Token token = lexer.getNextToken();
-                
-                if (token.kind == CarumaLangLexerConstants.EOF) {
-                    continuar = false;
-                } else if (token.kind == CarumaLangLexerConstants.INVALID) {
-                    // Token INVALID reconocido - tratarlo como error pero continuar
-                    String caracterInvalido = token.image;
-                    String mensaje = "Carácter no reconocido: '" + caracterInvalido + 
-                                   "' (ASCII: " + (int)caracterInvalido.charAt(0) + ")";
-                    
-                    errores.add(new ErrorLexico(mensaje, token.beginLine, token.beginColumn, caracterInvalido));
-                    
-                    /*System.out.printf("ERROR | %-35s | Carácter inválido              | Línea: %d, Col: %d%n",
-                        caracterInvalido,
-                        token.beginLine,
-                        token.beginColumn);*/
-                } else {
-                    tokensValidos.add(token);
-                    String tokenName = CarumaLangLexerConstants.tokenImage[token.kind];
-                    /*System.out.printf("%-5d | %-35s | %-30s | Línea: %d, Col: %d%n", 
-                        tokensValidos.size(),
-                        token.image,
-                        tokenName,
-                        token.beginLine,
-                        token.beginColumn);*/
-                }
-            } catch (TokenMgrError e) {
-                // Capturar información del error (backup por si el token INVALID falla)
-                String mensaje = e.getMessage();
-                int linea = stream.getEndLine();
-                int columna = stream.getEndColumn();
-                
-                // Extraer el carácter problemático del mensaje de error
-                String caracterInvalido = "?";
-                if (mensaje.contains("Encountered: \"")) {
-                    int start = mensaje.indexOf("Encountered: \"") + 14;
-                    int end = mensaje.indexOf("\"", start);
-                    if (end > start) {
-                        caracterInvalido = mensaje.substring(start, end);
-                    }
-                }
-                
-                errores.add(new ErrorLexico(mensaje, linea, columna, caracterInvalido));
-                
-                //System.out.printf("ERROR | %-20s | Error léxico            | Línea: %d, Col: %d%n", caracterInvalido, linea, columna);
-                
-                // Intentar recuperarse: avanzar un carácter
-                try {
-                    stream.readChar();
-                } catch (IOException ioException) {
-                    continuar = false;
-                }
-            }
-        }
+        // El archivo de tokens se escribe durante el análisis
+        Analizador analizador = new Analizador();
+        analizador.analizar(fileName);
+        int tokensValidos = analizador.tokensValidos;
+        List<ErrorLexico> errores = analizador.errores;
         
         System.out.println("---------------------------------------------------------------------------------------------------");
         
@@ -198,7 +400,7 @@ public class AnalisisLexico {
         System.out.println("        RESUMEN DEL ANÁLISIS            ");
         System.out.println("--------------------------------------");
         System.out.println();
-        System.out.println("Tokens válidos reconocidos: " + tokensValidos.size());
+        System.out.println("Tokens válidos reconocidos: " + tokensValidos);
         System.out.println("Errores léxicos encontrados: " + errores.size());
         System.out.println();
         
@@ -213,124 +415,27 @@ public class AnalisisLexico {
         
         System.out.println("\n========================================");
 
-        // Generar archivo de tokens
-        generarArchivoTokens(fileName, tokensValidos, errores);
-        
-        reader.close();
+        if (analizador.archivoTokens != null) {
+            System.out.println("\nArchivo de tokens generado exitosamente: " + analizador.archivoTokens);
+        }
     }
-
+    
     /**
-     * Genera un archivo .tokens con la información del análisis léxico
-     * 
-     * @param archivoFuente Ruta del archivo .crm analizado
-     * @param tokensValidos Lista de tokens válidos encontrados
-     * @param errores Lista de errores léxicos encontrados
+     * Modo por lotes: analiza todos los archivos indicados en la misma JVM,
+     * repartidos entre varios hilos que reutilizan cada uno su propio
+     * token manager, y devuelve el código de salida. Con "--binario" se
+     * escribe también el volcado .tkb de cada archivo
      */
-    private static void generarArchivoTokens(String archivoFuente, 
-                                             List<Token> tokensValidos, 
-                                             List<ErrorLexico> errores) {
-        try {
-            // 1. Crear nombre del archivo de salida
-            String nombreSalida = archivoFuente.replace(".crm", ".tokens");
-            
-            // 2. Obtener fecha y hora actual
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            String fechaActual = sdf.format(new Date());
-            
-            // 3. Crear lista unificada de elementos (tokens + errores) ordenada
-            List<ElementoAnalisis> elementos = new ArrayList<>();
-            
-            // Agregar tokens válidos
-            for (int i = 0; i < tokensValidos.size(); i++) {
-                elementos.add(new ElementoAnalisis(i + 1, tokensValidos.get(i)));
-            }
-            // Agregar errores
-            for (ErrorLexico error : errores) {
-                elementos.add(new ElementoAnalisis(error));
-            }
-            
-            // Ordenar por línea y columna
-            Collections.sort(elementos, new Comparator<ElementoAnalisis>() {
-                @Override
-                public int compare(ElementoAnalisis e1, ElementoAnalisis e2) {
-                    if (e1.linea != e2.linea) {
-                        return Integer.compare(e1.linea, e2.linea);
-                    }
-                    return Integer.compare(e1.columna, e2.columna);
-                }
+    private static int analizarLote(String[] args) {
+        List<String> argumentos = new ArrayList<>(Arrays.asList(args));
+        boolean volcadoBinario = argumentos.remove("--binario");
+        return ModoLotes.ejecutar("ANALIZADOR LEXICO", argumentos.toArray(new String[0]), Analizador::new,
+            (analizador, fileName, resultado) -> {
+                analizador.volcadoBinario = volcadoBinario;
+                analizador.analizar(fileName);
+                resultado.tokens = analizador.tokensValidos;
+                resultado.erroresLexicos = analizador.errores.size();
             });
-            
-            // 4. Escribir archivo
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(nombreSalida))) {
-                
-                // ===== ENCABEZADO =====
-                writer.write("# ARCHIVO DE TOKENS - CARUMALANG");
-                writer.newLine();
-                writer.write("# Archivo fuente: " + archivoFuente);
-                writer.newLine();
-                writer.write("# Fecha generacion: " + fechaActual);
-                writer.newLine();
-                writer.write("# Tokens validos: " + tokensValidos.size());
-                writer.newLine();
-                writer.write("# Errores lexicos: " + errores.size());
-                writer.newLine();
-                writer.newLine();
-                
-                // ===== SECCION DE TOKENS =====
-                writer.write("[TOKENS]");
-                writer.newLine();
-                
-                // Contador para tokens válidos (para mantener numeración correcta)
-                int contadorTokens = 1;
-                
-                for (ElementoAnalisis elem : elementos) {
-                    if (elem.esError) {
-                        // Escribir error
-                        writer.write(String.format("ERROR|%s|%s|%d|%d|%s",
-                            elem.lexema,
-                            elem.tipoToken,
-                            elem.linea,
-                            elem.columna,
-                            elem.mensajeError));
-                    } else {
-                        // Escribir token válido
-                        writer.write(String.format("%d|%s|%s|%d|%d|VALIDO",
-                            contadorTokens++,
-                            elem.lexema,
-                            elem.tipoToken,
-                            elem.linea,
-                            elem.columna));
-                    }
-                    writer.newLine();
-                }
-                
-                writer.newLine();
-                
-                // ===== SECCION DE RESUMEN =====
-                writer.write("[RESUMEN]");
-                writer.newLine();
-                writer.write("TOKENS_VALIDOS=" + tokensValidos.size());
-                writer.newLine();
-                writer.write("ERRORES_LEXICOS=" + errores.size());
-                writer.newLine();
-                
-                String estado = errores.isEmpty() ? "SIN_ERRORES" : "CON_ERRORES";
-                writer.write("ESTADO=" + estado);
-                writer.newLine();
-                writer.newLine();
-                
-                // ===== FIN =====
-                writer.write("[FIN]");
-                writer.newLine();
-                
-            }
-            
-            System.out.println("\nArchivo de tokens generado exitosamente: " + nombreSalida);
-            
-        } catch (IOException e) {
-            System.err.println("Error al generar archivo de tokens: " + e.getMessage());
-            System.err.println("El analisis lexico se completo, pero no se pudo guardar el archivo.");
-        }
     }
     
 }
\ No newline at end of file
@@ -1,14 +1,22 @@
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
 import javax.swing.JFileChooser;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import AnalizadorSintactico.*;
@@ -18,7 +26,8 @@ public class AnalisisSintactico {
     // Tipos de error
     enum TipoError {
         LEXICO,
-        SINTACTICO
+        SINTACTICO,
+        SEMANTICO
     }
     
     // Clase para almacenar información de errores
@@ -58,29 +67,319 @@ public class AnalisisSintactico {
         }
     }
     
+    // Delimitadores de un tramo de tokens que no se emparejaron dentro de
+    // él: los cierres, en orden, y las aperturas que quedaron abiertas, de
+    // la más vieja a la más nueva
+    static class TramoDelimitadores {
+        final List<DelimitadorInfo> cierres = new ArrayList<>();
+        final List<DelimitadorInfo> llaves = new ArrayList<>();
+        final List<DelimitadorInfo> parentesis = new ArrayList<>();
+    }
+    
+    // Empareja tramos de tokens seguidos: los cierres de cada tramo cierran
+    // las aperturas que dejaron los anteriores. Da los mismos errores, y en
+    // el mismo orden, que recorrer todos los tokens de una vez
+    static class BalanceDelimitadores {
+        private final Stack<DelimitadorInfo> pilaLlaves = new Stack<>();
+        private final Stack<DelimitadorInfo> pilaParentesis = new Stack<>();
+        private final List<ErrorAnalisis> errores;
+        
+        BalanceDelimitadores(List<ErrorAnalisis> errores) {
+            this.errores = errores;
+        }
+        
+        // Agrega el tramo siguiente, con sus líneas corridas deltaLinea
+        void agregar(TramoDelimitadores tramo, int deltaLinea) {
+            for (DelimitadorInfo cierre : tramo.cierres) {
+                boolean llave = cierre.tipo.equals("}");
+                Stack<DelimitadorInfo> pila = llave ? pilaLlaves : pilaParentesis;
+                if (!pila.isEmpty()) {
+                    pila.pop();
+                } else if (llave) {
+                    errores.add(new ErrorAnalisis(
+                        TipoError.SINTACTICO,
+                        "Llave de cierre '}' sin apertura correspondiente",
+                        cierre.linea + deltaLinea, cierre.columna, "}", "{"));
+                } else {
+                    errores.add(new ErrorAnalisis(
+                        TipoError.SINTACTICO,
+                        "Parentesis de cierre ')' sin apertura correspondiente",
+                        cierre.linea + deltaLinea, cierre.columna, ")", "("));
+                }
+            }
+            for (DelimitadorInfo info : tramo.llaves) {
+                pilaLlaves.push(corrido(info, deltaLinea));
+            }
+            for (DelimitadorInfo info : tramo.parentesis) {
+                pilaParentesis.push(corrido(info, deltaLinea));
+            }
+        }
+        
+        // Informa las aperturas que ningún tramo cerró
+        void terminar() {
+            // Reportar llaves sin cerrar (con contexto específico)
+            while (!pilaLlaves.isEmpty()) {
+                DelimitadorInfo info = pilaLlaves.pop();
+                errores.add(new ErrorAnalisis(
+                    TipoError.SINTACTICO,
+                    "Llave de apertura '{' sin cerrar en " + info.contexto,
+                    info.linea, info.columna, "{", "}"));
+            }
+            
+            // Reportar paréntesis sin cerrar
+            while (!pilaParentesis.isEmpty()) {
+                DelimitadorInfo info = pilaParentesis.pop();
+                errores.add(new ErrorAnalisis(
+                    TipoError.SINTACTICO,
+                    "Parentesis '(' sin cerrar en " + info.contexto,
+                    info.linea, info.columna, "(", ")"));
+            }
+        }
+        
+        private static DelimitadorInfo corrido(DelimitadorInfo info, int deltaLinea) {
+            return deltaLinea == 0 ? info
+                : new DelimitadorInfo(info.linea + deltaLinea, info.columna, info.tipo, info.contexto, info.id);
+        }
+    }
+    
+    // Resultado de tokenizar el archivo una sola vez: lo consumen el
+    // colector de errores léxicos, el balanceo de delimitadores y el parser
+    static class FlujoTokens {
+        BufferTokens tokens;                             // Tokens válidos, el último es EOF
+        List<ErrorAnalisis> erroresLexicos = new ArrayList<>();
+    }
+    
+    // Token manager que entrega al parser los tokens ya leídos en el flujo
+    static class GestorTokensFlujo extends CarumaLangParserTokenManager {
+        // Tokens entregados que se recuerdan para soltarlos después; potencia de 2
+        private static final int VENTANA = 64;
+        // Tokens que se dejan enlazados detrás del que el parser ya consumió
+        private static final int MARGEN = 8;
+        
+        private FlujoTokens flujo;
+        private int siguiente = 0;
+        
+        private CarumaLangParser parser;
+        private final Token[] entregados = new Token[VENTANA];
+        private int totalEntregados = 0;    // Cuántos se entregaron en este archivo
+        private int consumidos = 0;         // Posición de parser.token en entregados
+        private int soltados = 0;           // Hasta dónde se cortó token.next
+        
+        GestorTokensFlujo(FlujoTokens flujo) {
+            super((SimpleCharStream) null);
+            this.flujo = flujo;
+        }
+        
+        // Reutiliza el gestor con el flujo de otro archivo
+        void reiniciar(FlujoTokens flujo) {
+            this.flujo = flujo;
+            this.siguiente = 0;
+            Arrays.fill(entregados, null);
+            totalEntregados = 0;
+            consumidos = 0;
+            soltados = 0;
+        }
+        
+        /**
+         * Parser al que se entregan los tokens. Con él el gestor sabe cuáles
+         * ya consumió y puede soltar la cadena detrás: el parser solo
+         * avanza, pero un token muerto que una recolección menor promovió a
+         * la generación vieja seguiría reteniendo por next todos los
+         * posteriores hasta la próxima recolección completa
+         */
+        void atender(CarumaLangParser parser) {
+            this.parser = parser;
+        }
+        
+        // Los Token se construyen a medida que el parser los pide; EOF se
+        // entrega nuevo en cada llamada, igual que el token manager generado,
+        // para no formar ciclos en token.next
+        @Override
+        public Token getNextToken() {
+            soltarConsumidos();
+            int ultimo = flujo.tokens.tamano() - 1;
+            Token t = flujo.tokens.token(siguiente < ultimo ? siguiente++ : ultimo);
+            entregados[totalEntregados++ & (VENTANA - 1)] = t;
+            return t;
+        }
+        
+        /**
+         * Corta token.next en los entregados que quedaron más de MARGEN
+         * detrás de parser.token. Ni la búsqueda anticipada (jj_scanpos,
+         * LOOKAHEAD) ni getToken() ni la recuperación de errores
+         * (ParseException.currentToken es el token actual) recorren la cadena
+         * desde antes de parser.token, así que esos enlaces ya no se usan.
+         * Si parser.token no está entre los recordados no se corta nada
+         */
+        private void soltarConsumidos() {
+            if (parser == null) {
+                return;
+            }
+            // parser.token solo avanza: se busca desde la última posición
+            int desde = Math.max(consumidos, totalEntregados - VENTANA);
+            for (int i = desde; i < totalEntregados; i++) {
+                if (entregados[i & (VENTANA - 1)] == parser.token) {
+                    consumidos = i;
+                    break;
+                }
+            }
+            // Los que salieron de la ventana sin cortar se quedan como están
+            soltados = Math.max(soltados, totalEntregados - VENTANA);
+            for (; soltados < consumidos - MARGEN; soltados++) {
+                int j = soltados & (VENTANA - 1);
+                entregados[j].next = null;
+                entregados[j] = null;
+            }
+        }
+    }
+    
+    // Token que recuerda su índice en el LexicoIncremental, para saber
+    // dónde empieza y termina cada sentencia
+    static class TokenIndexado extends Token {
+        final int indice;
+        
+        TokenIndexado(int indice, Token t) {
+            this.indice = indice;
+            kind = t.kind;
+            image = t.image;
+            beginLine = t.beginLine;
+            beginColumn = t.beginColumn;
+            endLine = t.endLine;
+            endColumn = t.endColumn;
+        }
+    }
+    
+    // Token manager que entrega al parser los tokens de un LexicoIncremental
+    // desde cualquier índice, saltando los INVALID (que en el archivo son
+    // tokens especiales), y recuerda hasta qué token leyó
+    static class GestorTokensIncremental extends CarumaLangParserTokenManager {
+        private final LexicoIncremental lexico;
+        private int siguiente = 0;
+        private int alcance = 0;
+        
+        GestorTokensIncremental(LexicoIncremental lexico) {
+            super((SimpleCharStream) null);
+            this.lexico = lexico;
+        }
+        
+        void posicionar(int indice) {
+            siguiente = indice;
+            alcance = 0;
+        }
+        
+        // Índice siguiente al último token entregado desde medir()
+        int alcance() {
+            return alcance;
+        }
+        
+        void medir() {
+            alcance = 0;
+        }
+        
+        @Override
+        public Token getNextToken() {
+            int ultimo = lexico.tamano() - 1;
+            while (siguiente < ultimo && lexico.tipo(siguiente) == CarumaLangParserConstants.INVALID) {
+                siguiente++;
+            }
+            int indice = siguiente < ultimo ? siguiente++ : ultimo;
+            alcance = Math.max(alcance, indice + 1);
+            return new TokenIndexado(indice, lexico.token(indice));
+        }
+    }
+    
+    // Una vuelta de DeclaracionesConRecuperacion en AnalizadorIncremental:
+    // sus tokens, lo que dejó en el árbol y los errores que registró.
+    //
+    // Los errores y los nodos guardan las líneas que tenían cuando se
+    // calcularon, junto con la línea de la sentencia en ese momento; si
+    // después una edición la corre, la diferencia se suma al leerlos
+    static class Sentencia {
+        int inicio;             // Índice en el LexicoIncremental del primer token
+        int fin;                // Índice del token donde empieza la siguiente
+        int alcance;            // Índice siguiente al último token que miró el parser
+        int linea;              // Línea del primer token
+        int problematicos;      // tokensProblematicos del parser al empezar
+        int raiz;               // Nodo de la sentencia, NINGUNO si no se pudo analizar
+        int primerNodo;         // Nodos que creó: primerNodo a finNodo - 1
+        int finNodo;
+        int lineaNodos;         // Línea de la sentencia según sus nodos
+        List<ErrorAnalisis> errores;
+        int lineaErrores;       // Línea de la sentencia según errores
+        int[] lineaEnMensaje;   // Dónde está la línea en el mensaje de cada error, o -1
+        // Errores léxicos y delimitadores sin emparejar de sus tokens; null
+        // hasta que se piden los errores
+        List<ErrorAnalisis> lexicos;
+        TramoDelimitadores delimitadores;
+        int lineaTokens;        // Línea de la sentencia según lexicos y delimitadores
+        ResultadoSemantico semantico;   // null si hay que analizarla
+    }
+    
+    // Análisis semántico de una sentencia del programa, que no hace falta
+    // repetir mientras no cambien ella ni las variables que consultó
+    static class ResultadoSemantico {
+        List<ErrorAnalisis> errores;
+        int[] lecturas;         // Nombres cuyo tipo consultó
+        int[] efecto;           // Nombre, tipo y nivel que dejó, tres ints por nombre
+        int linea;              // Línea de la sentencia cuando se analizó
+    }
+    
     // Parser personalizado con recuperación de errores
     static class ParserConRecuperacion extends CarumaLangParser {
         private List<ErrorAnalisis> errores = new ArrayList<>();
         private int contadorErrores = 0;
         private static final int MAX_ERRORES = 100;
+        // Sentencias seguidas que fallaron en DeclaracionesConRecuperacion
+        private int tokensProblematicos = 0;
+        private static final int MAX_TOKENS_PROBLEMATICOS = 50;
         
         public ParserConRecuperacion(java.io.Reader stream) {
             super(stream);
         }
         
+        public ParserConRecuperacion(CarumaLangParserTokenManager tm) {
+            super(tm);
+        }
+        
+        @Override
+        public void ReInit(CarumaLangParserTokenManager tm) {
+            super.ReInit(tm);
+            errores = new ArrayList<>();
+            contadorErrores = 0;
+            tokensProblematicos = 0;
+        }
+        
+        /**
+         * Prepara el parser para seguir en medio de las declaraciones, con
+         * los contadores de errores que traía el análisis en ese punto. No
+         * reinicia el árbol: AnalizadorIncremental agrega las sentencias
+         * nuevas al que ya tiene
+         */
+        void continuar(CarumaLangParserTokenManager tm, int erroresPrevios, int problematicos) {
+            super.ReInit(tm);
+            errores = new ArrayList<>();
+            contadorErrores = erroresPrevios;
+            tokensProblematicos = problematicos;
+        }
+        
         public List<ErrorAnalisis> getErrores() {
             return errores;
         }
         
+        int tokensProblematicos() {
+            return tokensProblematicos;
+        }
+        
         /**
-         * Programa modificado con recuperación de errores y posiciones correctas
+         * Programa modificado con recuperación de errores y posiciones correctas.
+         * El árbol (getArbol()) queda con las sentencias que se pudieron
+         * analizar completas
          */
         public void ProgramaConRecuperacion() {
+            arbol.reiniciar();
+            int caruma = ArbolSintactico.NINGUNO;
             try {
-                // Verificar CARUMA
-                if (!verificarYConsumirToken(CARUMA, "Caruma")) {
-                    recuperarHastaToken(BYEBYE, INTCHELADA, GRANITO, CADENA, CARACTER, MIXCHELADA);
-                }
+                caruma = InicioConRecuperacion();
                 
                 // Analizar declaraciones con recuperación total
                 try {
@@ -107,12 +406,7 @@ public class AnalisisSintactico {
                     }
                 }
                 
-		// Verificar BYEBYE
-		try {
-    			verificarYConsumirToken(BYEBYE, "byebye");
-		} catch (Exception e) {
-    		// Ignorar errores al verificar byebye
-		}
+                FinConRecuperacion();
                 
             } catch (Exception e) {
                 // Error general - intentar capturar posición
@@ -131,60 +425,117 @@ public class AnalisisSintactico {
                                  -1, -1, "<desconocido>", "");
                 }
             }
+            
+            // Las sentencias válidas quedaron en la pila del árbol
+            arbol.nodo(ArbolSintactico.PROGRAMA, caruma, 0);
+        }
+        
+        /**
+         * Registra el token Caruma y verifica que el programa empiece con
+         * él. Devuelve el número de token para el nodo PROGRAMA
+         */
+        int InicioConRecuperacion() {
+            int caruma = ArbolSintactico.NINGUNO;
+            // El token se registra antes de consumirlo; guardar el
+            // objeto retendría por token.next todo el archivo
+            if (getToken(1).kind == CARUMA) {
+                caruma = arbol.token(getToken(1));
+            }
+            // Verificar CARUMA
+            if (!verificarYConsumirToken(CARUMA, "Caruma")) {
+                recuperarHastaToken(BYEBYE, INTCHELADA, GRANITO, CADENA, CARACTER, MIXCHELADA);
+            }
+            return caruma;
+        }
+        
+        /**
+         * Verifica que las declaraciones terminen con byebye
+         */
+        void FinConRecuperacion() {
+            try {
+                verificarYConsumirToken(BYEBYE, "byebye");
+            } catch (Exception e) {
+                // Ignorar errores al verificar byebye
+            }
         }
         
         /**
          * Declaraciones con recuperación - versión ultra robusta
          */
         private void DeclaracionesConRecuperacion() {
-            int tokensProblematicos = 0;
-            final int MAX_TOKENS_PROBLEMATICOS = 50;
-            
-            while (contadorErrores < MAX_ERRORES && tokensProblematicos < MAX_TOKENS_PROBLEMATICOS) {
-                try {
-                    Token tok = getToken(1);
-                    
-                    // Verificar si llegamos al final
-                    if (tok == null || tok.kind == BYEBYE || tok.kind == EOF) {
-                        break;
-                    }
-                    
-                    // Intentar analizar una declaración
-                    if (esInicioDeDeclaracion()) {
-                        try {
-                            Declaracion();
-                            tokensProblematicos = 0; // Reset al éxito
-                        } catch (ParseException pe) {
-                            // Capturar error sintáctico con posición CORRECTA
-                            capturarErrorParseException(pe);
-                            recuperarHastaInicioDeclaracion();
-                            tokensProblematicos++;
-                        } catch (TokenMgrError te) {
-                            // Error léxico - avanzar token
-                            avanzarTokenSeguro();
-                            tokensProblematicos++;
-                        }
-                    } else {
-                        // Token inesperado - registrar con posición CORRECTA del token actual
-                        registrarError(TipoError.SINTACTICO,
-                                     "Token inesperado en declaraciones", 
-                                     tok.beginLine,
-                                     tok.beginColumn,
-                                     tok.image, 
-                                     "tipo de dato, identificador o estructura de control");
+            tokensProblematicos = 0;
+            while (puedeContinuar() && DeclaracionConRecuperacion()) {
+                // Cada vuelta analiza una declaración o se recupera de un error
+            }
+        }
+        
+        /**
+         * Si los límites de errores permiten otra vuelta de las declaraciones
+         */
+        boolean puedeContinuar() {
+            return contadorErrores < MAX_ERRORES && tokensProblematicos < MAX_TOKENS_PROBLEMATICOS;
+        }
+        
+        /**
+         * Una vuelta de DeclaracionesConRecuperacion: una declaración, o un
+         * error y la recuperación hasta el inicio de la siguiente. Devuelve
+         * false al llegar a byebye o EOF. Entre vueltas el parser solo
+         * guarda los dos contadores de errores, así que el análisis
+         * incremental puede retomar desde el inicio de cualquiera
+         */
+        boolean DeclaracionConRecuperacion() {
+            // Si la sentencia falla, lo que alcanzó a construir se descarta
+            int marca = arbol.marca();
+            int nodos = arbol.tamano();
+            int pendientes = arbol.tokensPendientes();
+            try {
+                Token tok = getToken(1);
+                
+                // Verificar si llegamos al final
+                if (tok == null || tok.kind == BYEBYE || tok.kind == EOF) {
+                    return false;
+                }
+                
+                // Intentar analizar una declaración
+                if (esInicioDeDeclaracion()) {
+                    try {
+                        Declaracion();
+                        tokensProblematicos = 0; // Reset al éxito
+                    } catch (ParseException pe) {
+                        arbol.descartar(marca, nodos, pendientes);
+                        // Capturar error sintáctico con posición CORRECTA
+                        capturarErrorParseException(pe);
+                        recuperarHastaInicioDeclaracion();
+                        tokensProblematicos++;
+                    } catch (TokenMgrError te) {
+                        arbol.descartar(marca, nodos, pendientes);
+                        // Error léxico - avanzar token
                         avanzarTokenSeguro();
                         tokensProblematicos++;
                     }
-                } catch (TokenMgrError e) {
-                    // Error léxico al obtener token
-                    avanzarTokenSeguro();
-                    tokensProblematicos++;
-                } catch (Exception e) {
-                    // Cualquier otro error
+                } else {
+                    // Token inesperado - registrar con posición CORRECTA del token actual
+                    registrarError(TipoError.SINTACTICO,
+                                 "Token inesperado en declaraciones", 
+                                 tok.beginLine,
+                                 tok.beginColumn,
+                                 tok.image, 
+                                 "tipo de dato, identificador o estructura de control");
                     avanzarTokenSeguro();
                     tokensProblematicos++;
                 }
+            } catch (TokenMgrError e) {
+                arbol.descartar(marca, nodos, pendientes);
+                // Error léxico al obtener token
+                avanzarTokenSeguro();
+                tokensProblematicos++;
+            } catch (Exception e) {
+                arbol.descartar(marca, nodos, pendientes);
+                // Cualquier otro error
+                avanzarTokenSeguro();
+                tokensProblematicos++;
             }
+            return true;
         }
         
         /**
@@ -302,77 +653,1203 @@ public class AnalisisSintactico {
             }
         }
         
-        /**
-         * Recupera hasta encontrar inicio de declaración
-         */
-        private void recuperarHastaInicioDeclaracion() {
-            recuperarHastaToken(INTCHELADA, GRANITO, CADENA, CARACTER, 
-                              MIXCHELADA, CAECLIENTE, PAPOI, PARAPAPOI, 
-                              HOLAHOLA, BYEBYE, EOF);
+        /**
+         * Recupera hasta encontrar inicio de declaración
+         */
+        private void recuperarHastaInicioDeclaracion() {
+            recuperarHastaToken(INTCHELADA, GRANITO, CADENA, CARACTER, 
+                              MIXCHELADA, CAECLIENTE, PAPOI, PARAPAPOI, 
+                              HOLAHOLA, BYEBYE, EOF);
+        }
+        
+        /**
+         * Captura y procesa ParseException con posiciones correctas
+         * CORRECCIÓN: Manejo robusto de tokens nulos
+         */
+        private void capturarErrorParseException(ParseException e) {
+            String mensaje = e.getMessage();
+            
+            // IMPORTANTE: El token de error es currentToken.next
+            Token tokError = null;
+            
+            if (e.currentToken != null && e.currentToken.next != null) {
+                tokError = e.currentToken.next;
+            } else if (e.currentToken != null) {
+                tokError = e.currentToken;
+            }
+            
+            // Extraer posición CORRECTA del token que causó el error
+            int linea = tokError != null ? tokError.beginLine : -1;
+            int columna = tokError != null ? tokError.beginColumn : -1;
+            String tokenEncontrado = tokError != null ? tokError.image : "<desconocido>";
+            
+            // Extraer tokens esperados
+            String esperado = extraerTokensEsperados(e);
+            
+            // Registrar el error con la posición CORRECTA
+            registrarError(TipoError.SINTACTICO, mensaje, linea, columna, tokenEncontrado, esperado);
+        }
+        
+        /**
+         * Extrae tokens esperados del ParseException
+         */
+        private String extraerTokensEsperados(ParseException e) {
+            StringBuilder esperados = new StringBuilder();
+            
+            if (e.expectedTokenSequences != null && e.expectedTokenSequences.length > 0) {
+                for (int i = 0; i < e.expectedTokenSequences.length && i < 5; i++) {
+                    int[] secuencia = e.expectedTokenSequences[i];
+                    if (secuencia.length > 0) {
+                        String tokenImg = e.tokenImage[secuencia[0]];
+                        if (esperados.length() > 0) {
+                            esperados.append(", ");
+                        }
+                        esperados.append(tokenImg);
+                    }
+                }
+            }
+            
+            return esperados.length() > 0 ? esperados.toString() : "token válido";
+        }
+        
+        /**
+         * Registra un error
+         */
+        private void registrarError(TipoError tipo, String mensaje, int linea, int columna, 
+                                   String tokenEncontrado, String tokenEsperado) {
+            errores.add(new ErrorAnalisis(tipo, mensaje, linea, columna, 
+                                         tokenEncontrado, tokenEsperado));
+            contadorErrores++;
+        }
+    }
+    
+    // Instancias que se reutilizan de un archivo al siguiente: en modo por
+    // lotes el token manager, el gestor y el parser se reinician con ReInit
+    // en lugar de crearse de nuevo para cada archivo
+    static class Analizador {
+        private AnalizadorSintactico.LexicoTabla tokenManager;
+        private GestorTokensFlujo gestor;
+        private ParserConRecuperacion parser;
+        private final VerificadorSemantico verificador = new VerificadorSemantico();
+        private int tokensUltimoArchivo;
+        
+        /**
+         * Analiza un archivo y devuelve todos sus errores ordenados por
+         * línea y columna
+         */
+        List<ErrorAnalisis> analizar(String fileName) throws IOException {
+            // PASO 1: Tokenizar el archivo una sola vez (tokens válidos y errores léxicos)
+            //System.out.println("Paso 1/3: Analizando errores lexicos...");
+            FlujoTokens flujo = tokenizarArchivo(fileName, this);
+            List<ErrorAnalisis> erroresLexicos = flujo.erroresLexicos;
+            tokensUltimoArchivo = flujo.tokens.tamano() - 1;
+            
+            // PASO 2: Pre-análisis para detectar delimitadores sin emparejar
+            //System.out.println("Paso 2/3: Analizando delimitadores...");
+            List<ErrorAnalisis> erroresDelimitadores = preAnalizarDelimitadores(flujo);
+            
+            // PASO 3: Análisis sintáctico sobre el mismo flujo de tokens
+            //System.out.println("Paso 3/3: Analizando estructura sintactica...\n");
+            List<ErrorAnalisis> erroresSintacticos = new ArrayList<>();
+            
+            try {
+                if (parser == null) {
+                    gestor = new GestorTokensFlujo(flujo);
+                    parser = new ParserConRecuperacion(gestor);
+                    gestor.atender(parser);
+                } else {
+                    gestor.reiniciar(flujo);
+                    parser.ReInit(gestor);
+                }
+                parser.ProgramaConRecuperacion();
+                erroresSintacticos = parser.getErrores();
+            } catch (Exception e) {
+                System.err.println("Error en analisis sintactico: " + e.getMessage());
+            }
+            
+            // PASO 4: Análisis semántico sobre las sentencias que el parser
+            // pudo reconocer completas
+            List<ErrorAnalisis> erroresSemanticos = verificador.verificar(parser.getArbol());
+            
+            // PASO 5: Combinar todos los errores
+            List<ErrorAnalisis> errores = new ArrayList<>();
+            errores.addAll(erroresLexicos);
+            errores.addAll(erroresDelimitadores);
+            errores.addAll(erroresSintacticos);
+            errores.addAll(erroresSemanticos);
+            
+            // Ordenar errores por línea y columna
+            ordenarErrores(errores);
+            
+            return errores;
+        }
+        
+        /**
+         * Árbol sintáctico del último archivo analizado, con las sentencias
+         * que el parser pudo reconocer completas; lo reutiliza el siguiente
+         * análisis
+         */
+        ArbolSintactico arbol() {
+            return parser.getArbol();
+        }
+        
+        // Token manager para el flujo de un archivo nuevo: el de tabla,
+        // que reconoce lo mismo que el generado en menos tiempo
+        AnalizadorSintactico.LexicoTabla tokenManagerPara(
+                AnalizadorSintactico.SimpleCharStream stream) {
+            if (tokenManager == null) {
+                tokenManager = new AnalizadorSintactico.LexicoTabla(stream);
+            } else {
+                tokenManager.ReInit(stream);
+            }
+            return tokenManager;
+        }
+    }
+    
+    /**
+     * Análisis de un texto que se edita, como el de un editor: después de
+     * una o más ediciones vuelve a analizar solo las sentencias que pudieron
+     * cambiar y conserva el resto del árbol y de los errores.
+     *
+     * Cada vuelta de DeclaracionesConRecuperacion es una sentencia (una
+     * declaración, o un error y su recuperación). Entre vueltas el parser
+     * solo guarda sus dos contadores de errores, así que el análisis se
+     * retoma desde la primera sentencia que miró algún token cambiado y
+     * sigue hasta empezar una vuelta justo donde empezaba una sentencia
+     * vieja pasada la edición, con los mismos tokens problemáticos: de ahí
+     * en adelante el resultado sería el mismo.
+     *
+     * Cada sentencia guarda también sus errores léxicos, sus delimitadores
+     * sin emparejar y su análisis semántico, así pedir los errores solo
+     * recalcula los de las sentencias nuevas. Las sentencias viejas que
+     * quedan después de una edición no se actualizan una por una: se anota
+     * cuántos tokens y líneas se corrieron desde cierta sentencia, y ese
+     * punto se mueve hasta la próxima edición. El resultado es el mismo que
+     * el de Analizador sobre el texto entero.
+     */
+    static class AnalizadorIncremental {
+        private static final List<ErrorAnalisis> SIN_ERRORES = Collections.emptyList();
+        private static final TramoDelimitadores SIN_DELIMITADORES = new TramoDelimitadores();
+        
+        private final LexicoIncremental lexico;
+        private final GestorTokensIncremental gestor;
+        private final ParserConRecuperacion parser;
+        private final VerificadorSemantico verificador = new VerificadorSemantico();
+        private final ArbolSintactico arbol;
+        
+        private int programa;                       // Nodo PROGRAMA
+        private List<ErrorAnalisis> erroresInicio;  // Errores de Caruma
+        private int alcanceInicio;                  // Tokens que miró el inicio
+        private List<Sentencia> sentencias = new ArrayList<>();
+        private int finDeclaraciones;               // Token donde terminaron las vueltas
+        private int problematicosFin;               // tokensProblematicos en ese punto
+        private List<ErrorAnalisis> erroresFin;     // Errores de byebye
+        // El parser se detuvo por MAX_ERRORES o MAX_TOKENS_PROBLEMATICOS:
+        // cualquier edición puede mover ese punto, así que se analiza todo
+        private boolean limitado;
+        private int maximaAnticipacion;             // Mayor alcance - fin de una sentencia
+        private int nodosVivos;
+        private int erroresSentencias;              // Errores sintácticos de las sentencias
+        private int sentenciasAnalizadas;
+        private int sincronizada;                   // Resultado de vueltas()
+        private int[] hijos = new int[64];
+        // Ediciones que todavía no se analizaron: desde el token cambio
+        // hasta finCambio (sin incluirlo) los tokens son nuevos, y los que
+        // siguen son los viejos corridos deltaCambio posiciones
+        private boolean pendiente;
+        private int cambio;
+        private int finCambio;
+        private int deltaCambio;
+        // Las sentencias desde corridas todavía no tienen sumados estos
+        // tokens y líneas; los accesos inicio(), fin(), alcance() y linea()
+        // los suman
+        private int corridas;
+        private int corrimientoTokens;
+        private int corrimientoLineas;
+        // Nombres cuya declaración visible pudo cambiar desde el último
+        // análisis semántico, porque se quitaron sentencias que los
+        // declaraban
+        private int[] sucios = new int[16];
+        private int totalSucios;
+        
+        AnalizadorIncremental(CharSequence texto) {
+            lexico = new LexicoIncremental(texto);
+            gestor = new GestorTokensIncremental(lexico);
+            parser = new ParserConRecuperacion(gestor);
+            arbol = parser.getArbol();
+            analizarCompleto();
+        }
+        
+        /**
+         * Reemplaza eliminados caracteres desde offset por el texto
+         * insertado. Los tokens se actualizan enseguida, pero las sentencias
+         * se vuelven a analizar cuando se piden los errores o el árbol, una
+         * sola vez para todas las ediciones que se juntaron hasta entonces
+         */
+        void editar(int offset, int eliminados, CharSequence insertado) {
+            lexico.editar(offset, eliminados, insertado);
+            int primero = lexico.primerCambio();
+            int agregados = lexico.tokensAgregados();
+            int quitados = lexico.tokensQuitados();
+            if (!pendiente) {
+                pendiente = true;
+                cambio = primero;
+                finCambio = primero + agregados;
+                deltaCambio = agregados - quitados;
+                return;
+            }
+            // La zona cambiada se une con la de esta edición, corrida por ella
+            int fin = finCambio <= primero ? finCambio
+                    : finCambio >= primero + quitados ? finCambio + agregados - quitados
+                    : primero + agregados;
+            cambio = Math.min(cambio, primero);
+            finCambio = Math.max(fin, primero + agregados);
+            deltaCambio += agregados - quitados;
+        }
+        
+        // Vuelve a analizar las sentencias que tocaron las ediciones pendientes
+        private void actualizar() {
+            if (!pendiente) {
+                return;
+            }
+            pendiente = false;
+            int delta = deltaCambio;
+            if (limitado || alcanceInicio > cambio) {
+                analizarCompleto();
+                return;
+            }
+            
+            // Primera sentencia que miró algún token desde el cambio: la
+            // primera que termina después o, por la anticipación, alguna
+            // anterior cercana
+            int a = primeraQueTerminaDespues(cambio);
+            for (int i = a - 1; i >= 0 && fin(i) + maximaAnticipacion > cambio; i--) {
+                if (alcance(i) > cambio) {
+                    a = i;
+                }
+            }
+            
+            int previos = erroresInicio.size();
+            for (int i = 0; i < a; i++) {
+                previos += sentencias.get(i).errores.size();
+            }
+            boolean alFinal = a == sentencias.size();
+            gestor.posicionar(alFinal ? finDeclaraciones : inicio(a));
+            parser.continuar(gestor, previos,
+                             alFinal ? problematicosFin : sentencias.get(a).problematicos);
+            int finViejo = finDeclaraciones;
+            int problematicosViejo = problematicosFin;
+            int marca = arbol.marca();
+            List<Sentencia> nuevas = vueltas(a, finCambio, delta, false);
+            arbol.soltar(marca);
+            
+            // Las sentencias viejas desde la sincronizada siguen valiendo,
+            // corridas por los tokens y las líneas que cambiaron
+            int hasta = sincronizada >= 0 ? sincronizada : sentencias.size();
+            if (sincronizada >= 0) {
+                moverCorrimiento(hasta);
+                corrimientoLineas += lexico.linea(inicio(sincronizada) + delta) - linea(sincronizada);
+                corrimientoTokens += delta;
+                finDeclaraciones = finViejo + delta;
+                problematicosFin = problematicosViejo;
+                // El contexto de los delimitadores mira tokens de antes:
+                // se recalculan los de las primeras sentencias viejas
+                int vistos = 0;
+                for (int i = sincronizada; i < sentencias.size() && vistos < TOKENS_CONTEXTO; i++) {
+                    sentencias.get(i).lexicos = null;
+                    for (int t = inicio(i); t < fin(i); t++) {
+                        if (lexico.tipo(t) != CarumaLangParserConstants.INVALID) {
+                            vistos++;
+                        }
+                    }
+                }
+            } else if (corridas < a) {
+                // Las que siguen se quitan todas
+                moverCorrimiento(a);
+            }
+            
+            List<Sentencia> reemplazadas = sentencias.subList(a, hasta);
+            for (Sentencia s : reemplazadas) {
+                nodosVivos -= s.finNodo - s.primerNodo;
+                erroresSentencias -= s.errores.size();
+                if (s.semantico != null) {
+                    ensuciar(s.semantico.efecto);
+                }
+            }
+            reemplazadas.clear();
+            sentencias.addAll(a, nuevas);
+            corridas = a + nuevas.size();
+            sentenciasAnalizadas = nuevas.size();
+            
+            // Con los errores nuevos el parser completo podría haberse
+            // detenido antes, y si el árbol ya es más basura que nodos
+            // vivos conviene construirlo de nuevo
+            if (erroresInicio.size() + erroresSentencias >= ParserConRecuperacion.MAX_ERRORES
+                    || arbol.tamano() > 2 * nodosVivos + 4096) {
+                analizarCompleto();
+                return;
+            }
+            enlazar(a, a + nuevas.size());
+            terminar();
+        }
+        
+        /**
+         * Todos los errores del texto actual ordenados por línea y columna,
+         * igual que Analizador.analizar()
+         */
+        List<ErrorAnalisis> errores() {
+            List<ErrorAnalisis> errores = erroresLexicosYSintacticos();
+            errores.addAll(erroresSemanticos());
+            ordenarErrores(errores);
+            return errores;
+        }
+        
+        /**
+         * Errores léxicos, de delimitadores y sintácticos, sin ordenar. Los
+         * léxicos y los delimitadores de cada sentencia se calculan una vez;
+         * los de antes y después de las sentencias se vuelven a leer
+         */
+        List<ErrorAnalisis> erroresLexicosYSintacticos() {
+            actualizar();
+            List<ErrorAnalisis> errores = new ArrayList<>();
+            List<ErrorAnalisis> delimitadores = new ArrayList<>();
+            BalanceDelimitadores balance = new BalanceDelimitadores(delimitadores);
+            
+            int primero = sentencias.isEmpty() ? finDeclaraciones : inicio(0);
+            erroresLexicos(0, primero, errores);
+            balance.agregar(delimitadores(0, primero), 0);
+            for (int i = 0; i < sentencias.size(); i++) {
+                Sentencia s = sentencias.get(i);
+                int linea = linea(i);
+                if (s.lexicos == null) {
+                    List<ErrorAnalisis> lexicos = new ArrayList<>();
+                    erroresLexicos(inicio(i), fin(i), lexicos);
+                    s.lexicos = lexicos.isEmpty() ? SIN_ERRORES : lexicos;
+                    s.delimitadores = delimitadores(inicio(i), fin(i));
+                    s.lineaTokens = linea;
+                }
+                for (ErrorAnalisis e : s.lexicos) {
+                    errores.add(corrido(e, linea - s.lineaTokens, -1));
+                }
+                balance.agregar(s.delimitadores, linea - s.lineaTokens);
+            }
+            erroresLexicos(finDeclaraciones, lexico.tamano(), errores);
+            balance.agregar(delimitadores(finDeclaraciones, lexico.tamano()), 0);
+            balance.terminar();
+            errores.addAll(delimitadores);
+            
+            errores.addAll(erroresInicio);
+            for (int i = 0; i < sentencias.size(); i++) {
+                Sentencia s = sentencias.get(i);
+                for (int k = 0; k < s.errores.size(); k++) {
+                    errores.add(corrido(s.errores.get(k), linea(i) - s.lineaErrores, s.lineaEnMensaje[k]));
+                }
+            }
+            errores.addAll(erroresFin);
+            return errores;
+        }
+        
+        /**
+         * Errores semánticos, sin ordenar. Cada sentencia del programa se
+         * vuelve a analizar solo si es nueva o si consulta alguna variable
+         * cuya declaración visible pudo cambiar; de las demás se usa el
+         * resultado anterior. Los resultados nuevos se guardan al terminar,
+         * así que si el hilo se interrumpe (CancellationException) no queda
+         * nada a medias
+         */
+        List<ErrorAnalisis> erroresSemanticos() {
+            actualizar();
+            List<ErrorAnalisis> errores = new ArrayList<>();
+            List<Sentencia> analizadas = new ArrayList<>();
+            List<ResultadoSemantico> resultados = new ArrayList<>();
+            
+            // Nombres cuya declaración visible en este punto puede ser
+            // distinta que en el análisis anterior
+            boolean[] distintos = new boolean[arbol.cantidadNombres()];
+            for (int i = 0; i < totalSucios; i++) {
+                distintos[sucios[i]] = true;
+            }
+            
+            verificador.empezar(arbol);
+            for (int i = 0; i < sentencias.size(); i++) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException();
+                }
+                Sentencia s = sentencias.get(i);
+                if (s.raiz == ArbolSintactico.NINGUNO) {
+                    continue;
+                }
+                ResultadoSemantico r = s.semantico;
+                if (r != null && !consultaAlguno(r.lecturas, distintos)) {
+                    // Vio lo mismo que antes y deja lo mismo
+                    verificador.aplicar(r.efecto);
+                    marcar(r.efecto, distintos, false);
+                } else {
+                    if (r != null) {
+                        marcar(r.efecto, distintos, true);
+                    }
+                    alinearNodos(i);
+                    r = verificador.verificarSentencia(s.raiz);
+                    r.linea = linea(i);
+                    marcar(r.efecto, distintos, true);
+                    analizadas.add(s);
+                    resultados.add(r);
+                }
+                for (ErrorAnalisis e : r.errores) {
+                    errores.add(corrido(e, linea(i) - r.linea, -1));
+                }
+            }
+            verificador.terminar();
+            
+            for (int i = 0; i < analizadas.size(); i++) {
+                analizadas.get(i).semantico = resultados.get(i);
+            }
+            totalSucios = 0;
+            return errores;
+        }
+        
+        /** Árbol sintáctico del texto actual */
+        ArbolSintactico arbol() {
+            actualizar();
+            for (int i = 0; i < sentencias.size(); i++) {
+                alinearNodos(i);
+            }
+            return arbol;
+        }
+        
+        /** Tokens del texto actual */
+        LexicoIncremental lexico() {
+            return lexico;
+        }
+        
+        /** Texto actual */
+        String texto() {
+            return lexico.texto();
+        }
+        
+        /** Caracteres del texto actual */
+        int longitud() {
+            return lexico.longitud();
+        }
+        
+        /** Sentencias que se analizaron en la última edición */
+        int sentenciasAnalizadas() {
+            actualizar();
+            return sentenciasAnalizadas;
+        }
+        
+        private void analizarCompleto() {
+            gestor.posicionar(0);
+            parser.ReInit(gestor);
+            arbol.reiniciar();
+            int caruma = parser.InicioConRecuperacion();
+            erroresInicio = new ArrayList<>(parser.getErrores());
+            alcanceInicio = Math.max(gestor.alcance(), indice(parser.getToken(1)) + 1);
+            
+            sentencias.clear();
+            corridas = 0;
+            corrimientoTokens = 0;
+            corrimientoLineas = 0;
+            totalSucios = 0;
+            maximaAnticipacion = 0;
+            erroresSentencias = 0;
+            limitado = false;
+            sentencias.addAll(vueltas(-1, 0, 0, true));
+            sentenciasAnalizadas = sentencias.size();
+            
+            // Las raíces de las sentencias quedaron apiladas
+            programa = arbol.nodo(ArbolSintactico.PROGRAMA, caruma, 0);
+            nodosVivos = arbol.tamano();
+            enlazar(0, sentencias.size());
+            terminar();
+        }
+        
+        /**
+         * Corre vueltas de las declaraciones desde la posición del parser
+         * hasta byebye o EOF, hasta que el parser no pueda continuar o, si
+         * buscar no es -1, hasta empezar una vuelta desde el token minimo o
+         * después donde empezaba una sentencia vieja (buscar o posterior)
+         * corrida delta tokens. Deja en sincronizada el índice de esa
+         * sentencia vieja, o -1. Si apilar es false, saca de la pila del
+         * árbol las raíces de las sentencias nuevas
+         */
+        private List<Sentencia> vueltas(int buscar, int minimo, int delta, boolean apilar) {
+            List<Sentencia> nuevas = new ArrayList<>();
+            sincronizada = -1;
+            int j = buscar;
+            while (true) {
+                int inicio = indice(parser.getToken(1));
+                if (buscar >= 0 && inicio >= minimo) {
+                    while (j < sentencias.size() && inicio(j) + delta < inicio) {
+                        j++;
+                    }
+                    if (j < sentencias.size() && inicio(j) + delta == inicio
+                            && sentencias.get(j).problematicos == parser.tokensProblematicos()) {
+                        sincronizada = j;
+                        return nuevas;
+                    }
+                }
+                
+                finDeclaraciones = inicio;
+                problematicosFin = parser.tokensProblematicos();
+                if (!parser.puedeContinuar()) {
+                    limitado = true;
+                    return nuevas;
+                }
+                
+                Sentencia s = new Sentencia();
+                s.inicio = inicio;
+                s.linea = lexico.linea(inicio);
+                s.problematicos = parser.tokensProblematicos();
+                s.primerNodo = arbol.tamano();
+                int marca = arbol.marca();
+                int errores = parser.getErrores().size();
+                gestor.medir();
+                if (!parser.DeclaracionConRecuperacion()) {
+                    return nuevas;
+                }
+                
+                s.fin = indice(parser.getToken(1));
+                s.alcance = Math.max(gestor.alcance(), s.fin + 1);
+                s.finNodo = arbol.tamano();
+                s.lineaNodos = s.linea;
+                s.raiz = arbol.marca() > marca ? arbol.raiz() : ArbolSintactico.NINGUNO;
+                if (!apilar) {
+                    arbol.soltar(marca);
+                }
+                List<ErrorAnalisis> registrados = parser.getErrores();
+                s.errores = errores == registrados.size() ? SIN_ERRORES
+                        : new ArrayList<>(registrados.subList(errores, registrados.size()));
+                s.lineaErrores = s.linea;
+                s.lineaEnMensaje = new int[s.errores.size()];
+                for (int k = 0; k < s.errores.size(); k++) {
+                    // El mensaje de una ParseException también trae la línea
+                    ErrorAnalisis e = s.errores.get(k);
+                    int p = e.linea > 0 ? e.mensaje.indexOf("at line " + e.linea + ",") : -1;
+                    s.lineaEnMensaje[k] = p < 0 ? -1 : p + "at line ".length();
+                }
+                maximaAnticipacion = Math.max(maximaAnticipacion, s.alcance - s.fin);
+                nodosVivos += s.finNodo - s.primerNodo;
+                erroresSentencias += s.errores.size();
+                nuevas.add(s);
+            }
+        }
+        
+        // Verifica byebye desde donde terminaron las declaraciones
+        private void terminar() {
+            gestor.posicionar(finDeclaraciones);
+            parser.continuar(gestor, 0, 0);
+            parser.FinConRecuperacion();
+            erroresFin = new ArrayList<>(parser.getErrores());
+        }
+        
+        // Enlaza como hijos de PROGRAMA las raíces de las sentencias
+        // desde..hasta - 1, entre las de las sentencias vecinas
+        private void enlazar(int desde, int hasta) {
+            int anterior = ArbolSintactico.NINGUNO;
+            for (int i = desde - 1; i >= 0 && anterior == ArbolSintactico.NINGUNO; i--) {
+                anterior = sentencias.get(i).raiz;
+            }
+            int siguiente = ArbolSintactico.NINGUNO;
+            for (int i = hasta; i < sentencias.size() && siguiente == ArbolSintactico.NINGUNO; i++) {
+                siguiente = sentencias.get(i).raiz;
+            }
+            int cantidad = 0;
+            for (int i = desde; i < hasta; i++) {
+                Sentencia s = sentencias.get(i);
+                if (s.raiz != ArbolSintactico.NINGUNO) {
+                    if (cantidad == hijos.length) {
+                        hijos = Arrays.copyOf(hijos, cantidad * 2);
+                    }
+                    hijos[cantidad++] = s.raiz;
+                }
+            }
+            arbol.enlazarTramo(programa, anterior, hijos, cantidad, siguiente);
+        }
+        
+        // Posiciones de la sentencia i con el corrimiento pendiente
+        
+        private int inicio(int i) {
+            return sentencias.get(i).inicio + (i >= corridas ? corrimientoTokens : 0);
+        }
+        
+        private int fin(int i) {
+            return sentencias.get(i).fin + (i >= corridas ? corrimientoTokens : 0);
+        }
+        
+        private int alcance(int i) {
+            return sentencias.get(i).alcance + (i >= corridas ? corrimientoTokens : 0);
+        }
+        
+        private int linea(int i) {
+            return sentencias.get(i).linea + (i >= corridas ? corrimientoLineas : 0);
+        }
+        
+        /**
+         * Lleva el comienzo del corrimiento pendiente a la sentencia p,
+         * sumándolo a las que quedan antes o quitándolo a las que quedan
+         * después. Las ediciones suelen caer cerca unas de otras, así que
+         * casi nunca recorre muchas
+         */
+        private void moverCorrimiento(int p) {
+            while (corridas < p) {
+                correr(sentencias.get(corridas++), corrimientoTokens, corrimientoLineas);
+            }
+            while (corridas > p) {
+                correr(sentencias.get(--corridas), -corrimientoTokens, -corrimientoLineas);
+            }
+        }
+        
+        private static void correr(Sentencia s, int delta, int deltaLinea) {
+            s.inicio += delta;
+            s.fin += delta;
+            s.alcance += delta;
+            s.linea += deltaLinea;
+        }
+        
+        // Corre las líneas de los nodos de la sentencia i a su línea actual
+        private void alinearNodos(int i) {
+            Sentencia s = sentencias.get(i);
+            int linea = linea(i);
+            if (s.lineaNodos != linea) {
+                arbol.correrLineas(s.primerNodo, s.finNodo, linea - s.lineaNodos);
+                s.lineaNodos = linea;
+            }
+        }
+        
+        /**
+         * Copia del error con la línea corrida deltaLinea. Si lineaEnMensaje
+         * no es -1 el mensaje trae la línea en esa posición y se arma con la
+         * nueva
+         */
+        private static ErrorAnalisis corrido(ErrorAnalisis e, int deltaLinea, int lineaEnMensaje) {
+            if (e.linea <= 0) {
+                deltaLinea = 0;
+            }
+            String mensaje = e.mensaje;
+            if (deltaLinea != 0 && lineaEnMensaje >= 0) {
+                mensaje = mensaje.substring(0, lineaEnMensaje) + (e.linea + deltaLinea)
+                        + mensaje.substring(lineaEnMensaje + String.valueOf(e.linea).length());
+            }
+            return new ErrorAnalisis(e.tipo, mensaje, e.linea + deltaLinea, e.columna,
+                                     e.tokenEncontrado, e.tokenEsperado);
+        }
+        
+        // Errores léxicos de los tokens desde..hasta - 1
+        private void erroresLexicos(int desde, int hasta, List<ErrorAnalisis> errores) {
+            for (int i = desde; i < hasta; i++) {
+                if (lexico.tipo(i) == CarumaLangParserConstants.INVALID) {
+                    String imagen = lexico.imagen(i);
+                    // Los dos surrogates de un carácter fuera del BMP son un
+                    // solo error, como los informa LexicoTabla
+                    if (i + 1 < hasta && lexico.tipo(i + 1) == CarumaLangParserConstants.INVALID
+                            && Character.isHighSurrogate(imagen.charAt(0))
+                            && Character.isLowSurrogate(lexico.imagen(i + 1).charAt(0))) {
+                        imagen += lexico.imagen(++i);
+                        errores.add(errorLexico(imagen, lexico.linea(i - 1), lexico.columna(i - 1)));
+                        continue;
+                    }
+                    errores.add(errorLexico(imagen, lexico.linea(i), lexico.columna(i)));
+                }
+            }
+        }
+        
+        // Delimitadores sin emparejar de los tokens desde..hasta - 1, sin EOF
+        private TramoDelimitadores delimitadores(int desde, int hasta) {
+            TramoDelimitadores tramo = resumirDelimitadores(desde, Math.min(hasta, lexico.tamano() - 1),
+                                                            lexico::tipo, lexico::linea, lexico::columna);
+            return tramo.cierres.isEmpty() && tramo.llaves.isEmpty() && tramo.parentesis.isEmpty()
+                    ? SIN_DELIMITADORES : tramo;
+        }
+        
+        // Anota los nombres del efecto de una sentencia que se quitó
+        private void ensuciar(int[] efecto) {
+            for (int k = 0; k < efecto.length; k += 3) {
+                if (totalSucios == sucios.length) {
+                    sucios = Arrays.copyOf(sucios, totalSucios * 2);
+                }
+                sucios[totalSucios++] = efecto[k];
+            }
+        }
+        
+        private static boolean consultaAlguno(int[] nombres, boolean[] marcados) {
+            for (int nombre : nombres) {
+                if (marcados[nombre]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private static void marcar(int[] efecto, boolean[] marcados, boolean valor) {
+            for (int k = 0; k < efecto.length; k += 3) {
+                marcados[efecto[k]] = valor;
+            }
+        }
+        
+        // Búsqueda binaria de la primera sentencia con fin > token
+        private int primeraQueTerminaDespues(int token) {
+            int bajo = 0;
+            int alto = sentencias.size();
+            while (bajo < alto) {
+                int medio = (bajo + alto) >>> 1;
+                if (fin(medio) > token) {
+                    alto = medio;
+                } else {
+                    bajo = medio + 1;
+                }
+            }
+            return bajo;
+        }
+        
+        private static int indice(Token t) {
+            return ((TokenIndexado) t).indice;
+        }
+    }
+    
+    /**
+     * Análisis semántico sobre el árbol sintáctico: variables sin declarar,
+     * variables declaradas dos veces en el mismo bloque y valores que no se
+     * pueden asignar, operar o comparar. Las reglas de tipos y ámbitos son
+     * las del intérprete (Interprete.ProgramaResuelto), así un programa sin
+     * errores aquí también se puede cargar para ejecutarlo.
+     *
+     * La tabla de símbolos se indexa con el número de nombre del árbol, que
+     * ya sale de buscar el identificador una vez en la tabla hash de
+     * direccionamiento abierto del árbol: cada búsqueda es un acceso a
+     * arreglo. Cada declaración apila lo que tapó y al cerrar el bloque se
+     * restaura, así el análisis es lineal en el tamaño del árbol.
+     */
+    static class VerificadorSemantico {
+        // Tipos de las expresiones. DESCONOCIDO es el de lo que ya tuvo un
+        // error: es compatible con todo, para no repetir el mismo aviso
+        private static final int ENTERO = 0;
+        private static final int DECIMAL = 1;
+        private static final int CADENA = 2;
+        private static final int CARACTER = 3;
+        private static final int DESCONOCIDO = 4;
+        private static final String[] NOMBRES_TIPO = {"intCHELADA", "granito", "cadena", "caracter"};
+        private static final int NINGUNO = ArbolSintactico.NINGUNO;
+        
+        private ArbolSintactico arbol;
+        private List<ErrorAnalisis> errores;
+        
+        // Por número de nombre: tipo y nivel de bloque de la declaración
+        // visible (NINGUNO si no hay)
+        private int[] tipos = new int[64];
+        private int[] niveles = new int[64];
+        private int nivel;
+        
+        // Declaraciones tapadas, tres ints cada una: nombre, tipo y nivel
+        private int[] tapadas = new int[96];
+        private int totalTapadas;
+        
+        // Operadores pendientes al bajar por cadenas como a + b + c, que el
+        // parser arma hacia la izquierda y pueden ser tan largas como el archivo
+        private int[] pendientes = new int[32];
+        private int totalPendientes;
+        
+        // Al verificar de a una sentencia (verificarSentencia): nombres
+        // cuyo tipo consultó y nombres cuyo tipo visible cambió para las
+        // sentencias siguientes, sin repetir. Un nombre está anotado si su
+        // sello es el de la sentencia actual
+        private boolean registrar;
+        private int[] leidos = new int[64];
+        private int totalLeidos;
+        private int[] escritos = new int[64];
+        private int totalEscritos;
+        private int[] sellosLectura = new int[64];
+        private int[] sellosEscritura = new int[64];
+        private int sello;
+        
+        /**
+         * Errores semánticos del árbol, en orden de recorrido. Si el hilo
+         * se interrumpe lanza CancellationException en la sentencia
+         * siguiente: el servidor de lenguaje descarta así el análisis de un
+         * texto que ya volvieron a editar
+         */
+        List<ErrorAnalisis> verificar(ArbolSintactico arbol) {
+            preparar(arbol);
+            errores = new ArrayList<>();
+            if (arbol.raiz() != NINGUNO && arbol.tipo(arbol.raiz()) == ArbolSintactico.PROGRAMA) {
+                bloque(arbol.raiz());
+            }
+            this.arbol = null;
+            return errores;
+        }
+        
+        /**
+         * Empieza a recorrer las sentencias del programa de a una, con
+         * verificarSentencia() para las que hay que analizar y aplicar()
+         * para las que ya se analizaron. Se termina con terminar()
+         */
+        void empezar(ArbolSintactico arbol) {
+            preparar(arbol);
+            abrirAmbito();
+        }
+        
+        /**
+         * Analiza la sentencia n del programa, con las declaraciones que
+         * dejaron las anteriores, y devuelve sus errores junto con los
+         * nombres que consultó y lo que dejó declarado
+         */
+        ResultadoSemantico verificarSentencia(int n) {
+            errores = new ArrayList<>();
+            sello++;
+            totalLeidos = 0;
+            totalEscritos = 0;
+            registrar = true;
+            try {
+                sentencia(n);
+            } finally {
+                registrar = false;
+            }
+            
+            ResultadoSemantico resultado = new ResultadoSemantico();
+            resultado.errores = errores;
+            resultado.lecturas = Arrays.copyOf(leidos, totalLeidos);
+            resultado.efecto = new int[totalEscritos * 3];
+            for (int i = 0; i < totalEscritos; i++) {
+                int nombre = escritos[i];
+                resultado.efecto[i * 3] = nombre;
+                resultado.efecto[i * 3 + 1] = tipos[nombre];
+                resultado.efecto[i * 3 + 2] = niveles[nombre];
+            }
+            return resultado;
+        }
+        
+        /**
+         * Deja las declaraciones que dejó una sentencia ya analizada, sin
+         * volver a recorrerla
+         */
+        void aplicar(int[] efecto) {
+            for (int i = 0; i < efecto.length; i += 3) {
+                tipos[efecto[i]] = efecto[i + 1];
+                niveles[efecto[i]] = efecto[i + 2];
+            }
+        }
+        
+        void terminar() {
+            arbol = null;
+        }
+        
+        private void preparar(ArbolSintactico arbol) {
+            this.arbol = arbol;
+            int nombres = arbol.cantidadNombres();
+            if (tipos.length < nombres) {
+                tipos = new int[nombres];
+                niveles = new int[nombres];
+                sellosLectura = new int[nombres];
+                sellosEscritura = new int[nombres];
+            }
+            Arrays.fill(tipos, 0, nombres, NINGUNO);
+            nivel = 0;
+            totalTapadas = 0;
+            totalPendientes = 0;
+        }
+        
+        private void leer(int nombre) {
+            if (sellosLectura[nombre] != sello) {
+                sellosLectura[nombre] = sello;
+                if (totalLeidos == leidos.length) {
+                    leidos = Arrays.copyOf(leidos, totalLeidos * 2);
+                }
+                leidos[totalLeidos++] = nombre;
+            }
+        }
+        
+        private void escribir(int nombre) {
+            if (sellosEscritura[nombre] != sello) {
+                sellosEscritura[nombre] = sello;
+                if (totalEscritos == escritos.length) {
+                    escritos = Arrays.copyOf(escritos, totalEscritos * 2);
+                }
+                escritos[totalEscritos++] = nombre;
+            }
+        }
+        
+        // Sentencias hijas de un programa o bloque, en un ámbito propio
+        private void bloque(int n) {
+            int marca = abrirAmbito();
+            for (int s = arbol.primerHijo(n); s != NINGUNO; s = arbol.hermano(s)) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException();
+                }
+                sentencia(s);
+            }
+            cerrarAmbito(marca);
+        }
+        
+        private int abrirAmbito() {
+            nivel++;
+            return totalTapadas;
+        }
+        
+        private void cerrarAmbito(int marca) {
+            nivel--;
+            while (totalTapadas > marca) {
+                totalTapadas -= 3;
+                int nombre = tapadas[totalTapadas];
+                tipos[nombre] = tapadas[totalTapadas + 1];
+                niveles[nombre] = tapadas[totalTapadas + 2];
+            }
+        }
+        
+        private void sentencia(int n) {
+            int primero = arbol.primerHijo(n);
+            switch (arbol.tipo(n)) {
+                case ArbolSintactico.DECLARACION:
+                    declaracion(n);
+                    break;
+                case ArbolSintactico.ASIGNACION:
+                    asignar(n, primero, tipoExpresion(arbol.hermano(primero)));
+                    break;
+                case ArbolSintactico.SI: {
+                    condicion(primero);
+                    int entonces = arbol.hermano(primero);
+                    bloque(entonces);
+                    if (arbol.hermano(entonces) != NINGUNO) {
+                        bloque(arbol.hermano(entonces));
+                    }
+                    break;
+                }
+                case ArbolSintactico.MIENTRAS:
+                    condicion(primero);
+                    bloque(arbol.hermano(primero));
+                    break;
+                case ArbolSintactico.PARA: {
+                    // La variable de la inicialización solo existe en el ciclo
+                    int marca = abrirAmbito();
+                    int condicion = arbol.hermano(primero);
+                    int incremento = arbol.hermano(condicion);
+                    sentencia(primero);
+                    condicion(condicion);
+                    sentencia(incremento);
+                    bloque(arbol.hermano(incremento));
+                    cerrarAmbito(marca);
+                    break;
+                }
+                case ArbolSintactico.BLOQUE:
+                    bloque(n);
+                    break;
+                case ArbolSintactico.IMPRESION:
+                    for (int a = primero; a != NINGUNO; a = arbol.hermano(a)) {
+                        tipoExpresion(a);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        
+        // Hijos: las variables y luego sus valores, uno por variable o uno
+        // para todas
+        private void declaracion(int n) {
+            int tipo;
+            switch (arbol.tipoToken(n)) {
+                case CarumaLangParserConstants.INTCHELADA: tipo = ENTERO; break;
+                case CarumaLangParserConstants.GRANITO:    tipo = DECIMAL; break;
+                case CarumaLangParserConstants.CADENA:     tipo = CADENA; break;
+                default:                                   tipo = CARACTER; break;
+            }
+            
+            int variables = 0;
+            int valores = arbol.primerHijo(n);
+            while (valores != NINGUNO && arbol.tipo(valores) == ArbolSintactico.VARIABLE) {
+                variables++;
+                valores = arbol.hermano(valores);
+            }
+            int cantidadValores = 0;
+            for (int v = valores; v != NINGUNO; v = arbol.hermano(v)) {
+                cantidadValores++;
+            }
+            if (cantidadValores > 1 && cantidadValores != variables) {
+                error(n, "Se declaran " + variables + " variables con " + cantidadValores + " valores",
+                    cantidadValores + " valores", variables + " valores");
+            }
+            
+            // Los valores se revisan antes de declarar: "intCHELADA x = x"
+            // usa la x anterior
+            int variable = arbol.primerHijo(n);
+            for (int v = valores; v != NINGUNO; v = arbol.hermano(v)) {
+                int tipoValor = tipoExpresion(v);
+                if (variable != valores) {
+                    compatible(variable, tipo, tipoValor, variable);
+                    variable = arbol.hermano(variable);
+                }
+            }
+            for (int v = arbol.primerHijo(n); v != valores; v = arbol.hermano(v)) {
+                declarar(v, tipo);
+            }
+        }
+        
+        private void declarar(int variable, int tipo) {
+            int nombre = arbol.indiceImagen(variable);
+            if (registrar) {
+                leer(nombre);
+                // Las de bloques interiores se restauran al cerrarlos
+                if (nivel == 1) {
+                    escribir(nombre);
+                }
+            }
+            if (tipos[nombre] != NINGUNO && tipos[nombre] != DESCONOCIDO && niveles[nombre] == nivel) {
+                error(variable, "La variable " + arbol.imagen(variable) + " ya esta declarada en este bloque",
+                    arbol.imagen(variable), "un nombre sin declarar en este bloque");
+            }
+            if (totalTapadas + 3 > tapadas.length) {
+                tapadas = Arrays.copyOf(tapadas, tapadas.length * 2);
+            }
+            tapadas[totalTapadas++] = nombre;
+            tapadas[totalTapadas++] = tipos[nombre];
+            tapadas[totalTapadas++] = niveles[nombre];
+            tipos[nombre] = tipo;
+            niveles[nombre] = nivel;
+        }
+        
+        // Asignación en el nodo n de un valor del tipo dado a la variable
+        private void asignar(int n, int variable, int tipoValor) {
+            compatible(n, usar(variable), tipoValor, variable);
+        }
+        
+        private void compatible(int n, int tipoVariable, int tipoValor, int variable) {
+            if (tipoVariable == DESCONOCIDO || tipoValor == DESCONOCIDO || tipoValor == tipoVariable
+                    || tipoVariable == DECIMAL && tipoValor == ENTERO) {
+                return;
+            }
+            error(n, "No se puede asignar un valor " + NOMBRES_TIPO[tipoValor] + " a la variable "
+                + NOMBRES_TIPO[tipoVariable] + " " + arbol.imagen(variable),
+                NOMBRES_TIPO[tipoValor],
+                tipoVariable == DECIMAL ? "granito o intCHELADA" : NOMBRES_TIPO[tipoVariable]);
+        }
+        
+        // Tipo de la variable visible con el nombre del nodo. Una variable
+        // sin declarar se avisa solo en su primer uso
+        private int usar(int n) {
+            int nombre = arbol.indiceImagen(n);
+            if (registrar) {
+                leer(nombre);
+            }
+            if (tipos[nombre] == NINGUNO) {
+                error(n, "Variable no declarada: " + arbol.imagen(n), arbol.imagen(n), "una variable declarada");
+                tipos[nombre] = DESCONOCIDO;
+                niveles[nombre] = 0;
+                if (registrar) {
+                    escribir(nombre);
+                }
+            }
+            return tipos[nombre];
+        }
+        
+        // Tipo de una expresión. Baja por el operando izquierdo sin recursión
+        // y luego combina, de adentro hacia afuera, con cada operando derecho
+        private int tipoExpresion(int n) {
+            int base = totalPendientes;
+            while (arbol.tipo(n) == ArbolSintactico.ARITMETICA) {
+                apilar(n);
+                n = arbol.primerHijo(n);
+            }
+            int tipo = tipoHoja(n);
+            while (totalPendientes > base) {
+                int operacion = pendientes[--totalPendientes];
+                int derecho = tipoExpresion(arbol.hermano(arbol.primerHijo(operacion)));
+                tipo = operar(operacion, tipo, derecho);
+            }
+            return tipo;
+        }
+        
+        private int tipoHoja(int n) {
+            switch (arbol.tipo(n)) {
+                case ArbolSintactico.NUMERO: {
+                    String texto = arbol.imagen(n);
+                    if (texto.indexOf('.') >= 0) {
+                        return DECIMAL;
+                    }
+                    try {
+                        Long.parseLong(texto);
+                        return ENTERO;
+                    } catch (NumberFormatException e) {
+                        error(n, "Numero fuera de rango: " + texto, texto, "un intCHELADA de 64 bits");
+                        return DESCONOCIDO;
+                    }
+                }
+                case ArbolSintactico.BOOLEANO:
+                    return ENTERO;
+                case ArbolSintactico.LETRA:
+                    return CARACTER;
+                case ArbolSintactico.TEXTO:
+                    return CADENA;
+                case ArbolSintactico.IDENTIFICADOR:
+                    return usar(n);
+                default:
+                    return DESCONOCIDO;
+            }
+        }
+        
+        private int operar(int n, int a, int b) {
+            if (a == DESCONOCIDO || b == DESCONOCIDO) {
+                return DESCONOCIDO;
+            }
+            if (arbol.tipoToken(n) == CarumaLangParserConstants.PONER && (a == CADENA || b == CADENA)) {
+                return CADENA;
+            }
+            if (!esNumero(a) || !esNumero(b)) {
+                error(n, "No se puede operar " + NOMBRES_TIPO[a] + " " + arbol.imagen(n) + " " + NOMBRES_TIPO[b],
+                    arbol.imagen(n), "operandos intCHELADA o granito");
+                return DESCONOCIDO;
+            }
+            return a == DECIMAL || b == DECIMAL ? DECIMAL : ENTERO;
+        }
+        
+        // Condiciones: las lógicas encadenan relaciones hacia la izquierda
+        private void condicion(int n) {
+            int base = totalPendientes;
+            while (arbol.tipo(n) == ArbolSintactico.LOGICA) {
+                apilar(n);
+                n = arbol.primerHijo(n);
+            }
+            relacion(n);
+            while (totalPendientes > base) {
+                relacion(arbol.hermano(arbol.primerHijo(pendientes[--totalPendientes])));
+            }
         }
         
-        /**
-         * Captura y procesa ParseException con posiciones correctas
-         * CORRECCIÓN: Manejo robusto de tokens nulos
-         */
-        private void capturarErrorParseException(ParseException e) {
-            String mensaje = e.getMessage();
-            
-            // IMPORTANTE: El token de error es currentToken.next
-            Token tokError = null;
-            
-            if (e.currentToken != null && e.currentToken.next != null) {
-                tokError = e.currentToken.next;
-            } else if (e.currentToken != null) {
-                tokError = e.currentToken;
+        private void relacion(int n) {
+            if (arbol.tipo(n) != ArbolSintactico.RELACIONAL) {
+                return;
             }
-            
-            // Extraer posición CORRECTA del token que causó el error
-            int linea = tokError != null ? tokError.beginLine : -1;
-            int columna = tokError != null ? tokError.beginColumn : -1;
-            String tokenEncontrado = tokError != null ? tokError.image : "<desconocido>";
-            
-            // Extraer tokens esperados
-            String esperado = extraerTokensEsperados(e);
-            
-            // Registrar el error con la posición CORRECTA
-            registrarError(TipoError.SINTACTICO, mensaje, linea, columna, tokenEncontrado, esperado);
+            int izquierdo = arbol.primerHijo(n);
+            int a = tipoExpresion(izquierdo);
+            int b = tipoExpresion(arbol.hermano(izquierdo));
+            if (a == DESCONOCIDO || b == DESCONOCIDO || esNumero(a) && esNumero(b) || a == b) {
+                return;
+            }
+            error(n, "No se puede comparar " + NOMBRES_TIPO[a] + " con " + NOMBRES_TIPO[b],
+                arbol.imagen(n), "valores del mismo tipo");
         }
         
-        /**
-         * Extrae tokens esperados del ParseException
-         */
-        private String extraerTokensEsperados(ParseException e) {
-            StringBuilder esperados = new StringBuilder();
-            
-            if (e.expectedTokenSequences != null && e.expectedTokenSequences.length > 0) {
-                for (int i = 0; i < e.expectedTokenSequences.length && i < 5; i++) {
-                    int[] secuencia = e.expectedTokenSequences[i];
-                    if (secuencia.length > 0) {
-                        String tokenImg = e.tokenImage[secuencia[0]];
-                        if (esperados.length() > 0) {
-                            esperados.append(", ");
-                        }
-                        esperados.append(tokenImg);
-                    }
-                }
+        private static boolean esNumero(int tipo) {
+            return tipo == ENTERO || tipo == DECIMAL;
+        }
+        
+        private void apilar(int n) {
+            if (totalPendientes == pendientes.length) {
+                pendientes = Arrays.copyOf(pendientes, totalPendientes * 2);
             }
-            
-            return esperados.length() > 0 ? esperados.toString() : "token válido";
+            pendientes[totalPendientes++] = n;
         }
         
-        /**
-         * Registra un error
-         */
-        private void registrarError(TipoError tipo, String mensaje, int linea, int columna, 
-                                   String tokenEncontrado, String tokenEsperado) {
-            errores.add(new ErrorAnalisis(tipo, mensaje, linea, columna, 
-                                         tokenEncontrado, tokenEsperado));
-            contadorErrores++;
+        private void error(int n, String mensaje, String encontrado, String esperado) {
+            errores.add(new ErrorAnalisis(TipoError.SEMANTICO, mensaje,
+                arbol.linea(n), arbol.columna(n), encontrado, esperado));
         }
     }
     
     public static void main(String[] args) {
+        // Con argumentos se analizan en lote, sin abrir la interfaz gráfica
+        if (args.length > 0) {
+            System.exit(analizarLote(args));
+        }
+        
         JFileChooser fileChooser = new JFileChooser();
         FileNameExtensionFilter filter = new FileNameExtensionFilter("Archivo CarumaLang", "crm");
         fileChooser.setFileFilter(filter);
@@ -388,7 +1865,7 @@ public class AnalisisSintactico {
 
             try {
                 analizarArchivo(fileName);
-            } catch (FileNotFoundException e) {
+            } catch (FileNotFoundException | NoSuchFileException e) {
                 System.err.println("Error: No se pudo encontrar el archivo: " + fileName);
             } catch (IOException e) {
                 System.err.println("Error al leer el archivo: " + e.getMessage());
@@ -405,45 +1882,7 @@ public class AnalisisSintactico {
         System.out.println("========================================");
         System.out.println("Archivo: " + fileName + "\n");
         
-        // PASO 1: Pre-análisis para detectar errores léxicos
-        //System.out.println("Paso 1/4: Analizando errores lexicos...");
-        List<ErrorAnalisis> erroresLexicos = preAnalizarErroresLexicos(fileName);
-        
-        // PASO 2: Pre-análisis para detectar delimitadores sin emparejar
-        //System.out.println("Paso 2/4: Analizando delimitadores...");
-        List<ErrorAnalisis> erroresDelimitadores = preAnalizarDelimitadores(fileName);
-        
-        // PASO 3: Crear versión limpia del archivo (sin errores léxicos)
-        //System.out.println("Paso 3/4: Preparando analisis sintactico...");
-        String archivoLimpio = crearArchivoLimpio(fileName);
-        
-        // PASO 4: Análisis sintáctico sobre archivo limpio
-        //System.out.println("Paso 4/4: Analizando estructura sintactica...\n");
-        List<ErrorAnalisis> erroresSintacticos = new ArrayList<>();
-        
-        if (archivoLimpio != null) {
-            try {
-                BufferedReader reader = new BufferedReader(new java.io.StringReader(archivoLimpio));
-                ParserConRecuperacion parser = new ParserConRecuperacion(reader);
-                parser.ProgramaConRecuperacion();
-                erroresSintacticos = parser.getErrores();
-                reader.close();
-            } catch (Exception e) {
-                System.err.println("Error en analisis sintactico: " + e.getMessage());
-            }
-        }
-        
-        // PASO 5: Combinar todos los errores
-        List<ErrorAnalisis> errores = new ArrayList<>();
-        errores.addAll(erroresLexicos);
-        errores.addAll(erroresDelimitadores);
-        errores.addAll(erroresSintacticos);
-        
-        // Ordenar errores por línea y columna
-        errores.sort((e1, e2) -> {
-            if (e1.linea != e2.linea) return Integer.compare(e1.linea, e2.linea);
-            return Integer.compare(e1.columna, e2.columna);
-        });
+        List<ErrorAnalisis> errores = new Analizador().analizar(fileName);
         
         // Mostrar resultados
         if (errores.isEmpty()) {
@@ -458,314 +1897,282 @@ public class AnalisisSintactico {
         }
         
         // Generar archivo de errores
-        generarArchivoErrores(fileName, errores);
+        String nombreSalida = generarArchivoErrores(fileName, errores);
+        if (nombreSalida != null && !errores.isEmpty()) {
+            System.out.println("\nArchivo de errores generado: " + nombreSalida);
+        }
     }
     
     /**
-     * CORRECCIÓN CRÍTICA: Crea versión limpia preservando saltos de línea
-     * 
-     * Antes: convertía todo en una línea → posiciones incorrectas
-     * Ahora: mantiene estructura de líneas → posiciones correctas
+     * Modo por lotes: analiza todos los archivos indicados en la misma JVM,
+     * repartidos entre varios hilos que reutilizan cada uno su propio
+     * token manager y parser, y devuelve el código de salida. Con
+     * "--cache DIR" los archivos cuyo contenido ya se analizó toman el
+     * resultado de la cache (ver CacheAnalisis) sin pasar por el analizador
+     * léxico ni el sintáctico; "--cache-max MB" limita su tamaño
      */
-    private static String crearArchivoLimpio(String fileName) {
-        try {
-            BufferedReader fileReader = new BufferedReader(new FileReader(fileName));
-            StringBuilder archivoLimpio = new StringBuilder();
-            String linea;
-            int numeroLinea = 1;
-            
-            // Leer línea por línea para preservar estructura
-            while ((linea = fileReader.readLine()) != null) {
-                // Crear un stream para esta línea
-                java.io.StringReader lineReader = new java.io.StringReader(linea);
-                AnalizadorSintactico.SimpleCharStream stream = 
-                    new AnalizadorSintactico.SimpleCharStream(lineReader);
-                AnalizadorSintactico.CarumaLangParserTokenManager tokenManager = 
-                    new AnalizadorSintactico.CarumaLangParserTokenManager(stream);
-                
-                StringBuilder lineaLimpia = new StringBuilder();
-                boolean continuar = true;
-                
-                // Procesar tokens de esta línea
-                while (continuar) {
-                    try {
-                        AnalizadorSintactico.Token tok = tokenManager.getNextToken();
-                        
-                        if (tok.kind == AnalizadorSintactico.CarumaLangParserConstants.EOF) {
-                            continuar = false;
-                        } else {
-                            // Agregar token con espacio
-                            lineaLimpia.append(tok.image);
-                            lineaLimpia.append(" ");
-                        }
-                        
-                    } catch (TokenMgrError e) {
-                        // Reemplazar carácter inválido con espacio
-                        lineaLimpia.append(" ");
-                        
-                        // Intentar avanzar
-                        try {
-                            stream.readChar();
-                        } catch (IOException ioException) {
-                            continuar = false;
-                        }
+    private static int analizarLote(String[] args) {
+        List<String> argumentos = new ArrayList<>(Arrays.asList(args));
+        CacheAnalisis cache = null;
+        long maximoCache = CacheAnalisis.MAXIMO_POR_DEFECTO;
+        int i = argumentos.indexOf("--cache-max");
+        if (i >= 0) {
+            try {
+                maximoCache = Long.parseLong(argumentos.get(i + 1)) * 1024 * 1024;
+            } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                maximoCache = 0;
+            }
+            if (maximoCache <= 0) {
+                System.err.println("Error: --cache-max requiere un tamano en MB mayor que cero");
+                return 2;
+            }
+            argumentos.subList(i, i + 2).clear();
+        }
+        i = argumentos.indexOf("--cache");
+        if (i >= 0) {
+            if (i + 1 >= argumentos.size()) {
+                System.err.println("Error: --cache requiere un directorio");
+                return 2;
+            }
+            try {
+                cache = new CacheAnalisis(Paths.get(argumentos.get(i + 1)), maximoCache);
+            } catch (IOException e) {
+                System.err.println("Error al abrir la cache de analisis: " + e.getMessage());
+                return 2;
+            }
+            argumentos.subList(i, i + 2).clear();
+        }
+        
+        CacheAnalisis cacheLote = cache;
+        int codigo = ModoLotes.ejecutar("ANALIZADOR SINTACTICO", argumentos.toArray(new String[0]), Analizador::new,
+            (analizador, fileName, resultado) -> {
+                List<ErrorAnalisis> errores;
+                if (cacheLote != null) {
+                    errores = analizarConCache(analizador, fileName, resultado, cacheLote);
+                } else {
+                    errores = analizador.analizar(fileName);
+                    resultado.tokens = analizador.tokensUltimoArchivo;
+                }
+                for (ErrorAnalisis error : errores) {
+                    if (error.tipo == TipoError.LEXICO) {
+                        resultado.erroresLexicos++;
+                    } else if (error.tipo == TipoError.SEMANTICO) {
+                        resultado.erroresSemanticos++;
+                    } else {
+                        resultado.erroresSintacticos++;
                     }
                 }
-                
-                // Agregar línea limpia al resultado
-                archivoLimpio.append(lineaLimpia.toString().trim());
-                archivoLimpio.append("\n");  // ← CRÍTICO: Preservar salto de línea
-                
-                numeroLinea++;
-            }
-            
-            fileReader.close();
-            return archivoLimpio.toString();
-            
-        } catch (Exception e) {
-            System.err.println("Error al crear archivo limpio: " + e.getMessage());
-            return null;
+                generarArchivoErrores(fileName, errores);
+            });
+        if (cache != null) {
+            cache.imprimirResumen();
         }
+        return codigo;
     }
     
     /**
-     * Pre-análisis del archivo para detectar errores léxicos
-     * Implementa toda la lógica del analizador léxico
+     * Errores del archivo tomados de la cache si su contenido ya se analizó
+     * y, si no, del analizador, guardándolos. Si el archivo cambia mientras
+     * se analiza el resultado no corresponde al contenido de la clave y no
+     * se guarda
      */
-    private static List<ErrorAnalisis> preAnalizarErroresLexicos(String fileName) throws IOException {
-        List<ErrorAnalisis> errores = new ArrayList<>();
+    private static List<ErrorAnalisis> analizarConCache(Analizador analizador, String fileName,
+                                                        ModoLotes.Resultado resultado,
+                                                        CacheAnalisis cache) throws IOException {
+        Path ruta = Paths.get(fileName);
+        BasicFileAttributes antes = Files.readAttributes(ruta,
+            BasicFileAttributes.class);
+        byte[] clave = cache.clave(Files.readAllBytes(ruta));
+        CacheAnalisis.Entrada entrada = cache.buscar(clave);
+        if (entrada != null) {
+            resultado.tokens = entrada.tokens;
+            return entrada.errores;
+        }
         
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(fileName));
-            AnalizadorSintactico.SimpleCharStream stream = 
-                new AnalizadorSintactico.SimpleCharStream(reader);
-            AnalizadorSintactico.CarumaLangParserTokenManager tokenManager = 
-                new AnalizadorSintactico.CarumaLangParserTokenManager(stream);
-            
-            AnalizadorSintactico.Token tok;
-            boolean continuar = true;
-            
-            // Leer todos los tokens y detectar errores léxicos
-            while (continuar) {
-                try {
-                    tok = tokenManager.getNextToken();
-                    
-                    if (tok.kind == AnalizadorSintactico.CarumaLangParserConstants.EOF) {
-                        continuar = false;
-                    }
-                    // No hacer nada con tokens válidos aquí, solo continuar
-                    
-                } catch (TokenMgrError e) {
-                    // Error léxico detectado
-                    String mensaje = e.getMessage();
-                    
-                    // Extraer línea y columna del mensaje de error
-                    int linea = -1;
-                    int columna = -1;
-                    
-                    // El mensaje tiene formato: "Lexical error at line X, column Y..."
-                    if (mensaje.contains("line")) {
-                        try {
-                            int lineaStart = mensaje.indexOf("line ") + 5;
-                            int lineaEnd = mensaje.indexOf(",", lineaStart);
-                            if (lineaEnd > lineaStart) {
-                                linea = Integer.parseInt(mensaje.substring(lineaStart, lineaEnd).trim());
-                            }
-                        } catch (Exception ex) {
-                            linea = stream.getEndLine();
-                        }
-                    } else {
-                        linea = stream.getEndLine();
-                    }
-                    
-                    if (mensaje.contains("column")) {
-                        try {
-                            int columnaStart = mensaje.indexOf("column ") + 7;
-                            int columnaEnd = mensaje.indexOf(".", columnaStart);
-                            if (columnaEnd > columnaStart) {
-                                columna = Integer.parseInt(mensaje.substring(columnaStart, columnaEnd).trim());
-                            }
-                        } catch (Exception ex) {
-                            columna = stream.getEndColumn();
-                        }
-                    } else {
-                        columna = stream.getEndColumn();
-                    }
-                    
-                    // Extraer carácter inválido del mensaje
-                    String caracterInvalido = "?";
-                    int codigoASCII = -1;
-                    
-                    if (mensaje.contains("Encountered: \"")) {
-                        int start = mensaje.indexOf("Encountered: \"") + 14;
-                        int end = mensaje.indexOf("\"", start);
-                        if (end > start) {
-                            caracterInvalido = mensaje.substring(start, end);
-                            if (!caracterInvalido.isEmpty()) {
-                                codigoASCII = (int) caracterInvalido.charAt(0);
-                            }
-                        }
-                    } else if (mensaje.contains("Encountered: <EOF>")) {
-                        caracterInvalido = "<EOF>";
-                    }
-                    
-                    // Formatear caracteres especiales para visualización
-                    String caracterMostrar = caracterInvalido;
-                    if (caracterInvalido.equals("\n")) caracterMostrar = "\\n";
-                    else if (caracterInvalido.equals("\t")) caracterMostrar = "\\t";
-                    else if (caracterInvalido.equals("\r")) caracterMostrar = "\\r";
-                    
-                    // Crear mensaje descriptivo
-                    String mensajeError;
-                    if (codigoASCII >= 0) {
-                        mensajeError = "Caracter no reconocido: '" + caracterMostrar + 
-                                     "' (ASCII: " + codigoASCII + ")";
-                    } else {
-                        mensajeError = "Caracter no reconocido: '" + caracterMostrar + "'";
-                    }
-                    
-                    errores.add(new ErrorAnalisis(
-                        TipoError.LEXICO,
-                        mensajeError,
-                        linea, columna,
-                        caracterMostrar,
-                        "token valido"));
-                    
-                    // Intentar recuperarse avanzando un carácter
-                    try {
-                        stream.readChar();
-                    } catch (IOException ioException) {
-                        continuar = false;
-                    }
-                }
+        List<ErrorAnalisis> errores = analizador.analizar(fileName);
+        resultado.tokens = analizador.tokensUltimoArchivo;
+        BasicFileAttributes despues = Files.readAttributes(ruta,
+            BasicFileAttributes.class);
+        if (antes.size() == despues.size()
+                && antes.lastModifiedTime().equals(despues.lastModifiedTime())) {
+            try {
+                cache.guardar(clave, resultado.tokens, errores);
+            } catch (IOException e) {
+                System.err.println("Advertencia: no se pudo guardar en la cache de analisis: " + e.getMessage());
             }
-            
-            reader.close();
-            
-        } catch (Exception e) {
-            System.err.println("Error en pre-analisis lexico: " + e.getMessage());
         }
-        
         return errores;
     }
     
+    /**
+     * Tokeniza el archivo una sola vez. Los caracteres no reconocidos se
+     * informan como ErroresLexicos, sin construir tokens ni excepciones, así
+     * que los errores léxicos se registran en la misma pasada y ninguna fase
+     * posterior vuelve a leer el archivo.
+     *
+     * Un archivo grande se tokeniza por trozos en paralelo en el pool común
+     * (ver LexicoParalelo), con el mismo resultado. En modo por lotes eso
+     * evita que un archivo grande quede solo en un hilo al final del lote.
+     */
+    private static FlujoTokens tokenizarArchivo(String fileName, Analizador analizador) throws IOException {
+        FlujoTokens flujo = new FlujoTokens();
+        
+        // El archivo se lee mapeado en memoria, sin copiarlo a un buffer
+        AnalizadorSintactico.FlujoMapeado stream = 
+            new AnalizadorSintactico.FlujoMapeado(Paths.get(fileName));
+        // Identificadores y literales repetidos comparten un solo String
+        stream.compartirImagenes(new AnalizadorSintactico.TablaNombres());
+        
+        AnalizadorSintactico.ErroresLexicos errores = (tipo, offset, linea, columna, codigo) ->
+            flujo.erroresLexicos.add(errorLexico(new String(Character.toChars(codigo)), linea, columna));
+        
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        if (AnalizadorSintactico.LexicoParalelo.conviene(stream, pool)) {
+            AnalizadorSintactico.LexicoParalelo lexico = new AnalizadorSintactico.LexicoParalelo(stream, pool);
+            flujo.tokens = lexico.tokens();
+            lexico.reportarErrores(errores);
+            return flujo;
+        }
+        
+        AnalizadorSintactico.LexicoTabla tokenManager = analizador.tokenManagerPara(stream);
+        tokenManager.reportarErrores(errores);
+        flujo.tokens = new AnalizadorSintactico.BufferTokens(stream);
+        
+        AnalizadorSintactico.Token tok;
+        do {
+            tok = tokenManager.getNextToken();
+            flujo.tokens.agregar(tok);
+        } while (tok.kind != AnalizadorSintactico.CarumaLangParserConstants.EOF);
+        
+        return flujo;
+    }
+    
+    // Error de un carácter que no reconoce el analizador léxico
+    private static ErrorAnalisis errorLexico(String caracterInvalido, int linea, int columna) {
+        return new ErrorAnalisis(
+            TipoError.LEXICO,
+            "Caracter no reconocido: '" + caracterInvalido + 
+            "' (ASCII: " + caracterInvalido.codePointAt(0) + ")",
+            linea, columna,
+            caracterInvalido,
+            "token valido");
+    }
+    
+    // Ordena los errores por línea y columna
+    static void ordenarErrores(List<ErrorAnalisis> errores) {
+        errores.sort((e1, e2) -> {
+            if (e1.linea != e2.linea) return Integer.compare(e1.linea, e2.linea);
+            return Integer.compare(e1.columna, e2.columna);
+        });
+    }
+    
     /**
      * Pre-análisis mejorado para detectar delimitadores sin emparejar
      * Usa un sistema de pila con contexto para detectar emparejamientos incorrectos
      */
-    private static List<ErrorAnalisis> preAnalizarDelimitadores(String fileName) throws IOException {
+    private static List<ErrorAnalisis> preAnalizarDelimitadores(FlujoTokens flujo) {
+        AnalizadorSintactico.BufferTokens tokens = flujo.tokens;
+        return preAnalizarDelimitadores(tokens.tamano(), tokens::tipo, tokens::linea, tokens::columna);
+    }
+    
+    /**
+     * Pre-análisis de delimitadores sobre cualquier secuencia de tokens
+     * terminada en EOF, dada por su tamaño y el tipo, la línea y la columna
+     * de cada token. Los tokens INVALID que pueda contener se saltan
+     */
+    private static List<ErrorAnalisis> preAnalizarDelimitadores(int total, IntUnaryOperator tipos,
+                                                                IntUnaryOperator lineas, IntUnaryOperator columnas) {
         List<ErrorAnalisis> errores = new ArrayList<>();
         
         try {
-            BufferedReader reader = new BufferedReader(new FileReader(fileName));
-            AnalizadorSintactico.SimpleCharStream stream = 
-                new AnalizadorSintactico.SimpleCharStream(reader);
-            AnalizadorSintactico.CarumaLangParserTokenManager tokenManager = 
-                new AnalizadorSintactico.CarumaLangParserTokenManager(stream);
-            
-            Stack<DelimitadorInfo> pilaLlaves = new Stack<>();
-            Stack<DelimitadorInfo> pilaParentesis = new Stack<>();
-            
-            int contadorId = 0;
-            AnalizadorSintactico.Token tok;
-            List<AnalizadorSintactico.Token> historialTokens = new ArrayList<>();
+            // Recorrer los tokens ya leídos (el último es EOF)
+            BalanceDelimitadores balance = new BalanceDelimitadores(errores);
+            balance.agregar(resumirDelimitadores(0, total - 1, tipos, lineas, columnas), 0);
+            balance.terminar();
+        } catch (Exception e) {
+            System.err.println("Error en pre-analisis de delimitadores: " + e.getMessage());
+        }
+        
+        return errores;
+    }
+    
+    /**
+     * Delimitadores sin emparejar de los tokens desde..hasta - 1. El
+     * contexto de una apertura sale de los tokens anteriores, aunque sean de
+     * antes del tramo
+     */
+    static TramoDelimitadores resumirDelimitadores(int desde, int hasta, IntUnaryOperator tipos,
+                                                   IntUnaryOperator lineas, IntUnaryOperator columnas) {
+        TramoDelimitadores tramo = new TramoDelimitadores();
+        int contadorId = 0;
+        
+        for (int indice = desde; indice < hasta; indice++) {
+            int tipo = tipos.applyAsInt(indice);
+            if (tipo != AnalizadorSintactico.CarumaLangParserConstants.OPEN
+                    && tipo != AnalizadorSintactico.CarumaLangParserConstants.CLOSE
+                    && tipo != AnalizadorSintactico.CarumaLangParserConstants.ABRIENDO
+                    && tipo != AnalizadorSintactico.CarumaLangParserConstants.CERRANDO) {
+                continue;   // Solo hace falta la posición de los delimitadores
+            }
+            int linea = lineas.applyAsInt(indice);
+            int columna = columnas.applyAsInt(indice);
             
-            // Leer todos los tokens
-            while (true) {
-                try {
-                    tok = tokenManager.getNextToken();
-                } catch (TokenMgrError e) {
-                    // Ignorar errores léxicos aquí (ya se manejan en preAnalizarErroresLexicos)
-                    try {
-                        stream.readChar();
-                        continue;
-                    } catch (IOException ioException) {
-                        break;
-                    }
-                }
+            // Rastrear llaves
+            if (tipo == AnalizadorSintactico.CarumaLangParserConstants.OPEN) {  // {
+                String contexto = determinarContexto(tipos, indice);
+                tramo.llaves.add(new DelimitadorInfo(
+                    linea, columna, "{", contexto, ++contadorId));
                 
-                if (tok.kind == AnalizadorSintactico.CarumaLangParserConstants.EOF) {
-                    break;
+            } else if (tipo == AnalizadorSintactico.CarumaLangParserConstants.CLOSE) {  // }
+                if (tramo.llaves.isEmpty()) {
+                    // Puede cerrar una llave de un tramo anterior
+                    tramo.cierres.add(new DelimitadorInfo(linea, columna, "}", null, ++contadorId));
+                } else {
+                    // Emparejar correctamente
+                    tramo.llaves.remove(tramo.llaves.size() - 1);
                 }
                 
-                historialTokens.add(tok);
+            } else if (tipo == AnalizadorSintactico.CarumaLangParserConstants.ABRIENDO) {  // (
+                String contexto = determinarContextoParentesis(tipos, indice);
+                tramo.parentesis.add(new DelimitadorInfo(
+                    linea, columna, "(", contexto, ++contadorId));
                 
-                // Rastrear llaves
-                if (tok.kind == AnalizadorSintactico.CarumaLangParserConstants.OPEN) {  // {
-                    String contexto = determinarContexto(historialTokens);
-                    pilaLlaves.push(new DelimitadorInfo(
-                        tok.beginLine, tok.beginColumn, "{", contexto, ++contadorId));
-                    
-                } else if (tok.kind == AnalizadorSintactico.CarumaLangParserConstants.CLOSE) {  // }
-                    if (pilaLlaves.isEmpty()) {
-                        errores.add(new ErrorAnalisis(
-                            TipoError.SINTACTICO,
-                            "Llave de cierre '}' sin apertura correspondiente",
-                            tok.beginLine, tok.beginColumn, "}", "{"));
-                    } else {
-                        // Emparejar correctamente
-                        pilaLlaves.pop();
-                    }
-                    
-                } else if (tok.kind == AnalizadorSintactico.CarumaLangParserConstants.ABRIENDO) {  // (
-                    String contexto = determinarContextoParentesis(historialTokens);
-                    pilaParentesis.push(new DelimitadorInfo(
-                        tok.beginLine, tok.beginColumn, "(", contexto, ++contadorId));
-                    
-                } else if (tok.kind == AnalizadorSintactico.CarumaLangParserConstants.CERRANDO) {  // )
-                    if (pilaParentesis.isEmpty()) {
-                        errores.add(new ErrorAnalisis(
-                            TipoError.SINTACTICO,
-                            "Parentesis de cierre ')' sin apertura correspondiente",
-                            tok.beginLine, tok.beginColumn, ")", "("));
-                    } else {
-                        pilaParentesis.pop();
-                    }
+            } else if (tipo == AnalizadorSintactico.CarumaLangParserConstants.CERRANDO) {  // )
+                if (tramo.parentesis.isEmpty()) {
+                    tramo.cierres.add(new DelimitadorInfo(linea, columna, ")", null, ++contadorId));
+                } else {
+                    tramo.parentesis.remove(tramo.parentesis.size() - 1);
                 }
             }
-            
-            // Reportar llaves sin cerrar (con contexto específico)
-            while (!pilaLlaves.isEmpty()) {
-                DelimitadorInfo info = pilaLlaves.pop();
-                errores.add(new ErrorAnalisis(
-                    TipoError.SINTACTICO,
-                    "Llave de apertura '{' sin cerrar en " + info.contexto,
-                    info.linea, info.columna, "{", "}"));
-            }
-            
-            // Reportar paréntesis sin cerrar
-            while (!pilaParentesis.isEmpty()) {
-                DelimitadorInfo info = pilaParentesis.pop();
-                errores.add(new ErrorAnalisis(
-                    TipoError.SINTACTICO,
-                    "Parentesis '(' sin cerrar en " + info.contexto,
-                    info.linea, info.columna, "(", ")"));
-            }
-            
-            reader.close();
-            
-        } catch (Exception e) {
-            System.err.println("Error en pre-analisis de delimitadores: " + e.getMessage());
         }
         
-        return errores;
+        return tramo;
     }
     
+    // Tokens válidos anteriores que mira determinarContexto (más que los de
+    // determinarContextoParentesis)
+    static final int TOKENS_CONTEXTO = 9;
+    
     /**
-     * Determina el contexto de una llave basándose en el historial de tokens
+     * Determina el contexto de la llave en la posición indicada basándose en
+     * el historial de tokens
      */
-    private static String determinarContexto(List<AnalizadorSintactico.Token> historial) {
-        // Buscar hacia atrás las últimas 10 tokens
-        for (int i = historial.size() - 2; i >= 0 && i >= historial.size() - 10; i--) {
-            AnalizadorSintactico.Token tok = historial.get(i);
+    private static String determinarContexto(IntUnaryOperator tipos, int indice) {
+        // Buscar hacia atrás los últimos tokens
+        for (int i = indice - 1, vistos = 0; i >= 0 && vistos < TOKENS_CONTEXTO; i--) {
+            int tipo = tipos.applyAsInt(i);
+            if (tipo == AnalizadorSintactico.CarumaLangParserConstants.INVALID) {
+                continue;
+            }
+            vistos++;
             
-            if (tok.kind == AnalizadorSintactico.CarumaLangParserConstants.CAECLIENTE) {
+            if (tipo == AnalizadorSintactico.CarumaLangParserConstants.CAECLIENTE) {
                 return "CaeCliente (if)";
-            } else if (tok.kind == AnalizadorSintactico.CarumaLangParserConstants.SINOCAE) {
+            } else if (tipo == AnalizadorSintactico.CarumaLangParserConstants.SINOCAE) {
                 return "SiNoCae (else)";
-            } else if (tok.kind == AnalizadorSintactico.CarumaLangParserConstants.PAPOI) {
+            } else if (tipo == AnalizadorSintactico.CarumaLangParserConstants.PAPOI) {
                 return "papoi (while)";
-            } else if (tok.kind == AnalizadorSintactico.CarumaLangParserConstants.PARAPAPOI) {
+            } else if (tipo == AnalizadorSintactico.CarumaLangParserConstants.PARAPAPOI) {
                 return "paraPapoi (for)";
             }
         }
@@ -774,20 +2181,24 @@ public class AnalisisSintactico {
     }
     
     /**
-     * Determina el contexto de un paréntesis
+     * Determina el contexto del paréntesis en la posición indicada
      */
-    private static String determinarContextoParentesis(List<AnalizadorSintactico.Token> historial) {
+    private static String determinarContextoParentesis(IntUnaryOperator tipos, int indice) {
         // Buscar hacia atrás
-        for (int i = historial.size() - 2; i >= 0 && i >= historial.size() - 5; i--) {
-            AnalizadorSintactico.Token tok = historial.get(i);
+        for (int i = indice - 1, vistos = 0; i >= 0 && vistos < 4; i--) {
+            int tipo = tipos.applyAsInt(i);
+            if (tipo == AnalizadorSintactico.CarumaLangParserConstants.INVALID) {
+                continue;
+            }
+            vistos++;
             
-            if (tok.kind == AnalizadorSintactico.CarumaLangParserConstants.HOLAHOLA) {
+            if (tipo == AnalizadorSintactico.CarumaLangParserConstants.HOLAHOLA) {
                 return "holahola (print)";
-            } else if (tok.kind == AnalizadorSintactico.CarumaLangParserConstants.CAECLIENTE) {
+            } else if (tipo == AnalizadorSintactico.CarumaLangParserConstants.CAECLIENTE) {
                 return "CaeCliente (condicion)";
-            } else if (tok.kind == AnalizadorSintactico.CarumaLangParserConstants.PAPOI) {
+            } else if (tipo == AnalizadorSintactico.CarumaLangParserConstants.PAPOI) {
                 return "papoi (condicion)";
-            } else if (tok.kind == AnalizadorSintactico.CarumaLangParserConstants.PARAPAPOI) {
+            } else if (tipo == AnalizadorSintactico.CarumaLangParserConstants.PARAPAPOI) {
                 return "paraPapoi (encabezado)";
             }
         }
@@ -807,9 +2218,12 @@ public class AnalisisSintactico {
         // Contar errores por tipo
         int erroresLexicos = 0;
         int erroresSintacticos = 0;
+        int erroresSemanticos = 0;
         for (ErrorAnalisis error : errores) {
             if (error.tipo == TipoError.LEXICO) {
                 erroresLexicos++;
+            } else if (error.tipo == TipoError.SEMANTICO) {
+                erroresSemanticos++;
             } else {
                 erroresSintacticos++;
             }
@@ -817,6 +2231,7 @@ public class AnalisisSintactico {
         
         System.out.println("Errores Lexicos: " + erroresLexicos);
         System.out.println("Errores Sintacticos: " + erroresSintacticos);
+        System.out.println("Errores Semanticos: " + erroresSemanticos);
         System.out.println("Total: " + errores.size());
         System.out.println();
         
@@ -889,6 +2304,35 @@ public class AnalisisSintactico {
             System.out.println();
         }
         
+        // Mostrar tabla de ERRORES SEMÁNTICOS si existen
+        if (erroresSemanticos > 0) {
+            System.out.println("--------------------------------------------------------------------------------------------");
+            System.out.println("                      ERRORES SEMANTICOS ENCONTRADOS");
+            System.out.println("--------------------------------------------------------------------------------------------");
+            System.out.println();
+            System.out.println("--------------------------------------------------------------------------------------------");
+            System.out.println("│ No. │ Linea │ Col │ Descripcion                                                  ");
+            System.out.println("--------------------------------------------------------------------------------------------");
+            
+            int contadorSemantico = 1;
+            for (ErrorAnalisis error : errores) {
+                if (error.tipo == TipoError.SEMANTICO) {
+                    String descripcion = error.mensaje;
+                    if (descripcion.length() > 64) {
+                        descripcion = descripcion.substring(0, 61) + "...";
+                    }
+                    
+                    System.out.printf("│ %-4d│ %-6d│ %-4d│ %-64s %n",
+                        contadorSemantico++,
+                        error.linea,
+                        error.columna,
+                        descripcion);
+                }
+            }
+            System.out.println("--------------------------------------------------------------------------------------------");
+            System.out.println();
+        }
+        
         System.out.println("========================================");
         System.out.println("        RESUMEN DEL ANALISIS");
         System.out.println("========================================");
@@ -896,15 +2340,16 @@ public class AnalisisSintactico {
         System.out.println("Total de errores: " + errores.size());
         System.out.println("  - Errores lexicos: " + erroresLexicos);
         System.out.println("  - Errores sintacticos: " + erroresSintacticos);
+        System.out.println("  - Errores semanticos: " + erroresSemanticos);
         System.out.println();
         
-        if (erroresLexicos > 0 && erroresSintacticos > 0) {
-            System.out.println("Estado: ANALISIS CON ERRORES LEXICOS Y SINTACTICOS");
-        } else if (erroresLexicos > 0) {
-            System.out.println("Estado: ANALISIS CON ERRORES LEXICOS");
-        } else {
-            System.out.println("Estado: ANALISIS CON ERRORES SINTACTICOS");
-        }
+        List<String> fases = new ArrayList<>();
+        if (erroresLexicos > 0) fases.add("LEXICOS");
+        if (erroresSintacticos > 0) fases.add("SINTACTICOS");
+        if (erroresSemanticos > 0) fases.add("SEMANTICOS");
+        String ultima = fases.remove(fases.size() - 1);
+        System.out.println("Estado: ANALISIS CON ERRORES "
+            + (fases.isEmpty() ? "" : String.join(", ", fases) + " Y ") + ultima);
         
         System.out.println();
         System.out.println("Se genero un archivo .errores con informacion detallada");
@@ -913,9 +2358,10 @@ public class AnalisisSintactico {
     }
     
     /**
-     * Genera archivo con información detallada de errores
+     * Genera archivo con información detallada de errores y devuelve su
+     * nombre (null si no se pudo escribir)
      */
-    private static void generarArchivoErrores(String archivoFuente, List<ErrorAnalisis> errores) {
+    static String generarArchivoErrores(String archivoFuente, List<ErrorAnalisis> errores) {
         try {
             String nombreSalida = archivoFuente.replace(".crm", ".errores");
             SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
@@ -924,9 +2370,12 @@ public class AnalisisSintactico {
             // Contar errores por tipo
             int erroresLexicos = 0;
             int erroresSintacticos = 0;
+            int erroresSemanticos = 0;
             for (ErrorAnalisis error : errores) {
                 if (error.tipo == TipoError.LEXICO) {
                     erroresLexicos++;
+                } else if (error.tipo == TipoError.SEMANTICO) {
+                    erroresSemanticos++;
                 } else {
                     erroresSintacticos++;
                 }
@@ -947,6 +2396,8 @@ public class AnalisisSintactico {
                 writer.newLine();
                 writer.write("# Errores sintacticos: " + erroresSintacticos);
                 writer.newLine();
+                writer.write("# Errores semanticos: " + erroresSemanticos);
+                writer.newLine();
                 writer.newLine();
                 
                 // SECCION DE ERRORES
@@ -983,6 +2434,8 @@ public class AnalisisSintactico {
                 writer.newLine();
                 writer.write("ERRORES_SINTACTICOS=" + erroresSintacticos);
                 writer.newLine();
+                writer.write("ERRORES_SEMANTICOS=" + erroresSemanticos);
+                writer.newLine();
                 
                 String estado = errores.isEmpty() ? "SIN_ERRORES" : "CON_ERRORES";
                 writer.write("ESTADO=" + estado);
@@ -993,12 +2446,11 @@ public class AnalisisSintactico {
                 writer.newLine();
             }
             
-            if (!errores.isEmpty()) {
-                System.out.println("\nArchivo de errores generado: " + nombreSalida);
-            }
+            return nombreSalida;
             
         } catch (IOException e) {
             System.err.println("Error al generar archivo de errores: " + e.getMessage());
+            return null;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+package AnalizadorLexico;
+
+/**
+ * Receptor de los errores léxicos de LexicoTabla.
+ *
+ * Con un receptor registrado (ver LexicoTabla.reportarErrores) cada
+ * carácter que no empieza ningún token se informa aquí en cuanto se lee,
+ * en orden y antes del token válido que lo sigue, y el token manager
+ * continúa con el carácter siguiente: no se construye un Token INVALID ni
+ * una excepción, y el error llega con sus datos por separado en lugar de
+ * dentro de un mensaje de texto.
+ *
+ * Solo LexicoTabla (y LexicoParalelo, que lo usa por trozos) informa aquí:
+ * los token managers generados por JavaCC siguen entregando los errores
+ * como tokens INVALID.
+ */
+public interface ErroresLexicos
+{
+  /** Un carácter que no pertenece al alfabeto del lenguaje. */
+  int CARACTER_NO_RECONOCIDO = 1;
+  /** Unas comillas '"' sin cierre en la misma línea. */
+  int TEXTO_SIN_CERRAR = 2;
+  /** Un apóstrofo que no forma un literal de carácter como 'a'. */
+  int LETRA_MAL_FORMADA = 3;
+
+  /**
+   * Informa un error.
+   *
+   * @param tipo    CARACTER_NO_RECONOCIDO, TEXTO_SIN_CERRAR o LETRA_MAL_FORMADA
+   * @param offset  posición del carácter en el flujo (en bytes en un
+   *                FlujoMapeado), o -1 si el flujo no da posiciones
+   * @param linea   línea del carácter
+   * @param columna columna del carácter
+   * @param codigo  el code point del carácter: fuera del BMP es uno solo,
+   *                aunque el flujo lo lea como dos surrogates (el token
+   *                manager generado da en cambio un INVALID por cada uno)
+   */
+  void error(int tipo, int offset, int linea, int columna, int codigo);
+
+  /** Tipo del error de un carácter que no empieza ningún token. */
+  static int tipoDe(int codigo)
+  {
+     if (codigo == '"')
+        return TEXTO_SIN_CERRAR;
+     if (codigo == '\'')
+        return LETRA_MAL_FORMADA;
+     return CARACTER_NO_RECONOCIDO;
+  }
+}
@@ -0,0 +1,463 @@
+package AnalizadorLexico;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Volcado binario (.tkb) de los tokens de un archivo, alternativo al
+ * archivo de texto .tokens.
+ *
+ * Formato (versión 1), todos los enteros como varint sin signo de 7 bits
+ * por byte:
+ * <pre>
+ *   "CRMT" version tiposDeToken archivoFuente
+ *   registro* 0 lineaEOF columnaEOF tokensValidos errores
+ * </pre>
+ * Cada registro es el tipo del token, la diferencia de línea respecto al
+ * token anterior y la columna (diferencia de columna si sigue en la misma
+ * línea; las diferencias van en zigzag); la marca de fin guarda la posición
+ * del EOF de la misma forma. Después, si el tipo no tiene una
+ * imagen fija en jjstrLiteralImages, una referencia a la tabla de cadenas;
+ * los errores (tipo INVALID) agregan otra referencia con el mensaje. Una
+ * referencia igual al tamaño de la tabla define una cadena nueva: le siguen
+ * su largo y sus bytes en UTF-8 modificado (cada char por separado, como en
+ * DataOutput.writeUTF, para conservar los surrogates sueltos que pueden
+ * quedar en un token INVALID). El tipo 0 (EOF) cierra la secuencia.
+ *
+ * Solo se guarda la posición de inicio de cada token, como en el archivo
+ * .tokens; el Lector recalcula el fin a partir de la imagen.
+ */
+public class VolcadoTokens
+{
+  /** Versión del formato que escribe el Escritor. */
+  public static final int VERSION = 1;
+
+  private static final byte[] FIRMA = { 'C', 'R', 'M', 'T' };
+  private static final int TAB_SIZE = 8;
+
+  private static int zigzag(int n)
+  {
+     return (n << 1) ^ (n >> 31);
+  }
+
+  private static int desZigzag(int n)
+  {
+     return (n >>> 1) ^ -(n & 1);
+  }
+
+  private static byte[] codificar(String s)
+  {
+     int largo = 0;
+     for (int k = 0; k < s.length(); k++) {
+        char c = s.charAt(k);
+        largo += c != 0 && c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+     }
+     byte[] b = new byte[largo];
+     int i = 0;
+     for (int k = 0; k < s.length(); k++) {
+        char c = s.charAt(k);
+        if (c != 0 && c < 0x80) {
+           b[i++] = (byte) c;
+        } else if (c < 0x800) {
+           b[i++] = (byte) (0xC0 | (c >> 6));
+           b[i++] = (byte) (0x80 | (c & 0x3F));
+        } else {
+           b[i++] = (byte) (0xE0 | (c >> 12));
+           b[i++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+           b[i++] = (byte) (0x80 | (c & 0x3F));
+        }
+     }
+     return b;
+  }
+
+  private static String decodificar(byte[] b) throws IOException
+  {
+     char[] chars = new char[b.length];
+     int n = 0;
+     for (int i = 0; i < b.length; ) {
+        int x = b[i++] & 0xFF;
+        if (x < 0x80) {
+           chars[n++] = (char) x;
+        } else if ((x & 0xE0) == 0xC0 && i < b.length) {
+           chars[n++] = (char) (((x & 0x1F) << 6) | (b[i++] & 0x3F));
+        } else if ((x & 0xF0) == 0xE0 && i + 1 < b.length) {
+           chars[n++] = (char) (((x & 0x0F) << 12) | ((b[i] & 0x3F) << 6) | (b[i + 1] & 0x3F));
+           i += 2;
+        } else {
+           throw new IOException("Cadena mal formada en el volcado");
+        }
+     }
+     return new String(chars, 0, n);
+  }
+
+  /**
+   * Escribe el volcado a medida que llegan los tokens, en el mismo orden en
+   * que los entrega el token manager.
+   */
+  public static class Escritor implements Closeable
+  {
+    private final FileChannel canal;
+    private final byte[] buffer = new byte[1 << 16];
+    private int usados = 0;
+    // Índice de cada cadena ya escrita, en direccionamiento abierto. Las
+    // imágenes vienen compartidas por TablaNombres, así que casi siempre
+    // coinciden por referencia antes de llegar a equals
+    private String[] claves = new String[1024];
+    private int[] indices = new int[1024];
+    private int bitsTabla = 10;
+    private int totalCadenas = 0;
+    private int lineaAnterior = 1;
+    private int columnaAnterior = 1;
+    private int tokensValidos = 0;
+    private int errores = 0;
+    private boolean terminado = false;
+
+    /** Crea (o reemplaza) el archivo destino y escribe el encabezado. */
+    public Escritor(Path destino, String archivoFuente) throws IOException
+    {
+       canal = FileChannel.open(destino, StandardOpenOption.CREATE,
+             StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+       System.arraycopy(FIRMA, 0, buffer, 0, FIRMA.length);
+       usados = FIRMA.length;
+       varint(VERSION);
+       varint(CarumaLangLexerConstants.tokenImage.length);
+       bytes(codificar(archivoFuente));
+    }
+
+    /** Agrega un token válido. */
+    public void token(Token t) throws IOException
+    {
+       tokensValidos++;
+       registro(t.kind, t.beginLine, t.beginColumn);
+       if (CarumaLangLexerTokenManager.jjstrLiteralImages[t.kind] == null)
+          cadena(t.image);
+    }
+
+    /** Agrega un error léxico con su lexema y su mensaje. */
+    public void error(String lexema, int linea, int columna, String mensaje) throws IOException
+    {
+       errores++;
+       registro(CarumaLangLexerConstants.INVALID, linea, columna);
+       cadena(lexema);
+       cadena(mensaje);
+    }
+
+    /**
+     * Escribe la marca de fin con la posición del EOF y los totales, y
+     * cierra el archivo.
+     */
+    public void terminar(int lineaEOF, int columnaEOF) throws IOException
+    {
+       registro(CarumaLangLexerConstants.EOF, lineaEOF, columnaEOF);
+       varint(tokensValidos);
+       varint(errores);
+       vaciar();
+       terminado = true;
+       canal.close();
+    }
+
+    /**
+     * Cierra el archivo. Si no se llamó a terminar() el volcado queda
+     * incompleto y el Lector lo rechaza.
+     */
+    public void close() throws IOException
+    {
+       if (!terminado)
+          canal.close();
+    }
+
+    private void registro(int tipo, int linea, int columna) throws IOException
+    {
+       if (buffer.length - usados < 15)
+          vaciar();
+       varint(tipo);
+       int deltaLinea = linea - lineaAnterior;
+       varint(zigzag(deltaLinea));
+       varint(deltaLinea == 0 ? zigzag(columna - columnaAnterior) : columna);
+       lineaAnterior = linea;
+       columnaAnterior = columna;
+    }
+
+    private void cadena(String s) throws IOException
+    {
+       if (buffer.length - usados < 5)
+          vaciar();
+       int mascara = claves.length - 1;
+       int i = posicion(s);
+       for (String clave; (clave = claves[i]) != null; i = (i + 1) & mascara) {
+          if (clave == s || clave.equals(s)) {
+             varint(indices[i]);
+             return;
+          }
+       }
+       claves[i] = s;
+       indices[i] = totalCadenas;
+       varint(totalCadenas);
+       if (++totalCadenas * 2 > claves.length)
+          crecer();
+       bytes(codificar(s));
+    }
+
+    // Los hashCode de lexemas parecidos ("1234", "1235") son casi
+    // consecutivos; multiplicar por la razón áurea y tomar los bits altos
+    // los dispersa y evita cadenas largas de sondeo
+    private int posicion(String s)
+    {
+       return (s.hashCode() * 0x9E3779B9) >>> (32 - bitsTabla);
+    }
+
+    private void crecer()
+    {
+       String[] viejasClaves = claves;
+       int[] viejosIndices = indices;
+       claves = new String[viejasClaves.length * 2];
+       indices = new int[viejasClaves.length * 2];
+       bitsTabla++;
+       int mascara = claves.length - 1;
+       for (int j = 0; j < viejasClaves.length; j++) {
+          if (viejasClaves[j] == null)
+             continue;
+          int i = posicion(viejasClaves[j]);
+          while (claves[i] != null)
+             i = (i + 1) & mascara;
+          claves[i] = viejasClaves[j];
+          indices[i] = viejosIndices[j];
+       }
+    }
+
+    private void bytes(byte[] b) throws IOException
+    {
+       if (buffer.length - usados < 5)
+          vaciar();
+       varint(b.length);
+       if (b.length > buffer.length - usados) {
+          vaciar();
+          if (b.length > buffer.length) {
+             ByteBuffer directo = ByteBuffer.wrap(b);
+             while (directo.hasRemaining())
+                canal.write(directo);
+             return;
+          }
+       }
+       System.arraycopy(b, 0, buffer, usados, b.length);
+       usados += b.length;
+    }
+
+    // Quien llama se asegura de que queden al menos 5 bytes libres
+    private void varint(int n)
+    {
+       while ((n & ~0x7F) != 0) {
+          buffer[usados++] = (byte) ((n & 0x7F) | 0x80);
+          n >>>= 7;
+       }
+       buffer[usados++] = (byte) n;
+    }
+
+    private void vaciar() throws IOException
+    {
+       ByteBuffer b = ByteBuffer.wrap(buffer, 0, usados);
+       while (b.hasRemaining())
+          canal.write(b);
+       usados = 0;
+    }
+  }
+
+  /**
+   * Lee un volcado sin volver a ejecutar el token manager. Los tokens salen
+   * en el mismo orden que los da getNextToken(), incluidos los de tipo
+   * INVALID: siguiente() los devuelve como Token y avanzar() recorre el
+   * volcado sin crear objetos, para herramientas que solo miran tipos y
+   * posiciones.
+   */
+  public static class Lector
+  {
+    private final ByteBuffer datos;
+    private final String archivoFuente;
+    private final List<String> cadenas = new ArrayList<>();
+    private int tipo = CarumaLangLexerConstants.EOF;
+    private String imagen = "";
+    private int linea = 1;
+    private int columna = 1;
+    private String mensajeError;
+    private int tokensValidos = -1;
+    private int errores = -1;
+
+    /** Abre el volcado y valida su encabezado. */
+    public Lector(Path archivo) throws IOException
+    {
+       try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+          datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+       }
+       for (byte b : FIRMA) {
+          if (!datos.hasRemaining() || datos.get() != b)
+             throw new IOException("No es un volcado de tokens de CarumaLang: " + archivo);
+       }
+       int version = varint();
+       if (version != VERSION)
+          throw new IOException("Version de volcado no soportada: " + version);
+       int tipos = varint();
+       if (tipos != CarumaLangLexerConstants.tokenImage.length)
+          throw new IOException("El volcado se genero con otra gramatica ("
+                + tipos + " tipos de token en lugar de " + CarumaLangLexerConstants.tokenImage.length + ")");
+       archivoFuente = texto();
+    }
+
+    /** Ruta del archivo .crm del que se generó el volcado. */
+    public String archivoFuente()
+    {
+       return archivoFuente;
+    }
+
+    /**
+     * Avanza al siguiente token sin crear objetos y deja sus datos en
+     * tipo(), imagen(), linea() y columna(). Devuelve false al llegar al EOF
+     * (y desde ahí siempre).
+     */
+    public boolean avanzar() throws IOException
+    {
+       if (tokensValidos >= 0)
+          return false;
+       int t = varint();
+       if (t >= CarumaLangLexerConstants.tokenImage.length)
+          throw new IOException("Tipo de token invalido en el volcado: " + t);
+
+       int deltaLinea = desZigzag(varint());
+       int c = varint();
+       columna = deltaLinea == 0 ? columna + desZigzag(c) : c;
+       linea += deltaLinea;
+       tipo = t;
+
+       if (t == CarumaLangLexerConstants.EOF) {
+          tokensValidos = varint();
+          errores = varint();
+          imagen = "";
+          mensajeError = null;
+          return false;
+       }
+
+       imagen = CarumaLangLexerTokenManager.jjstrLiteralImages[t];
+       if (imagen == null)
+          imagen = cadena();
+       mensajeError = t == CarumaLangLexerConstants.INVALID ? cadena() : null;
+       return true;
+    }
+
+    /**
+     * Devuelve el siguiente token como Token, igual que getNextToken();
+     * después del EOF sigue devolviendo EOF.
+     */
+    public Token siguiente() throws IOException
+    {
+       avanzar();
+       Token t = Token.newToken(tipo, imagen);
+       t.beginLine = linea;
+       t.beginColumn = columna;
+       calcularFin(t);
+       return t;
+    }
+
+    public int tipo()
+    {
+       return tipo;
+    }
+
+    public String imagen()
+    {
+       return imagen;
+    }
+
+    public int linea()
+    {
+       return linea;
+    }
+
+    public int columna()
+    {
+       return columna;
+    }
+
+    /** Mensaje del último token INVALID devuelto, o null. */
+    public String mensajeError()
+    {
+       return mensajeError;
+    }
+
+    /** Tokens válidos del archivo; -1 hasta llegar al EOF. */
+    public int tokensValidos()
+    {
+       return tokensValidos;
+    }
+
+    /** Errores léxicos del archivo; -1 hasta llegar al EOF. */
+    public int errores()
+    {
+       return errores;
+    }
+
+    // Recorre la imagen con las mismas reglas de línea y columna que
+    // SimpleCharStream (tabulador de 8, \r\n cuenta como un solo salto)
+    private static void calcularFin(Token t)
+    {
+       int l = t.beginLine;
+       int c = t.beginColumn;
+       String s = t.image;
+       for (int k = 1; k < s.length(); k++) {
+          char anterior = s.charAt(k - 1);
+          char actual = s.charAt(k);
+          c++;
+          if (anterior == '\n' || (anterior == '\r' && actual != '\n')) {
+             l++;
+             c = 1;
+          }
+          if (actual == '\t') {
+             c--;
+             c += TAB_SIZE - (c % TAB_SIZE);
+          }
+       }
+       t.endLine = l;
+       t.endColumn = c;
+    }
+
+    private String cadena() throws IOException
+    {
+       int indice = varint();
+       if (indice < cadenas.size())
+          return cadenas.get(indice);
+       if (indice != cadenas.size())
+          throw new IOException("Referencia invalida a la tabla de cadenas: " + indice);
+       String s = texto();
+       cadenas.add(s);
+       return s;
+    }
+
+    private String texto() throws IOException
+    {
+       int largo = varint();
+       if (largo > datos.remaining())
+          throw new IOException("Volcado truncado");
+       byte[] b = new byte[largo];
+       datos.get(b);
+       return decodificar(b);
+    }
+
+    private int varint() throws IOException
+    {
+       int n = 0;
+       for (int desplazamiento = 0; desplazamiento < 35; desplazamiento += 7) {
+          if (!datos.hasRemaining())
+             throw new IOException("Volcado truncado");
+          byte b = datos.get();
+          n |= (b & 0x7F) << desplazamiento;
+          if (b >= 0)
+             return n;
+       }
+       throw new IOException("Entero mal formado en el volcado");
+    }
+  }
+}
@@ -0,0 +1,498 @@
+package AnalizadorSintactico;
+
+import java.util.Arrays;
+
+/**
+ * Árbol sintáctico guardado en bloques de enteros.
+ *
+ * Cada nodo ocupa seis ints seguidos (tipo de nodo y de token, línea,
+ * columna, imagen, primer hijo y siguiente hermano) en lugar de un objeto
+ * por nodo; los nodos se identifican por su índice. Las palabras clave y
+ * operadores tienen imagen fija y no la guardan; los identificadores
+ * guardan un índice en una tabla de nombres sin repetidos, y los literales
+ * se copian a un arreglo de caracteres. Así el árbol no retiene los objetos
+ * Token ni un String por aparición.
+ *
+ * Los nodos se reservan por bloques de tamaño fijo: crecer agrega un bloque
+ * en vez de copiar todo a un arreglo del doble, que en archivos grandes
+ * dejaba decenas de MB de basura por análisis.
+ *
+ * El parser lo construye de abajo hacia arriba: cada producción deja su
+ * nodo en una pila y nodo() toma de la pila los hijos apilados desde una
+ * marca. Las producciones que solo pasan un valor (una expresión sin
+ * operadores, un paréntesis) no crean nodo.
+ */
+public class ArbolSintactico
+{
+  // -------------------------------------------------------
+  // Tipos de nodo
+  // -------------------------------------------------------
+
+  /** Hijos: las sentencias. Token: Caruma. */
+  public static final int PROGRAMA = 0;
+  /** Hijos: VARIABLE por cada nombre y luego las expresiones iniciales. Token: el tipo. */
+  public static final int DECLARACION = 1;
+  /** Nombre que se declara o se asigna (hoja). Token: el identificador. */
+  public static final int VARIABLE = 2;
+  /** Hijos: VARIABLE y expresión. Token: "=". */
+  public static final int ASIGNACION = 3;
+  /** Hijos: condición, BLOQUE y BLOQUE del SiNoCae opcional. Token: CaeCliente. */
+  public static final int SI = 4;
+  /** Hijos: condición y BLOQUE. Token: papoi. */
+  public static final int MIENTRAS = 5;
+  /** Hijos: inicialización, condición, incremento y BLOQUE. Token: paraPapoi. */
+  public static final int PARA = 6;
+  /** Hijos: las sentencias. Token: "{". */
+  public static final int BLOQUE = 7;
+  /** Hijos: los argumentos. Token: holahola. */
+  public static final int IMPRESION = 8;
+  /** Hijos: dos condiciones. Token: DIOS o DIOSNO. */
+  public static final int LOGICA = 9;
+  /** Hijos: dos expresiones. Token: el operador relacional. */
+  public static final int RELACIONAL = 10;
+  /** Hijos: dos expresiones. Token: el operador aritmético. */
+  public static final int ARITMETICA = 11;
+  /** Literal numérico (hoja). */
+  public static final int NUMERO = 12;
+  /** Literal de cadena, con comillas (hoja). */
+  public static final int TEXTO = 13;
+  /** Literal de carácter, con comillas (hoja). */
+  public static final int LETRA = 14;
+  /** Uso de una variable en una expresión (hoja). */
+  public static final int IDENTIFICADOR = 15;
+  /** DIOS o DIOSNO como valor (hoja). */
+  public static final int BOOLEANO = 16;
+
+  /** Nombres de los tipos de nodo, para mensajes y depuración. */
+  public static final String[] NOMBRES = {
+    "PROGRAMA", "DECLARACION", "VARIABLE", "ASIGNACION", "SI", "MIENTRAS",
+    "PARA", "BLOQUE", "IMPRESION", "LOGICA", "RELACIONAL", "ARITMETICA",
+    "NUMERO", "TEXTO", "LETRA", "IDENTIFICADOR", "BOOLEANO"
+  };
+
+  /** Valor de primerHijo, hermano, token e imagen cuando no hay ninguno. */
+  public static final int NINGUNO = -1;
+
+  private static final int BITS_BLOQUE = 13;
+  private static final int NODOS_POR_BLOQUE = 1 << BITS_BLOQUE;
+  private static final int MASCARA_BLOQUE = NODOS_POR_BLOQUE - 1;
+
+  // Campos de cada nodo dentro de su bloque. TIPO guarda el tipo de nodo en
+  // el byte bajo y el tipo de token + 1 encima (0 si el nodo no tiene token)
+  private static final int TIPO = 0;
+  private static final int LINEA = 1;
+  private static final int COLUMNA = 2;
+  private static final int IMAGEN = 3;
+  private static final int PRIMER_HIJO = 4;
+  private static final int HERMANO = 5;
+  private static final int CAMPOS = 6;
+
+  private int[][] bloques = new int[16][];
+  private int totalBloques = 0;
+  private int totalNodos = 0;
+
+  // Tokens registrados con token() que todavía no tienen nodo, cuatro ints
+  // cada uno (tipo, línea, columna e imagen). Se usan en orden inverso al
+  // que se registran, igual que las producciones
+  private int[] pendientes = new int[64];
+  private int totalPendientes = 0;
+
+  // Identificadores distintos, en orden de aparición, y su índice por hash
+  // en direccionamiento abierto: cada celda guarda el hash y el índice + 1
+  // (0 marca una celda libre), para no visitar el String salvo que coincida
+  private String[] nombres = new String[64];
+  private int totalNombres = 0;
+  private int[] celdas = new int[256];
+  private int bitsIndice = 7;
+
+  // Texto de los literales, uno detrás de otro con su largo en los dos
+  // caracteres anteriores. No se buscan repetidos: hay muchos más literales
+  // distintos que identificadores y una tabla de ese tamaño sale más cara
+  // que copiarlos
+  private char[] literales = new char[1024];
+  private int totalLiterales = 0;
+
+  // Nodos ya construidos que esperan a su padre
+  private int[] pila = new int[64];
+  private int altura = 0;
+
+  /** Vacía el árbol para construir otro, conservando los bloques. */
+  public void reiniciar()
+  {
+     Arrays.fill(nombres, 0, totalNombres, null);
+     Arrays.fill(celdas, 0);
+     totalNombres = 0;
+     totalLiterales = 0;
+     totalNodos = 0;
+     totalPendientes = 0;
+     altura = 0;
+  }
+
+  // -------------------------------------------------------
+  // Construcción (la usa el parser)
+  // -------------------------------------------------------
+
+  /** Posición actual de la pila, para pasarla luego a nodo() o descartar(). */
+  public int marca()
+  {
+     return altura;
+  }
+
+  /**
+   * Registra un token para usarlo después en nodo() y devuelve su número.
+   * Las producciones lo llaman apenas consumen el token en lugar de
+   * guardarlo hasta crear el nodo: un Token vivo retiene, por token.next,
+   * todos los que el parser lee después.
+   */
+  public int token(Token t)
+  {
+     if (totalPendientes * 4 == pendientes.length)
+        pendientes = Arrays.copyOf(pendientes, pendientes.length * 2);
+     int p = totalPendientes * 4;
+     pendientes[p] = t.kind;
+     pendientes[p + 1] = t.beginLine;
+     pendientes[p + 2] = t.beginColumn;
+     pendientes[p + 3] = imagen(t);
+     return totalPendientes++;
+  }
+
+  /** Crea una hoja con el token dado y la apila. */
+  public int hoja(int tipo, Token t)
+  {
+     int n = crear(tipo, t.kind, t.beginLine, t.beginColumn, imagen(t));
+     bloques[n >>> BITS_BLOQUE][(n & MASCARA_BLOQUE) * CAMPOS + PRIMER_HIJO] = NINGUNO;
+     apilar(n);
+     return n;
+  }
+
+  /**
+   * Crea un nodo cuyos hijos son los nodos apilados desde la marca (en
+   * orden), los saca de la pila y apila el nodo nuevo. El token es el
+   * número devuelto por token(), o NINGUNO.
+   */
+  public int nodo(int tipo, int token, int marca)
+  {
+     int n;
+     if (token == NINGUNO) {
+        n = crear(tipo, NINGUNO, 0, 0, NINGUNO);
+     } else {
+        int p = token * 4;
+        n = crear(tipo, pendientes[p], pendientes[p + 1], pendientes[p + 2], pendientes[p + 3]);
+        totalPendientes = token;
+     }
+     bloques[n >>> BITS_BLOQUE][(n & MASCARA_BLOQUE) * CAMPOS + PRIMER_HIJO] =
+        altura > marca ? pila[marca] : NINGUNO;
+     for (int k = marca; k < altura - 1; k++)
+        bloques[pila[k] >>> BITS_BLOQUE][(pila[k] & MASCARA_BLOQUE) * CAMPOS + HERMANO] = pila[k + 1];
+
+     altura = marca;
+     apilar(n);
+     return n;
+  }
+
+  /**
+   * Descarta lo construido desde la marca, por ejemplo cuando la
+   * recuperación de errores abandona una sentencia a medio analizar. Los
+   * nodos y tokens de esa sentencia son los últimos creados, así que se
+   * liberan volviendo a los totales que había al tomar la marca
+   * (tamano() y tokensPendientes()). Los nombres y literales que hayan
+   * quedado sin nodo no molestan.
+   */
+  public void descartar(int marca, int nodos, int pendientes)
+  {
+     altura = marca;
+     totalNodos = nodos;
+     totalPendientes = pendientes;
+  }
+
+  /**
+   * Saca de la pila los nodos apilados desde la marca sin descartarlos:
+   * siguen en el árbol, y quien los sacó debe enlazarlos con enlazarHijos().
+   */
+  public void soltar(int marca)
+  {
+     altura = marca;
+  }
+
+  /** Tokens registrados con token() que todavía no tienen nodo. */
+  public int tokensPendientes()
+  {
+     return totalPendientes;
+  }
+
+  private int crear(int tipo, int tipoToken, int linea, int columna, int imagen)
+  {
+     if (totalNodos == totalBloques << BITS_BLOQUE) {
+        if (totalBloques == bloques.length)
+           bloques = Arrays.copyOf(bloques, totalBloques * 2);
+        bloques[totalBloques++] = new int[NODOS_POR_BLOQUE * CAMPOS];
+     }
+     int n = totalNodos++;
+     int[] bloque = bloques[n >>> BITS_BLOQUE];
+     int i = (n & MASCARA_BLOQUE) * CAMPOS;
+     bloque[i + TIPO] = tipo | (tipoToken + 1) << 8;
+     bloque[i + LINEA] = linea;
+     bloque[i + COLUMNA] = columna;
+     bloque[i + IMAGEN] = imagen;
+     bloque[i + HERMANO] = NINGUNO;
+     return n;
+  }
+
+  // -------------------------------------------------------
+  // Edición (la usa el análisis incremental)
+  // -------------------------------------------------------
+
+  /**
+   * Reemplaza los hijos de padre por los primeros cantidad nodos de hijos,
+   * en orden. Permite cambiar algunas sentencias del programa sin volver a
+   * construir las demás.
+   */
+  public void enlazarHijos(int padre, int[] hijos, int cantidad)
+  {
+     fijar(padre, PRIMER_HIJO, cantidad > 0 ? hijos[0] : NINGUNO);
+     for (int k = 0; k < cantidad; k++)
+        fijar(hijos[k], HERMANO, k + 1 < cantidad ? hijos[k + 1] : NINGUNO);
+  }
+
+  /**
+   * Reemplaza los hijos de padre que hay entre anterior y siguiente (sin
+   * incluirlos; NINGUNO para el principio o el final) por los primeros
+   * cantidad nodos de hijos, en orden. Así cambiar unas sentencias del
+   * programa no recorre las demás.
+   */
+  public void enlazarTramo(int padre, int anterior, int[] hijos, int cantidad, int siguiente)
+  {
+     int primero = cantidad > 0 ? hijos[0] : siguiente;
+     if (anterior == NINGUNO)
+        fijar(padre, PRIMER_HIJO, primero);
+     else
+        fijar(anterior, HERMANO, primero);
+     for (int k = 0; k < cantidad; k++)
+        fijar(hijos[k], HERMANO, k + 1 < cantidad ? hijos[k + 1] : siguiente);
+  }
+
+  /**
+   * Suma delta a la línea de los nodos desde..hasta - 1, por ejemplo
+   * cuando una edición agregó o quitó líneas antes de ellos. Los nodos sin
+   * token (línea 0) no cambian.
+   */
+  public void correrLineas(int desde, int hasta, int delta)
+  {
+     for (int n = desde; n < hasta; n++) {
+        int[] bloque = bloques[n >>> BITS_BLOQUE];
+        int i = (n & MASCARA_BLOQUE) * CAMPOS + LINEA;
+        if (bloque[i] != 0)
+           bloque[i] += delta;
+     }
+  }
+
+  private void fijar(int n, int campo, int valor)
+  {
+     bloques[n >>> BITS_BLOQUE][(n & MASCARA_BLOQUE) * CAMPOS + campo] = valor;
+  }
+
+  private void apilar(int n)
+  {
+     if (altura == pila.length)
+        pila = Arrays.copyOf(pila, altura * 2);
+     pila[altura++] = n;
+  }
+
+  // Valor del campo IMAGEN: índice del nombre para los identificadores,
+  // posición del texto para los literales y nada para las palabras clave y
+  // operadores, que tienen imagen fija
+  private int imagen(Token t)
+  {
+     if (t.kind == CarumaLangParserConstants.MIXCHELADA)
+        return indiceNombre(t.image);
+     if (CarumaLangParserTokenManager.jjstrLiteralImages[t.kind] != null)
+        return NINGUNO;
+     return agregarLiteral(t.image);
+  }
+
+  private int agregarLiteral(String s)
+  {
+     int largo = s.length();
+     if (totalLiterales + largo + 2 > literales.length)
+        literales = Arrays.copyOf(literales, Math.max(literales.length * 2, totalLiterales + largo + 2));
+     literales[totalLiterales] = (char) (largo >>> 16);
+     literales[totalLiterales + 1] = (char) largo;
+     s.getChars(0, largo, literales, totalLiterales + 2);
+     int posicion = totalLiterales + 2;
+     totalLiterales = posicion + largo;
+     return posicion;
+  }
+
+  private int indiceNombre(String s)
+  {
+     int mascara = (celdas.length >>> 1) - 1;
+     int hash = s.hashCode();
+     int i = posicion(hash);
+     for (int e; (e = celdas[2 * i + 1]) != 0; i = (i + 1) & mascara) {
+        if (celdas[2 * i] == hash && nombres[e - 1].equals(s))
+           return e - 1;
+     }
+     if (totalNombres == nombres.length)
+        nombres = Arrays.copyOf(nombres, totalNombres * 2);
+     nombres[totalNombres] = s;
+     celdas[2 * i] = hash;
+     celdas[2 * i + 1] = ++totalNombres;
+     if (totalNombres * 4 > celdas.length)
+        crecerIndice();
+     return totalNombres - 1;
+  }
+
+  // Los hashCode de lexemas parecidos ("x1", "x2") son casi consecutivos;
+  // multiplicar por la razón áurea y tomar los bits altos los dispersa
+  private int posicion(int hash)
+  {
+     return (hash * 0x9E3779B9) >>> (32 - bitsIndice);
+  }
+
+  private void crecerIndice()
+  {
+     celdas = new int[celdas.length * 2];
+     bitsIndice++;
+     int mascara = (celdas.length >>> 1) - 1;
+     for (int k = 0; k < totalNombres; k++) {
+        int hash = nombres[k].hashCode();
+        int i = posicion(hash);
+        while (celdas[2 * i + 1] != 0)
+           i = (i + 1) & mascara;
+        celdas[2 * i] = hash;
+        celdas[2 * i + 1] = k + 1;
+     }
+  }
+
+  // -------------------------------------------------------
+  // Consulta
+  // -------------------------------------------------------
+
+  /** Nodo raíz (el último construido), o NINGUNO si el árbol está vacío. */
+  public int raiz()
+  {
+     return altura > 0 ? pila[altura - 1] : NINGUNO;
+  }
+
+  /** Número de nodos. Los índices van de 0 a tamano() - 1. */
+  public int tamano()
+  {
+     return totalNodos;
+  }
+
+  public int tipo(int n)
+  {
+     return campo(n, TIPO) & 0xFF;
+  }
+
+  public int primerHijo(int n)
+  {
+     return campo(n, PRIMER_HIJO);
+  }
+
+  public int hermano(int n)
+  {
+     return campo(n, HERMANO);
+  }
+
+  /** Hijo i (desde 0) del nodo, o NINGUNO. */
+  public int hijo(int n, int i)
+  {
+     int h = primerHijo(n);
+     while (i-- > 0 && h != NINGUNO)
+        h = hermano(h);
+     return h;
+  }
+
+  public int cantidadHijos(int n)
+  {
+     int cantidad = 0;
+     for (int h = primerHijo(n); h != NINGUNO; h = hermano(h))
+        cantidad++;
+     return cantidad;
+  }
+
+  /**
+   * Tipo (constante de CarumaLangParserConstants) del token del nodo, o
+   * NINGUNO si no tiene.
+   */
+  public int tipoToken(int n)
+  {
+     return (campo(n, TIPO) >>> 8) - 1;
+  }
+
+  /** Texto del token del nodo, o null si no tiene. */
+  public String imagen(int n)
+  {
+     int tipoToken = tipoToken(n);
+     if (tipoToken == NINGUNO)
+        return null;
+     if (tipoToken == CarumaLangParserConstants.MIXCHELADA)
+        return nombres[campo(n, IMAGEN)];
+     String fija = CarumaLangParserTokenManager.jjstrLiteralImages[tipoToken];
+     if (fija != null)
+        return fija;
+     int posicion = campo(n, IMAGEN);
+     int largo = literales[posicion - 2] << 16 | literales[posicion - 1];
+     return new String(literales, posicion, largo);
+  }
+
+  /**
+   * Índice del identificador del nodo en la tabla de nombres, o NINGUNO si
+   * su token no es un identificador. Dos nodos con el mismo nombre (por
+   * ejemplo la declaración y los usos de una variable) tienen el mismo
+   * índice.
+   */
+  public int indiceImagen(int n)
+  {
+     return tipoToken(n) == CarumaLangParserConstants.MIXCHELADA ? campo(n, IMAGEN) : NINGUNO;
+  }
+
+  /** Número de identificadores distintos; los índices van de 0 a cantidadNombres() - 1. */
+  public int cantidadNombres()
+  {
+     return totalNombres;
+  }
+
+  public String nombre(int i)
+  {
+     return nombres[i];
+  }
+
+  /** Línea del token del nodo, o 0 si no tiene. */
+  public int linea(int n)
+  {
+     return campo(n, LINEA);
+  }
+
+  /** Columna del token del nodo, o 0 si no tiene. */
+  public int columna(int n)
+  {
+     return campo(n, COLUMNA);
+  }
+
+  private int campo(int n, int campo)
+  {
+     return bloques[n >>> BITS_BLOQUE][(n & MASCARA_BLOQUE) * CAMPOS + campo];
+  }
+
+  /** Representación indentada del subárbol, una línea por nodo. */
+  public String volcar(int n)
+  {
+     StringBuilder sb = new StringBuilder();
+     volcar(n, 0, sb);
+     return sb.toString();
+  }
+
+  private void volcar(int n, int nivel, StringBuilder sb)
+  {
+     for (int k = 0; k < nivel; k++)
+        sb.append("  ");
+     sb.append(NOMBRES[tipo(n)]);
+     if (tipoToken(n) != NINGUNO)
+        sb.append(' ').append(imagen(n)).append(" @").append(linea(n)).append(':').append(columna(n));
+     sb.append('\n');
+     for (int h = primerHijo(n); h != NINGUNO; h = hermano(h))
+        volcar(h, nivel + 1, sb);
+  }
+}
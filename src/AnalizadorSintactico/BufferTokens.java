@@ -0,0 +1,115 @@
+package AnalizadorSintactico;
+
+import java.util.Arrays;
+
+/**
+ * Secuencia de tokens guardada como arreglos paralelos de enteros.
+ *
+ * Cada token ocupa cinco ints (tipo, offset de inicio, offset de fin, línea
+ * y columna de inicio) en lugar de un objeto Token con su String. La imagen
+ * se decodifica desde el archivo mapeado solo cuando se pide, y token(i)
+ * construye un Token normal para quien lo necesite (por ejemplo el parser).
+ */
+public class BufferTokens
+{
+  private final FlujoMapeado fuente;
+
+  private int[] tipos = new int[1024];
+  private int[] inicios = new int[1024];
+  private int[] fines = new int[1024];
+  private int[] lineas = new int[1024];
+  private int[] columnas = new int[1024];
+  private int total = 0;
+
+  /** Constructor. */
+  public BufferTokens(FlujoMapeado fuente)
+  {
+     this.fuente = fuente;
+  }
+
+  /**
+   * Agrega el token que el token manager acaba de devolver; sus offsets se
+   * toman del flujo, que aún está posicionado sobre él.
+   */
+  public void agregar(Token t)
+  {
+     int inicio = fuente.offsetInicioToken();
+     // EOF no tiene texto: su imagen es la cadena vacía
+     int fin = t.kind == CarumaLangParserConstants.EOF ? inicio : fuente.offsetFinToken();
+     agregar(t.kind, inicio, fin, t.beginLine, t.beginColumn);
+  }
+
+  /** Agrega un token a partir de sus datos. */
+  public void agregar(int tipo, int inicio, int fin, int linea, int columna)
+  {
+     if (total == tipos.length) {
+        int nuevo = total * 2;
+        tipos = Arrays.copyOf(tipos, nuevo);
+        inicios = Arrays.copyOf(inicios, nuevo);
+        fines = Arrays.copyOf(fines, nuevo);
+        lineas = Arrays.copyOf(lineas, nuevo);
+        columnas = Arrays.copyOf(columnas, nuevo);
+     }
+     tipos[total] = tipo;
+     inicios[total] = inicio;
+     fines[total] = fin;
+     lineas[total] = linea;
+     columnas[total] = columna;
+     total++;
+  }
+
+  /** Número de tokens guardados. */
+  public int tamano()
+  {
+     return total;
+  }
+
+  public int tipo(int i)
+  {
+     return tipos[i];
+  }
+
+  public int inicio(int i)
+  {
+     return inicios[i];
+  }
+
+  public int fin(int i)
+  {
+     return fines[i];
+  }
+
+  public int linea(int i)
+  {
+     return lineas[i];
+  }
+
+  public int columna(int i)
+  {
+     return columnas[i];
+  }
+
+  /** Texto del token i, leído del archivo fuente. */
+  public String imagen(int i)
+  {
+     if (fines[i] <= inicios[i])
+        return "";
+     return fuente.imagen(inicios[i], fines[i]);
+  }
+
+  /** Construye un Token con los datos del token i. */
+  public Token token(int i)
+  {
+     Token t = Token.newToken(tipos[i], imagen(i));
+     t.beginLine = lineas[i];
+     t.beginColumn = columnas[i];
+     if (fines[i] > inicios[i]) {
+        t.endLine = fuente.lineaEn(fines[i] - 1);
+        t.endColumn = fuente.columnaEn(fines[i] - 1);
+     } else {
+        t.endLine = lineas[i];
+        t.endColumn = columnas[i];
+     }
+     return t;
+  }
+}
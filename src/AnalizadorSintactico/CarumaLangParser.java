@@ -2,6 +2,14 @@
 package AnalizadorSintactico;
 
 public class CarumaLangParser implements CarumaLangParserConstants {
+    // Árbol que construyen las producciones. Se reinicia en cada Programa(),
+    // así que es válido hasta el siguiente análisis con este parser
+    protected ArbolSintactico arbol = new ArbolSintactico();
+
+    public ArbolSintactico getArbol() {
+        return arbol;
+    }
+
     public static void main(String[] args) {
         System.out.println("Analizador Sint\u00e1ctico CarumaLang - Parser LL(1)");
     }
@@ -10,14 +18,26 @@ public class CarumaLangParser implements CarumaLangParserConstants {
 // ============== GRAMÁTICA SINTÁCTICA LL(1) ===============
 // =========================================================
 
+// Cada producción deja su nodo en la pila de ArbolSintactico; las que
+// tienen hijos toman una marca al empezar y al terminar llaman a
+// arbol.nodo() con ella. Las que solo reenvían un valor (una expresión sin
+// operadores, un paréntesis) no crean nodo. El token del nodo se registra
+// con arbol.token(token) apenas se consume, sin guardar el objeto Token en
+// una variable: mientras esté vivo retiene por token.next todos los que
+// vienen después, y en el Programa() eso sería el archivo entero.
+
 // -------------------------------------------------------
 // 1. PROGRAMA COMPLETO
 // -------------------------------------------------------
   final public void Programa() throws ParseException {
+                    int k;
+      arbol.reiniciar();
     jj_consume_token(CARUMA);
+               k = arbol.token(token);
     Declaraciones();
     jj_consume_token(BYEBYE);
     jj_consume_token(0);
+      arbol.nodo(ArbolSintactico.PROGRAMA, k, 0);
   }
 
 // -------------------------------------------------------
@@ -74,7 +94,8 @@ public class CarumaLangParser implements CarumaLangParserConstants {
 // 3. DECLARACIÓN DE VARIABLES
 // -------------------------------------------------------
   final public void DeclaracionVariable() throws ParseException {
-    Tipo();
+                               int m = arbol.marca(), k;
+    k = Tipo();
     ListaIdentificadores();
     switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
     case ESTOES:
@@ -84,9 +105,10 @@ public class CarumaLangParser implements CarumaLangParserConstants {
       jj_la1[2] = jj_gen;
       ;
     }
+      arbol.nodo(ArbolSintactico.DECLARACION, k, m);
   }
 
-  final public void Tipo() throws ParseException {
+  final public int Tipo() throws ParseException {
     switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
     case INTCHELADA:
       jj_consume_token(INTCHELADA);
@@ -105,10 +127,13 @@ public class CarumaLangParser implements CarumaLangParserConstants {
       jj_consume_token(-1);
       throw new ParseException();
     }
+      {if (true) return arbol.token(token);}
+    throw new Error("Missing return statement in function");
   }
 
   final public void ListaIdentificadores() throws ParseException {
     jj_consume_token(MIXCHELADA);
+                   arbol.hoja(ArbolSintactico.VARIABLE, token);
     label_2:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
@@ -121,6 +146,7 @@ public class CarumaLangParser implements CarumaLangParserConstants {
       }
       jj_consume_token(COMA);
       jj_consume_token(MIXCHELADA);
+                           arbol.hoja(ArbolSintactico.VARIABLE, token);
     }
   }
 
@@ -150,9 +176,13 @@ public class CarumaLangParser implements CarumaLangParserConstants {
 // 4. ASIGNACIÓN
 // -------------------------------------------------------
   final public void Asignacion() throws ParseException {
+                      int m = arbol.marca(), k;
     jj_consume_token(MIXCHELADA);
+                   arbol.hoja(ArbolSintactico.VARIABLE, token);
     jj_consume_token(ESTOES);
+               k = arbol.token(token);
     Expresion();
+      arbol.nodo(ArbolSintactico.ASIGNACION, k, m);
   }
 
 // -------------------------------------------------------
@@ -176,17 +206,26 @@ public class CarumaLangParser implements CarumaLangParserConstants {
     }
   }
 
+  final public void Bloque() throws ParseException {
+                  int m = arbol.marca(), k;
+    jj_consume_token(OPEN);
+             k = arbol.token(token);
+    Declaraciones();
+    jj_consume_token(CLOSE);
+      arbol.nodo(ArbolSintactico.BLOQUE, k, m);
+  }
+
 // -------------------------------------------------------
 // 5.1 ESTRUCTURA IF
 // -------------------------------------------------------
   final public void EstructuraIf() throws ParseException {
+                        int m = arbol.marca(), k;
     jj_consume_token(CAECLIENTE);
+                   k = arbol.token(token);
     jj_consume_token(ABRIENDO);
     Condicion();
     jj_consume_token(CERRANDO);
-    jj_consume_token(OPEN);
-    Declaraciones();
-    jj_consume_token(CLOSE);
+    Bloque();
     switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
     case SINOCAE:
       ElseOpt();
@@ -195,33 +234,35 @@ public class CarumaLangParser implements CarumaLangParserConstants {
       jj_la1[7] = jj_gen;
       ;
     }
+      arbol.nodo(ArbolSintactico.SI, k, m);
   }
 
   final public void ElseOpt() throws ParseException {
     jj_consume_token(SINOCAE);
-    jj_consume_token(OPEN);
-    Declaraciones();
-    jj_consume_token(CLOSE);
+    Bloque();
   }
 
 // -------------------------------------------------------
 // 5.2 ESTRUCTURA WHILE
 // -------------------------------------------------------
   final public void EstructuraWhile() throws ParseException {
+                           int m = arbol.marca(), k;
     jj_consume_token(PAPOI);
+              k = arbol.token(token);
     jj_consume_token(ABRIENDO);
     Condicion();
     jj_consume_token(CERRANDO);
-    jj_consume_token(OPEN);
-    Declaraciones();
-    jj_consume_token(CLOSE);
+    Bloque();
+      arbol.nodo(ArbolSintactico.MIENTRAS, k, m);
   }
 
 // -------------------------------------------------------
 // 5.3 ESTRUCTURA FOR
 // -------------------------------------------------------
   final public void EstructuraFor() throws ParseException {
+                         int m = arbol.marca(), k;
     jj_consume_token(PARAPAPOI);
+                  k = arbol.token(token);
     jj_consume_token(ABRIENDO);
     Inicializacion();
     jj_consume_token(AHIVA);
@@ -229,23 +270,28 @@ public class CarumaLangParser implements CarumaLangParserConstants {
     jj_consume_token(AHIVA);
     Incremento();
     jj_consume_token(CERRANDO);
-    jj_consume_token(OPEN);
-    Declaraciones();
-    jj_consume_token(CLOSE);
+    Bloque();
+      arbol.nodo(ArbolSintactico.PARA, k, m);
   }
 
   final public void Inicializacion() throws ParseException {
+                          int m = arbol.marca(), k;
     if (jj_2_2(2)) {
-      Tipo();
+      k = Tipo();
       jj_consume_token(MIXCHELADA);
+                              arbol.hoja(ArbolSintactico.VARIABLE, token);
       jj_consume_token(ESTOES);
       Expresion();
+      arbol.nodo(ArbolSintactico.DECLARACION, k, m);
     } else {
       switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
       case MIXCHELADA:
         jj_consume_token(MIXCHELADA);
+                   arbol.hoja(ArbolSintactico.VARIABLE, token);
         jj_consume_token(ESTOES);
+               k = arbol.token(token);
         Expresion();
+      arbol.nodo(ArbolSintactico.ASIGNACION, k, m);
         break;
       default:
         jj_la1[8] = jj_gen;
@@ -256,15 +302,20 @@ public class CarumaLangParser implements CarumaLangParserConstants {
   }
 
   final public void Incremento() throws ParseException {
+                      int m = arbol.marca(), k;
     jj_consume_token(MIXCHELADA);
+                   arbol.hoja(ArbolSintactico.VARIABLE, token);
     jj_consume_token(ESTOES);
+               k = arbol.token(token);
     Expresion();
+      arbol.nodo(ArbolSintactico.ASIGNACION, k, m);
   }
 
 // -------------------------------------------------------
 // 6. CONDICIONES
 // -------------------------------------------------------
   final public void Condicion() throws ParseException {
+                     int m = arbol.marca(), k;
     ExpresionRelacional();
     label_4:
     while (true) {
@@ -277,18 +328,21 @@ public class CarumaLangParser implements CarumaLangParserConstants {
         jj_la1[9] = jj_gen;
         break label_4;
       }
-      OperadorLogico();
+      k = OperadorLogico();
       ExpresionRelacional();
+                                                  arbol.nodo(ArbolSintactico.LOGICA, k, m);
     }
   }
 
   final public void ExpresionRelacional() throws ParseException {
+                               int m = arbol.marca(), k;
     Expresion();
-    OperadorRelacional();
+    k = OperadorRelacional();
     Expresion();
+      arbol.nodo(ArbolSintactico.RELACIONAL, k, m);
   }
 
-  final public void OperadorRelacional() throws ParseException {
+  final public int OperadorRelacional() throws ParseException {
     switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
     case MENORQUE:
       jj_consume_token(MENORQUE);
@@ -310,9 +364,11 @@ public class CarumaLangParser implements CarumaLangParserConstants {
       jj_consume_token(-1);
       throw new ParseException();
     }
+      {if (true) return arbol.token(token);}
+    throw new Error("Missing return statement in function");
   }
 
-  final public void OperadorLogico() throws ParseException {
+  final public int OperadorLogico() throws ParseException {
     switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
     case DIOS:
       jj_consume_token(DIOS);
@@ -325,12 +381,18 @@ public class CarumaLangParser implements CarumaLangParserConstants {
       jj_consume_token(-1);
       throw new ParseException();
     }
+      {if (true) return arbol.token(token);}
+    throw new Error("Missing return statement in function");
   }
 
 // -------------------------------------------------------
 // 7. EXPRESIONES ARITMÉTICAS
 // -------------------------------------------------------
+
+// Los operadores de un mismo nivel se asocian a la izquierda: cada vuelta
+// del ciclo envuelve lo que ya está en la pila desde la marca
   final public void Expresion() throws ParseException {
+                     int m = arbol.marca(), k;
     Termino();
     label_5:
     while (true) {
@@ -355,11 +417,14 @@ public class CarumaLangParser implements CarumaLangParserConstants {
         jj_consume_token(-1);
         throw new ParseException();
       }
+                            k = arbol.token(token);
       Termino();
+                 arbol.nodo(ArbolSintactico.ARITMETICA, k, m);
     }
   }
 
   final public void Termino() throws ParseException {
+                   int m = arbol.marca(), k;
     Factor();
     label_6:
     while (true) {
@@ -384,7 +449,9 @@ public class CarumaLangParser implements CarumaLangParserConstants {
         jj_consume_token(-1);
         throw new ParseException();
       }
+                                 k = arbol.token(token);
       Factor();
+                arbol.nodo(ArbolSintactico.ARITMETICA, k, m);
     }
   }
 
@@ -392,21 +459,27 @@ public class CarumaLangParser implements CarumaLangParserConstants {
     switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
     case NUMERITO:
       jj_consume_token(NUMERITO);
+                     arbol.hoja(ArbolSintactico.NUMERO, token);
       break;
     case TEXTOLITERAL:
       jj_consume_token(TEXTOLITERAL);
+                     arbol.hoja(ArbolSintactico.TEXTO, token);
       break;
     case LETRALITERAL:
       jj_consume_token(LETRALITERAL);
+                     arbol.hoja(ArbolSintactico.LETRA, token);
       break;
     case MIXCHELADA:
       jj_consume_token(MIXCHELADA);
+                     arbol.hoja(ArbolSintactico.IDENTIFICADOR, token);
       break;
     case DIOS:
       jj_consume_token(DIOS);
+                     arbol.hoja(ArbolSintactico.BOOLEANO, token);
       break;
     case DIOSNO:
       jj_consume_token(DIOSNO);
+                     arbol.hoja(ArbolSintactico.BOOLEANO, token);
       break;
     case ABRIENDO:
       jj_consume_token(ABRIENDO);
@@ -424,7 +497,9 @@ public class CarumaLangParser implements CarumaLangParserConstants {
 // 8. IMPRESIÓN
 // -------------------------------------------------------
   final public void Impresion() throws ParseException {
+                     int m = arbol.marca(), k;
     jj_consume_token(HOLAHOLA);
+                 k = arbol.token(token);
     jj_consume_token(ABRIENDO);
     switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
     case DIOS:
@@ -441,6 +516,7 @@ public class CarumaLangParser implements CarumaLangParserConstants {
       ;
     }
     jj_consume_token(CERRANDO);
+      arbol.nodo(ArbolSintactico.IMPRESION, k, m);
   }
 
   final public void Argumentos() throws ParseException {
@@ -474,6 +550,12 @@ public class CarumaLangParser implements CarumaLangParserConstants {
     finally { jj_save(1, xla); }
   }
 
+  private boolean jj_3R_8() {
+    if (jj_3R_9()) return true;
+    if (jj_3R_10()) return true;
+    return false;
+  }
+
   private boolean jj_3_1() {
     if (jj_3R_8()) return true;
     return false;
@@ -485,6 +567,11 @@ public class CarumaLangParser implements CarumaLangParserConstants {
     return false;
   }
 
+  private boolean jj_3R_10() {
+    if (jj_scan_token(MIXCHELADA)) return true;
+    return false;
+  }
+
   private boolean jj_3R_9() {
     Token xsp;
     xsp = jj_scanpos;
@@ -501,17 +588,6 @@ public class CarumaLangParser implements CarumaLangParserConstants {
     return false;
   }
 
-  private boolean jj_3R_10() {
-    if (jj_scan_token(MIXCHELADA)) return true;
-    return false;
-  }
-
-  private boolean jj_3R_8() {
-    if (jj_3R_9()) return true;
-    if (jj_3R_10()) return true;
-    return false;
-  }
-
   /** Generated Token Manager. */
   public CarumaLangParserTokenManager token_source;
   SimpleCharStream jj_input_stream;
@@ -726,7 +802,7 @@ public class CarumaLangParser implements CarumaLangParserConstants {
   /** Generate ParseException. */
   public ParseException generateParseException() {
     jj_expentries.clear();
-    boolean[] la1tokens = new boolean[39];
+    boolean[] la1tokens = new boolean[40];
     if (jj_kind >= 0) {
       la1tokens[jj_kind] = true;
       jj_kind = -1;
@@ -743,7 +819,7 @@ public class CarumaLangParser implements CarumaLangParserConstants {
         }
       }
     }
-    for (int i = 0; i < 39; i++) {
+    for (int i = 0; i < 40; i++) {
       if (la1tokens[i]) {
         jj_expentry = new int[1];
         jj_expentry[0] = i;
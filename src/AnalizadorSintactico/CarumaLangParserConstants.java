@@ -78,6 +78,8 @@ public interface CarumaLangParserConstants {
   int TEXTOLITERAL = 37;
   /** RegularExpression Id. */
   int LETRALITERAL = 38;
+  /** RegularExpression Id. */
+  int INVALID = 39;
 
   /** Lexical state. */
   int DEFAULT = 0;
@@ -123,6 +125,7 @@ public interface CarumaLangParserConstants {
     "<NUMERITO>",
     "<TEXTOLITERAL>",
     "<LETRALITERAL>",
+    "<INVALID>",
   };
 
 }
@@ -641,7 +641,7 @@ public static final String[] jjstrLiteralImages = {
 "\163\164\157\160\120\154\145\141\163\145", "\104\111\117\123", "\104\111\117\123\116\117", 
 "\151\156\164\103\110\105\114\101\104\101", "\147\162\141\156\151\164\157", "\143\141\144\145\156\141", 
 "\143\141\162\141\143\164\145\162", "\75", "\74\75", "\76\75", "\75\75", "\76", "\74", "\53", "\55", "\52", "\57", 
-"\50", "\51", "\173", "\175", "\72", "\54", null, null, null, null, };
+"\50", "\51", "\173", "\175", "\72", "\54", null, null, null, null, null, };
 
 /** Lexer state names. */
 public static final String[] lexStateNames = {
@@ -651,7 +651,10 @@ static final long[] jjtoToken = {
    0x7fffffffe1L, 
 };
 static final long[] jjtoSkip = {
-   0x1eL, 
+   0x800000001eL, 
+};
+static final long[] jjtoSpecial = {
+   0x8000000000L, 
 };
 protected SimpleCharStream input_stream;
 private final int[] jjrounds = new int[11];
@@ -752,6 +755,7 @@ public Token getNextToken()
    {        
       jjmatchedKind = 0;
       matchedToken = jjFillToken();
+      matchedToken.specialToken = specialToken;
       return matchedToken;
    }
 
@@ -763,6 +767,10 @@ public Token getNextToken()
    jjmatchedKind = 0x7fffffff;
    jjmatchedPos = 0;
    curPos = jjMoveStringLiteralDfa0_0();
+   if (jjmatchedPos == 0 && jjmatchedKind > 39)
+   {
+      jjmatchedKind = 39;
+   }
    if (jjmatchedKind != 0x7fffffff)
    {
       if (jjmatchedPos + 1 < curPos)
@@ -770,10 +778,22 @@ public Token getNextToken()
       if ((jjtoToken[jjmatchedKind >> 6] & (1L << (jjmatchedKind & 077))) != 0L)
       {
          matchedToken = jjFillToken();
+         matchedToken.specialToken = specialToken;
          return matchedToken;
       }
       else
       {
+         if ((jjtoSpecial[jjmatchedKind >> 6] & (1L << (jjmatchedKind & 077))) != 0L)
+         {
+            matchedToken = jjFillToken();
+            if (specialToken == null)
+               specialToken = matchedToken;
+            else
+            {
+               matchedToken.specialToken = specialToken;
+               specialToken = (specialToken.next = matchedToken);
+            }
+         }
          continue EOFLoop;
       }
    }
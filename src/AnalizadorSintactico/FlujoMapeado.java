@@ -0,0 +1,721 @@
+package AnalizadorSintactico;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import Escaneo.Escaner;
+
+/**
+ * Flujo de caracteres sobre un archivo .crm mapeado en memoria.
+ *
+ * Sustituye a SimpleCharStream en los token managers: decodifica los bytes
+ * UTF-8 directamente del mapeo (con camino rápido para ASCII) y no guarda
+ * línea ni columna por carácter. Las posiciones son offsets de byte y la
+ * línea/columna se calculan solo cuando el token manager las pide, a partir
+ * de un índice de inicios de línea que se llena mientras se lee.
+ *
+ * Las posiciones reportadas son las mismas que las de SimpleCharStream:
+ * "\r\n", "\r" y "\n" terminan una línea y el tabulador avanza la columna
+ * hasta el siguiente múltiplo de tabSize.
+ *
+ * Además de readChar(), LexicoTabla puede avanzar de una vez sobre un tramo
+ * de espacios, de letras y dígitos o del contenido de un literal de texto.
+ * Las búsquedas las hace un Escaner (con la Vector API si está disponible)
+ * y los saltos de línea del tramo se registran en el índice igual que si
+ * se hubieran leído uno por uno.
+ *
+ * Para leer un archivo grande en paralelo (ver LexicoParalelo) se crea un
+ * flujo por trozo sobre el mismo mapeo, cada uno con sus líneas contadas
+ * desde 1, y al terminar unirTrozos() junta sus índices de líneas en el
+ * flujo del archivo entero.
+ */
+public class FlujoMapeado extends SimpleCharStream
+{
+  private static final char REEMPLAZO = '\uFFFD';
+  private static final Escaner ESCANER = Escaner.elegir();
+
+  private final ByteBuffer datos;
+  private final int limite;
+  private final int lineaInicial;
+  private final int columnaInicial;
+
+  /** Offset del último carácter leído (-1 si no se ha leído ninguno). */
+  private int actual = -1;
+  /** Offset del siguiente carácter a leer. */
+  private int siguiente = 0;
+  /** Offset del primer carácter del token actual. */
+  private int inicioToken = 0;
+  /** Mayor offset leído hasta ahora; más allá el índice de líneas no está construido. */
+  private int maximoLeido = -1;
+  /** Offset donde termina el carácter decodificado por la última llamada a decodificar(). */
+  private int finDecodificado;
+
+  private int[] inicioLinea = new int[256];
+  /** Offset del primer tabulador o byte no ASCII de cada línea; antes de él la columna es directa. */
+  private int[] primerEspecial = new int[256];
+  private int totalLineas = 1;
+  private static final int SIN_ESPECIALES = Integer.MAX_VALUE;
+  private byte[] copia = new byte[64];
+  /** Pool de lexemas compartidos; null si cada token lleva su propio String. */
+  private TablaNombres tabla;
+
+  // Cachés para consultas consecutivas sobre la misma línea
+  private int lineaCache = 0;
+  private int columnaCacheOffset = -1;
+  private int columnaCacheValor = 0;
+  private int columnaCacheLinea = -1;
+
+  // Ajustes de adjustBeginLineColumn: desde qué offset valen, en qué línea
+  // del índice empiezan y cuánto corren la línea y la columna
+  private int[] ajusteOffset = new int[4];
+  private int[] ajusteIndice = new int[4];
+  private int[] ajusteLinea = new int[4];
+  private int[] ajusteColumna = new int[4];
+  private int totalAjustes = 0;
+
+  /** Constructor. */
+  public FlujoMapeado(Path archivo) throws IOException
+  {
+     this(archivo, 1, 1);
+  }
+
+  /** Constructor. */
+  public FlujoMapeado(Path archivo, int startline, int startcolumn) throws IOException
+  {
+     super((java.io.Reader) null, startline, startcolumn, 1);
+     try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+        long tamano = canal.size();
+        if (tamano > Integer.MAX_VALUE) {
+           throw new IOException("Archivo demasiado grande para mapearse: " + archivo);
+        }
+        datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamano);
+     }
+     limite = datos.limit();
+     lineaInicial = startline;
+     columnaInicial = startcolumn;
+     inicioLinea[0] = 0;
+     primerEspecial[0] = SIN_ESPECIALES;
+  }
+
+  /**
+   * Flujo sobre los bytes [desde, hasta) del archivo de otro flujo, sin
+   * copiarlos. desde debe ser el inicio de una línea; salvo en el primer
+   * trozo, las líneas se cuentan desde 1.
+   */
+  FlujoMapeado(FlujoMapeado archivo, int desde, int hasta)
+  {
+     super((java.io.Reader) null, 1, 1, 1);
+     ByteBuffer trozo = archivo.datos.duplicate();
+     trozo.limit(hasta);
+     trozo.position(desde);
+     datos = trozo.slice();
+     limite = datos.limit();
+     lineaInicial = desde == 0 ? archivo.lineaInicial : 1;
+     columnaInicial = desde == 0 ? archivo.columnaInicial : 1;
+     inicioLinea[0] = 0;
+     primerEspecial[0] = SIN_ESPECIALES;
+  }
+
+  /** Start. */
+  @Override
+  public char BeginToken() throws IOException
+  {
+     inicioToken = -1;
+     char c = readChar();
+     inicioToken = actual;
+     return c;
+  }
+
+  /** Read a character. */
+  @Override
+  public char readChar() throws IOException
+  {
+     if (siguiente >= limite) {
+        // Igual que SimpleCharStream: el token vacío de EOF queda sobre el último carácter
+        if (inicioToken == -1)
+           inicioToken = actual;
+        throw new IOException();
+     }
+
+     actual = siguiente;
+     int b = datos.get(actual);
+     char c;
+     if (b >= 0) {
+        c = (char) b;
+        siguiente = actual + 1;
+     } else {
+        c = decodificar(actual);
+        siguiente = finDecodificado;
+     }
+
+     if (actual > maximoLeido) {
+        maximoLeido = actual;
+        if ((b < 0 || c == '\t') && primerEspecial[totalLineas - 1] == SIN_ESPECIALES)
+           primerEspecial[totalLineas - 1] = actual;
+        if (c == '\n' || (c == '\r' && (siguiente >= limite || datos.get(siguiente) != '\n')))
+           agregarInicioLinea(siguiente);
+     }
+     return c;
+  }
+
+  /** Backup a number of characters. */
+  @Override
+  public void backup(int amount)
+  {
+     for (int i = 0; i < amount; i++) {
+        siguiente = actual;
+        actual = anterior(actual);
+     }
+  }
+
+  /** Get token literal value. */
+  @Override
+  public String GetImage()
+  {
+     if (actual < inicioToken)
+        return "";
+     return texto(inicioToken, siguiente, tabla);
+  }
+
+  /** Get the suffix. */
+  @Override
+  public char[] GetSuffix(int len)
+  {
+     int desde = actual;
+     for (int i = 1; i < len && desde > 0; i++)
+        desde = anterior(desde);
+     char[] sufijo = texto(desde, siguiente, null).toCharArray();
+     if (sufijo.length == len)
+        return sufijo;
+     char[] ret = new char[len];
+     System.arraycopy(sufijo, Math.max(0, sufijo.length - len), ret,
+                      Math.max(0, len - sufijo.length), Math.min(len, sufijo.length));
+     return ret;
+  }
+
+  /** Get token end column number. */
+  @Override
+  public int getEndColumn() {
+     return columnaDe(actual);
+  }
+
+  /** Get token end line number. */
+  @Override
+  public int getEndLine() {
+     return lineaDe(actual);
+  }
+
+  /** Get token beginning column number. */
+  @Override
+  public int getBeginColumn() {
+     return columnaDe(inicioToken);
+  }
+
+  /** Get token beginning line number. */
+  @Override
+  public int getBeginLine() {
+     return lineaDe(inicioToken);
+  }
+
+  /** @deprecated @see #getEndColumn */
+  @Override
+  @Deprecated
+  public int getColumn() {
+     return getEndColumn();
+  }
+
+  /** @deprecated @see #getEndLine */
+  @Override
+  @Deprecated
+  public int getLine() {
+     return getEndLine();
+  }
+
+  /**
+   * Method to adjust line and column numbers for the start of a token.
+   *
+   * Igual que en SimpleCharStream, el token actual pasa a empezar en
+   * newLine y newCol: desde su primer byte las líneas se corren en la
+   * diferencia, y las columnas también hasta el fin de la línea donde
+   * empieza. El índice de líneas no cambia; los ajustes se guardan aparte
+   * y se suman al consultar. A diferencia de SimpleCharStream, los
+   * tabuladores que siguen en esa línea avanzan hasta los múltiplos de
+   * tabSize de la columna sin ajustar.
+   */
+  @Override
+  public void adjustBeginLineColumn(int newLine, int newCol)
+  {
+     if (inicioToken < 0)
+        return;
+     if (totalAjustes == ajusteOffset.length) {
+        ajusteOffset = Arrays.copyOf(ajusteOffset, totalAjustes * 2);
+        ajusteIndice = Arrays.copyOf(ajusteIndice, totalAjustes * 2);
+        ajusteLinea = Arrays.copyOf(ajusteLinea, totalAjustes * 2);
+        ajusteColumna = Arrays.copyOf(ajusteColumna, totalAjustes * 2);
+     }
+     ajusteLinea[totalAjustes] = newLine - lineaDe(inicioToken);
+     ajusteColumna[totalAjustes] = newCol - columnaDe(inicioToken);
+     ajusteOffset[totalAjustes] = inicioToken;
+     ajusteIndice[totalAjustes] = indiceLinea(inicioToken);
+     totalAjustes++;
+  }
+
+  /** Reset buffer when finished. */
+  @Override
+  public void Done()
+  {
+     inicioLinea = null;
+     primerEspecial = null;
+  }
+
+  /**
+   * Activa el pool de lexemas: a partir de aquí GetImage devuelve el mismo
+   * String para lexemas ASCII iguales en lugar de crear uno por token.
+   */
+  public void compartirImagenes(TablaNombres tabla)
+  {
+     this.tabla = tabla;
+  }
+
+  /** Offset del primer byte del token actual. */
+  public int offsetInicioToken()
+  {
+     return inicioToken;
+  }
+
+  /** Offset siguiente al último byte del token actual. */
+  public int offsetFinToken()
+  {
+     return siguiente;
+  }
+
+  /**
+   * Texto de los bytes [desde, hasta) ya leídos, decodificado igual que
+   * GetImage (y compartido si hay pool de lexemas).
+   */
+  public String imagen(int desde, int hasta)
+  {
+     return texto(desde, hasta, tabla);
+  }
+
+  /** Línea del carácter que contiene el offset p. */
+  public int lineaEn(int p)
+  {
+     return lineaDe(p);
+  }
+
+  /** Columna del carácter que contiene el offset p. */
+  public int columnaEn(int p)
+  {
+     return columnaDe(p);
+  }
+
+  /** Número de bytes del archivo mapeado. */
+  public int longitud()
+  {
+     return limite;
+  }
+
+  /**
+   * Toma como propio el índice de líneas de los trozos, ya leídos hasta el
+   * final, que empiezan en los offsets inicios y cubren el archivo en orden.
+   * Después las posiciones se consultan como si este flujo hubiera leído
+   * el archivo entero.
+   */
+  void unirTrozos(FlujoMapeado[] trozos, int[] inicios)
+  {
+     int total = 0;
+     for (FlujoMapeado trozo : trozos)
+        total += trozo.totalLineas;
+     int[] lineas = new int[total];
+     int[] especiales = new int[total];
+     int n = 0;
+     for (int k = 0; k < trozos.length; k++) {
+        FlujoMapeado trozo = trozos[k];
+        if (trozo.siguiente != trozo.limite)
+           throw new IllegalStateException("El trozo " + k + " no se leyó hasta el final");
+        // Un trozo que no es el último termina en un salto de línea, así
+        // que su último inicio de línea es el primero del siguiente
+        int copiar = trozo.totalLineas;
+        if (k + 1 < trozos.length) {
+           if (trozo.inicioLinea[copiar - 1] != trozo.limite)
+              throw new IllegalStateException("El trozo " + k + " no termina en un salto de línea");
+           copiar--;
+        }
+        for (int i = 0; i < copiar; i++) {
+           lineas[n] = trozo.inicioLinea[i] + inicios[k];
+           especiales[n] = trozo.primerEspecial[i] == SIN_ESPECIALES ? SIN_ESPECIALES
+                                                                     : trozo.primerEspecial[i] + inicios[k];
+           n++;
+        }
+     }
+     inicioLinea = lineas;
+     primerEspecial = especiales;
+     totalLineas = n;
+     // Queda en el EOF, igual que después de leer el archivo de corrido
+     FlujoMapeado ultimo = trozos[trozos.length - 1];
+     int base = inicios[trozos.length - 1];
+     maximoLeido = ultimo.maximoLeido + base;
+     actual = ultimo.actual + base;
+     siguiente = limite;
+     inicioToken = ultimo.inicioToken + base;
+     lineaCache = 0;
+     columnaCacheLinea = -1;
+     columnaCacheOffset = -1;
+  }
+
+  /** Nombre del escaner que usan los avances por tramos en esta JVM. */
+  public static String escaner()
+  {
+     return ESCANER.nombre();
+  }
+
+  // -------------------------------------------------------
+  // Avance por tramos
+  // -------------------------------------------------------
+
+  /**
+   * Avanza sobre los espacios, tabuladores y saltos de línea que siguen al
+   * último carácter leído; el siguiente BeginToken() empieza después de
+   * ellos. Devuelve cuántos bytes avanzó.
+   */
+  int saltarEspacios()
+  {
+     return avanzarHasta(ESCANER.finEspacios(datos, siguiente, limite), true);
+  }
+
+  /** Avanza sobre las letras ASCII y dígitos que siguen; devuelve cuántos. */
+  int avanzarAlfanumericos()
+  {
+     return avanzarHasta(ESCANER.finAlfanumericos(datos, siguiente, limite), false);
+  }
+
+  /** Avanza sobre los dígitos que siguen; devuelve cuántos. */
+  int avanzarDigitos()
+  {
+     return avanzarHasta(ESCANER.finDigitos(datos, siguiente, limite), false);
+  }
+
+  /**
+   * Avanza sobre los caracteres ASCII que siguen hasta unas comillas, un
+   * salto de línea, un tabulador o un byte no ASCII, que se dejan para
+   * readChar(); devuelve cuántos.
+   */
+  int avanzarTextoSimple()
+  {
+     return avanzarHasta(ESCANER.finTextoSimple(datos, siguiente, limite), false);
+  }
+
+  /** Si los bytes desde el offset son los caracteres ASCII de palabra. */
+  boolean contiene(int desde, char[] palabra)
+  {
+     if (desde + palabra.length > limite)
+        return false;
+     for (int i = 0; i < palabra.length; i++) {
+        if (datos.get(desde + i) != palabra[i])
+           return false;
+     }
+     return true;
+  }
+
+  // Los bytes del tramo son ASCII, así que cada uno es un carácter
+  private int avanzarHasta(int fin, boolean conSaltos)
+  {
+     int avance = fin - siguiente;
+     if (avance == 0)
+        return 0;
+     if (fin - 1 > maximoLeido) {
+        if (conSaltos)
+           registrarSaltos(Math.max(siguiente, maximoLeido + 1), fin);
+        maximoLeido = fin - 1;
+     }
+     actual = fin - 1;
+     siguiente = fin;
+     return avance;
+  }
+
+  /**
+   * Registra los inicios de línea y el primer tabulador de cada línea en
+   * [desde, hasta), lo mismo que readChar() al leer esos bytes por primera vez.
+   */
+  private void registrarSaltos(int desde, int hasta)
+  {
+     for (int p = ESCANER.siguienteSalto(datos, desde, hasta); p < hasta;
+          p = ESCANER.siguienteSalto(datos, p + 1, hasta)) {
+        byte b = datos.get(p);
+        if (b == '\t') {
+           if (primerEspecial[totalLineas - 1] == SIN_ESPECIALES)
+              primerEspecial[totalLineas - 1] = p;
+        } else if (b == '\n' || p + 1 >= limite || datos.get(p + 1) != '\n') {
+           agregarInicioLinea(p + 1);
+        }
+     }
+  }
+
+  // -------------------------------------------------------
+  // Decodificación UTF-8
+  // -------------------------------------------------------
+
+  private static boolean esContinuacion(int b)
+  {
+     return (b & 0xC0) == 0x80;
+  }
+
+  /** Byte en p sin signo, o 0 fuera del archivo. */
+  int byteEn(int p)
+  {
+     return p < limite ? datos.get(p) & 0xFF : 0;
+  }
+
+  /** Largo que anuncia el byte inicial (0 si no puede iniciar una secuencia). */
+  private static int largoEsperado(int b)
+  {
+     if (b < 0x80) return 1;
+     if (b >= 0xC2 && b <= 0xDF) return 2;
+     if (b >= 0xE0 && b <= 0xEF) return 3;
+     if (b >= 0xF0 && b <= 0xF4) return 4;
+     return 0;
+  }
+
+  /** Si el segundo byte es válido para el byte inicial (excluye formas largas y surrogates). */
+  private static boolean segundoValido(int inicial, int b)
+  {
+     switch (inicial) {
+        case 0xE0: return b >= 0xA0 && b <= 0xBF;
+        case 0xED: return b >= 0x80 && b <= 0x9F;
+        case 0xF0: return b >= 0x90 && b <= 0xBF;
+        case 0xF4: return b >= 0x80 && b <= 0x8F;
+        default:   return esContinuacion(b);
+     }
+  }
+
+  /**
+   * Largo de la secuencia UTF-8 válida que empieza en p, o 0 si el byte no
+   * inicia una secuencia válida.
+   */
+  private int largoSecuencia(int p)
+  {
+     int b = byteEn(p);
+     int largo = largoEsperado(b);
+     if (largo <= 1) return largo;
+
+     if (p + largo > limite || !segundoValido(b, byteEn(p + 1))) return 0;
+     for (int i = 2; i < largo; i++)
+        if (!esContinuacion(byteEn(p + i))) return 0;
+     return largo;
+  }
+
+  /**
+   * Bytes que se reemplazan por un solo U+FFFD cuando la secuencia en p es
+   * inválida: el inicio más la parte que sí era válida, como hace el
+   * decodificador UTF-8 de Java.
+   */
+  private int largoMalformado(int p)
+  {
+     int b = byteEn(p);
+     int largo = largoEsperado(b);
+     if (largo <= 1 || p + 1 >= limite || !segundoValido(b, byteEn(p + 1)))
+        return 1;
+     int k = 2;
+     while (k < largo && p + k < limite && esContinuacion(byteEn(p + k)))
+        k++;
+     return k;
+  }
+
+  private int puntoDeCodigo(int p, int largo)
+  {
+     int cp = byteEn(p) & (0xFF >> (largo + 1));
+     for (int i = 1; i < largo; i++)
+        cp = (cp << 6) | (byteEn(p + i) & 0x3F);
+     return cp;
+  }
+
+  /**
+   * Decodifica el carácter que empieza en p y deja en finDecodificado el
+   * offset del siguiente. Un carácter fuera del BMP ocupa dos posiciones:
+   * el surrogate alto vive en el byte inicial y el bajo en el byte siguiente.
+   */
+  private char decodificar(int p)
+  {
+     int b = datos.get(p);
+     if (b >= 0) {
+        finDecodificado = p + 1;
+        return (char) b;
+     }
+
+     if (esContinuacion(b & 0xFF) && p > 0 && largoSecuencia(p - 1) == 4) {
+        finDecodificado = p + 3;
+        return Character.lowSurrogate(puntoDeCodigo(p - 1, 4));
+     }
+
+     int largo = largoSecuencia(p);
+     if (largo == 0) {
+        finDecodificado = p + largoMalformado(p);
+        return REEMPLAZO;
+     }
+     if (largo == 4) {
+        finDecodificado = p + 1;
+        return Character.highSurrogate(puntoDeCodigo(p, 4));
+     }
+     finDecodificado = p + largo;
+     return (char) puntoDeCodigo(p, largo);
+  }
+
+  /** Offset del carácter anterior al que empieza en p (-1 si p es el primero). */
+  private int anterior(int p)
+  {
+     if (p <= 0)
+        return -1;
+     if (datos.get(p - 1) >= 0)
+        return p - 1;
+
+     // p es el surrogate bajo de una secuencia de 4 bytes
+     if (esContinuacion(byteEn(p)) && largoSecuencia(p - 1) == 4)
+        return p - 1;
+
+     int q = p - 1;
+     while (q > 0 && p - q < 4 && esContinuacion(byteEn(q)))
+        q--;
+     int largo = largoSecuencia(q);
+     if (largo == 4 && q + 4 == p)
+        return q + 1;
+     if (largo > 0 && q + largo == p)
+        return q;
+     if (largo == 0 && q + largoMalformado(q) == p)
+        return q;
+     return p - 1;
+  }
+
+  private String texto(int desde, int hasta, TablaNombres compartidos)
+  {
+     if (desde < 0)
+        desde = 0;
+     int largo = hasta - desde;
+     if (largo > copia.length)
+        copia = new byte[Math.max(largo, copia.length * 2)];
+     datos.get(desde, copia, 0, largo);
+
+     // Camino rápido: un lexema ASCII se copia tal cual
+     boolean ascii = true;
+     for (int i = 0; i < largo && ascii; i++)
+        ascii = copia[i] >= 0;
+     if (ascii)
+        return compartidos != null ? compartidos.obtener(copia, largo)
+                             : new String(copia, 0, largo, StandardCharsets.ISO_8859_1);
+
+     char[] chars = new char[hasta - desde];
+     int n = 0;
+     for (int p = desde; p < hasta; ) {
+        int b = datos.get(p);
+        if (b >= 0) {
+           chars[n++] = (char) b;
+           p++;
+        } else {
+           chars[n++] = decodificar(p);
+           p = finDecodificado;
+        }
+     }
+     return new String(chars, 0, n);
+  }
+
+  // -------------------------------------------------------
+  // Línea y columna
+  // -------------------------------------------------------
+
+  private void agregarInicioLinea(int offset)
+  {
+     if (totalLineas == inicioLinea.length) {
+        inicioLinea = Arrays.copyOf(inicioLinea, totalLineas * 2);
+        primerEspecial = Arrays.copyOf(primerEspecial, totalLineas * 2);
+     }
+     primerEspecial[totalLineas] = SIN_ESPECIALES;
+     inicioLinea[totalLineas++] = offset;
+  }
+
+  /** Índice (base 0) de la línea que contiene el offset p. */
+  private int indiceLinea(int p)
+  {
+     int i = lineaCache;
+     if (inicioLinea[i] <= p && (i + 1 == totalLineas || inicioLinea[i + 1] > p))
+        return i;
+     // La lectura es secuencial: casi siempre la consulta cae en la línea siguiente
+     i++;
+     if (i < totalLineas && inicioLinea[i] <= p && (i + 1 == totalLineas || inicioLinea[i + 1] > p))
+        return lineaCache = i;
+
+     int bajo = 0, alto = totalLineas - 1;
+     while (bajo < alto) {
+        int medio = (bajo + alto + 1) >>> 1;
+        if (inicioLinea[medio] <= p)
+           bajo = medio;
+        else
+           alto = medio - 1;
+     }
+     return lineaCache = bajo;
+  }
+
+  private int lineaDe(int p)
+  {
+     if (p < 0)
+        return 0;
+     int linea = lineaInicial + indiceLinea(p);
+     for (int i = 0; i < totalAjustes; i++) {
+        if (ajusteOffset[i] <= p)
+           linea += ajusteLinea[i];
+     }
+     return linea;
+  }
+
+  private int columnaDe(int p)
+  {
+     if (p < 0)
+        return 0;
+     int columna = columnaSinAjustes(p);
+     for (int i = 0; i < totalAjustes; i++) {
+        if (ajusteOffset[i] <= p && ajusteIndice[i] == indiceLinea(p))
+           columna += ajusteColumna[i];
+     }
+     return columna;
+  }
+
+  private int columnaSinAjustes(int p)
+  {
+     int indice = indiceLinea(p);
+     int base = indice == 0 ? columnaInicial - 1 : 0;
+     if (p < primerEspecial[indice])
+        return base + (p - inicioLinea[indice]) + 1;
+
+     int desde;
+     int columna;
+     if (indice == columnaCacheLinea && columnaCacheOffset <= p) {
+        if (columnaCacheOffset == p)
+           return columnaCacheValor;
+        desde = columnaCacheOffset;
+        decodificar(desde);
+        desde = finDecodificado;
+        columna = columnaCacheValor;
+     } else {
+        desde = inicioLinea[indice];
+        columna = base;
+     }
+
+     for (int q = desde; ; q = finDecodificado) {
+        char c = decodificar(q);
+        columna++;
+        if (c == '\t') {
+           columna--;
+           columna += (tabSize - (columna % tabSize));
+        }
+        if (finDecodificado > p) {
+           columnaCacheLinea = indice;
+           columnaCacheOffset = q;
+           columnaCacheValor = columna;
+           return columna;
+        }
+     }
+  }
+}
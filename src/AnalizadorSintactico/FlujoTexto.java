@@ -0,0 +1,297 @@
+package AnalizadorSintactico;
+
+import java.io.IOException;
+
+/**
+ * Flujo de caracteres sobre un texto en memoria que puede empezar en
+ * cualquier punto del archivo.
+ *
+ * Es el flujo de LexicoIncremental: el texto de un editor cambia en cada
+ * pulsación, así que no hay archivo que mapear, y el análisis se retoma a
+ * mitad del archivo desde el inicio de un token cuya línea y columna ya se
+ * conocen. Las posiciones son índices de char dentro del texto.
+ *
+ * Igual que FlujoMapeado, no guarda línea ni columna por carácter: se
+ * calculan al pedirlas avanzando desde el último inicio de token consultado,
+ * con las mismas reglas que SimpleCharStream ("\r\n", "\r" y "\n" terminan
+ * una línea y el tabulador avanza hasta el siguiente múltiplo de tabSize).
+ */
+public class FlujoTexto extends SimpleCharStream
+{
+  private CharSequence texto;
+  private int limite;
+
+  /** Offset del último carácter leído. */
+  private int actual;
+  /** Offset del siguiente carácter a leer. */
+  private int siguiente;
+  /** Offset del primer carácter del token actual. */
+  private int inicioToken;
+  /** Mayor offset que se intentó leer, incluido el fin del texto. */
+  private int maximoIntentado;
+
+  // Punto de partida: la posición antes de leer el carácter en desde
+  private int desde;
+  private int lineaDesde;
+  private int columnaDesde;
+
+  // Estado después de leer el carácter en ancla, como lo deja UpdateLineColumn
+  private int ancla;
+  private int lineaAncla;
+  private int columnaAncla;
+  private boolean crAncla;
+  private boolean lfAncla;
+
+  // Resultado de la última llamada a ubicar()
+  private int lineaCalculada;
+  private int columnaCalculada;
+
+  /** Constructor. */
+  public FlujoTexto(CharSequence texto)
+  {
+     this(texto, 0, 1, 1);
+  }
+
+  /**
+   * Flujo que empieza en el offset desde, cuyo carácter está en la línea y
+   * columna dadas. Ese carácter no puede ser un salto de línea.
+   */
+  public FlujoTexto(CharSequence texto, int desde, int startline, int startcolumn)
+  {
+     super((java.io.Reader) null, startline, startcolumn, 1);
+     reiniciar(texto, desde, startline, startcolumn);
+  }
+
+  /** Reposiciona el flujo, igual que el constructor, sin crear otro. */
+  public void reiniciar(CharSequence texto, int desde, int startline, int startcolumn)
+  {
+     this.texto = texto;
+     this.limite = texto.length();
+     this.desde = desde;
+     this.lineaDesde = startline;
+     this.columnaDesde = startcolumn;
+     actual = desde - 1;
+     siguiente = desde;
+     inicioToken = desde;
+     maximoIntentado = desde - 1;
+     anclarEnDesde();
+  }
+
+  /** Start. */
+  @Override
+  public char BeginToken() throws IOException
+  {
+     inicioToken = -1;
+     char c = readChar();
+     inicioToken = actual;
+     return c;
+  }
+
+  /** Read a character. */
+  @Override
+  public char readChar() throws IOException
+  {
+     if (siguiente > maximoIntentado)
+        maximoIntentado = siguiente;
+     if (siguiente >= limite) {
+        // Igual que SimpleCharStream: el token vacío de EOF queda sobre el último carácter
+        if (inicioToken == -1)
+           inicioToken = actual;
+        throw new IOException();
+     }
+     actual = siguiente++;
+     return texto.charAt(actual);
+  }
+
+  /** Backup a number of characters. */
+  @Override
+  public void backup(int amount)
+  {
+     actual -= amount;
+     siguiente -= amount;
+  }
+
+  /** Get token literal value. */
+  @Override
+  public String GetImage()
+  {
+     if (actual < inicioToken)
+        return "";
+     return texto.subSequence(Math.max(inicioToken, 0), actual + 1).toString();
+  }
+
+  /** Get the suffix. */
+  @Override
+  public char[] GetSuffix(int len)
+  {
+     char[] ret = new char[len];
+     for (int i = 0; i < len; i++) {
+        int p = actual - len + 1 + i;
+        if (p >= 0)
+           ret[i] = texto.charAt(p);
+     }
+     return ret;
+  }
+
+  /** Get token end column number. */
+  @Override
+  public int getEndColumn() {
+     ubicar(actual, false);
+     return columnaCalculada;
+  }
+
+  /** Get token end line number. */
+  @Override
+  public int getEndLine() {
+     ubicar(actual, false);
+     return lineaCalculada;
+  }
+
+  /** Get token beginning column number. */
+  @Override
+  public int getBeginColumn() {
+     ubicar(inicioToken, true);
+     return columnaCalculada;
+  }
+
+  /** Get token beginning line number. */
+  @Override
+  public int getBeginLine() {
+     ubicar(inicioToken, true);
+     return lineaCalculada;
+  }
+
+  /** @deprecated @see #getEndColumn */
+  @Override
+  @Deprecated
+  public int getColumn() {
+     return getEndColumn();
+  }
+
+  /** @deprecated @see #getEndLine */
+  @Override
+  @Deprecated
+  public int getLine() {
+     return getEndLine();
+  }
+
+  /**
+   * Method to adjust line and column numbers for the start of a token.
+   *
+   * Igual que en SimpleCharStream, el token actual pasa a empezar en
+   * newLine y newCol y las posiciones que siguen se cuentan desde ahí: el
+   * punto de partida del flujo se mueve al inicio del token.
+   */
+  @Override
+  public void adjustBeginLineColumn(int newLine, int newCol)
+  {
+     if (inicioToken < 0)
+        return;
+     desde = inicioToken;
+     lineaDesde = newLine;
+     columnaDesde = newCol;
+     anclarEnDesde();
+  }
+
+  /** Reset buffer when finished. */
+  @Override
+  public void Done()
+  {
+     texto = null;
+  }
+
+  /** Offset del primer carácter del token actual. */
+  public int offsetInicioToken()
+  {
+     return inicioToken;
+  }
+
+  /** Offset siguiente al último carácter del token actual. */
+  public int offsetFinToken()
+  {
+     return siguiente;
+  }
+
+  /**
+   * Offset siguiente al último carácter que se intentó leer desde la
+   * última llamada a reiniciarAlcance(): hasta ahí miró el token manager
+   * para decidir el token, aunque después retrocediera.
+   */
+  public int alcance()
+  {
+     return maximoIntentado + 1;
+  }
+
+  /** Empieza a medir el alcance del siguiente token. */
+  public void reiniciarAlcance()
+  {
+     maximoIntentado = siguiente - 1;
+  }
+
+  // -------------------------------------------------------
+  // Línea y columna
+  // -------------------------------------------------------
+
+  private void anclarEnDesde()
+  {
+     ancla = desde - 1;
+     lineaAncla = lineaDesde;
+     columnaAncla = columnaDesde - 1;
+     crAncla = false;
+     lfAncla = false;
+  }
+
+  /**
+   * Deja en lineaCalculada y columnaCalculada la posición del carácter p,
+   * avanzando desde el ancla. Si mover es true el ancla queda en p; las
+   * consultas de inicio de token avanzan en orden, así que el recorrido
+   * total es lineal en el largo del texto.
+   */
+  private void ubicar(int p, boolean mover)
+  {
+     if (p < 0) {
+        lineaCalculada = 0;
+        columnaCalculada = 0;
+        return;
+     }
+     if (p < ancla)
+        anclarEnDesde();
+
+     int linea = lineaAncla;
+     int columna = columnaAncla;
+     boolean cr = crAncla;
+     boolean lf = lfAncla;
+     for (int q = ancla + 1; q <= p; q++) {
+        char c = texto.charAt(q);
+        columna++;
+        if (lf) {
+           lf = false;
+           linea += (columna = 1);
+        } else if (cr) {
+           cr = false;
+           if (c == '\n')
+              lf = true;
+           else
+              linea += (columna = 1);
+        }
+        if (c == '\r')
+           cr = true;
+        else if (c == '\n')
+           lf = true;
+        else if (c == '\t') {
+           columna--;
+           columna += (tabSize - (columna % tabSize));
+        }
+     }
+
+     if (mover) {
+        ancla = p;
+        lineaAncla = linea;
+        columnaAncla = columna;
+        crAncla = cr;
+        lfAncla = lf;
+     }
+     lineaCalculada = linea;
+     columnaCalculada = columna;
+  }
+}
@@ -0,0 +1,140 @@
+package AnalizadorSintactico;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Huella de un conjunto de clases compiladas, para las caches que guardan
+ * resultados del analizador o del compilador (CacheAnalisis y el .crmc de
+ * ProgramaCompilado).
+ *
+ * Las clases no se listan a mano: se enumeran los .class del directorio o
+ * del jar de donde se cargó una clase ancla, y entran los que empiezan con
+ * alguno de los prefijos pedidos (por ejemplo "AnalizadorSintactico/" para
+ * el paquete entero, o "AnalisisSintactico$" para las clases anidadas de
+ * esa). Así una clase nueva del paquete, o una anidada, entra sola en la
+ * huella y un cambio en ella invalida las entradas guardadas.
+ */
+public final class HuellaClases
+{
+  private HuellaClases()
+  {
+  }
+
+  /**
+   * SHA-256 de version seguida del nombre y los bytes de cada .class que
+   * empieza con alguno de los prefijos, en orden de nombre, buscados junto
+   * a la clase ancla. Si ese origen no es un directorio ni un jar (por
+   * ejemplo una imagen de módulos) se usa solo la clase ancla.
+   */
+  public static byte[] de(Class<?> ancla, int version, String... prefijos) throws IOException
+  {
+     // Ordenados y sin repetir aunque dos prefijos coincidan
+     TreeSet<String> recursos = new TreeSet<>(clasesJunto(ancla, prefijos));
+     if (recursos.isEmpty())
+        recursos.add(recursoDe(ancla));
+
+     MessageDigest sha = sha256();
+     sha.update(new byte[] { (byte) (version >>> 24), (byte) (version >>> 16),
+                             (byte) (version >>> 8), (byte) version });
+     byte[] buffer = new byte[8192];
+     ClassLoader cargador = ancla.getClassLoader();
+     for (String recurso : recursos) {
+        sha.update(recurso.getBytes(StandardCharsets.UTF_8));
+        try (InputStream in = cargador.getResourceAsStream(recurso)) {
+           if (in == null)
+              continue;
+           for (int n; (n = in.read(buffer)) > 0; )
+              sha.update(buffer, 0, n);
+        }
+     }
+     return sha.digest();
+  }
+
+  // Nombres de recurso de los .class del origen de la clase ancla que
+  // empiezan con alguno de los prefijos
+  private static List<String> clasesJunto(Class<?> ancla, String[] prefijos) throws IOException
+  {
+     String propio = recursoDe(ancla);
+     URL url = ancla.getClassLoader().getResource(propio);
+     List<String> recursos = new ArrayList<>();
+     if (url == null)
+        return recursos;
+
+     if (url.getProtocol().equals("file")) {
+        Path raiz;
+        try {
+           raiz = Paths.get(url.toURI());
+        } catch (URISyntaxException e) {
+           throw new IOException("Ruta de clase invalida: " + url, e);
+        }
+        // Subir un directorio por cada paquete del nombre de la ancla
+        for (int i = 0; i <= propio.length() - propio.replace("/", "").length(); i++)
+           raiz = raiz.getParent();
+        // Solo se listan los directorios de los prefijos, sin bajar a otros
+        for (String prefijo : prefijos) {
+           String paquete = prefijo.substring(0, prefijo.lastIndexOf('/') + 1);
+           Path directorio = raiz.resolve(paquete);
+           if (!Files.isDirectory(directorio))
+              continue;
+           try (Stream<Path> archivos = Files.list(directorio)) {
+              archivos.map(p -> paquete + p.getFileName())
+                      .filter(nombre -> nombre.endsWith(".class") && nombre.startsWith(prefijo))
+                      .forEach(recursos::add);
+           }
+        }
+     } else if (url.getProtocol().equals("jar")) {
+        JarURLConnection conexion = (JarURLConnection) url.openConnection();
+        conexion.setUseCaches(false);
+        try (JarFile jar = conexion.getJarFile()) {
+           Enumeration<JarEntry> entradas = jar.entries();
+           while (entradas.hasMoreElements()) {
+              String nombre = entradas.nextElement().getName();
+              if (nombre.endsWith(".class") && empiezaCon(nombre, prefijos))
+                 recursos.add(nombre);
+           }
+        }
+     }
+     return recursos;
+  }
+
+  private static boolean empiezaCon(String nombre, String[] prefijos)
+  {
+     for (String prefijo : prefijos) {
+        if (nombre.startsWith(prefijo))
+           return true;
+     }
+     return false;
+  }
+
+  private static String recursoDe(Class<?> clase)
+  {
+     return clase.getName().replace('.', '/') + ".class";
+  }
+
+  private static MessageDigest sha256()
+  {
+     try {
+        return MessageDigest.getInstance("SHA-256");
+     } catch (NoSuchAlgorithmException e) {
+        // Toda JVM debe incluir SHA-256
+        throw new IllegalStateException(e);
+     }
+  }
+}
@@ -0,0 +1,498 @@
+package AnalizadorSintactico;
+
+import java.util.Arrays;
+
+/**
+ * Tokens de un texto que se edita, actualizados de forma incremental.
+ *
+ * Después de cada edición (offset, caracteres quitados, texto insertado)
+ * se vuelve a leer solo desde el último token que no miró la zona editada,
+ * con CarumaLangParserTokenManager sobre un FlujoTexto posicionado en ese
+ * token, y se deja de leer en cuanto un token nuevo coincide con uno viejo
+ * pasada la edición y en una línea posterior. Desde ahí los tokens viejos
+ * siguen valiendo: el token manager no guarda estado entre tokens, así que
+ * el mismo texto desde el mismo punto produce los mismos tokens, solo
+ * corridos en offset y en línea.
+ *
+ * Para saber qué tokens miraron la zona editada, cada token guarda su
+ * alcance: hasta dónde leyó el token manager al reconocerlo, que puede
+ * pasar del fin del token (por ejemplo "12." antes de ver que no sigue un
+ * dígito).
+ *
+ * El texto y los tokens se guardan con un hueco en el punto de edición,
+ * como en un editor. Los tokens que están después del hueco guardan sus
+ * offsets relativos al fin del texto y su línea relativa a lineaReferencia,
+ * así que una edición no recorre los tokens que quedan detrás de ella.
+ *
+ * A diferencia de BufferTokens, la secuencia incluye los tokens especiales
+ * INVALID (caracteres no reconocidos) en su lugar del archivo. El último
+ * token es siempre EOF, con inicio y fin en el largo del texto.
+ */
+public class LexicoIncremental
+{
+  private static final int EOF = CarumaLangParserConstants.EOF;
+
+  private final Texto texto;
+  private final FlujoTexto flujo;
+  private final GestorIncremental gestor;
+
+  // Arreglos paralelos con un hueco entre antes y despues
+  private int[] tipos = new int[1024];
+  private int[] inicios = new int[1024];
+  private int[] fines = new int[1024];
+  private int[] alcances = new int[1024];
+  private int[] lineas = new int[1024];
+  private int[] columnas = new int[1024];
+  private int antes = 0;
+  private int despues = 0;
+  private int lineaReferencia = 0;
+  /** Mayor diferencia entre alcance y fin de un token. */
+  private int maximaAnticipacion = 0;
+
+  // Estado de la relectura en curso
+  private int finEdicion;
+  private int revisado;
+  private boolean saltoTrasEdicion;
+  private boolean sincronizado;
+
+  // Resultado de la última edición
+  private int primerCambio;
+  private int quitados;
+  private int agregados;
+
+  /** Tokeniza el texto completo. */
+  public LexicoIncremental(CharSequence contenido)
+  {
+     texto = new Texto(contenido);
+     flujo = new FlujoTexto(texto);
+     gestor = new GestorIncremental(flujo);
+     releer(0, 0, 1, 1, 0);
+  }
+
+  /**
+   * Reemplaza eliminados caracteres desde offset por insertado y actualiza
+   * los tokens. Después, los tokens [primerCambio(), primerCambio() +
+   * tokensAgregados()) ocupan el lugar de los tokensQuitados() que había
+   * desde primerCambio(); el resto no cambió salvo el corrimiento de offsets
+   * y líneas.
+   */
+  public void editar(int offset, int eliminados, CharSequence insertado)
+  {
+     int longitud = texto.length();
+     if (offset < 0 || eliminados < 0 || offset + eliminados > longitud) {
+        throw new IndexOutOfBoundsException("Edición fuera del texto: offset " + offset
+                                            + ", eliminados " + eliminados + ", largo " + longitud);
+     }
+
+     // Primer token que miró algún carácter desde offset: todos los de fin
+     // mayor lo hicieron, y antes de ellos solo pudo hacerlo alguno cuyo
+     // fin esté a menos de maximaAnticipacion
+     int primero = primerFinMayor(offset);
+     for (int i = primero - 1; i >= 0 && fin(i) + maximaAnticipacion > offset; i--) {
+        if (alcance(i) > offset)
+           primero = i;
+     }
+
+     // Se retoma desde el token anterior, que no cambia pero da una
+     // posición de partida con línea y columna conocidas
+     int desde = primero - 1;
+     if (desde < 0) {
+        moverHueco(0);
+        texto.reemplazar(offset, eliminados, insertado);
+        releer(0, 0, 1, 1, offset + insertado.length());
+     } else {
+        int inicio = inicio(desde);
+        int linea = linea(desde);
+        int columna = columna(desde);
+        moverHueco(desde);
+        texto.reemplazar(offset, eliminados, insertado);
+        releer(desde, inicio, linea, columna, offset + insertado.length());
+     }
+  }
+
+  /**
+   * Lee tokens desde el offset dado (inicio del token desdeToken, que queda
+   * justo después del hueco) hasta sincronizar con los viejos o llegar a EOF.
+   */
+  private void releer(int desdeToken, int offset, int linea, int columna, int finEdicion)
+  {
+     this.finEdicion = finEdicion;
+     revisado = finEdicion;
+     saltoTrasEdicion = false;
+     sincronizado = false;
+     primerCambio = desdeToken;
+     quitados = 0;
+     agregados = 0;
+
+     flujo.reiniciar(texto, offset, linea, columna);
+     gestor.ReInit(flujo);
+     Token t;
+     do {
+        t = gestor.getNextToken();
+     } while (!sincronizado && t.kind != EOF);
+
+     if (!sincronizado) {
+        quitados += despues;
+        despues = 0;
+     }
+  }
+
+  /**
+   * Guarda un token recién leído, descartando los viejos que quedaron
+   * atrás. Si coincide con un viejo la relectura termina.
+   */
+  private void registrar(int tipo, int inicio, int fin, int linea, int columna, int alcance)
+  {
+     if (sincronizado)
+        return;
+
+     int longitud = texto.length();
+     while (despues > 0) {
+        int viejo = tipos.length - despues;
+        int inicioViejo = inicios[viejo] + longitud;
+        if (inicioViejo > inicio)
+           break;
+        // Los tokens que siguen a uno igual en una línea posterior a la
+        // edición no cambian: ni el texto que leen ni sus columnas
+        if (inicioViejo == inicio && inicio >= finEdicion && tipos[viejo] == tipo
+            && fines[viejo] + longitud == fin && columnas[viejo] == columna && saltoAntesDe(inicio)) {
+           lineaReferencia = linea - lineas[viejo];
+           sincronizado = true;
+        }
+        despues--;
+        quitados++;
+        if (sincronizado)
+           break;
+     }
+
+     if (antes + despues == tipos.length)
+        crecer();
+     tipos[antes] = tipo;
+     inicios[antes] = inicio;
+     fines[antes] = fin;
+     alcances[antes] = alcance;
+     lineas[antes] = linea;
+     columnas[antes] = columna;
+     antes++;
+     agregados++;
+     maximaAnticipacion = Math.max(maximaAnticipacion, alcance - fin);
+  }
+
+  /** Si hay un salto de línea entre el fin de la edición y p. */
+  private boolean saltoAntesDe(int p)
+  {
+     while (!saltoTrasEdicion && revisado < p) {
+        char c = texto.charAt(revisado++);
+        saltoTrasEdicion = c == '\n' || c == '\r';
+     }
+     return saltoTrasEdicion;
+  }
+
+  // -------------------------------------------------------
+  // Consultas
+  // -------------------------------------------------------
+
+  /** Número de tokens, incluidos los INVALID y el EOF final. */
+  public int tamano()
+  {
+     return antes + despues;
+  }
+
+  public int tipo(int i)
+  {
+     return tipos[fisico(i)];
+  }
+
+  /** Offset del primer carácter del token i. */
+  public int inicio(int i)
+  {
+     return i < antes ? inicios[i] : inicios[fisico(i)] + texto.length();
+  }
+
+  /** Offset siguiente al último carácter del token i. */
+  public int fin(int i)
+  {
+     return i < antes ? fines[i] : fines[fisico(i)] + texto.length();
+  }
+
+  public int linea(int i)
+  {
+     return i < antes ? lineas[i] : lineas[fisico(i)] + lineaReferencia;
+  }
+
+  public int columna(int i)
+  {
+     return columnas[fisico(i)];
+  }
+
+  /** Texto del token i. */
+  public String imagen(int i)
+  {
+     return texto.subSequence(inicio(i), fin(i)).toString();
+  }
+
+  /** Construye un Token con los datos del token i. */
+  public Token token(int i)
+  {
+     String imagen = imagen(i);
+     Token t = Token.newToken(tipo(i), imagen);
+     t.beginLine = linea(i);
+     t.beginColumn = columna(i);
+     // Ningún token ocupa más de una línea
+     t.endLine = t.beginLine;
+     int columna = t.beginColumn;
+     for (int k = 1; k < imagen.length(); k++) {
+        columna++;
+        if (imagen.charAt(k) == '\t') {
+           columna--;
+           columna += (flujo.tabSize - (columna % flujo.tabSize));
+        }
+     }
+     t.endColumn = columna;
+     return t;
+  }
+
+  /** Primer token afectado por la última edición. */
+  public int primerCambio()
+  {
+     return primerCambio;
+  }
+
+  /** Tokens que la última edición quitó desde primerCambio(). */
+  public int tokensQuitados()
+  {
+     return quitados;
+  }
+
+  /** Tokens que la última edición puso desde primerCambio(). */
+  public int tokensAgregados()
+  {
+     return agregados;
+  }
+
+  /** Largo actual del texto. */
+  public int longitud()
+  {
+     return texto.length();
+  }
+
+  /** Texto actual completo. */
+  public String texto()
+  {
+     return texto.toString();
+  }
+
+  /** Carácter del texto actual en el offset dado. */
+  public char caracter(int offset)
+  {
+     return texto.charAt(offset);
+  }
+
+  /**
+   * Índice del token que empieza en la línea y columna dadas, o -1 si
+   * ninguno empieza ahí. Búsqueda binaria: los tokens están en orden.
+   */
+  public int buscar(int linea, int columna)
+  {
+     int bajo = 0;
+     int alto = tamano() - 1;
+     while (bajo <= alto) {
+        int medio = (bajo + alto) >>> 1;
+        int l = linea(medio);
+        int c = columna(medio);
+        if (l < linea || (l == linea && c < columna))
+           bajo = medio + 1;
+        else if (l == linea && c == columna)
+           return medio;
+        else
+           alto = medio - 1;
+     }
+     return -1;
+  }
+
+  // -------------------------------------------------------
+  // Hueco de los tokens
+  // -------------------------------------------------------
+
+  private int fisico(int i)
+  {
+     return i < antes ? i : i - antes + tipos.length - despues;
+  }
+
+  private int alcance(int i)
+  {
+     return i < antes ? alcances[i] : alcances[fisico(i)] + texto.length();
+  }
+
+  /** Primer token con fin mayor que offset (tamano() si no hay). */
+  private int primerFinMayor(int offset)
+  {
+     int bajo = 0, alto = tamano();
+     while (bajo < alto) {
+        int medio = (bajo + alto) >>> 1;
+        if (fin(medio) > offset)
+           alto = medio;
+        else
+           bajo = medio + 1;
+     }
+     return bajo;
+  }
+
+  /**
+   * Deja exactamente k tokens antes del hueco. Debe llamarse antes de
+   * cambiar el texto: los offsets relativos se calculan con su largo.
+   */
+  private void moverHueco(int k)
+  {
+     int longitud = texto.length();
+     while (antes > k) {
+        antes--;
+        int destino = tipos.length - despues - 1;
+        mover(antes, destino, -longitud, -lineaReferencia);
+        despues++;
+     }
+     while (antes < k) {
+        int origen = tipos.length - despues;
+        mover(origen, antes, longitud, lineaReferencia);
+        antes++;
+        despues--;
+     }
+  }
+
+  private void mover(int origen, int destino, int corrimiento, int corrimientoLinea)
+  {
+     tipos[destino] = tipos[origen];
+     inicios[destino] = inicios[origen] + corrimiento;
+     fines[destino] = fines[origen] + corrimiento;
+     alcances[destino] = alcances[origen] + corrimiento;
+     lineas[destino] = lineas[origen] + corrimientoLinea;
+     columnas[destino] = columnas[origen];
+  }
+
+  private void crecer()
+  {
+     int nuevo = tipos.length * 2;
+     tipos = crecer(tipos, nuevo);
+     inicios = crecer(inicios, nuevo);
+     fines = crecer(fines, nuevo);
+     alcances = crecer(alcances, nuevo);
+     lineas = crecer(lineas, nuevo);
+     columnas = crecer(columnas, nuevo);
+  }
+
+  // Copia el tramo de después del hueco al final del arreglo nuevo
+  private int[] crecer(int[] arreglo, int nuevo)
+  {
+     int[] copia = Arrays.copyOf(arreglo, nuevo);
+     System.arraycopy(arreglo, arreglo.length - despues, copia, nuevo - despues, despues);
+     return copia;
+  }
+
+  // -------------------------------------------------------
+  // Token manager y texto
+  // -------------------------------------------------------
+
+  /** Token manager que registra cada token, también los especiales, con sus offsets. */
+  private class GestorIncremental extends CarumaLangParserTokenManager
+  {
+     GestorIncremental(FlujoTexto flujo)
+     {
+        super(flujo);
+     }
+
+     @Override
+     protected Token jjFillToken()
+     {
+        Token t = super.jjFillToken();
+        if (t.kind == EOF) {
+           int longitud = texto.length();
+           registrar(EOF, longitud, longitud, t.beginLine, t.beginColumn, flujo.alcance());
+        } else {
+           registrar(t.kind, flujo.offsetInicioToken(), flujo.offsetFinToken(),
+                     t.beginLine, t.beginColumn, flujo.alcance());
+        }
+        flujo.reiniciarAlcance();
+        return t;
+     }
+  }
+
+  /** Caracteres del texto con un hueco en el último punto editado. */
+  private static class Texto implements CharSequence
+  {
+     private char[] datos;
+     private int inicioHueco;
+     private int finHueco;
+
+     Texto(CharSequence contenido)
+     {
+        int largo = contenido.length();
+        datos = new char[Math.max(1024, largo + largo / 2)];
+        contenido.toString().getChars(0, largo, datos, 0);
+        inicioHueco = largo;
+        finHueco = datos.length;
+     }
+
+     @Override
+     public int length()
+     {
+        return datos.length - (finHueco - inicioHueco);
+     }
+
+     @Override
+     public char charAt(int i)
+     {
+        return i < inicioHueco ? datos[i] : datos[i + finHueco - inicioHueco];
+     }
+
+     @Override
+     public CharSequence subSequence(int desde, int hasta)
+     {
+        char[] copia = new char[hasta - desde];
+        int antesDelHueco = Math.max(0, Math.min(hasta, inicioHueco) - desde);
+        System.arraycopy(datos, desde, copia, 0, antesDelHueco);
+        int resto = copia.length - antesDelHueco;
+        if (resto > 0)
+           System.arraycopy(datos, desde + antesDelHueco + finHueco - inicioHueco, copia, antesDelHueco, resto);
+        return new String(copia);
+     }
+
+     @Override
+     public String toString()
+     {
+        return subSequence(0, length()).toString();
+     }
+
+     void reemplazar(int offset, int eliminados, CharSequence insertado)
+     {
+        moverHueco(offset);
+        finHueco += eliminados;
+        int largo = insertado.length();
+        if (finHueco - inicioHueco < largo) {
+           int nuevo = Math.max(datos.length * 2, length() + largo + 1024);
+           char[] copia = new char[nuevo];
+           System.arraycopy(datos, 0, copia, 0, inicioHueco);
+           int cola = datos.length - finHueco;
+           System.arraycopy(datos, finHueco, copia, nuevo - cola, cola);
+           datos = copia;
+           finHueco = nuevo - cola;
+        }
+        for (int k = 0; k < largo; k++)
+           datos[inicioHueco++] = insertado.charAt(k);
+     }
+
+     private void moverHueco(int p)
+     {
+        if (p < inicioHueco) {
+           int n = inicioHueco - p;
+           System.arraycopy(datos, p, datos, finHueco - n, n);
+           inicioHueco -= n;
+           finHueco -= n;
+        } else if (p > inicioHueco) {
+           int n = p - inicioHueco;
+           System.arraycopy(datos, finHueco, datos, inicioHueco, n);
+           inicioHueco += n;
+           finHueco += n;
+        }
+     }
+  }
+}
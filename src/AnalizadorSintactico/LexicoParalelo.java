@@ -0,0 +1,224 @@
+package AnalizadorSintactico;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Tokens de un archivo grande leídos en paralelo.
+ *
+ * Ningún token de CarumaLang pasa de una línea a la siguiente: los
+ * literales de texto y de carácter excluyen '\n' y '\r', y no hay
+ * comentarios de bloque. Así que el archivo se corta en trozos justo
+ * después de un '\n', cada trozo se tokeniza con su propio LexicoTabla
+ * sobre un FlujoMapeado del mismo mapeo en un ForkJoinPool, y al final las
+ * secuencias se concatenan corriendo las líneas de cada trozo por las de
+ * los anteriores.
+ *
+ * El resultado es el mismo que el de leer el archivo de corrido: los
+ * tokens válidos en un BufferTokens terminado en EOF sobre el flujo del
+ * archivo entero, y los errores léxicos, que cada trozo recibe como
+ * ErroresLexicos, informados en el orden del archivo. Un archivo sin
+ * '\n' (por ejemplo con '\r' como fin de línea) queda en un solo trozo.
+ */
+public class LexicoParalelo
+{
+  /** Tamaño mínimo de un trozo: por debajo, repartir cuesta más de lo que ahorra. */
+  public static final int TROZO_MINIMO = 1 << 20;
+  /** Trozos por hilo, para que los hilos que terminan antes tomen trozos de los otros. */
+  private static final int TROZOS_POR_HILO = 4;
+
+  private final BufferTokens tokens;
+  private final Trozo[] trozos;
+  private final int[] inicios;
+
+  /**
+   * Si vale la pena leer en paralelo el archivo del flujo con el pool: hay
+   * más de un hilo y alcanza para al menos dos trozos.
+   */
+  public static boolean conviene(FlujoMapeado fuente, ForkJoinPool pool)
+  {
+     return pool.getParallelism() > 1 && fuente.longitud() >= 2 * TROZO_MINIMO;
+  }
+
+  /** Tokeniza el archivo de fuente, que aún no se leyó, en trozos del tamaño que conviene al pool. */
+  public LexicoParalelo(FlujoMapeado fuente, ForkJoinPool pool)
+  {
+     this(fuente, pool,
+          Math.max(TROZO_MINIMO, fuente.longitud() / (pool.getParallelism() * TROZOS_POR_HILO)));
+  }
+
+  /**
+   * Tokeniza el archivo de fuente, que aún no se leyó, en trozos de al
+   * menos tamanoTrozo bytes.
+   */
+  public LexicoParalelo(FlujoMapeado fuente, ForkJoinPool pool, int tamanoTrozo)
+  {
+     inicios = cortes(fuente, tamanoTrozo);
+     int totalTrozos = inicios.length - 1;
+     trozos = new Trozo[totalTrozos];
+     FlujoMapeado[] flujos = new FlujoMapeado[totalTrozos];
+     for (int k = 0; k < totalTrozos; k++) {
+        flujos[k] = new FlujoMapeado(fuente, inicios[k], inicios[k + 1]);
+        trozos[k] = new Trozo(flujos[k]);
+     }
+     pool.invoke(new TareaTrozos(trozos, 0, totalTrozos));
+
+     fuente.unirTrozos(flujos, inicios);
+     tokens = new BufferTokens(fuente);
+     for (int k = 0; k < totalTrozos; k++) {
+        Trozo trozo = trozos[k];
+        trozo.corrimiento = fuente.lineaEn(inicios[k]) - trozo.flujo.lineaEn(0);
+        int corrimiento = trozo.corrimiento;
+        // El EOF de cada trozo salvo el último es solo el fin del trozo
+        int total = k + 1 < totalTrozos ? trozo.tokens.tamano() - 1 : trozo.tokens.tamano();
+        for (int i = 0; i < total; i++) {
+           tokens.agregar(trozo.tokens.tipo(i), trozo.tokens.inicio(i) + inicios[k],
+                          trozo.tokens.fin(i) + inicios[k], trozo.tokens.linea(i) + corrimiento,
+                          trozo.tokens.columna(i));
+        }
+     }
+  }
+
+  /** Tokens válidos del archivo; el último es EOF. */
+  public BufferTokens tokens()
+  {
+     return tokens;
+  }
+
+  /**
+   * Informa a errores los errores léxicos del archivo, en orden y con las
+   * mismas posiciones que al leerlo de corrido.
+   */
+  public void reportarErrores(ErroresLexicos errores)
+  {
+     for (int k = 0; k < trozos.length; k++) {
+        Trozo trozo = trozos[k];
+        for (int i = 0; i < trozo.totalErrores; i++) {
+           errores.error(trozo.tiposError[i], trozo.offsetsError[i] + inicios[k],
+                         trozo.lineasError[i] + trozo.corrimiento, trozo.columnasError[i],
+                         trozo.codigosError[i]);
+        }
+     }
+  }
+
+  /** En cuántos trozos se leyó el archivo. */
+  public int trozos()
+  {
+     return trozos.length;
+  }
+
+  /**
+   * Offsets donde empieza cada trozo, más el largo del archivo al final:
+   * cada corte cae justo después del primer '\n' que está a tamanoTrozo
+   * bytes o más del corte anterior.
+   */
+  private static int[] cortes(FlujoMapeado fuente, int tamanoTrozo)
+  {
+     int limite = fuente.longitud();
+     List<Integer> cortes = new ArrayList<>();
+     cortes.add(0);
+     int p = tamanoTrozo;
+     while (p < limite) {
+        while (p < limite && fuente.byteEn(p - 1) != '\n')
+           p++;
+        if (p >= limite)
+           break;
+        cortes.add(p);
+        p += tamanoTrozo;
+     }
+     int[] inicios = new int[cortes.size() + 1];
+     for (int i = 0; i < cortes.size(); i++)
+        inicios[i] = cortes.get(i);
+     inicios[cortes.size()] = limite;
+     return inicios;
+  }
+
+  /**
+   * Un trozo del archivo, los tokens que se leyeron de él y sus errores
+   * léxicos, guardados como arreglos paralelos hasta que se informen.
+   */
+  private static class Trozo implements ErroresLexicos
+  {
+     final FlujoMapeado flujo;
+     BufferTokens tokens;
+     /** Líneas que hay que sumar a las del trozo para tener las del archivo. */
+     int corrimiento;
+
+     int[] tiposError = new int[16];
+     int[] offsetsError = new int[16];
+     int[] lineasError = new int[16];
+     int[] columnasError = new int[16];
+     int[] codigosError = new int[16];
+     int totalErrores = 0;
+
+     Trozo(FlujoMapeado flujo)
+     {
+        this.flujo = flujo;
+     }
+
+     void leer()
+     {
+        flujo.compartirImagenes(new TablaNombres());
+        LexicoTabla tokenManager = new LexicoTabla(flujo);
+        tokenManager.reportarErrores(this);
+        tokens = new BufferTokens(flujo);
+        Token t;
+        do {
+           t = tokenManager.getNextToken();
+           tokens.agregar(t);
+        } while (t.kind != CarumaLangParserConstants.EOF);
+     }
+
+     @Override
+     public void error(int tipo, int offset, int linea, int columna, int codigo)
+     {
+        if (totalErrores == tiposError.length) {
+           int nuevo = totalErrores * 2;
+           tiposError = Arrays.copyOf(tiposError, nuevo);
+           offsetsError = Arrays.copyOf(offsetsError, nuevo);
+           lineasError = Arrays.copyOf(lineasError, nuevo);
+           columnasError = Arrays.copyOf(columnasError, nuevo);
+           codigosError = Arrays.copyOf(codigosError, nuevo);
+        }
+        tiposError[totalErrores] = tipo;
+        offsetsError[totalErrores] = offset;
+        lineasError[totalErrores] = linea;
+        columnasError[totalErrores] = columna;
+        codigosError[totalErrores] = codigo;
+        totalErrores++;
+     }
+  }
+
+  // Divide el rango de trozos a la mitad hasta llegar a uno, igual que el
+  // modo por lotes con los archivos
+  private static class TareaTrozos extends RecursiveAction
+  {
+     private static final long serialVersionUID = 1L;
+
+     private final Trozo[] trozos;
+     private final int desde;
+     private final int hasta;
+
+     TareaTrozos(Trozo[] trozos, int desde, int hasta)
+     {
+        this.trozos = trozos;
+        this.desde = desde;
+        this.hasta = hasta;
+     }
+
+     @Override
+     protected void compute()
+     {
+        if (hasta - desde == 1) {
+           trozos[desde].leer();
+           return;
+        }
+        int medio = (desde + hasta) >>> 1;
+        invokeAll(new TareaTrozos(trozos, desde, medio),
+                  new TareaTrozos(trozos, medio, hasta));
+     }
+  }
+}
@@ -0,0 +1,396 @@
+package AnalizadorSintactico;
+
+import java.io.IOException;
+
+/**
+ * Token manager escrito a mano con el mismo contrato que
+ * CarumaLangParserTokenManager: los mismos tokens, con las mismas imágenes
+ * y posiciones, los INVALID como tokens especiales encadenados en
+ * specialToken y cada token construido por jjFillToken(), así que las
+ * subclases que lo redefinen siguen funcionando igual.
+ *
+ * El generado recorre a la vez el autómata de las palabras reservadas y el
+ * NFA de los identificadores, así que cada letra de un MIXCHELADA pasa por
+ * los dos. Aquí una tabla de clases de carácter decide el token por el
+ * primer carácter y un identificador se lee con un solo ciclo; al terminar,
+ * un hash perfecto mínimo sobre el largo y el primer y último carácter
+ * elige la única palabra reservada que podría ser, y basta comparar con
+ * ella. Cada token lee los mismos caracteres por delante que el generado.
+ *
+ * Sobre un FlujoMapeado los espacios, los identificadores, los dígitos y el
+ * contenido de los literales de texto se recorren por tramos (ver
+ * Escaneo.Escaner) y las reservadas se comparan sobre los bytes del archivo.
+ *
+ * Con un receptor de ErroresLexicos los caracteres que no empiezan ningún
+ * token no se entregan como INVALID: se informan al receptor con su tipo,
+ * offset, línea, columna y carácter, y getNextToken() sigue hasta el
+ * siguiente token válido.
+ */
+public class LexicoTabla extends CarumaLangParserTokenManager
+{
+  // Clases de carácter
+  private static final byte OTRO = 0;
+  private static final byte ESPACIO = 1;
+  private static final byte LETRA = 2;
+  private static final byte DIGITO = 3;
+  private static final byte COMILLAS = 4;
+  private static final byte APOSTROFO = 5;
+  private static final byte SIMBOLO = 6;      // Token de un carácter
+  private static final byte ANTES_IGUAL = 7;  // Token de uno o, seguido de '=', de dos
+
+  private static final byte[] CLASE = new byte[128];
+  /** Token de un carácter, o del carácter seguido de '=' en TIPO_CON_IGUAL. */
+  private static final int[] TIPO = new int[128];
+  private static final int[] TIPO_CON_IGUAL = new int[128];
+
+  // Hash perfecto mínimo de las palabras reservadas: ninguna comparte largo,
+  // primer y último carácter, y este multiplicador las reparte en una
+  // casilla distinta cada una
+  private static final int MULTIPLICADOR = 0x4CE2A;
+  private static final int TOTAL_RESERVADAS = CARACTER - CARUMA + 1;
+  private static final char[][] RESERVADAS = new char[TOTAL_RESERVADAS][];
+  private static final int[] TIPO_RESERVADA = new int[TOTAL_RESERVADAS];
+  private static int largoMaximoReservada;
+
+  static {
+     for (char c = 'a'; c <= 'z'; c++) {
+        CLASE[c] = LETRA;
+        CLASE[c - 'a' + 'A'] = LETRA;
+     }
+     for (char c = '0'; c <= '9'; c++)
+        CLASE[c] = DIGITO;
+     CLASE[' '] = CLASE['\t'] = CLASE['\r'] = CLASE['\n'] = ESPACIO;
+     CLASE['"'] = COMILLAS;
+     CLASE['\''] = APOSTROFO;
+
+     simbolo('+', PONER);
+     simbolo('-', QUITAR);
+     simbolo('*', SALEMAS);
+     simbolo('/', SALEMENOS);
+     simbolo('(', ABRIENDO);
+     simbolo(')', CERRANDO);
+     simbolo('{', OPEN);
+     simbolo('}', CLOSE);
+     simbolo(':', AHIVA);
+     simbolo(',', COMA);
+     antesDeIgual('=', ESTOES, IGUALITO);
+     antesDeIgual('<', MENORQUE, MENORIGUALITOQUE);
+     antesDeIgual('>', MAYORQUE, MAYORIGUALITOQUE);
+
+     for (int tipo = CARUMA; tipo <= CARACTER; tipo++) {
+        char[] palabra = jjstrLiteralImages[tipo].toCharArray();
+        int h = hash(palabra.length, palabra[0], palabra[palabra.length - 1]);
+        if (RESERVADAS[h] != null)
+           throw new IllegalStateException("El hash de palabras reservadas no es perfecto: "
+                                           + jjstrLiteralImages[tipo] + " choca con "
+                                           + new String(RESERVADAS[h]));
+        RESERVADAS[h] = palabra;
+        TIPO_RESERVADA[h] = tipo;
+        largoMaximoReservada = Math.max(largoMaximoReservada, palabra.length);
+     }
+  }
+
+  private static void simbolo(char c, int tipo)
+  {
+     CLASE[c] = SIMBOLO;
+     TIPO[c] = tipo;
+  }
+
+  private static void antesDeIgual(char c, int tipo, int tipoConIgual)
+  {
+     CLASE[c] = ANTES_IGUAL;
+     TIPO[c] = tipo;
+     TIPO_CON_IGUAL[c] = tipoConIgual;
+  }
+
+  private static int hash(int largo, char primero, char ultimo)
+  {
+     int clave = (primero << 16) | (ultimo << 8) | largo;
+     return ((clave * MULTIPLICADOR) >>> 20) % TOTAL_RESERVADAS;
+  }
+
+  /** Primeros caracteres del identificador actual, para compararlo con una reservada. */
+  private final char[] identificador = new char[largoMaximoReservada];
+  /** El flujo si es un FlujoMapeado, que permite avanzar por tramos; si no, null. */
+  private FlujoMapeado flujo;
+  /** Receptor de los errores léxicos, o null si llegan como tokens INVALID. */
+  private ErroresLexicos errores;
+
+  /** Constructor. */
+  public LexicoTabla(SimpleCharStream stream)
+  {
+     super(stream);
+     flujo = stream instanceof FlujoMapeado ? (FlujoMapeado) stream : null;
+  }
+
+  /** Reinitialise parser. */
+  @Override
+  public void ReInit(SimpleCharStream stream)
+  {
+     super.ReInit(stream);
+     flujo = stream instanceof FlujoMapeado ? (FlujoMapeado) stream : null;
+  }
+
+  /**
+   * A partir de aquí los errores léxicos se informan a errores en lugar de
+   * llegar como tokens INVALID; con null vuelven a llegar como tokens.
+   */
+  public void reportarErrores(ErroresLexicos errores)
+  {
+     this.errores = errores;
+  }
+
+  /** Get the next Token. */
+  @Override
+  public Token getNextToken()
+  {
+     Token specialToken = null;
+     for (;;) {
+        try {
+           if (flujo != null)
+              flujo.saltarEspacios();
+           curChar = input_stream.BeginToken();
+           while (curChar < 128 && CLASE[curChar] == ESPACIO)
+              curChar = input_stream.BeginToken();
+        } catch (IOException e) {
+           jjmatchedKind = EOF;
+           Token t = jjFillToken();
+           t.specialToken = specialToken;
+           return t;
+        }
+
+        jjmatchedKind = reconocer();
+        if (jjmatchedKind == INVALID && errores != null) {
+           informarError();
+           continue;
+        }
+        Token t = jjFillToken();
+        if (jjmatchedKind != INVALID) {
+           t.specialToken = specialToken;
+           return t;
+        }
+        // Igual que el generado: los especiales quedan encadenados hacia
+        // atrás por specialToken y hacia adelante por next
+        if (specialToken != null) {
+           t.specialToken = specialToken;
+           specialToken.next = t;
+        }
+        specialToken = t;
+     }
+  }
+
+  private void informarError()
+  {
+     int offset = -1;
+     if (flujo != null)
+        offset = flujo.offsetInicioToken();
+     else if (input_stream instanceof FlujoTexto)
+        offset = ((FlujoTexto) input_stream).offsetInicioToken();
+     int linea = input_stream.getBeginLine();
+     int columna = input_stream.getBeginColumn();
+     // Un carácter fuera del BMP llega como dos surrogates: se lee el
+     // segundo y se informa un solo error con el code point
+     int codigo = curChar;
+     if (Character.isHighSurrogate(curChar)) {
+        try {
+           char bajo = input_stream.readChar();
+           if (Character.isLowSurrogate(bajo))
+              codigo = Character.toCodePoint(curChar, bajo);
+           else
+              input_stream.backup(1);
+        } catch (IOException e) {
+           // Surrogate suelto al final del archivo
+        }
+     }
+     errores.error(ErroresLexicos.tipoDe(codigo), offset, linea, columna, codigo);
+  }
+
+  /**
+   * Lee el resto del token que empieza en curChar y devuelve su tipo. El
+   * flujo queda sobre su último carácter.
+   */
+  private int reconocer()
+  {
+     char c = curChar;
+     if (c >= 128)
+        return INVALID;
+     switch (CLASE[c]) {
+        case LETRA:
+           return identificadorOReservada(c);
+        case DIGITO:
+           return numero();
+        case COMILLAS:
+           return texto();
+        case APOSTROFO:
+           return letra();
+        case SIMBOLO:
+           return TIPO[c];
+        case ANTES_IGUAL:
+           return siguienteEs('=') ? TIPO_CON_IGUAL[c] : TIPO[c];
+        default:
+           return INVALID;
+     }
+  }
+
+  // letra (letra | dígito)*, y si coincide con una reservada, la reservada
+  private int identificadorOReservada(char primero)
+  {
+     if (flujo != null)
+        return identificadorEnFlujo(primero);
+     char[] id = identificador;
+     id[0] = primero;
+     char ultimo = primero;
+     int largo = 1;
+     try {
+        for (;;) {
+           char c = input_stream.readChar();
+           if (c >= 128 || (CLASE[c] != LETRA && CLASE[c] != DIGITO)) {
+              input_stream.backup(1);
+              break;
+           }
+           if (largo < id.length)
+              id[largo] = c;
+           ultimo = c;
+           largo++;
+        }
+     } catch (IOException e) {
+        // El identificador termina en el fin del archivo
+     }
+
+     if (largo <= id.length) {
+        int h = hash(largo, primero, ultimo);
+        char[] reservada = RESERVADAS[h];
+        if (reservada.length == largo && igualesHasta(reservada, id, largo))
+           return TIPO_RESERVADA[h];
+     }
+     return MIXCHELADA;
+  }
+
+  // Lo mismo avanzando por tramos sobre el archivo mapeado
+  private int identificadorEnFlujo(char primero)
+  {
+     int inicio = flujo.offsetInicioToken();
+     int largo = 1 + flujo.avanzarAlfanumericos();
+     if (largo <= largoMaximoReservada) {
+        int h = hash(largo, primero, (char) flujo.byteEn(inicio + largo - 1));
+        char[] reservada = RESERVADAS[h];
+        if (reservada.length == largo && flujo.contiene(inicio, reservada))
+           return TIPO_RESERVADA[h];
+     }
+     return MIXCHELADA;
+  }
+
+  private static boolean igualesHasta(char[] a, char[] b, int largo)
+  {
+     for (int i = 0; i < largo; i++) {
+        if (a[i] != b[i])
+           return false;
+     }
+     return true;
+  }
+
+  // dígito+ ('.' dígito+)?
+  private int numero()
+  {
+     boolean enPunto = false;
+     try {
+        if (flujo != null)
+           flujo.avanzarDigitos();
+        char c;
+        do {
+           c = input_stream.readChar();
+        } while (c >= '0' && c <= '9');
+        if (c != '.') {
+           input_stream.backup(1);
+           return NUMERITO;
+        }
+        enPunto = true;
+        c = input_stream.readChar();
+        if (c < '0' || c > '9') {
+           // Sin dígitos después del punto el número termina antes del punto
+           input_stream.backup(2);
+           return NUMERITO;
+        }
+        enPunto = false;
+        if (flujo != null)
+           flujo.avanzarDigitos();
+        do {
+           c = input_stream.readChar();
+        } while (c >= '0' && c <= '9');
+        input_stream.backup(1);
+     } catch (IOException e) {
+        // El fin del archivo corta el número; si lo cortó justo después
+        // del punto, el punto no es parte del número
+        if (enPunto)
+           input_stream.backup(1);
+     }
+     return NUMERITO;
+  }
+
+  // '"' (~['"', '\n', '\r'])* '"'; sin las comillas de cierre en la misma
+  // línea, las de apertura son un INVALID
+  private int texto()
+  {
+     int leidos = 0;
+     try {
+        for (;;) {
+           if (flujo != null)
+              leidos += flujo.avanzarTextoSimple();
+           char c = input_stream.readChar();
+           leidos++;
+           if (c == '"')
+              return TEXTOLITERAL;
+           if (c == '\n' || c == '\r' || !admitidoEnLiteral(c))
+              break;
+        }
+     } catch (IOException e) {
+        // Sin cierre antes del fin del archivo
+     }
+     input_stream.backup(leidos);
+     return INVALID;
+  }
+
+  // '\'' ~['\'', '\n', '\r'] '\''
+  private int letra()
+  {
+     int leidos = 0;
+     try {
+        char c = input_stream.readChar();
+        leidos++;
+        if (c != '\'' && c != '\n' && c != '\r' && admitidoEnLiteral(c)) {
+           c = input_stream.readChar();
+           leidos++;
+           if (c == '\'')
+              return LETRALITERAL;
+        }
+     } catch (IOException e) {
+        // Sin cierre antes del fin del archivo
+     }
+     input_stream.backup(leidos);
+     return INVALID;
+  }
+
+  // Lee un carácter más: si es el esperado queda en el token y si no se devuelve
+  private boolean siguienteEs(char esperado)
+  {
+     try {
+        if (input_stream.readChar() == esperado)
+           return true;
+        input_stream.backup(1);
+     } catch (IOException e) {
+        // Fin del archivo: el token es de un carácter
+     }
+     return false;
+  }
+
+  /**
+   * Si el carácter puede ir dentro de un literal, además de las exclusiones
+   * de la gramática. Sin UNICODE_INPUT el generado clasifica los caracteres
+   * desde 128 por su byte bajo, así que solo acepta los que lo tienen
+   * también desde 128 (por ejemplo 'ñ', pero no 'ő').
+   */
+  private static boolean admitidoEnLiteral(char c)
+  {
+     return c < 128 || (c & 0x80) != 0;
+  }
+}
@@ -5,6 +5,12 @@ package AnalizadorSintactico;
 /**
  * An implementation of interface CharStream, where the stream is assumed to
  * contain only ASCII characters (without unicode processing).
+ *
+ * El buffer guarda el token en curso desde tokenBegin, así que un token o
+ * una línea sin fin lo hacen crecer: crece al doble en lugar de de a 2048
+ * caracteres, para que leer un token de n caracteres copie O(n) y no
+ * O(n^2 / 2048). FlujoMapeado y FlujoTexto tienen el texto entero y no
+ * usan este buffer.
  */
 
 public class SimpleCharStream
@@ -38,9 +44,11 @@ public class SimpleCharStream
 
   protected void ExpandBuff(boolean wrapAround)
   {
-     char[] newbuffer = new char[bufsize + 2048];
-     int newbufline[] = new int[bufsize + 2048];
-     int newbufcolumn[] = new int[bufsize + 2048];
+     // Al doble: si bufsize * 2 desborda, max se queda con el crecimiento original
+     int newbufsize = Math.max(bufsize + 2048, bufsize * 2);
+     char[] newbuffer = new char[newbufsize];
+     int newbufline[] = new int[newbufsize];
+     int newbufcolumn[] = new int[newbufsize];
 
      try
      {
@@ -81,7 +89,7 @@ public class SimpleCharStream
      }
 
 
-     bufsize += 2048;
+     bufsize = newbufsize;
      available = bufsize;
      tokenBegin = 0;
   }
@@ -0,0 +1,80 @@
+package AnalizadorSintactico;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Pool de lexemas compartidos para una compilación.
+ *
+ * FlujoMapeado la consulta con el rango de bytes del lexema: si ya existe un
+ * String igual se devuelve ese mismo objeto, así los identificadores, números
+ * y literales repetidos no crean un String nuevo por cada aparición. Solo se
+ * guardan lexemas ASCII, que se comparan como bytes sin decodificar.
+ */
+public class TablaNombres
+{
+  private String[] nombres = new String[1024];
+  private byte[][] claves = new byte[1024][];
+  private int[] hashes = new int[1024];
+  private int total = 0;
+
+  /**
+   * Devuelve el String compartido para los primeros largo bytes de lexema,
+   * creándolo la primera vez. Los bytes deben ser ASCII; el arreglo puede
+   * reutilizarse después porque la tabla guarda su propia copia.
+   */
+  public String obtener(byte[] lexema, int largo)
+  {
+     int hash = 0;
+     for (int k = 0; k < largo; k++)
+        hash = 31 * hash + lexema[k];
+
+     int mascara = nombres.length - 1;
+     int i = mezclar(hash) & mascara;
+     for (byte[] clave; (clave = claves[i]) != null; i = (i + 1) & mascara) {
+        if (hashes[i] == hash && Arrays.equals(clave, 0, clave.length, lexema, 0, largo))
+           return nombres[i];
+     }
+
+     byte[] clave = Arrays.copyOf(lexema, largo);
+     String nuevo = new String(clave, StandardCharsets.ISO_8859_1);
+     nombres[i] = nuevo;
+     claves[i] = clave;
+     hashes[i] = hash;
+     if (++total * 2 > nombres.length)
+        crecer();
+     return nuevo;
+  }
+
+  /** Número de lexemas distintos guardados. */
+  public int tamano()
+  {
+     return total;
+  }
+
+  private static int mezclar(int h)
+  {
+     return h ^ (h >>> 16);
+  }
+
+  private void crecer()
+  {
+     String[] viejosNombres = nombres;
+     byte[][] viejasClaves = claves;
+     int[] viejosHashes = hashes;
+     nombres = new String[viejosNombres.length * 2];
+     claves = new byte[viejosNombres.length * 2][];
+     hashes = new int[viejosNombres.length * 2];
+     int mascara = nombres.length - 1;
+     for (int j = 0; j < viejosNombres.length; j++) {
+        if (viejosNombres[j] == null)
+           continue;
+        int i = mezclar(viejosHashes[j]) & mascara;
+        while (nombres[i] != null)
+           i = (i + 1) & mascara;
+        nombres[i] = viejosNombres[j];
+        claves[i] = viejasClaves[j];
+        hashes[i] = viejosHashes[j];
+     }
+  }
+}
@@ -0,0 +1,628 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+/**
+ * Banco de pruebas de rendimiento del analizador léxico, el parser y el
+ * pipeline completo.
+ *
+ * Sigue el esquema de JMH sin depender de él: genera entradas sintéticas con
+ * GeneradorCrm, hace iteraciones de calentamiento que se descartan y luego
+ * iteraciones de medición de duración fija. Por cada caso y tamaño reporta
+ * ms por operación (media y desviación), MB/s y tokens/s. Con --csv los
+ * resultados se agregan a un archivo para comparar entre versiones.
+ *
+ * Casos:
+ *   lexico       CarumaLangLexerTokenManager.getNextToken hasta EOF
+ *   tabla        LexicoTabla.getNextToken hasta EOF, el mismo recorrido con
+ *                el token manager de tabla; antes de medirlo se comprueba
+ *                que sus tokens sean los del generado (ver compararLexicos)
+ *   paralelo     LexicoParalelo sobre el pool común: la entrada cortada en
+ *                trozos que se tokenizan en paralelo con LexicoTabla y se
+ *                juntan en un BufferTokens, como al tokenizar en el
+ *                pipeline; antes de medirlo se comprueba que dé lo mismo
+ *                que el generado leyendo de corrido (ver compararParalelo)
+ *   linea        CarumaLangLexerTokenManager.getNextToken hasta EOF sobre
+ *                un SimpleCharStream que lee de un Reader una sola línea
+ *                del tamaño pedido: un identificador, un literal de texto y
+ *                unas comillas sin cierre de un tercio cada uno, que el
+ *                buffer tiene que guardar enteros. Los MB/s deben quedar
+ *                parejos entre tamaños (tiempo lineal)
+ *   parser       CarumaLangParser.Programa() sobre entrada válida
+ *   recuperacion ParserConRecuperacion.ProgramaConRecuperacion() sobre
+ *                entrada con muchos errores (el parser se detiene al llegar
+ *                a MAX_ERRORES, así que en archivos grandes mide solo el
+ *                tramo inicial)
+ *   pipeline     AnalisisSintactico completo: tokenizar, delimitadores,
+ *                parser con recuperación y archivo .errores
+ *   volcado      VolcadoTokens.Lector.avanzar hasta EOF sobre el volcado
+ *                .tkb de la entrada válida (se escribe antes de medir)
+ *   incremental  LexicoIncremental.editar: escribir y borrar un carácter a
+ *                mitad de la entrada válida, ya tokenizada una vez fuera de
+ *                la medición (MB/s y tokens/s se refieren al archivo entero)
+ *   reanalisis   AnalisisSintactico.AnalizadorIncremental: partir en dos
+ *                una línea a mitad de la entrada válida y volver a unirla,
+ *                pidiendo los errores después de cada edición
+ *   arbol        Interprete.ejecutar sobre un programa con ciclos cuyas
+ *                vueltas crecen con el tamaño (tamaño / 10); el análisis y
+ *                la compilación se hacen una vez, fuera de la medición
+ *   vm           MaquinaVirtual.ejecutar sobre el mismo programa
+ *   jit          ProgramaJvm.ejecutar sobre el mismo programa
+ *
+ * Con --corpus, antes de medir se comparan los token managers de tabla y la
+ * lectura en paralelo con los generados sobre todos los .crm de esa ruta (por ejemplo ../test), y
+ * una diferencia detiene el banco.
+ *
+ * Uso: java BancoRendimiento [--tamanos 1K,1M,10M] [--solo caso,caso]
+ *        [--calentamiento N] [--iteraciones N] [--tiempo ms]
+ *        [--base-errores archivo.crm] [--csv resultados.csv] [--corpus ruta]
+ */
+public class BancoRendimiento {
+
+    // Una operación medible sobre un archivo; devuelve un valor que se
+    // acumula para que el JIT no elimine el trabajo
+    interface Caso {
+        long ejecutar(Path archivo) throws Exception;
+    }
+
+    static class Medicion {
+        String caso;
+        long bytes;
+        long tokens;
+        double[] msPorOperacion;
+
+        double media() {
+            return Arrays.stream(msPorOperacion).average().orElse(0);
+        }
+
+        double desviacion() {
+            double m = media();
+            double suma = 0;
+            for (double v : msPorOperacion) {
+                suma += (v - m) * (v - m);
+            }
+            return msPorOperacion.length > 1 ? Math.sqrt(suma / (msPorOperacion.length - 1)) : 0;
+        }
+    }
+
+    private static final String[] CASOS = {
+        "lexico", "tabla", "paralelo", "linea", "parser", "recuperacion", "pipeline", "volcado", "incremental", "reanalisis", "arbol", "vm", "jit"
+    };
+
+    // Programas ya analizados o compilados para los casos de ejecución
+    private static final Map<Path, Object> programas = new HashMap<>();
+
+    private static long sumidero;
+
+    public static void main(String[] args) throws Exception {
+        String[] tamanos = {"1K", "100K", "1M", "10M"};
+        List<String> solo = Arrays.asList(CASOS);
+        int calentamiento = 3;
+        int iteraciones = 5;
+        long tiempoMs = 1000;
+        Path baseErrores = null;
+        Path csv = null;
+        String corpus = null;
+
+        for (int i = 0; i < args.length; i++) {
+            String valor = i + 1 < args.length ? args[i + 1] : null;
+            if (valor == null) {
+                System.err.println("Falta el valor de " + args[i]);
+                System.exit(2);
+            }
+            switch (args[i]) {
+                case "--tamanos":       tamanos = valor.split(","); break;
+                case "--solo":          solo = Arrays.asList(valor.split(",")); break;
+                case "--calentamiento": calentamiento = Integer.parseInt(valor); break;
+                case "--iteraciones":   iteraciones = Integer.parseInt(valor); break;
+                case "--tiempo":        tiempoMs = Long.parseLong(valor); break;
+                case "--base-errores":  baseErrores = Paths.get(valor); break;
+                case "--csv":           csv = Paths.get(valor); break;
+                case "--corpus":        corpus = valor; break;
+                default:
+                    System.err.println("Opcion no reconocida: " + args[i]);
+                    System.exit(2);
+            }
+            i++;
+        }
+
+        System.out.println("========================================");
+        System.out.println("   BANCO DE RENDIMIENTO - CARUMALANG");
+        System.out.println("========================================");
+        System.out.println("Java " + System.getProperty("java.version")
+            + ", " + Runtime.getRuntime().availableProcessors() + " procesadores"
+            + ", escaner " + AnalizadorSintactico.FlujoMapeado.escaner());
+        System.out.println("Calentamiento: " + calentamiento + " x " + tiempoMs + " ms, medicion: "
+            + iteraciones + " x " + tiempoMs + " ms");
+        System.out.println();
+
+        if (corpus != null) {
+            List<Path> archivos = ModoLotes.expandirArgumentos(new String[] {corpus});
+            long tokens = 0;
+            for (Path archivo : archivos) {
+                tokens += compararLexicos(archivo);
+                compararParalelo(archivo);
+            }
+            System.out.println("Token managers de tabla, lectura en paralelo y generados: " + archivos.size()
+                + " archivos de " + corpus + ", " + tokens + " tokens iguales");
+            System.out.println();
+        }
+
+        Path directorio = Files.createTempDirectory("carumalang-banco");
+        List<Medicion> mediciones = new ArrayList<>();
+        try {
+            for (String tamanoTexto : tamanos) {
+                long tamano = GeneradorCrm.leerTamano(tamanoTexto);
+
+                Path valido = directorio.resolve("valido_" + tamanoTexto + ".crm");
+                new GeneradorCrm(42, false).generar(tamano, valido);
+
+                Path conErrores = directorio.resolve("errores_" + tamanoTexto + ".crm");
+                if (baseErrores != null) {
+                    GeneradorCrm.repetirBase(baseErrores, tamano, conErrores);
+                } else {
+                    new GeneradorCrm(42, true).generar(tamano, conErrores);
+                }
+
+                Path ejecucion = directorio.resolve("ejecucion_" + tamanoTexto + ".crm");
+                escribirPrograma(Math.max(1, tamano / 10), ejecucion);
+
+                Path lineaLarga = directorio.resolve("linea_" + tamanoTexto + ".crm");
+                escribirLineaLarga(tamano, lineaLarga);
+
+                for (String caso : solo) {
+                    Path entrada = caso.equals("recuperacion") || caso.equals("pipeline") ? conErrores
+                        : caso.equals("arbol") || caso.equals("vm") || caso.equals("jit") ? ejecucion
+                        : caso.equals("linea") ? lineaLarga
+                        : valido;
+                    if (caso.equals("tabla")) {
+                        compararLexicos(entrada);
+                    } else if (caso.equals("paralelo")) {
+                        compararParalelo(entrada);
+                    }
+                    Medicion m = medir(caso, crearCaso(caso), entrada, calentamiento, iteraciones, tiempoMs);
+                    mediciones.add(m);
+                    imprimir(m, tamanoTexto);
+                }
+            }
+        } finally {
+            try (Stream<Path> archivos = Files.list(directorio)) {
+                for (Path p : (Iterable<Path>) archivos::iterator) {
+                    Files.deleteIfExists(p);
+                }
+            }
+            Files.deleteIfExists(directorio);
+        }
+
+        if (csv != null) {
+            escribirCsv(csv, mediciones);
+            System.out.println("\nResultados agregados a " + csv);
+        }
+        System.out.println("\n========================================");
+    }
+
+    private static Caso crearCaso(String nombre) {
+        switch (nombre) {
+            case "lexico":
+                return archivo -> {
+                    AnalizadorLexico.FlujoMapeado stream = new AnalizadorLexico.FlujoMapeado(archivo);
+                    AnalizadorLexico.CarumaLangLexerTokenManager lexer =
+                        new AnalizadorLexico.CarumaLangLexerTokenManager(stream);
+                    long tokens = 0;
+                    while (lexer.getNextToken().kind != AnalizadorLexico.CarumaLangLexerConstants.EOF) {
+                        tokens++;
+                    }
+                    return tokens;
+                };
+            case "tabla":
+                return archivo -> {
+                    AnalizadorLexico.FlujoMapeado stream = new AnalizadorLexico.FlujoMapeado(archivo);
+                    AnalizadorLexico.LexicoTabla lexer = new AnalizadorLexico.LexicoTabla(stream);
+                    long tokens = 0;
+                    while (lexer.getNextToken().kind != AnalizadorLexico.CarumaLangLexerConstants.EOF) {
+                        tokens++;
+                    }
+                    return tokens;
+                };
+            case "paralelo":
+                return archivo -> {
+                    AnalizadorSintactico.FlujoMapeado stream = new AnalizadorSintactico.FlujoMapeado(archivo);
+                    stream.compartirImagenes(new AnalizadorSintactico.TablaNombres());
+                    AnalizadorSintactico.LexicoParalelo lexico = new AnalizadorSintactico.LexicoParalelo(
+                        stream, ForkJoinPool.commonPool());
+                    return lexico.tokens().tamano() - 1;
+                };
+            case "linea":
+                return archivo -> {
+                    try (Reader lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+                        AnalizadorLexico.CarumaLangLexerTokenManager lexer =
+                            new AnalizadorLexico.CarumaLangLexerTokenManager(
+                                new AnalizadorLexico.SimpleCharStream(lector));
+                        long tokens = 0;
+                        while (lexer.getNextToken().kind != AnalizadorLexico.CarumaLangLexerConstants.EOF) {
+                            tokens++;
+                        }
+                        return tokens;
+                    }
+                };
+            case "parser":
+                return archivo -> {
+                    AnalizadorSintactico.CarumaLangParser parser = new AnalizadorSintactico.CarumaLangParser(
+                        new AnalizadorSintactico.CarumaLangParserTokenManager(
+                            new AnalizadorSintactico.FlujoMapeado(archivo)));
+                    parser.Programa();
+                    return parser.token.beginLine;
+                };
+            case "recuperacion":
+                return archivo -> {
+                    AnalisisSintactico.ParserConRecuperacion parser = new AnalisisSintactico.ParserConRecuperacion(
+                        new AnalizadorSintactico.CarumaLangParserTokenManager(
+                            new AnalizadorSintactico.FlujoMapeado(archivo)));
+                    parser.ProgramaConRecuperacion();
+                    return parser.getErrores().size();
+                };
+            case "pipeline":
+                return archivo -> {
+                    List<AnalisisSintactico.ErrorAnalisis> errores =
+                        new AnalisisSintactico.Analizador().analizar(archivo.toString());
+                    AnalisisSintactico.generarArchivoErrores(archivo.toString(), errores);
+                    return errores.size();
+                };
+            case "volcado":
+                return archivo -> {
+                    Path tkb = Paths.get(archivo.toString().replace(".crm", ".tkb"));
+                    if (!Files.exists(tkb)) {
+                        escribirVolcado(archivo, tkb);
+                    }
+                    AnalizadorLexico.VolcadoTokens.Lector lector = new AnalizadorLexico.VolcadoTokens.Lector(tkb);
+                    long tokens = 0;
+                    while (lector.avanzar()) {
+                        tokens++;
+                    }
+                    return tokens;
+                };
+            case "incremental":
+                return archivo -> {
+                    AnalizadorSintactico.LexicoIncremental lexico =
+                        (AnalizadorSintactico.LexicoIncremental) preparar(archivo, "incremental");
+                    int medio = lexico.longitud() / 2;
+                    lexico.editar(medio, 0, "1");
+                    long tokens = lexico.tokensAgregados();
+                    lexico.editar(medio, 1, "");
+                    return tokens + lexico.tokensAgregados();
+                };
+            case "reanalisis":
+                return archivo -> {
+                    AnalisisSintactico.AnalizadorIncremental analizador =
+                        (AnalisisSintactico.AnalizadorIncremental) preparar(archivo, "reanalisis");
+                    int medio = analizador.longitud() / 2;
+                    analizador.editar(medio, 0, "\n");
+                    long errores = analizador.errores().size();
+                    analizador.editar(medio, 1, "");
+                    return errores + analizador.errores().size();
+                };
+            case "arbol":
+                return archivo -> {
+                    Interprete.Interprete interprete = (Interprete.Interprete) preparar(archivo, "arbol");
+                    interprete.ejecutar(new Interprete.Salida(OutputStream.nullOutputStream()));
+                    return 1;
+                };
+            case "vm":
+                return archivo -> {
+                    Interprete.MaquinaVirtual maquina = (Interprete.MaquinaVirtual) preparar(archivo, "vm");
+                    maquina.ejecutar(new Interprete.Salida(OutputStream.nullOutputStream()));
+                    return 1;
+                };
+            case "jit":
+                return archivo -> {
+                    Interprete.ProgramaJvm jvm = (Interprete.ProgramaJvm) preparar(archivo, "jit");
+                    jvm.ejecutar(new Interprete.Salida(OutputStream.nullOutputStream()));
+                    return 1;
+                };
+            default:
+                throw new IllegalArgumentException("Caso desconocido: " + nombre
+                    + " (disponibles: " + String.join(", ", CASOS) + ")");
+        }
+    }
+
+    /**
+     * Corre el caso en iteraciones de tiempoMs: las de calentamiento se
+     * descartan y de las de medición se guarda el tiempo medio por operación.
+     */
+    private static Medicion medir(String nombre, Caso caso, Path archivo,
+                                  int calentamiento, int iteraciones, long tiempoMs) throws Exception {
+        Medicion m = new Medicion();
+        m.caso = nombre;
+        m.bytes = Files.size(archivo);
+        m.tokens = contarTokens(archivo);
+        m.msPorOperacion = new double[iteraciones];
+
+        for (int i = 0; i < calentamiento + iteraciones; i++) {
+            long operaciones = 0;
+            long inicio = System.nanoTime();
+            long limite = inicio + tiempoMs * 1_000_000L;
+            long ahora;
+            do {
+                sumidero += caso.ejecutar(archivo);
+                operaciones++;
+                ahora = System.nanoTime();
+            } while (ahora < limite);
+
+            if (i >= calentamiento) {
+                m.msPorOperacion[i - calentamiento] = (ahora - inicio) / 1e6 / operaciones;
+            }
+        }
+        return m;
+    }
+
+    // Analiza y compila el programa (o lo tokeniza o analiza, para los
+    // casos incremental y reanalisis) la primera vez que se pide en cada modo
+    private static Object preparar(Path archivo, String modo) throws IOException {
+        Path clave = Paths.get(archivo + "#" + modo);
+        Object programa = programas.get(clave);
+        if (programa == null && modo.equals("incremental")) {
+            programa = new AnalizadorSintactico.LexicoIncremental(
+                new String(Files.readAllBytes(archivo), StandardCharsets.UTF_8));
+            programas.put(clave, programa);
+        } else if (programa == null && modo.equals("reanalisis")) {
+            programa = new AnalisisSintactico.AnalizadorIncremental(
+                new String(Files.readAllBytes(archivo), StandardCharsets.UTF_8));
+            programas.put(clave, programa);
+        } else if (programa == null) {
+            AnalisisSintactico.Analizador analizador = new AnalisisSintactico.Analizador();
+            if (!analizador.analizar(archivo.toString()).isEmpty()) {
+                throw new IllegalStateException("El programa de ejecucion tiene errores: " + archivo);
+            }
+            if (modo.equals("arbol")) {
+                programa = new Interprete.Interprete(analizador.arbol());
+            } else {
+                Interprete.ProgramaCompilado compilado = Interprete.Compilador.compilar(analizador.arbol());
+                programa = modo.equals("vm") ? new Interprete.MaquinaVirtual(compilado)
+                    : Interprete.ProgramaJvm.compilar(compilado);
+            }
+            programas.put(clave, programa);
+        }
+        return programa;
+    }
+
+    // Programa con enteros, decimales, cadenas y condiciones dentro de un ciclo
+    private static void escribirPrograma(long vueltas, Path archivo) throws IOException {
+        Files.write(archivo, Arrays.asList(
+            "Caruma",
+            "intCHELADA suma = 0",
+            "granito d = 0.0",
+            "cadena s = \"\"",
+            "paraPapoi(intCHELADA i = 0 : i < " + vueltas + " : i = i + 1) {",
+            "    suma = suma + i * 3 / 2",
+            "    d = d + 0.5",
+            "    CaeCliente(i / 1000 * 1000 == i DIOSNO suma < 0) {",
+            "        s = \"vuelta \" + i",
+            "    }",
+            "}",
+            "holahola(suma, \" \", d, \" \", s)",
+            "byebye"));
+    }
+
+    /**
+     * Una sola línea de unos tamano bytes: un identificador, un literal de
+     * texto y unas comillas sin cierre seguidas de palabras, de un tercio
+     * cada uno. El generado lee las comillas hasta el final antes de ver que
+     * no cierran, así que los tres tramos pasan enteros por el buffer.
+     */
+    private static void escribirLineaLarga(long tamano, Path archivo) throws IOException {
+        long tercio = Math.max(1, tamano / 3);
+        try (BufferedWriter salida = Files.newBufferedWriter(archivo, StandardCharsets.UTF_8)) {
+            salida.write("Caruma x");
+            for (long i = 0; i < tercio; i++) {
+                salida.write('a');
+            }
+            salida.write(" \"");
+            for (long i = 0; i < tercio; i++) {
+                salida.write('b');
+            }
+            salida.write("\" \"");
+            for (long i = 0; i < tercio; i += 4) {
+                salida.write("pq ");
+            }
+        }
+    }
+
+    private static void escribirVolcado(Path archivo, Path tkb) throws IOException {
+        AnalizadorLexico.CarumaLangLexerTokenManager lexer = new AnalizadorLexico.CarumaLangLexerTokenManager(
+            new AnalizadorLexico.FlujoMapeado(archivo));
+        try (AnalizadorLexico.VolcadoTokens.Escritor escritor =
+                new AnalizadorLexico.VolcadoTokens.Escritor(tkb, archivo.toString())) {
+            AnalizadorLexico.Token t;
+            while ((t = lexer.getNextToken()).kind != AnalizadorLexico.CarumaLangLexerConstants.EOF) {
+                if (t.kind == AnalizadorLexico.CarumaLangLexerConstants.INVALID) {
+                    escritor.error(t.image, t.beginLine, t.beginColumn, "");
+                } else {
+                    escritor.token(t);
+                }
+            }
+            escritor.terminar(t.beginLine, t.beginColumn);
+        }
+    }
+
+    /**
+     * Compara token por token los token managers de tabla con los generados
+     * de las dos gramáticas: tipo, imagen, posiciones y, en la del parser,
+     * los INVALID encadenados en specialToken. Devuelve los tokens del
+     * archivo o lanza IllegalStateException con la primera diferencia.
+     */
+    static long compararLexicos(Path archivo) throws IOException {
+        AnalizadorLexico.CarumaLangLexerTokenManager lexico =
+            new AnalizadorLexico.CarumaLangLexerTokenManager(new AnalizadorLexico.FlujoMapeado(archivo));
+        AnalizadorLexico.CarumaLangLexerTokenManager lexicoTabla =
+            new AnalizadorLexico.LexicoTabla(new AnalizadorLexico.FlujoMapeado(archivo));
+        AnalizadorSintactico.CarumaLangParserTokenManager sintactico =
+            new AnalizadorSintactico.CarumaLangParserTokenManager(new AnalizadorSintactico.FlujoMapeado(archivo));
+        AnalizadorSintactico.CarumaLangParserTokenManager sintacticoTabla =
+            new AnalizadorSintactico.LexicoTabla(new AnalizadorSintactico.FlujoMapeado(archivo));
+
+        long tokens = 0;
+        AnalizadorLexico.Token a;
+        do {
+            a = lexico.getNextToken();
+            AnalizadorLexico.Token b = lexicoTabla.getNextToken();
+            String esperado = describir(a.kind, a.image, a.beginLine, a.beginColumn, a.endLine, a.endColumn);
+            String obtenido = describir(b.kind, b.image, b.beginLine, b.beginColumn, b.endLine, b.endColumn);
+            if (!esperado.equals(obtenido)) {
+                throw new IllegalStateException("AnalizadorLexico.LexicoTabla difiere en " + archivo
+                    + ": " + obtenido + " en lugar de " + esperado);
+            }
+            if (a.kind != AnalizadorLexico.CarumaLangLexerConstants.EOF) {
+                tokens++;
+            }
+        } while (a.kind != AnalizadorLexico.CarumaLangLexerConstants.EOF);
+
+        AnalizadorSintactico.Token c;
+        do {
+            c = sintactico.getNextToken();
+            AnalizadorSintactico.Token d = sintacticoTabla.getNextToken();
+            String esperado = describirConEspeciales(c);
+            String obtenido = describirConEspeciales(d);
+            if (!esperado.equals(obtenido)) {
+                throw new IllegalStateException("AnalizadorSintactico.LexicoTabla difiere en " + archivo
+                    + ": " + obtenido + " en lugar de " + esperado);
+            }
+        } while (c.kind != AnalizadorSintactico.CarumaLangParserConstants.EOF);
+        return tokens;
+    }
+
+    /**
+     * Compara LexicoParalelo con CarumaLangParserTokenManager leyendo el
+     * archivo de corrido: los tokens válidos con sus offsets y posiciones, y
+     * los errores léxicos con los INVALID, en orden. Los trozos son de un octavo del archivo para que
+     * haya cortes aunque sea chico. Lanza IllegalStateException con la
+     * primera diferencia.
+     */
+    static void compararParalelo(Path archivo) throws IOException {
+        AnalizadorSintactico.FlujoMapeado secuencial = new AnalizadorSintactico.FlujoMapeado(archivo);
+        AnalizadorSintactico.CarumaLangParserTokenManager generado =
+            new AnalizadorSintactico.CarumaLangParserTokenManager(secuencial);
+        AnalizadorSintactico.BufferTokens esperados = new AnalizadorSintactico.BufferTokens(secuencial);
+        List<String> especialesEsperados = new ArrayList<>();
+        AnalizadorSintactico.Token t;
+        do {
+            t = generado.getNextToken();
+            AnalizadorSintactico.Token e = t.specialToken;
+            while (e != null && e.specialToken != null) {
+                e = e.specialToken;
+            }
+            for (; e != null; e = e.next) {
+                // LexicoTabla informa los dos surrogates de un carácter
+                // fuera del BMP como un solo error
+                if (Character.isHighSurrogate(e.image.charAt(0)) && e.next != null
+                        && Character.isLowSurrogate(e.next.image.charAt(0))) {
+                    especialesEsperados.add(describir(e.kind, e.image + e.next.image,
+                        e.beginLine, e.beginColumn, e.beginLine, e.beginColumn));
+                    e = e.next;
+                    continue;
+                }
+                especialesEsperados.add(describir(e.kind, e.image, e.beginLine, e.beginColumn, e.endLine, e.endColumn));
+            }
+            esperados.agregar(t);
+        } while (t.kind != AnalizadorSintactico.CarumaLangParserConstants.EOF);
+
+        AnalizadorSintactico.FlujoMapeado stream = new AnalizadorSintactico.FlujoMapeado(archivo);
+        AnalizadorSintactico.LexicoParalelo paralelo = new AnalizadorSintactico.LexicoParalelo(
+            stream, ForkJoinPool.commonPool(), Math.max(1, stream.longitud() / 8));
+        AnalizadorSintactico.BufferTokens obtenidos = paralelo.tokens();
+        for (int i = 0; i < Math.max(esperados.tamano(), obtenidos.tamano()); i++) {
+            String esperado = i < esperados.tamano() ? describir(esperados, i) : "nada";
+            String obtenido = i < obtenidos.tamano() ? describir(obtenidos, i) : "nada";
+            if (!esperado.equals(obtenido)) {
+                throw new IllegalStateException("LexicoParalelo difiere en " + archivo + " (token " + i
+                    + " de " + paralelo.trozos() + " trozos): " + obtenido + " en lugar de " + esperado);
+            }
+        }
+        // Cada error es de un carácter: empieza y termina en la misma posición
+        List<String> especiales = new ArrayList<>();
+        paralelo.reportarErrores((tipo, offset, linea, columna, codigo) -> especiales.add(describir(
+            AnalizadorSintactico.CarumaLangParserConstants.INVALID, new String(Character.toChars(codigo)),
+            linea, columna, linea, columna)));
+        if (!especiales.equals(especialesEsperados)) {
+            throw new IllegalStateException("LexicoParalelo difiere en " + archivo + " en los INVALID: "
+                + especiales + " en lugar de " + especialesEsperados);
+        }
+    }
+
+    private static String describir(AnalizadorSintactico.BufferTokens tokens, int i) {
+        AnalizadorSintactico.Token t = tokens.token(i);
+        return tokens.inicio(i) + "-" + tokens.fin(i) + " "
+            + describir(t.kind, t.image, t.beginLine, t.beginColumn, t.endLine, t.endColumn);
+    }
+
+    private static String describir(int tipo, String imagen, int linea, int columna,
+                                    int lineaFin, int columnaFin) {
+        return tipo + " \"" + imagen + "\" " + linea + ":" + columna + "-" + lineaFin + ":" + columnaFin;
+    }
+
+    // El token y sus especiales, del más reciente al primero, con el
+    // siguiente de cada uno
+    private static String describirConEspeciales(AnalizadorSintactico.Token t) {
+        StringBuilder sb = new StringBuilder(
+            describir(t.kind, t.image, t.beginLine, t.beginColumn, t.endLine, t.endColumn));
+        for (AnalizadorSintactico.Token e = t.specialToken; e != null; e = e.specialToken) {
+            sb.append(" [").append(describir(e.kind, e.image, e.beginLine, e.beginColumn, e.endLine, e.endColumn));
+            if (e.next != null) {
+                sb.append(" -> ").append(e.next.image);
+            }
+            sb.append(']');
+        }
+        return sb.toString();
+    }
+
+    private static long contarTokens(Path archivo) throws IOException {
+        AnalizadorLexico.CarumaLangLexerTokenManager lexer = new AnalizadorLexico.CarumaLangLexerTokenManager(
+            new AnalizadorLexico.FlujoMapeado(archivo));
+        long tokens = 0;
+        while (lexer.getNextToken().kind != AnalizadorLexico.CarumaLangLexerConstants.EOF) {
+            tokens++;
+        }
+        return tokens;
+    }
+
+    private static void imprimir(Medicion m, String tamano) {
+        double media = m.media();
+        double segundos = media / 1000;
+        System.out.printf("%-13s %6s  %10.3f +- %8.3f ms/op  %8.1f MB/s  %12.0f tokens/s%n",
+            m.caso, tamano, media, m.desviacion(),
+            m.bytes / (1024.0 * 1024.0) / segundos,
+            m.tokens / segundos);
+    }
+
+    private static void escribirCsv(Path csv, List<Medicion> mediciones) throws IOException {
+        boolean nuevo = !Files.exists(csv);
+        try (BufferedWriter writer = Files.newBufferedWriter(csv,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            if (nuevo) {
+                writer.write("fecha,caso,bytes,tokens,ms_por_op,desviacion_ms");
+                writer.newLine();
+            }
+            String fecha = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+            for (Medicion m : mediciones) {
+                writer.write(String.format(Locale.ROOT, "%s,%s,%d,%d,%.4f,%.4f",
+                    fecha, m.caso, m.bytes, m.tokens, m.media(), m.desviacion()));
+                writer.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,329 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache en disco de los resultados de AnalisisSintactico para el modo por
+ * lotes ("--cache DIR").
+ *
+ * Cada entrada es un archivo del directorio con la cantidad de tokens y la
+ * lista de errores de un fuente. Su nombre es el SHA-256 del contenido del
+ * fuente junto con la huella del analizador: los bytes de todas las clases
+ * de AnalizadorSintactico y Escaneo, y de AnalisisSintactico con sus clases
+ * anidadas (ver AnalizadorSintactico.HuellaClases). Un fuente sin
+ * cambios encuentra su entrada aunque se haya movido o tocado su fecha, y
+ * cualquier cambio en la gramática o en el analizador deja las entradas
+ * viejas sin usar hasta que se descartan.
+ *
+ * El directorio tiene un tamaño máximo ("--cache-max MB"). Al encontrar
+ * una entrada se actualiza su fecha de modificación, y cuando el total
+ * pasa el máximo se borran las de fecha más antigua: las que hace más
+ * tiempo no se usan. Igual que el .crmc, las entradas se escriben en un
+ * temporal que se renombra, y una entrada dañada cuenta como fallo.
+ *
+ * Los hilos del lote comparten la instancia; cada método es seguro desde
+ * cualquier hilo.
+ */
+public class CacheAnalisis {
+
+    private static final int MAGICO = 0x43524D41;   // "CRMA"
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".cra";
+    static final long MAXIMO_POR_DEFECTO = 256L * 1024 * 1024;
+
+    // Clases de las que depende el resultado del análisis, como prefijos de
+    // sus recursos: los paquetes enteros y AnalisisSintactico con sus
+    // clases anidadas
+    private static final String[] CLASES_ANALIZADOR = {
+        "AnalizadorSintactico/",
+        "Escaneo/",
+        "AnalisisSintactico.class",
+        "AnalisisSintactico$",
+    };
+
+    // Resultado guardado de un fuente
+    static class Entrada {
+        int tokens;
+        List<AnalisisSintactico.ErrorAnalisis> errores;
+    }
+
+    private final Path directorio;
+    private final long maximo;
+    private final byte[] huella;
+    private final AtomicLong tamano = new AtomicLong();
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong descartadas = new AtomicLong();
+
+    CacheAnalisis(Path directorio, long maximo) throws IOException {
+        this.directorio = directorio;
+        this.maximo = maximo;
+        this.huella = huellaAnalizador();
+        Files.createDirectories(directorio);
+        for (Path entrada : entradas()) {
+            tamano.addAndGet(tamanoDe(entrada));
+        }
+    }
+
+    /**
+     * Clave del contenido de un fuente: el SHA-256 de la huella del
+     * analizador seguida del contenido.
+     */
+    byte[] clave(byte[] contenido) {
+        MessageDigest sha = sha256();
+        sha.update(huella);
+        return sha.digest(contenido);
+    }
+
+    /**
+     * Resultado guardado para la clave, o null si no hay entrada o no se
+     * puede leer. Una entrada encontrada pasa a ser la usada más reciente.
+     */
+    Entrada buscar(byte[] clave) {
+        Path archivo = archivoEntrada(clave);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(archivo)))) {
+            byte[] guardada = new byte[clave.length];
+            if (in.readInt() != MAGICO || in.readInt() != VERSION) {
+                fallos.incrementAndGet();
+                return null;
+            }
+            in.readFully(guardada);
+            if (!Arrays.equals(guardada, clave)) {
+                fallos.incrementAndGet();
+                return null;
+            }
+            Entrada entrada = leer(in, Files.size(archivo));
+            Files.setLastModifiedTime(archivo, FileTime.fromMillis(System.currentTimeMillis()));
+            aciertos.incrementAndGet();
+            return entrada;
+        } catch (IOException | RuntimeException e) {
+            // Sin entrada, truncada o con tamaños imposibles: se analiza
+            fallos.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Guarda el resultado de un fuente y, si el directorio pasa del máximo,
+     * descarta las entradas usadas hace más tiempo.
+     */
+    void guardar(byte[] clave, int tokens, List<AnalisisSintactico.ErrorAnalisis> errores) throws IOException {
+        Path archivo = archivoEntrada(clave);
+        Path temporal = Files.createTempFile(directorio, archivo.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporal)))) {
+                out.writeInt(MAGICO);
+                out.writeInt(VERSION);
+                out.write(clave);
+                escribir(out, tokens, errores);
+            }
+            long anterior = tamanoDe(archivo);
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING);
+            if (tamano.addAndGet(tamanoDe(archivo) - anterior) > maximo) {
+                recortar();
+            }
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    /**
+     * Borra las entradas de fecha más antigua hasta dejar el directorio en
+     * nueve décimos del máximo, así no se vuelve a recorrer con cada
+     * entrada nueva.
+     */
+    private synchronized void recortar() throws IOException {
+        if (tamano.get() <= maximo) {
+            return;
+        }
+        List<Path> archivos = entradas();
+        long[] fechas = new long[archivos.size()];
+        long[] tamanos = new long[archivos.size()];
+        Integer[] orden = new Integer[archivos.size()];
+        long total = 0;
+        for (int i = 0; i < orden.length; i++) {
+            orden[i] = i;
+            try {
+                BasicFileAttributes atributos = Files.readAttributes(archivos.get(i), BasicFileAttributes.class);
+                fechas[i] = atributos.lastModifiedTime().toMillis();
+                tamanos[i] = atributos.size();
+            } catch (NoSuchFileException e) {
+                // Otro proceso la borró
+            }
+            total += tamanos[i];
+        }
+        Arrays.sort(orden, (a, b) -> Long.compare(fechas[a], fechas[b]));
+
+        long objetivo = maximo / 10 * 9;
+        for (int i = 0; i < orden.length && total > objetivo; i++) {
+            if (Files.deleteIfExists(archivos.get(orden[i]))) {
+                total -= tamanos[orden[i]];
+                descartadas.incrementAndGet();
+            }
+        }
+        tamano.set(total);
+    }
+
+    long aciertos() {
+        return aciertos.get();
+    }
+
+    long fallos() {
+        return fallos.get();
+    }
+
+    long descartadas() {
+        return descartadas.get();
+    }
+
+    long tamano() {
+        return tamano.get();
+    }
+
+    /**
+     * Imprime las estadísticas de uso de la cache al final del lote.
+     */
+    void imprimirResumen() {
+        long consultas = aciertos() + fallos();
+        System.out.println("Cache de analisis: " + directorio);
+        System.out.printf("  - Aciertos: %d de %d (%.1f%%)%n", aciertos(), consultas,
+            consultas > 0 ? 100.0 * aciertos() / consultas : 0.0);
+        System.out.println("  - Fallos: " + fallos());
+        System.out.println("  - Entradas descartadas: " + descartadas());
+        System.out.printf("  - Tamano: %.2f MB de %.2f MB%n", tamano() / 1048576.0, maximo / 1048576.0);
+        System.out.println("========================================");
+    }
+
+    private Path archivoEntrada(byte[] clave) {
+        StringBuilder nombre = new StringBuilder(clave.length * 2 + EXTENSION.length());
+        for (byte b : clave) {
+            nombre.append(Character.forDigit((b >> 4) & 0xF, 16))
+                  .append(Character.forDigit(b & 0xF, 16));
+        }
+        return directorio.resolve(nombre.append(EXTENSION).toString());
+    }
+
+    private List<Path> entradas() throws IOException {
+        List<Path> archivos = new ArrayList<>();
+        try (DirectoryStream<Path> contenido = Files.newDirectoryStream(directorio, "*" + EXTENSION)) {
+            for (Path p : contenido) {
+                archivos.add(p);
+            }
+        }
+        return archivos;
+    }
+
+    private static long tamanoDe(Path archivo) throws IOException {
+        try {
+            return Files.size(archivo);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    private static void escribir(DataOutputStream out, int tokens,
+                                 List<AnalisisSintactico.ErrorAnalisis> errores) throws IOException {
+        out.writeInt(tokens);
+        out.writeInt(errores.size());
+        for (AnalisisSintactico.ErrorAnalisis error : errores) {
+            out.writeByte(error.tipo.ordinal());
+            out.writeInt(error.linea);
+            out.writeInt(error.columna);
+            escribirCadena(out, error.mensaje);
+            escribirCadena(out, error.tokenEncontrado);
+            escribirCadena(out, error.tokenEsperado);
+        }
+    }
+
+    // Ninguna cantidad puede superar el tamaño del archivo: así una entrada
+    // dañada no pide arreglos gigantes
+    private static Entrada leer(DataInputStream in, long limite) throws IOException {
+        AnalisisSintactico.TipoError[] tipos = AnalisisSintactico.TipoError.values();
+        Entrada entrada = new Entrada();
+        entrada.tokens = in.readInt();
+        int cantidad = cantidad(in, limite);
+        entrada.errores = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            AnalisisSintactico.TipoError tipo = tipos[in.readUnsignedByte()];
+            int linea = in.readInt();
+            int columna = in.readInt();
+            String mensaje = leerCadena(in, limite);
+            String encontrado = leerCadena(in, limite);
+            String esperado = leerCadena(in, limite);
+            entrada.errores.add(new AnalisisSintactico.ErrorAnalisis(
+                tipo, mensaje, linea, columna, encontrado, esperado));
+        }
+        if (in.read() != -1) {
+            throw new IOException("Datos de mas en la entrada de cache");
+        }
+        return entrada;
+    }
+
+    // Las cadenas nulas se guardan con largo -1
+    private static void escribirCadena(DataOutputStream out, String valor) throws IOException {
+        if (valor == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String leerCadena(DataInputStream in, long limite) throws IOException {
+        int largo = in.readInt();
+        if (largo == -1) {
+            return null;
+        }
+        if (largo < 0 || largo > limite) {
+            throw new IOException("Largo invalido en la entrada de cache: " + largo);
+        }
+        byte[] bytes = new byte[largo];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int cantidad(DataInputStream in, long limite) throws IOException {
+        int cantidad = in.readInt();
+        if (cantidad < 0 || cantidad > limite) {
+            throw new IOException("Cantidad invalida en la entrada de cache: " + cantidad);
+        }
+        return cantidad;
+    }
+
+    /**
+     * SHA-256 de los bytes de las clases del analizador, tal como los carga
+     * la JVM, junto con la versión del formato, que separa además los
+     * cambios en las entradas.
+     */
+    private static byte[] huellaAnalizador() throws IOException {
+        return AnalizadorSintactico.HuellaClases.de(AnalisisSintactico.class, VERSION, CLASES_ANALIZADOR);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Toda JVM debe incluir SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
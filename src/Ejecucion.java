@@ -0,0 +1,157 @@
+import Interprete.Compilador;
+import Interprete.ErrorEjecucion;
+import Interprete.Interprete;
+import Interprete.MaquinaVirtual;
+import Interprete.ProgramaCompilado;
+import Interprete.ProgramaJvm;
+import Interprete.Salida;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JFileChooser;
+import javax.swing.filechooser.FileNameExtensionFilter;
+
+/**
+ * Ejecuta programas CarumaLang.
+ *
+ * Cada archivo pasa primero por el análisis léxico y sintáctico completo; si
+ * tiene errores se muestran y no se ejecuta. Si no, se ejecuta y lo que
+ * imprime holahola sale por la salida estándar.
+ *
+ * Por defecto el programa se compila a bytecode y corre en la máquina
+ * virtual; el bytecode se guarda en un .crmc junto al fuente y las
+ * ejecuciones siguientes lo usan sin volver a analizar mientras el .crm no
+ * cambie. Con "--modo arbol" se usa el intérprete que recorre el árbol, y
+ * con "--modo jit" el bytecode se traduce a una clase de la JVM
+ * (ProgramaJvm); si no cabe, se avisa y se usa la máquina virtual.
+ *
+ * Antes de ejecutar o compilar, el programa pasa por el Optimizador
+ * (constantes plegadas y ramas muertas quitadas); "--sin-optimizar" lo
+ * salta, y entonces tampoco se usa el .crmc, que guarda el código optimizado.
+ *
+ * Uso: java Ejecucion [--modo arbol|vm|jit] [--sin-cache] [--sin-optimizar]
+ *        [--desensamblar]
+ *        programa.crm [otro.crm ...]
+ * Sin archivos se abre un JFileChooser, como en los analizadores. El
+ * código de salida es 0 si todo se ejecutó, 1 si hubo errores de análisis
+ * o de ejecución y 2 si algún archivo no se pudo leer.
+ */
+public class Ejecucion {
+
+    // Opciones de la línea de comandos
+    static class Opciones {
+        String modo = "vm";
+        boolean cache = true;
+        boolean optimizar = true;
+        boolean desensamblar = false;
+    }
+
+    public static void main(String[] args) {
+        Opciones opciones = new Opciones();
+        List<String> archivos = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--modo":
+                    opciones.modo = i + 1 < args.length ? args[++i] : "";
+                    if (!opciones.modo.equals("arbol") && !opciones.modo.equals("vm")
+                            && !opciones.modo.equals("jit")) {
+                        System.err.println("Modo no reconocido: " + opciones.modo + " (arbol, vm o jit)");
+                        System.exit(2);
+                    }
+                    break;
+                case "--sin-cache":     opciones.cache = false; break;
+                case "--sin-optimizar": opciones.optimizar = false; opciones.cache = false; break;
+                case "--desensamblar":  opciones.desensamblar = true; break;
+                default:                archivos.add(args[i]); break;
+            }
+        }
+
+        if (archivos.isEmpty()) {
+            JFileChooser fileChooser = new JFileChooser();
+            FileNameExtensionFilter filter = new FileNameExtensionFilter("Archivo CarumaLang", "crm");
+            fileChooser.setFileFilter(filter);
+            if (fileChooser.showOpenDialog(null) != JFileChooser.APPROVE_OPTION) {
+                System.out.println("No se selecciono ningun archivo.");
+                return;
+            }
+            archivos.add(fileChooser.getSelectedFile().getAbsolutePath());
+        }
+
+        AnalisisSintactico.Analizador analizador = new AnalisisSintactico.Analizador();
+        Salida salida = new Salida(System.out);
+        int codigo = 0;
+        for (String fileName : archivos) {
+            codigo = Math.max(codigo, ejecutarArchivo(fileName, analizador, salida, opciones));
+        }
+        System.exit(codigo);
+    }
+
+    // Analiza y ejecuta un archivo; devuelve su código de salida
+    private static int ejecutarArchivo(String fileName, AnalisisSintactico.Analizador analizador,
+                                       Salida salida, Opciones opciones) {
+        try {
+            Path fuente = Paths.get(fileName);
+            ProgramaCompilado compilado = null;
+            if (!opciones.modo.equals("arbol") && opciones.cache) {
+                compilado = ProgramaCompilado.leerCache(fuente);
+            }
+            if (compilado == null) {
+                List<AnalisisSintactico.ErrorAnalisis> errores = analizador.analizar(fileName);
+                if (!errores.isEmpty()) {
+                    System.err.println(fileName + ": " + errores.size() + " error(es), no se ejecuta");
+                    for (AnalisisSintactico.ErrorAnalisis error : errores) {
+                        System.err.println("  Linea " + error.linea + ", columna " + error.columna
+                            + ": " + error.mensaje);
+                    }
+                    return 1;
+                }
+                if (opciones.modo.equals("arbol")) {
+                    new Interprete(analizador.arbol(), opciones.optimizar).ejecutar(salida);
+                    return 0;
+                }
+                compilado = Compilador.compilar(analizador.arbol(), opciones.optimizar);
+                if (opciones.cache) {
+                    guardarCache(compilado, fuente);
+                }
+            }
+            if (opciones.desensamblar) {
+                System.out.print(compilado.desensamblar());
+                return 0;
+            }
+            if (opciones.modo.equals("jit")) {
+                ProgramaJvm jvm = ProgramaJvm.compilar(compilado);
+                if (jvm != null) {
+                    jvm.ejecutar(salida);
+                    return 0;
+                }
+                System.err.println("Aviso: " + fileName + " es demasiado grande para el JIT, se usa la maquina virtual");
+            }
+            new MaquinaVirtual(compilado).ejecutar(salida);
+            return 0;
+        } catch (ErrorEjecucion e) {
+            System.err.println(fileName + ": Linea " + e.getLinea() + ", columna " + e.getColumna()
+                + ": " + e.getMessage());
+            return 1;
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            System.err.println("Error: No se pudo encontrar el archivo: " + fileName);
+            return 2;
+        } catch (IOException e) {
+            System.err.println("Error al leer el archivo: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    // Un directorio de solo lectura no impide ejecutar: el .crmc es opcional
+    private static void guardarCache(ProgramaCompilado compilado, Path fuente) {
+        try {
+            compilado.guardarCache(fuente);
+        } catch (IOException e) {
+            System.err.println("Aviso: no se pudo guardar " + ProgramaCompilado.archivoCache(fuente)
+                + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package Escaneo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Búsquedas por bloques sobre los bytes de un archivo .crm, para que
+ * FlujoMapeado avance sobre los tramos que no deciden nada (espacios,
+ * identificadores, dígitos y el contenido de los literales de texto) sin
+ * leerlos de a un carácter.
+ *
+ * Cada método recibe el rango [desde, hasta) y devuelve el offset del
+ * primer byte del rango que no pertenece a la clase buscada, o hasta si
+ * todos pertenecen. Los bytes desde 0x80 (UTF-8 que no es ASCII) nunca
+ * pertenecen a ninguna clase: el flujo los decodifica carácter por carácter.
+ *
+ * Hay dos implementaciones: EscanerVectorial, que compara 16 a 64 bytes por
+ * instrucción con la Vector API (jdk.incubator.vector), y EscanerEscalar.
+ * elegir() usa la vectorial si está compilada y el módulo está disponible
+ * al ejecutar ("--add-modules jdk.incubator.vector"); si no, la escalar.
+ */
+public interface Escaner {
+
+    /** Fin de un tramo de ' ', '\t', '\r' y '\n'. */
+    int finEspacios(ByteBuffer datos, int desde, int hasta);
+
+    /** Fin de un tramo de letras ASCII y dígitos. */
+    int finAlfanumericos(ByteBuffer datos, int desde, int hasta);
+
+    /** Fin de un tramo de dígitos. */
+    int finDigitos(ByteBuffer datos, int desde, int hasta);
+
+    /**
+     * Fin de un tramo de ASCII sin '"', '\n', '\r' ni '\t': el contenido de
+     * un literal de texto que no necesita más que avanzar.
+     */
+    int finTextoSimple(ByteBuffer datos, int desde, int hasta);
+
+    /**
+     * Primer '\n', '\r' o '\t' del rango, o hasta si no hay: los bytes que
+     * cambian la línea o la columna dentro de un tramo de espacios.
+     */
+    int siguienteSalto(ByteBuffer datos, int desde, int hasta);
+
+    /** Nombre para los mensajes y el banco de rendimiento. */
+    String nombre();
+
+    /**
+     * Implementación a usar en esta JVM. La vectorial se carga por nombre y
+     * se prueba sobre un buffer pequeño: si la clase no está compilada, si
+     * falta el módulo o si su API cambió en esta versión de Java, se usa la
+     * escalar. Con -Dcarumalang.vector=false se usa siempre la escalar.
+     */
+    static Escaner elegir() {
+        if (!Boolean.parseBoolean(System.getProperty("carumalang.vector", "true"))) {
+            return new EscanerEscalar();
+        }
+        try {
+            Escaner vectorial = (Escaner) Class.forName("Escaneo.EscanerVectorial")
+                .getDeclaredConstructor().newInstance();
+            if (EscanerEscalar.coincide(vectorial)) {
+                return vectorial;
+            }
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            // Sin la clase o sin jdk.incubator.vector
+        }
+        return new EscanerEscalar();
+    }
+}
@@ -0,0 +1,113 @@
+package Escaneo;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Escaner de un byte por vez. Es el que se usa cuando la Vector API no
+ * está disponible, y la referencia contra la que se prueba la vectorial.
+ */
+public class EscanerEscalar implements Escaner {
+
+    @Override
+    public int finEspacios(ByteBuffer datos, int desde, int hasta) {
+        int p = desde;
+        while (p < hasta && esEspacio(datos.get(p))) {
+            p++;
+        }
+        return p;
+    }
+
+    @Override
+    public int finAlfanumericos(ByteBuffer datos, int desde, int hasta) {
+        int p = desde;
+        while (p < hasta && esAlfanumerico(datos.get(p))) {
+            p++;
+        }
+        return p;
+    }
+
+    @Override
+    public int finDigitos(ByteBuffer datos, int desde, int hasta) {
+        int p = desde;
+        while (p < hasta && esDigito(datos.get(p))) {
+            p++;
+        }
+        return p;
+    }
+
+    @Override
+    public int finTextoSimple(ByteBuffer datos, int desde, int hasta) {
+        int p = desde;
+        while (p < hasta && esTextoSimple(datos.get(p))) {
+            p++;
+        }
+        return p;
+    }
+
+    @Override
+    public int siguienteSalto(ByteBuffer datos, int desde, int hasta) {
+        int p = desde;
+        while (p < hasta && !esSalto(datos.get(p))) {
+            p++;
+        }
+        return p;
+    }
+
+    @Override
+    public String nombre() {
+        return "escalar";
+    }
+
+    static boolean esEspacio(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    static boolean esDigito(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    static boolean esAlfanumerico(byte b) {
+        int minuscula = b | 0x20;
+        return esDigito(b) || (minuscula >= 'a' && minuscula <= 'z');
+    }
+
+    static boolean esTextoSimple(byte b) {
+        return b >= 0 && b != '"' && b != '\n' && b != '\r' && b != '\t';
+    }
+
+    static boolean esSalto(byte b) {
+        return b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * Si otro escaner da los mismos resultados que este sobre una muestra
+     * corta con todas las clases de byte, tramos más largos que un vector y
+     * finales a mitad de vector. Se prueba desde unas pocas posiciones y no
+     * desde todas: al arrancar la Vector API corre en el intérprete y cada
+     * llamada cuesta cientos de microsegundos.
+     */
+    static boolean coincide(Escaner otro) {
+        String muestra = "Caruma x1y2Z9\t1234567890.\"ñ€{=@'\r\n"
+            + "                                                                      \n"
+            + "identificadorMuyLargoQuePasaDeUnVectorCompletoDeBytes0123456789 "
+            + "0123456789012345678901234567890123456789012345678901234567890123456789x"
+            + "texto simple sin comillas que pasa de un vector completo de bytes...\"\u0000";
+        ByteBuffer datos = ByteBuffer.wrap(muestra.getBytes(StandardCharsets.UTF_8));
+        EscanerEscalar escalar = new EscanerEscalar();
+        int limite = datos.limit();
+        int[] inicios = {0, 7, 13, 25, 36, 108, 173, 244};
+        for (int desde : inicios) {
+            for (int hasta : new int[] {limite, Math.min(limite, desde + 37)}) {
+                if (otro.finEspacios(datos, desde, hasta) != escalar.finEspacios(datos, desde, hasta)
+                        || otro.finAlfanumericos(datos, desde, hasta) != escalar.finAlfanumericos(datos, desde, hasta)
+                        || otro.finDigitos(datos, desde, hasta) != escalar.finDigitos(datos, desde, hasta)
+                        || otro.finTextoSimple(datos, desde, hasta) != escalar.finTextoSimple(datos, desde, hasta)
+                        || otro.siguienteSalto(datos, desde, hasta) != escalar.siguienteSalto(datos, desde, hasta)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
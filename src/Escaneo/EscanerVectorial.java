@@ -0,0 +1,120 @@
+package Escaneo;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Escaner con la Vector API: carga un vector de bytes (16, 32 o 64 según
+ * el procesador), marca los que terminan el tramo y salta al primero con
+ * firstTrue(). El resto del rango que no llena un vector se recorre con
+ * EscanerEscalar.
+ *
+ * Usa un módulo incubador, así que no entra en la compilación normal: solo
+ * se carga si se compiló aparte y la JVM se lanzó con el módulo, por
+ * ejemplo
+ *
+ *   javac --add-modules jdk.incubator.vector Escaneo/EscanerVectorial.java
+ *   java --add-modules jdk.incubator.vector AnalisisSintactico ../test
+ */
+public class EscanerVectorial implements Escaner {
+
+    private static final VectorSpecies<Byte> ESPECIE = ByteVector.SPECIES_PREFERRED;
+    private static final int ANCHO = ESPECIE.length();
+
+    // Los métodos comparten el recorrido y difieren en la máscara de los
+    // bytes que terminan el tramo
+    private static final int ESPACIOS = 0;
+    private static final int ALFANUMERICOS = 1;
+    private static final int DIGITOS = 2;
+    private static final int TEXTO_SIMPLE = 3;
+    private static final int SALTOS = 4;
+
+    private final EscanerEscalar escalar = new EscanerEscalar();
+
+    @Override
+    public int finEspacios(ByteBuffer datos, int desde, int hasta) {
+        int p = buscar(datos, desde, hasta, ESPACIOS);
+        return p < 0 ? escalar.finEspacios(datos, -p - 1, hasta) : p;
+    }
+
+    @Override
+    public int finAlfanumericos(ByteBuffer datos, int desde, int hasta) {
+        int p = buscar(datos, desde, hasta, ALFANUMERICOS);
+        return p < 0 ? escalar.finAlfanumericos(datos, -p - 1, hasta) : p;
+    }
+
+    @Override
+    public int finDigitos(ByteBuffer datos, int desde, int hasta) {
+        int p = buscar(datos, desde, hasta, DIGITOS);
+        return p < 0 ? escalar.finDigitos(datos, -p - 1, hasta) : p;
+    }
+
+    @Override
+    public int finTextoSimple(ByteBuffer datos, int desde, int hasta) {
+        int p = buscar(datos, desde, hasta, TEXTO_SIMPLE);
+        return p < 0 ? escalar.finTextoSimple(datos, -p - 1, hasta) : p;
+    }
+
+    @Override
+    public int siguienteSalto(ByteBuffer datos, int desde, int hasta) {
+        int p = buscar(datos, desde, hasta, SALTOS);
+        return p < 0 ? escalar.siguienteSalto(datos, -p - 1, hasta) : p;
+    }
+
+    @Override
+    public String nombre() {
+        return "vectorial (" + ANCHO + " bytes)";
+    }
+
+    /**
+     * Offset del primer byte que termina el tramo, o -(p + 1) si los
+     * vectores completos no lo encontraron y falta revisar desde p.
+     */
+    private static int buscar(ByteBuffer datos, int desde, int hasta, int clase) {
+        int p = desde;
+        for (; p + ANCHO <= hasta; p += ANCHO) {
+            ByteVector v = ByteVector.fromByteBuffer(ESPECIE, datos, p, ByteOrder.nativeOrder());
+            VectorMask<Byte> fin = terminan(v, clase);
+            if (fin.anyTrue()) {
+                return p + fin.firstTrue();
+            }
+        }
+        return -p - 1;
+    }
+
+    private static VectorMask<Byte> terminan(ByteVector v, int clase) {
+        switch (clase) {
+            case ESPACIOS:
+                return v.compare(VectorOperators.EQ, (byte) ' ')
+                    .or(v.compare(VectorOperators.EQ, (byte) '\t'))
+                    .or(v.compare(VectorOperators.EQ, (byte) '\r'))
+                    .or(v.compare(VectorOperators.EQ, (byte) '\n'))
+                    .not();
+            case ALFANUMERICOS: {
+                // Los bytes desde 0x80 son negativos y quedan fuera de los dos rangos
+                ByteVector minuscula = v.or((byte) 0x20);
+                return v.compare(VectorOperators.GE, (byte) '0').and(v.compare(VectorOperators.LE, (byte) '9'))
+                    .or(minuscula.compare(VectorOperators.GE, (byte) 'a')
+                        .and(minuscula.compare(VectorOperators.LE, (byte) 'z')))
+                    .not();
+            }
+            case DIGITOS:
+                return v.compare(VectorOperators.GE, (byte) '0').and(v.compare(VectorOperators.LE, (byte) '9'))
+                    .not();
+            case TEXTO_SIMPLE:
+                return v.compare(VectorOperators.LT, (byte) 0)
+                    .or(v.compare(VectorOperators.EQ, (byte) '"'))
+                    .or(v.compare(VectorOperators.EQ, (byte) '\n'))
+                    .or(v.compare(VectorOperators.EQ, (byte) '\r'))
+                    .or(v.compare(VectorOperators.EQ, (byte) '\t'));
+            default:
+                return v.compare(VectorOperators.EQ, (byte) '\n')
+                    .or(v.compare(VectorOperators.EQ, (byte) '\r'))
+                    .or(v.compare(VectorOperators.EQ, (byte) '\t'));
+        }
+    }
+}
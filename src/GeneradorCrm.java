@@ -0,0 +1,516 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generador de programas .crm sintéticos para medir rendimiento.
+ *
+ * Produce un programa del tamaño pedido (de 1 KB a cientos de MB) con
+ * declaraciones, asignaciones, impresiones y estructuras de control
+ * anidadas. Cada variable se declara antes de usarse, en un bloque
+ * donde se ve, y recibe valores de su tipo, así que sin errores el
+ * programa tampoco tiene errores semánticos. Con errores activados se
+ * mezclan caracteres inválidos y
+ * errores sintácticos como los de test/errores.crm y
+ * test/sintactico_errores.crm. Con un archivo base se repite su cuerpo
+ * hasta alcanzar el tamaño. La misma semilla genera siempre el mismo
+ * archivo.
+ *
+ * Uso: java GeneradorCrm <tamano> <salida.crm> [--errores] [--semilla N] [--base archivo.crm]
+ * El tamaño acepta sufijos K, M y G (por ejemplo 1K, 10M, 100M).
+ */
+public class GeneradorCrm {
+
+    // Índices en TIPOS
+    private static final int ENTERO = 0;
+    private static final int DECIMAL = 1;
+    private static final int CADENA = 2;
+    private static final int CARACTER = 3;
+    private static final int NINGUNO = -1;
+
+    private static final String[] TIPOS = {"intCHELADA", "granito", "cadena", "caracter"};
+    private static final String[] RAICES = {"num", "total", "contador", "x", "y", "resultado", "suma", "indice", "valor", "temp"};
+    private static final String[] RELACIONALES = {"<", ">", "<=", ">=", "=="};
+    private static final String[] ARITMETICOS = {"+", "-", "*", "/"};
+    private static final String[] INVALIDOS = {"@", "#", "$", "%", "&", "^", "!", "?", "~"};
+
+    private static final int PROFUNDIDAD_MAXIMA = 3;
+
+    private final Random azar;
+    private final boolean conErrores;
+    private String[] nombres;
+    private int totalNombres;
+    private final StringBuilder linea = new StringBuilder(128);
+
+    // Por número de nombre: tipo y nivel de bloque de la declaración
+    // visible (NINGUNO si no hay), como en el análisis semántico
+    private int[] tipos;
+    private int[] niveles;
+    private int nivel;
+
+    // Declaraciones tapadas, tres ints cada una: nombre, tipo y nivel
+    private int[] tapadas = new int[96];
+    private int totalTapadas;
+
+    // Nombres declarados de cada tipo, para elegir uno al usar una
+    // variable; los que quedaron tapados por otro tipo se saltean
+    private final int[][] porTipo = new int[TIPOS.length][64];
+    private final int[] totalPorTipo = new int[TIPOS.length];
+
+    // Al abrir cada bloque: totalTapadas y totalPorTipo de cada tipo
+    private int[] marcas = new int[8 * (TIPOS.length + 1)];
+
+    private Writer salida;
+    private long escritos;
+
+    GeneradorCrm(long semilla, boolean conErrores) {
+        this.azar = new Random(semilla);
+        this.conErrores = conErrores;
+
+        // Un conjunto acotado de identificadores, como en un programa real;
+        // crece solo si ya están todos declarados en el bloque actual
+        nombres = new String[200];
+        tipos = new int[nombres.length];
+        niveles = new int[nombres.length];
+        while (totalNombres < nombres.length) {
+            agregarNombre();
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Uso: java GeneradorCrm <tamano> <salida.crm> [--errores] [--semilla N] [--base archivo.crm]");
+            System.exit(2);
+        }
+
+        boolean conErrores = false;
+        long semilla = 42;
+        Path base = null;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--errores")) {
+                conErrores = true;
+            } else if (args[i].equals("--semilla") && i + 1 < args.length) {
+                semilla = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--base") && i + 1 < args.length) {
+                base = Paths.get(args[++i]);
+            } else {
+                System.err.println("Opcion no reconocida: " + args[i]);
+                System.exit(2);
+            }
+        }
+
+        try {
+            long tamano = leerTamano(args[0]);
+            Path destino = Paths.get(args[1]);
+            if (base != null) {
+                repetirBase(base, tamano, destino);
+            } else {
+                new GeneradorCrm(semilla, conErrores).generar(tamano, destino);
+            }
+            System.out.println("Generado " + destino + " (" + Files.size(destino) + " bytes)");
+        } catch (NumberFormatException e) {
+            System.err.println("Tamano invalido: " + args[0]);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Error al generar el archivo: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /** Convierte "64K", "10M" o "1G" a bytes. */
+    static long leerTamano(String texto) {
+        String t = texto.trim().toUpperCase();
+        long factor = 1;
+        if (t.endsWith("K")) {
+            factor = 1024;
+        } else if (t.endsWith("M")) {
+            factor = 1024 * 1024;
+        } else if (t.endsWith("G")) {
+            factor = 1024L * 1024 * 1024;
+        }
+        if (factor != 1) {
+            t = t.substring(0, t.length() - 1);
+        }
+        return Long.parseLong(t) * factor;
+    }
+
+    /**
+     * Escribe en destino un programa de aproximadamente tamano bytes
+     * (se detiene en la primera sentencia que alcanza el tamaño).
+     */
+    void generar(long tamano, Path destino) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(destino, StandardCharsets.US_ASCII)) {
+            salida = writer;
+            escritos = 0;
+
+            escribir("Caruma\n\n");
+            while (escritos < tamano - "byebye\n".length()) {
+                sentencia(0);
+            }
+            escribir("byebye\n");
+        }
+    }
+
+    /**
+     * Repite el cuerpo de un programa existente (lo que está entre la
+     * primera línea y "byebye") hasta alcanzar el tamaño.
+     */
+    static void repetirBase(Path base, long tamano, Path destino) throws IOException {
+        List<String> lineas = Files.readAllLines(base, StandardCharsets.UTF_8);
+        int fin = lineas.size();
+        while (fin > 1 && !lineas.get(fin - 1).trim().startsWith("byebye")) {
+            fin--;
+        }
+        if (fin <= 1) {
+            fin = lineas.size() + 1;
+        }
+        StringBuilder cuerpo = new StringBuilder();
+        for (String l : lineas.subList(1, fin - 1)) {
+            cuerpo.append(l).append('\n');
+        }
+        if (cuerpo.length() == 0) {
+            throw new IOException("El archivo base no tiene cuerpo: " + base);
+        }
+
+        try (BufferedWriter writer = Files.newBufferedWriter(destino, StandardCharsets.UTF_8)) {
+            long escritos = 0;
+            writer.write(lineas.get(0));
+            writer.write('\n');
+            String texto = cuerpo.toString();
+            while (escritos < tamano) {
+                writer.write(texto);
+                escritos += texto.length();
+            }
+            writer.write("byebye\n");
+        }
+    }
+
+    // -------------------------------------------------------
+    // Sentencias
+    // -------------------------------------------------------
+
+    private void sentencia(int profundidad) throws IOException {
+        int tipo = azar.nextInt(profundidad < PROFUNDIDAD_MAXIMA ? 10 : 6);
+        switch (tipo) {
+            case 0:
+            case 1:
+                declaracion(profundidad);
+                break;
+            case 2:
+            case 3:
+                if (!asignacion(profundidad)) {
+                    declaracion(profundidad);
+                }
+                break;
+            case 4:
+            case 5:
+                impresion(profundidad);
+                break;
+            case 6:
+            case 7:
+                estructuraIf(profundidad);
+                break;
+            case 8:
+                estructuraWhile(profundidad);
+                break;
+            default:
+                estructuraFor(profundidad);
+                break;
+        }
+
+        if (conErrores && azar.nextInt(8) == 0) {
+            indentar(profundidad);
+            linea.append(INVALIDOS[azar.nextInt(INVALIDOS.length)]);
+            terminarLinea();
+        }
+    }
+
+    private void declaracion(int profundidad) throws IOException {
+        indentar(profundidad);
+        int tipo = azar.nextInt(TIPOS.length);
+        int nombre = nombreLibre();
+        linea.append(TIPOS[tipo]).append(' ').append(nombres[nombre]);
+        if (azar.nextBoolean()) {
+            // El valor se escribe antes de declarar: puede usar la variable
+            // del mismo nombre de un bloque de afuera
+            linea.append(" = ");
+            valor(tipo, 2);
+        }
+        declarar(nombre, tipo);
+        terminarLinea();
+    }
+
+    // Asigna a una variable visible; false si todavía no hay ninguna
+    private boolean asignacion(int profundidad) throws IOException {
+        int tipo = azar.nextInt(TIPOS.length);
+        int nombre = NINGUNO;
+        for (int k = 0; k < TIPOS.length && nombre == NINGUNO; k++) {
+            nombre = variable((tipo + k) % TIPOS.length);
+        }
+        if (nombre == NINGUNO) {
+            return false;
+        }
+        indentar(profundidad);
+        linea.append(nombres[nombre]).append(" = ");
+        if (conErrores && azar.nextInt(10) == 0) {
+            // Operador sin operando izquierdo, como "intCHELADA z = + 15"
+            linea.append("+ ");
+        }
+        valor(tipos[nombre], 3);
+        terminarLinea();
+        return true;
+    }
+
+    private void impresion(int profundidad) throws IOException {
+        indentar(profundidad);
+        linea.append("holahola(");
+        if (azar.nextBoolean()) {
+            linea.append("\"Valor de ").append(nombres[azar.nextInt(totalNombres)]).append(": \"");
+        } else {
+            expresion(2, false);
+        }
+        linea.append(')');
+        terminarLinea();
+    }
+
+    private void estructuraIf(int profundidad) throws IOException {
+        indentar(profundidad);
+        linea.append("CaeCliente(");
+        condicion();
+        // Paréntesis sin cerrar, como en sintactico_errores.crm
+        linea.append(conErrores && azar.nextInt(10) == 0 ? " {" : ") {");
+        terminarLinea();
+        bloque(profundidad);
+
+        if (azar.nextInt(3) == 0) {
+            indentar(profundidad);
+            linea.append("SiNoCae {");
+            terminarLinea();
+            bloque(profundidad);
+        }
+    }
+
+    private void estructuraWhile(int profundidad) throws IOException {
+        indentar(profundidad);
+        linea.append("papoi(");
+        condicion();
+        linea.append(") {");
+        terminarLinea();
+        bloque(profundidad);
+    }
+
+    private void estructuraFor(int profundidad) throws IOException {
+        // La variable del ciclo se declara en un bloque propio
+        abrirBloque();
+        int indice = nombreLibre();
+        declarar(indice, ENTERO);
+        String i = nombres[indice];
+        indentar(profundidad);
+        linea.append("paraPapoi(intCHELADA ").append(i).append(" = 0")
+             .append(conErrores && azar.nextInt(10) == 0 ? " " : " : ")
+             .append(i).append(" < ").append(1 + azar.nextInt(100))
+             .append(" : ").append(i).append(" = ").append(i).append(" + 1) {");
+        terminarLinea();
+        bloque(profundidad);
+        cerrarBloque();
+    }
+
+    private void bloque(int profundidad) throws IOException {
+        abrirBloque();
+        int sentencias = 1 + azar.nextInt(4);
+        for (int k = 0; k < sentencias; k++) {
+            sentencia(profundidad + 1);
+        }
+        cerrarBloque();
+        indentar(profundidad);
+        linea.append('}');
+        terminarLinea();
+    }
+
+    // -------------------------------------------------------
+    // Expresiones
+    // -------------------------------------------------------
+
+    // Las condiciones comparan números, que siempre se pueden comparar
+    private void condicion() {
+        expresion(2, false);
+        linea.append(' ').append(RELACIONALES[azar.nextInt(RELACIONALES.length)]).append(' ');
+        expresion(2, false);
+        if (azar.nextInt(4) == 0) {
+            linea.append(azar.nextBoolean() ? " DIOS " : " DIOSNO ");
+            expresion(1, false);
+            linea.append(' ').append(RELACIONALES[azar.nextInt(RELACIONALES.length)]).append(' ');
+            expresion(1, false);
+        }
+    }
+
+    // Un valor que se puede asignar a una variable del tipo dado
+    private void valor(int tipo, int profundidad) {
+        if (tipo == ENTERO || tipo == DECIMAL) {
+            expresion(profundidad, tipo == ENTERO);
+            return;
+        }
+        int nombre = azar.nextBoolean() ? variable(tipo) : NINGUNO;
+        if (nombre != NINGUNO) {
+            linea.append(nombres[nombre]);
+        } else if (tipo == CADENA) {
+            linea.append('"').append("texto ").append(azar.nextInt(1000)).append('"');
+        } else {
+            linea.append('\'').append((char) ('a' + azar.nextInt(26))).append('\'');
+        }
+    }
+
+    // Expresión aritmética; con soloEnteros no usa granito, para que se
+    // pueda asignar a un intCHELADA
+    private void expresion(int profundidad, boolean soloEnteros) {
+        factor(profundidad, soloEnteros);
+        int operadores = azar.nextInt(3);
+        for (int k = 0; k < operadores; k++) {
+            linea.append(' ').append(ARITMETICOS[azar.nextInt(ARITMETICOS.length)]).append(' ');
+            factor(profundidad, soloEnteros);
+        }
+    }
+
+    private void factor(int profundidad, boolean soloEnteros) {
+        int tipo = azar.nextInt(profundidad > 0 ? 5 : 4);
+        switch (tipo) {
+            case 0:
+            case 1: {
+                int nombre = variable(ENTERO);
+                if (!soloEnteros && (nombre == NINGUNO || azar.nextBoolean())) {
+                    int decimal = variable(DECIMAL);
+                    nombre = decimal != NINGUNO ? decimal : nombre;
+                }
+                if (nombre != NINGUNO) {
+                    linea.append(nombres[nombre]);
+                } else {
+                    linea.append(azar.nextInt(10000));
+                }
+                break;
+            }
+            case 2:
+                linea.append(azar.nextInt(10000));
+                break;
+            case 3:
+                if (soloEnteros) {
+                    linea.append(azar.nextInt(10000));
+                } else {
+                    linea.append(azar.nextInt(100)).append('.').append(azar.nextInt(100));
+                }
+                break;
+            default:
+                linea.append('(');
+                expresion(profundidad - 1, soloEnteros);
+                linea.append(')');
+                break;
+        }
+    }
+
+    // -------------------------------------------------------
+    // Variables
+    // -------------------------------------------------------
+
+    private int agregarNombre() {
+        if (totalNombres == nombres.length) {
+            nombres = Arrays.copyOf(nombres, totalNombres * 2);
+            tipos = Arrays.copyOf(tipos, totalNombres * 2);
+            niveles = Arrays.copyOf(niveles, totalNombres * 2);
+        }
+        nombres[totalNombres] = RAICES[totalNombres % RAICES.length] + (totalNombres / RAICES.length);
+        tipos[totalNombres] = NINGUNO;
+        return totalNombres++;
+    }
+
+    // Un nombre que no está declarado en el bloque actual
+    private int nombreLibre() {
+        for (int intento = 0; intento < 8; intento++) {
+            int nombre = azar.nextInt(totalNombres);
+            if (tipos[nombre] == NINGUNO || niveles[nombre] != nivel) {
+                return nombre;
+            }
+        }
+        for (int nombre = 0; nombre < totalNombres; nombre++) {
+            if (tipos[nombre] == NINGUNO || niveles[nombre] != nivel) {
+                return nombre;
+            }
+        }
+        return agregarNombre();
+    }
+
+    // Una variable visible del tipo dado, o NINGUNO
+    private int variable(int tipo) {
+        int total = totalPorTipo[tipo];
+        for (int intento = 0; intento < 4 && total > 0; intento++) {
+            int nombre = porTipo[tipo][azar.nextInt(total)];
+            if (tipos[nombre] == tipo) {
+                return nombre;
+            }
+        }
+        return NINGUNO;
+    }
+
+    private void declarar(int nombre, int tipo) {
+        if (totalTapadas + 3 > tapadas.length) {
+            tapadas = Arrays.copyOf(tapadas, tapadas.length * 2);
+        }
+        tapadas[totalTapadas++] = nombre;
+        tapadas[totalTapadas++] = tipos[nombre];
+        tapadas[totalTapadas++] = niveles[nombre];
+        tipos[nombre] = tipo;
+        niveles[nombre] = nivel;
+        if (totalPorTipo[tipo] == porTipo[tipo].length) {
+            porTipo[tipo] = Arrays.copyOf(porTipo[tipo], totalPorTipo[tipo] * 2);
+        }
+        porTipo[tipo][totalPorTipo[tipo]++] = nombre;
+    }
+
+    private void abrirBloque() {
+        int base = nivel * (TIPOS.length + 1);
+        if (base + TIPOS.length + 1 > marcas.length) {
+            marcas = Arrays.copyOf(marcas, marcas.length * 2);
+        }
+        marcas[base] = totalTapadas;
+        System.arraycopy(totalPorTipo, 0, marcas, base + 1, TIPOS.length);
+        nivel++;
+    }
+
+    private void cerrarBloque() {
+        nivel--;
+        int base = nivel * (TIPOS.length + 1);
+        while (totalTapadas > marcas[base]) {
+            totalTapadas -= 3;
+            int nombre = tapadas[totalTapadas];
+            tipos[nombre] = tapadas[totalTapadas + 1];
+            niveles[nombre] = tapadas[totalTapadas + 2];
+        }
+        System.arraycopy(marcas, base + 1, totalPorTipo, 0, TIPOS.length);
+    }
+
+    // -------------------------------------------------------
+    // Escritura
+    // -------------------------------------------------------
+
+    private void indentar(int profundidad) {
+        for (int k = 0; k < profundidad; k++) {
+            linea.append("    ");
+        }
+    }
+
+    private void terminarLinea() throws IOException {
+        linea.append('\n');
+        escribir(linea);
+        linea.setLength(0);
+    }
+
+    private void escribir(CharSequence texto) throws IOException {
+        salida.append(texto);
+        escritos += texto.length();
+    }
+}
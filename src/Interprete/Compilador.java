@@ -0,0 +1,535 @@
+package Interprete;
+
+import AnalizadorSintactico.ArbolSintactico;
+import AnalizadorSintactico.CarumaLangParserConstants;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compila un programa CarumaLang a bytecode de registros (ver
+ * Instrucciones).
+ *
+ * Parte del programa resuelto del árbol (ProgramaResuelto), así que los
+ * ámbitos, los casilleros y los tipos son los mismos que usa el
+ * intérprete. Cada casillero de variable es directamente un registro de su
+ * banco; las expresiones intermedias usan temporales que se liberan en
+ * orden de pila, y las constantes viven en registros propios, de modo que
+ * "i = i + 1" es una sola instrucción SUMAR_E. Los ciclos llevan la
+ * condición al final: cada vuelta ejecuta un único salto condicional.
+ */
+public class Compilador implements Operaciones, Instrucciones {
+
+    private static final int NINGUNO = ProgramaResuelto.NINGUNO;
+
+    private final ProgramaResuelto programa;
+    private final int[] operacion;
+    private final int[] dato;
+    private final int[] primero;
+    private final int[] siguiente;
+    private final int[] tipo;
+
+    private int[] codigo = new int[256];
+    private int total = 0;
+
+    // Constantes de cada banco sin repetir. Mientras se emite, un registro
+    // de constante se escribe como -(índice + 1) y al final se reubica
+    // después de las variables y los temporales
+    private final Map<Long, Integer> indiceEnteras = new HashMap<>();
+    private final Map<Long, Integer> indiceDecimales = new HashMap<>();
+    private final Map<String, Integer> indiceCadenas = new HashMap<>();
+    private long[] constantesEnteras = new long[16];
+    private double[] constantesDecimales = new double[16];
+    private String[] constantesCadenas = new String[16];
+
+    // Temporales en uso y máximo usado de cada banco
+    private int temporalesEnteros = 0;
+    private int temporalesDecimales = 0;
+    private int temporalesCadenas = 0;
+    private int maximoEnteros = 0;
+    private int maximoDecimales = 0;
+    private int maximoCadenas = 0;
+
+    // Posición en el código de cada etiqueta; los saltos llevan el número
+    // de etiqueta hasta el final
+    private int[] etiquetas = new int[16];
+    private int totalEtiquetas = 0;
+    private int[] posiciones = new int[16];
+    private int totalPosiciones = 0;
+
+    private Compilador(ProgramaResuelto programa) {
+        this.programa = programa;
+        operacion = programa.operacion;
+        dato = programa.dato;
+        primero = programa.primero;
+        siguiente = programa.siguiente;
+        tipo = programa.tipo;
+    }
+
+    /**
+     * Compila el programa del árbol (que debe venir de un análisis sin
+     * errores), después de optimizarlo. Lanza ErrorEjecucion con los mismos
+     * errores de carga que el intérprete.
+     */
+    public static ProgramaCompilado compilar(ArbolSintactico arbol) {
+        return compilar(arbol, true);
+    }
+
+    /** Como compilar(arbol), con o sin pasar por el Optimizador. */
+    public static ProgramaCompilado compilar(ArbolSintactico arbol, boolean optimizar) {
+        ProgramaResuelto programa = new ProgramaResuelto(arbol);
+        int eliminados = optimizar ? Optimizador.optimizar(programa) : 0;
+        ProgramaCompilado compilado = new Compilador(programa).compilar();
+        compilado.nodosEliminados = eliminados;
+        return compilado;
+    }
+
+    private ProgramaCompilado compilar() {
+        if (programa.raiz != NINGUNO) {
+            sentencia(programa.raiz);
+        }
+        emitir(FIN);
+        return reubicar();
+    }
+
+    // -------------------------------------------------------
+    // Sentencias
+    // -------------------------------------------------------
+
+    private void sentencia(int n) {
+        switch (operacion[n]) {
+            case SECUENCIA:
+                for (int s = primero[n]; s != NINGUNO; s = siguiente[s]) {
+                    sentencia(s);
+                }
+                break;
+            case ASIGNAR_ENTERO:
+                if (primero[n] == NINGUNO) {
+                    emitir(MOVER_E, dato[n], constanteEntera(0));
+                } else {
+                    entero(primero[n], dato[n]);
+                }
+                break;
+            case ASIGNAR_DECIMAL:
+                if (primero[n] == NINGUNO) {
+                    emitir(MOVER_D, dato[n], constanteDecimal(0));
+                } else {
+                    decimal(primero[n], dato[n]);
+                }
+                break;
+            case ASIGNAR_CADENA:
+                if (primero[n] == NINGUNO) {
+                    emitir(MOVER_S, dato[n], constanteCadena(""));
+                } else {
+                    cadena(primero[n], dato[n]);
+                }
+                break;
+            case SI: {
+                int condicion = primero[n];
+                int entonces = siguiente[condicion];
+                int otro = siguiente[entonces];
+                int falso = etiqueta();
+                saltarSi(condicion, false, falso);
+                sentencia(entonces);
+                if (otro != NINGUNO) {
+                    int fin = etiqueta();
+                    emitir(SALTAR, fin);
+                    colocar(falso);
+                    sentencia(otro);
+                    colocar(fin);
+                } else {
+                    colocar(falso);
+                }
+                break;
+            }
+            case MIENTRAS: {
+                int condicion = primero[n];
+                int cuerpo = etiqueta();
+                int prueba = etiqueta();
+                emitir(SALTAR, prueba);
+                colocar(cuerpo);
+                sentencia(siguiente[condicion]);
+                colocar(prueba);
+                saltarSi(condicion, true, cuerpo);
+                break;
+            }
+            case PARA: {
+                int inicio = primero[n];
+                int condicion = siguiente[inicio];
+                int incremento = siguiente[condicion];
+                int cuerpo = etiqueta();
+                int prueba = etiqueta();
+                sentencia(inicio);
+                emitir(SALTAR, prueba);
+                colocar(cuerpo);
+                sentencia(siguiente[incremento]);
+                sentencia(incremento);
+                colocar(prueba);
+                saltarSi(condicion, true, cuerpo);
+                break;
+            }
+            case IMPRIMIR:
+                for (int a = primero[n]; a != NINGUNO; a = siguiente[a]) {
+                    long marca = marcaTemporales();
+                    switch (tipo[a]) {
+                        case ENTERO:   emitir(IMPRIMIR_E, registroEntero(a)); break;
+                        case DECIMAL:  emitir(IMPRIMIR_D, registroDecimal(a)); break;
+                        case CARACTER: emitir(IMPRIMIR_C, registroEntero(a)); break;
+                        default:       emitir(IMPRIMIR_S, registroCadena(a)); break;
+                    }
+                    liberar(marca);
+                }
+                emitir(NUEVA_LINEA);
+                break;
+            default:
+                throw programa.error("Operacion invalida " + operacion[n], n);
+        }
+    }
+
+    // Salta a la etiqueta si la condición vale lo indicado; si no, sigue
+    private void saltarSi(int n, boolean valor, int destino) {
+        int izquierdo = primero[n];
+        int derecho = siguiente[izquierdo];
+        switch (operacion[n]) {
+            case Y:
+            case O:
+                // "a y b" es falsa en cuanto a es falsa; "a o b" es
+                // verdadera en cuanto a es verdadera
+                boolean corta = operacion[n] == O;
+                if (valor == corta) {
+                    saltarSi(izquierdo, valor, destino);
+                    saltarSi(derecho, valor, destino);
+                } else {
+                    int sigue = etiqueta();
+                    saltarSi(izquierdo, corta, sigue);
+                    saltarSi(derecho, valor, destino);
+                    colocar(sigue);
+                }
+                return;
+            default:
+                break;
+        }
+
+        long marca = marcaTemporales();
+        int relacion = relacion(dato[n]);
+        switch (operacion[n]) {
+            case COMPARAR_ENTERO: {
+                int a = registroEntero(izquierdo);
+                int b = registroEntero(derecho);
+                emitir(SI_E + (valor ? relacion : negada(relacion)), a, b, destino);
+                break;
+            }
+            case COMPARAR_DECIMAL: {
+                // Con NaN ninguna relación se cumple: la negación de "<" no
+                // es ">=", así que los decimales tienen saltos negados
+                int a = registroDecimal(izquierdo);
+                int b = registroDecimal(derecho);
+                emitir((valor ? SI_D : NO_D) + relacion, a, b, destino);
+                break;
+            }
+            case COMPARAR_CADENA: {
+                int a = registroCadena(izquierdo);
+                int b = registroCadena(derecho);
+                emitir(SI_S + (valor ? relacion : negada(relacion)), a, b, destino);
+                break;
+            }
+            default:
+                throw programa.error("Operacion invalida " + operacion[n], n);
+        }
+        liberar(marca);
+    }
+
+    private static int relacion(int operador) {
+        switch (operador) {
+            case CarumaLangParserConstants.MENORQUE:         return MENOR;
+            case CarumaLangParserConstants.MAYORQUE:         return MAYOR;
+            case CarumaLangParserConstants.MENORIGUALITOQUE: return MENOR_IGUAL;
+            case CarumaLangParserConstants.MAYORIGUALITOQUE: return MAYOR_IGUAL;
+            default:                                         return IGUAL;
+        }
+    }
+
+    private static int negada(int relacion) {
+        switch (relacion) {
+            case MENOR:       return MAYOR_IGUAL;
+            case MAYOR:       return MENOR_IGUAL;
+            case MENOR_IGUAL: return MAYOR;
+            case MAYOR_IGUAL: return MENOR;
+            case IGUAL:       return DISTINTO;
+            default:          return IGUAL;
+        }
+    }
+
+    // -------------------------------------------------------
+    // Expresiones. valor(n, destino) deja el valor en el registro destino;
+    // registro(n) devuelve un registro que ya lo tiene, sin copiar
+    // variables ni constantes
+    // -------------------------------------------------------
+
+    private void entero(int n, int destino) {
+        switch (operacion[n]) {
+            case CONSTANTE_ENTERO:
+            case VARIABLE_ENTERO:
+                int origen = registroEntero(n);
+                if (origen != destino) {
+                    emitir(MOVER_E, destino, origen);
+                }
+                return;
+            default:
+                break;
+        }
+        long marca = marcaTemporales();
+        int a = registroEntero(primero[n]);
+        int b = registroEntero(siguiente[primero[n]]);
+        switch (operacion[n]) {
+            case SUMA_ENTERO:     emitir(SUMAR_E, destino, a, b); break;
+            case RESTA_ENTERO:    emitir(RESTAR_E, destino, a, b); break;
+            case PRODUCTO_ENTERO: emitir(MULTIPLICAR_E, destino, a, b); break;
+            case DIVISION_ENTERO: emitir(DIVIDIR_E, destino, a, b, posicion(n)); break;
+            default:
+                throw programa.error("Operacion invalida " + operacion[n], n);
+        }
+        liberar(marca);
+    }
+
+    private int registroEntero(int n) {
+        switch (operacion[n]) {
+            case CONSTANTE_ENTERO:
+                return constanteEntera(programa.constantesEnteras[dato[n]]);
+            case VARIABLE_ENTERO:
+                return dato[n];
+            default:
+                int temporal = temporalEntero();
+                entero(n, temporal);
+                return temporal;
+        }
+    }
+
+    private void decimal(int n, int destino) {
+        switch (operacion[n]) {
+            case SUMA_DECIMAL:
+            case RESTA_DECIMAL:
+            case PRODUCTO_DECIMAL:
+            case DIVISION_DECIMAL: {
+                long marca = marcaTemporales();
+                int a = registroDecimal(primero[n]);
+                int b = registroDecimal(siguiente[primero[n]]);
+                emitir(SUMAR_D + operacion[n] - SUMA_DECIMAL, destino, a, b);
+                liberar(marca);
+                return;
+            }
+            case CONSTANTE_DECIMAL:
+            case VARIABLE_DECIMAL:
+            case CONSTANTE_ENTERO:
+                emitir(MOVER_D, destino, registroDecimal(n));
+                return;
+            default: {
+                // Un entero calculado se convierte
+                long marca = marcaTemporales();
+                emitir(A_DECIMAL, destino, registroEntero(n));
+                liberar(marca);
+            }
+        }
+    }
+
+    private int registroDecimal(int n) {
+        switch (operacion[n]) {
+            case CONSTANTE_DECIMAL:
+                return constanteDecimal(programa.constantesDecimales[dato[n]]);
+            case CONSTANTE_ENTERO:
+                return constanteDecimal(programa.constantesEnteras[dato[n]]);
+            case VARIABLE_DECIMAL:
+                return dato[n];
+            default:
+                int temporal = temporalDecimal();
+                decimal(n, temporal);
+                return temporal;
+        }
+    }
+
+    private void cadena(int n, int destino) {
+        if (operacion[n] == CONCATENAR) {
+            long marca = marcaTemporales();
+            int a = registroTexto(primero[n]);
+            int b = registroTexto(siguiente[primero[n]]);
+            emitir(CONCATENAR_S, destino, a, b);
+            liberar(marca);
+        } else {
+            emitir(MOVER_S, destino, registroCadena(n));
+        }
+    }
+
+    private int registroCadena(int n) {
+        switch (operacion[n]) {
+            case CONSTANTE_CADENA:
+                return constanteCadena(programa.constantesCadenas[dato[n]]);
+            case VARIABLE_CADENA:
+                return dato[n];
+            default:
+                int temporal = temporalCadena();
+                cadena(n, temporal);
+                return temporal;
+        }
+    }
+
+    // Registro de cadena con cualquier valor escrito como texto; las
+    // constantes se convierten al compilar
+    private int registroTexto(int n) {
+        switch (operacion[n]) {
+            case CONSTANTE_ENTERO: {
+                long valor = programa.constantesEnteras[dato[n]];
+                return constanteCadena(tipo[n] == CARACTER ? String.valueOf((char) valor) : Long.toString(valor));
+            }
+            case CONSTANTE_DECIMAL:
+                return constanteCadena(Double.toString(programa.constantesDecimales[dato[n]]));
+            default:
+                break;
+        }
+        switch (tipo[n]) {
+            case CADENA:
+                return registroCadena(n);
+            case DECIMAL: {
+                int valor = registroDecimal(n);
+                int temporal = temporalCadena();
+                emitir(TEXTO_D, temporal, valor);
+                return temporal;
+            }
+            default: {
+                int valor = registroEntero(n);
+                int temporal = temporalCadena();
+                emitir(tipo[n] == CARACTER ? TEXTO_C : TEXTO_E, temporal, valor);
+                return temporal;
+            }
+        }
+    }
+
+    // -------------------------------------------------------
+    // Registros, constantes y etiquetas
+    // -------------------------------------------------------
+
+    // Los temporales de los tres bancos se liberan juntos: la marca guarda
+    // los tres contadores en un long (21 bits cada uno)
+    private long marcaTemporales() {
+        return (long) temporalesEnteros << 42 | (long) temporalesDecimales << 21 | temporalesCadenas;
+    }
+
+    private void liberar(long marca) {
+        temporalesEnteros = (int) (marca >>> 42);
+        temporalesDecimales = (int) (marca >>> 21) & 0x1FFFFF;
+        temporalesCadenas = (int) marca & 0x1FFFFF;
+    }
+
+    private int temporalEntero() {
+        maximoEnteros = Math.max(maximoEnteros, temporalesEnteros + 1);
+        return programa.totalEnteros + temporalesEnteros++;
+    }
+
+    private int temporalDecimal() {
+        maximoDecimales = Math.max(maximoDecimales, temporalesDecimales + 1);
+        return programa.totalDecimales + temporalesDecimales++;
+    }
+
+    private int temporalCadena() {
+        maximoCadenas = Math.max(maximoCadenas, temporalesCadenas + 1);
+        return programa.totalCadenas + temporalesCadenas++;
+    }
+
+    private int constanteEntera(long valor) {
+        Integer indice = indiceEnteras.get(valor);
+        if (indice == null) {
+            indice = indiceEnteras.size();
+            indiceEnteras.put(valor, indice);
+            if (indice == constantesEnteras.length) {
+                constantesEnteras = Arrays.copyOf(constantesEnteras, indice * 2);
+            }
+            constantesEnteras[indice] = valor;
+        }
+        return -indice - 1;
+    }
+
+    private int constanteDecimal(double valor) {
+        // Por bits: 0.0 y -0.0 son constantes distintas
+        Integer indice = indiceDecimales.get(Double.doubleToRawLongBits(valor));
+        if (indice == null) {
+            indice = indiceDecimales.size();
+            indiceDecimales.put(Double.doubleToRawLongBits(valor), indice);
+            if (indice == constantesDecimales.length) {
+                constantesDecimales = Arrays.copyOf(constantesDecimales, indice * 2);
+            }
+            constantesDecimales[indice] = valor;
+        }
+        return -indice - 1;
+    }
+
+    private int constanteCadena(String valor) {
+        Integer indice = indiceCadenas.get(valor);
+        if (indice == null) {
+            indice = indiceCadenas.size();
+            indiceCadenas.put(valor, indice);
+            if (indice == constantesCadenas.length) {
+                constantesCadenas = Arrays.copyOf(constantesCadenas, indice * 2);
+            }
+            constantesCadenas[indice] = valor;
+        }
+        return -indice - 1;
+    }
+
+    private int etiqueta() {
+        if (totalEtiquetas == etiquetas.length) {
+            etiquetas = Arrays.copyOf(etiquetas, totalEtiquetas * 2);
+        }
+        etiquetas[totalEtiquetas] = -1;
+        return totalEtiquetas++;
+    }
+
+    private void colocar(int etiqueta) {
+        etiquetas[etiqueta] = total;
+    }
+
+    private int posicion(int n) {
+        if (totalPosiciones + 2 > posiciones.length) {
+            posiciones = Arrays.copyOf(posiciones, posiciones.length * 2);
+        }
+        posiciones[totalPosiciones++] = programa.lineas[n];
+        posiciones[totalPosiciones++] = programa.columnas[n];
+        return totalPosiciones / 2 - 1;
+    }
+
+    private void emitir(int... palabras) {
+        if (total + palabras.length > codigo.length) {
+            codigo = Arrays.copyOf(codigo, Math.max(codigo.length * 2, total + palabras.length));
+        }
+        System.arraycopy(palabras, 0, codigo, total, palabras.length);
+        total += palabras.length;
+    }
+
+    // Pone los registros de constantes después de las variables y los
+    // temporales de su banco y cambia las etiquetas por su posición
+    private ProgramaCompilado reubicar() {
+        int baseEnteras = programa.totalEnteros + maximoEnteros;
+        int baseDecimales = programa.totalDecimales + maximoDecimales;
+        int baseCadenas = programa.totalCadenas + maximoCadenas;
+        for (int pc = 0; pc < total; pc += 1 + FORMATO[codigo[pc]].length()) {
+            String formato = FORMATO[codigo[pc]];
+            for (int i = 0; i < formato.length(); i++) {
+                int p = pc + 1 + i;
+                switch (formato.charAt(i)) {
+                    case 'e': if (codigo[p] < 0) codigo[p] = baseEnteras - codigo[p] - 1; break;
+                    case 'd': if (codigo[p] < 0) codigo[p] = baseDecimales - codigo[p] - 1; break;
+                    case 's': if (codigo[p] < 0) codigo[p] = baseCadenas - codigo[p] - 1; break;
+                    case 'j': codigo[p] = etiquetas[codigo[p]]; break;
+                    default:  break;
+                }
+            }
+        }
+        int enteras = indiceEnteras.size();
+        int decimales = indiceDecimales.size();
+        int cadenas = indiceCadenas.size();
+        return new ProgramaCompilado(Arrays.copyOf(codigo, total),
+            Arrays.copyOf(constantesEnteras, enteras),
+            Arrays.copyOf(constantesDecimales, decimales),
+            Arrays.copyOf(constantesCadenas, cadenas),
+            baseEnteras + enteras, baseDecimales + decimales, baseCadenas + cadenas,
+            Arrays.copyOf(posiciones, totalPosiciones));
+    }
+}
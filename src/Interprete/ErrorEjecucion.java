@@ -0,0 +1,28 @@
+package Interprete;
+
+/**
+ * Error al cargar o ejecutar un programa: una variable sin declarar, tipos
+ * que no se pueden combinar, una división entera entre cero. Lleva la
+ * posición del token donde ocurrió.
+ */
+public class ErrorEjecucion extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int linea;
+    private final int columna;
+
+    public ErrorEjecucion(String mensaje, int linea, int columna) {
+        super(mensaje);
+        this.linea = linea;
+        this.columna = columna;
+    }
+
+    public int getLinea() {
+        return linea;
+    }
+
+    public int getColumna() {
+        return columna;
+    }
+}
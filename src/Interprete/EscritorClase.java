@@ -0,0 +1,163 @@
+package Interprete;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Escritor mínimo de archivos .class para ProgramaJvm: un pool de
+ * constantes sin repetidos y una clase final con un único método estático.
+ *
+ * Las clases se escriben con la versión 49 (Java 5), que no necesita
+ * tablas StackMapTable: la JVM verifica el código infiriendo los tipos,
+ * así que el generador no tiene que calcular los marcos en cada salto.
+ */
+class EscritorClase {
+
+    private static final int VERSION = 49;
+
+    private final ByteArrayOutputStream bytesPool = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(bytesPool);
+    private final Map<String, Integer> indices = new HashMap<>();
+    private int totalPool = 1;
+
+    int utf8(String texto) throws IOException {
+        Integer indice = indices.get("U" + texto);
+        if (indice == null) {
+            // writeUTF usa el UTF-8 modificado de la JVM y falla con más de 65535 bytes
+            pool.writeByte(1);
+            pool.writeUTF(texto);
+            indice = registrar("U" + texto, 1);
+        }
+        return indice;
+    }
+
+    int clase(String nombreInterno) throws IOException {
+        Integer indice = indices.get("C" + nombreInterno);
+        if (indice == null) {
+            int nombre = utf8(nombreInterno);
+            pool.writeByte(7);
+            pool.writeShort(nombre);
+            indice = registrar("C" + nombreInterno, 1);
+        }
+        return indice;
+    }
+
+    int cadena(String valor) throws IOException {
+        Integer indice = indices.get("S" + valor);
+        if (indice == null) {
+            int texto = utf8(valor);
+            pool.writeByte(8);
+            pool.writeShort(texto);
+            indice = registrar("S" + valor, 1);
+        }
+        return indice;
+    }
+
+    int entero(int valor) throws IOException {
+        Integer indice = indices.get("I" + valor);
+        if (indice == null) {
+            pool.writeByte(3);
+            pool.writeInt(valor);
+            indice = registrar("I" + valor, 1);
+        }
+        return indice;
+    }
+
+    // long y double ocupan dos entradas del pool
+    int largo(long valor) throws IOException {
+        Integer indice = indices.get("J" + valor);
+        if (indice == null) {
+            pool.writeByte(5);
+            pool.writeLong(valor);
+            indice = registrar("J" + valor, 2);
+        }
+        return indice;
+    }
+
+    int doble(double valor) throws IOException {
+        long bits = Double.doubleToRawLongBits(valor);
+        Integer indice = indices.get("D" + bits);
+        if (indice == null) {
+            pool.writeByte(6);
+            pool.writeLong(bits);
+            indice = registrar("D" + bits, 2);
+        }
+        return indice;
+    }
+
+    int metodo(String clase, String nombre, String descriptor) throws IOException {
+        String clave = "M" + clase + '.' + nombre + descriptor;
+        Integer indice = indices.get(clave);
+        if (indice == null) {
+            int claseIndice = clase(clase);
+            int nombreIndice = utf8(nombre);
+            int descriptorIndice = utf8(descriptor);
+            Integer nombreYTipo = indices.get("N" + nombre + descriptor);
+            if (nombreYTipo == null) {
+                pool.writeByte(12);
+                pool.writeShort(nombreIndice);
+                pool.writeShort(descriptorIndice);
+                nombreYTipo = registrar("N" + nombre + descriptor, 1);
+            }
+            pool.writeByte(10);
+            pool.writeShort(claseIndice);
+            pool.writeShort(nombreYTipo);
+            indice = registrar(clave, 1);
+        }
+        return indice;
+    }
+
+    private int registrar(String clave, int entradas) throws IOException {
+        int indice = totalPool;
+        totalPool += entradas;
+        if (totalPool > 0xFFFF) {
+            throw new IOException("Pool de constantes lleno");
+        }
+        indices.put(clave, indice);
+        return indice;
+    }
+
+    /**
+     * Bytes de la clase final "nombre", subclase de Object, con el método
+     * public static "metodo" y el código dado.
+     */
+    byte[] escribir(String nombre, String metodo, String descriptor,
+                    byte[] codigo, int largoCodigo, int maximoPila, int maximoLocales) throws IOException {
+        int esta = clase(nombre);
+        int padre = clase("java/lang/Object");
+        int nombreMetodo = utf8(metodo);
+        int descriptorMetodo = utf8(descriptor);
+        int atributoCodigo = utf8("Code");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(bytesPool.size() + largoCodigo + 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(VERSION);
+        out.writeShort(totalPool);
+        bytesPool.writeTo(out);
+        out.writeShort(0x0010 | 0x0020);         // ACC_FINAL | ACC_SUPER
+        out.writeShort(esta);
+        out.writeShort(padre);
+        out.writeShort(0);                       // Interfaces
+        out.writeShort(0);                       // Campos
+        out.writeShort(1);                       // Métodos
+        out.writeShort(0x0001 | 0x0008);         // ACC_PUBLIC | ACC_STATIC
+        out.writeShort(nombreMetodo);
+        out.writeShort(descriptorMetodo);
+        out.writeShort(1);                       // Atributos del método: Code
+        out.writeShort(atributoCodigo);
+        out.writeInt(12 + largoCodigo);
+        out.writeShort(maximoPila);
+        out.writeShort(maximoLocales);
+        out.writeInt(largoCodigo);
+        out.write(codigo, 0, largoCodigo);
+        out.writeShort(0);                       // Tabla de excepciones
+        out.writeShort(0);                       // Atributos de Code
+        out.writeShort(0);                       // Atributos de la clase
+        return bytes.toByteArray();
+    }
+}
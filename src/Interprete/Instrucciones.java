@@ -0,0 +1,85 @@
+package Interprete;
+
+/**
+ * Instrucciones del bytecode de CarumaLang (ProgramaCompilado).
+ *
+ * Cada instrucción es un código seguido de sus operandos en el mismo int[].
+ * Los operandos son registros de uno de los tres bancos (enteros long[],
+ * decimales double[] y cadenas String[]), destinos de salto (posición en el
+ * código) o posiciones del fuente para los errores. En cada banco van
+ * primero las variables, luego los temporales y al final las constantes,
+ * que la máquina virtual copia del pool al empezar, así que ninguna
+ * instrucción carga constantes.
+ */
+interface Instrucciones {
+
+    int FIN = 0;
+    int SALTAR = 1;                 // destino
+
+    int MOVER_E = 2;                // a = b
+    int MOVER_D = 3;
+    int MOVER_S = 4;
+    int A_DECIMAL = 5;              // decimal a = entero b
+
+    int SUMAR_E = 6;                // a = b + c
+    int RESTAR_E = 7;
+    int MULTIPLICAR_E = 8;
+    int DIVIDIR_E = 9;              // a = b / c, posición para dividir entre cero
+    int SUMAR_D = 10;
+    int RESTAR_D = 11;
+    int MULTIPLICAR_D = 12;
+    int DIVIDIR_D = 13;
+
+    int TEXTO_E = 14;               // cadena a = entero b como texto
+    int TEXTO_D = 15;
+    int TEXTO_C = 16;               // cadena a = carácter de código b
+    int CONCATENAR_S = 17;          // a = b + c
+
+    int IMPRIMIR_E = 18;            // a
+    int IMPRIMIR_D = 19;
+    int IMPRIMIR_C = 20;
+    int IMPRIMIR_S = 21;
+    int NUEVA_LINEA = 22;
+
+    // Saltos condicionales: a, b, destino. Se salta si se cumple la
+    // relación; los decimales tienen además la forma negada, que también
+    // salta cuando hay un NaN
+    int SI_E = 23;                  // + MENOR, MAYOR, MENOR_IGUAL, MAYOR_IGUAL, IGUAL, DISTINTO
+    int SI_D = 29;
+    int NO_D = 35;
+    int SI_S = 41;
+    int TOTAL_INSTRUCCIONES = 47;
+
+    // Relaciones de los saltos condicionales
+    int MENOR = 0;
+    int MAYOR = 1;
+    int MENOR_IGUAL = 2;
+    int MAYOR_IGUAL = 3;
+    int IGUAL = 4;
+    int DISTINTO = 5;
+
+    // Operandos de cada instrucción: e, d y s son registros de cada banco,
+    // j un destino de salto y p una posición del fuente
+    String[] FORMATO = {
+        "", "j", "ee", "dd", "ss", "de",
+        "eee", "eee", "eee", "eeep", "ddd", "ddd", "ddd", "ddd",
+        "se", "sd", "se", "sss",
+        "e", "d", "e", "s", "",
+        "eej", "eej", "eej", "eej", "eej", "eej",
+        "ddj", "ddj", "ddj", "ddj", "ddj", "ddj",
+        "ddj", "ddj", "ddj", "ddj", "ddj", "ddj",
+        "ssj", "ssj", "ssj", "ssj", "ssj", "ssj"
+    };
+
+    String[] NOMBRES = {
+        "FIN", "SALTAR", "MOVER_E", "MOVER_D", "MOVER_S", "A_DECIMAL",
+        "SUMAR_E", "RESTAR_E", "MULTIPLICAR_E", "DIVIDIR_E",
+        "SUMAR_D", "RESTAR_D", "MULTIPLICAR_D", "DIVIDIR_D",
+        "TEXTO_E", "TEXTO_D", "TEXTO_C", "CONCATENAR_S",
+        "IMPRIMIR_E", "IMPRIMIR_D", "IMPRIMIR_C", "IMPRIMIR_S", "NUEVA_LINEA",
+        "SI_MENOR_E", "SI_MAYOR_E", "SI_MENOR_IGUAL_E", "SI_MAYOR_IGUAL_E", "SI_IGUAL_E", "SI_DISTINTO_E",
+        "SI_MENOR_D", "SI_MAYOR_D", "SI_MENOR_IGUAL_D", "SI_MAYOR_IGUAL_D", "SI_IGUAL_D", "SI_DISTINTO_D",
+        "NO_MENOR_D", "NO_MAYOR_D", "NO_MENOR_IGUAL_D", "NO_MAYOR_IGUAL_D", "NO_IGUAL_D", "NO_DISTINTO_D",
+        "SI_MENOR_S", "SI_MAYOR_S", "SI_MENOR_IGUAL_S", "SI_MAYOR_IGUAL_S", "SI_IGUAL_S", "SI_DISTINTO_S"
+    };
+}
@@ -0,0 +1,266 @@
+package Interprete;
+
+import AnalizadorSintactico.ArbolSintactico;
+import AnalizadorSintactico.CarumaLangParserConstants;
+import java.io.IOException;
+
+/**
+ * Intérprete de programas CarumaLang que recorre el árbol sintáctico.
+ *
+ * Al cargar el programa se resuelve todo lo que no cambia entre
+ * ejecuciones (ProgramaResuelto): cada variable recibe un casillero en el
+ * marco de su tipo, cada uso de una variable apunta a ese casillero y cada
+ * nodo recibe una operación ya especializada por tipo. Ejecutar es
+ * entonces un recorrido por arreglos de int: no se buscan nombres, no se
+ * revisan tipos y los valores intCHELADA y granito viven en marcos long[] y
+ * double[], sin objetos. Un ciclo papoi que solo hace
+ * cuentas e imprime números no crea ningún objeto por vuelta.
+ *
+ * Semántica:
+ *   - intCHELADA es un entero de 64 bits; DIOS vale 1 y DIOSNO 0.
+ *     granito es un double. La división entre enteros trunca y dividir
+ *     entre cero es un error de ejecución.
+ *   - Con un granito en una operación o comparación, el otro entero se
+ *     convierte. Un intCHELADA se puede asignar a un granito, no al revés.
+ *   - "+" con una cadena concatena el otro valor escrito como texto.
+ *   - Las cadenas se comparan por contenido y los caracteres por código.
+ *   - En las condiciones DIOS es "y" y DIOSNO es "o", de izquierda a
+ *     derecha y sin evaluar el lado derecho si no hace falta.
+ *   - holahola escribe sus argumentos seguidos y termina la línea.
+ *   - Las variables declaradas en un bloque, o en la inicialización de un
+ *     paraPapoi, solo se ven dentro de él. Una declaración sin valor
+ *     inicial deja 0, 0.0, "" o el carácter 0 cada vez que se ejecuta.
+ */
+public class Interprete implements Operaciones {
+
+    private static final int NINGUNO = ProgramaResuelto.NINGUNO;
+
+    private final ProgramaResuelto programa;
+    private final int[] operacion;
+    private final int[] dato;
+    private final int[] primero;
+    private final int[] siguiente;
+    private final int[] tipo;
+    private final long[] constantesEnteras;
+    private final double[] constantesDecimales;
+    private final String[] constantesCadenas;
+    private final int nodosEliminados;
+
+    // Marcos de variables
+    private long[] enteros;
+    private double[] decimales;
+    private String[] cadenas;
+
+    private Salida salida;
+
+    /**
+     * Carga el programa del árbol (que debe venir de un análisis sin
+     * errores) y lo optimiza. Lanza ErrorEjecucion si usa una variable sin
+     * declarar o combina tipos incompatibles. El árbol se puede reutilizar
+     * después.
+     */
+    public Interprete(ArbolSintactico arbol) {
+        this(arbol, true);
+    }
+
+    /** Como Interprete(arbol), con o sin pasar por el Optimizador. */
+    public Interprete(ArbolSintactico arbol, boolean optimizar) {
+        programa = new ProgramaResuelto(arbol);
+        nodosEliminados = optimizar ? Optimizador.optimizar(programa) : 0;
+        operacion = programa.operacion;
+        dato = programa.dato;
+        primero = programa.primero;
+        siguiente = programa.siguiente;
+        tipo = programa.tipo;
+        constantesEnteras = programa.constantesEnteras;
+        constantesDecimales = programa.constantesDecimales;
+        constantesCadenas = programa.constantesCadenas;
+    }
+
+    /** Nodos que el Optimizador quitó del programa. */
+    public int nodosEliminados() {
+        return nodosEliminados;
+    }
+
+    /** Ejecuta el programa desde el principio, con todas las variables nuevas. */
+    public void ejecutar(Salida salida) throws IOException {
+        this.salida = salida;
+        enteros = new long[programa.totalEnteros];
+        decimales = new double[programa.totalDecimales];
+        cadenas = new String[programa.totalCadenas];
+        try {
+            if (programa.raiz != NINGUNO) {
+                ejecutar(programa.raiz);
+            }
+        } finally {
+            salida.vaciar();
+        }
+    }
+
+
+    private void ejecutar(int n) throws IOException {
+        switch (operacion[n]) {
+            case SECUENCIA:
+                for (int s = primero[n]; s != NINGUNO; s = siguiente[s]) {
+                    ejecutar(s);
+                }
+                break;
+            case ASIGNAR_ENTERO:
+                enteros[dato[n]] = primero[n] == NINGUNO ? 0 : entero(primero[n]);
+                break;
+            case ASIGNAR_DECIMAL:
+                decimales[dato[n]] = primero[n] == NINGUNO ? 0 : decimal(primero[n]);
+                break;
+            case ASIGNAR_CADENA:
+                cadenas[dato[n]] = primero[n] == NINGUNO ? "" : cadena(primero[n]);
+                break;
+            case SI: {
+                int condicion = primero[n];
+                int entonces = siguiente[condicion];
+                if (condicion(condicion)) {
+                    ejecutar(entonces);
+                } else if (siguiente[entonces] != NINGUNO) {
+                    ejecutar(siguiente[entonces]);
+                }
+                break;
+            }
+            case MIENTRAS: {
+                int condicion = primero[n];
+                int cuerpo = siguiente[condicion];
+                while (condicion(condicion)) {
+                    ejecutar(cuerpo);
+                }
+                break;
+            }
+            case PARA: {
+                int inicio = primero[n];
+                int condicion = siguiente[inicio];
+                int incremento = siguiente[condicion];
+                int cuerpo = siguiente[incremento];
+                for (ejecutar(inicio); condicion(condicion); ejecutar(incremento)) {
+                    ejecutar(cuerpo);
+                }
+                break;
+            }
+            case IMPRIMIR:
+                for (int a = primero[n]; a != NINGUNO; a = siguiente[a]) {
+                    switch (tipo[a]) {
+                        case ENTERO:   salida.escribir(entero(a)); break;
+                        case DECIMAL:  salida.escribir(decimal(a)); break;
+                        case CARACTER: salida.escribir((char) entero(a)); break;
+                        default:       salida.escribir(cadena(a)); break;
+                    }
+                }
+                salida.nuevaLinea();
+                break;
+            default:
+                throw programa.error("Operacion invalida " + operacion[n], n);
+        }
+    }
+
+    // Valor de una expresión ENTERO o CARACTER
+    private long entero(int n) {
+        switch (operacion[n]) {
+            case CONSTANTE_ENTERO:
+                return constantesEnteras[dato[n]];
+            case VARIABLE_ENTERO:
+                return enteros[dato[n]];
+            case SUMA_ENTERO:
+                return entero(primero[n]) + entero(siguiente[primero[n]]);
+            case RESTA_ENTERO:
+                return entero(primero[n]) - entero(siguiente[primero[n]]);
+            case PRODUCTO_ENTERO:
+                return entero(primero[n]) * entero(siguiente[primero[n]]);
+            case DIVISION_ENTERO: {
+                long divisor = entero(siguiente[primero[n]]);
+                long dividendo = entero(primero[n]);
+                if (divisor == 0) {
+                    throw programa.error("Division entera entre cero", n);
+                }
+                return dividendo / divisor;
+            }
+            default:
+                throw programa.error("Operacion invalida " + operacion[n], n);
+        }
+    }
+
+    // Valor de una expresión numérica; los enteros se convierten
+    private double decimal(int n) {
+        switch (operacion[n]) {
+            case CONSTANTE_DECIMAL:
+                return constantesDecimales[dato[n]];
+            case VARIABLE_DECIMAL:
+                return decimales[dato[n]];
+            case SUMA_DECIMAL:
+                return decimal(primero[n]) + decimal(siguiente[primero[n]]);
+            case RESTA_DECIMAL:
+                return decimal(primero[n]) - decimal(siguiente[primero[n]]);
+            case PRODUCTO_DECIMAL:
+                return decimal(primero[n]) * decimal(siguiente[primero[n]]);
+            case DIVISION_DECIMAL:
+                return decimal(primero[n]) / decimal(siguiente[primero[n]]);
+            default:
+                return entero(n);
+        }
+    }
+
+    // Valor de una expresión CADENA
+    private String cadena(int n) {
+        switch (operacion[n]) {
+            case CONSTANTE_CADENA:
+                return constantesCadenas[dato[n]];
+            case VARIABLE_CADENA:
+                return cadenas[dato[n]];
+            case CONCATENAR:
+                return texto(primero[n]).concat(texto(siguiente[primero[n]]));
+            default:
+                throw programa.error("Operacion invalida " + operacion[n], n);
+        }
+    }
+
+    // Cualquier valor escrito como lo imprime holahola
+    private String texto(int n) {
+        switch (tipo[n]) {
+            case ENTERO:   return Long.toString(entero(n));
+            case DECIMAL:  return Double.toString(decimal(n));
+            case CARACTER: return String.valueOf((char) entero(n));
+            default:       return cadena(n);
+        }
+    }
+
+    private boolean condicion(int n) {
+        int izquierdo = primero[n];
+        int derecho = siguiente[izquierdo];
+        switch (operacion[n]) {
+            case Y:
+                return condicion(izquierdo) && condicion(derecho);
+            case O:
+                return condicion(izquierdo) || condicion(derecho);
+            case COMPARAR_ENTERO:
+                return comparar(Long.compare(entero(izquierdo), entero(derecho)), dato[n]);
+            case COMPARAR_DECIMAL: {
+                double a = decimal(izquierdo);
+                double b = decimal(derecho);
+                // Con NaN todas las comparaciones son falsas, como en Java
+                if (a != a || b != b) {
+                    return false;
+                }
+                return comparar(a < b ? -1 : a > b ? 1 : 0, dato[n]);
+            }
+            case COMPARAR_CADENA:
+                return comparar(cadena(izquierdo).compareTo(cadena(derecho)), dato[n]);
+            default:
+                throw programa.error("Operacion invalida " + operacion[n], n);
+        }
+    }
+
+    private static boolean comparar(int orden, int operador) {
+        switch (operador) {
+            case CarumaLangParserConstants.MENORQUE:         return orden < 0;
+            case CarumaLangParserConstants.MAYORQUE:         return orden > 0;
+            case CarumaLangParserConstants.MENORIGUALITOQUE: return orden <= 0;
+            case CarumaLangParserConstants.MAYORIGUALITOQUE: return orden >= 0;
+            default:                                         return orden == 0;
+        }
+    }
+}
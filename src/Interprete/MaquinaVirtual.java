@@ -0,0 +1,225 @@
+package Interprete;
+
+import java.io.IOException;
+
+/**
+ * Máquina virtual de registros que ejecuta un ProgramaCompilado.
+ *
+ * Un solo ciclo de despacho recorre el int[] del código; los registros son
+ * tres arreglos (long[], double[] y String[]) con las variables, los
+ * temporales y las constantes de cada banco. La semántica es la misma que
+ * la del Interprete. El código tiene que haber pasado por el compilador o
+ * por la verificación de leerCache(): aquí no se revisan índices.
+ */
+public class MaquinaVirtual implements Instrucciones {
+
+    private final ProgramaCompilado programa;
+
+    public MaquinaVirtual(ProgramaCompilado programa) {
+        this.programa = programa;
+    }
+
+    /** Ejecuta el programa desde el principio, con todas las variables nuevas. */
+    public void ejecutar(Salida salida) throws IOException {
+        ProgramaCompilado p = programa;
+        long[] e = new long[p.registrosEnteros];
+        double[] d = new double[p.registrosDecimales];
+        String[] s = new String[p.registrosCadenas];
+        System.arraycopy(p.constantesEnteras, 0, e, e.length - p.constantesEnteras.length,
+            p.constantesEnteras.length);
+        System.arraycopy(p.constantesDecimales, 0, d, d.length - p.constantesDecimales.length,
+            p.constantesDecimales.length);
+        System.arraycopy(p.constantesCadenas, 0, s, s.length - p.constantesCadenas.length,
+            p.constantesCadenas.length);
+        try {
+            ejecutar(p.codigo, e, d, s, salida);
+        } finally {
+            salida.vaciar();
+        }
+    }
+
+    private void ejecutar(int[] c, long[] e, double[] d, String[] s, Salida salida) throws IOException {
+        int pc = 0;
+        while (true) {
+            switch (c[pc]) {
+                case FIN:
+                    return;
+                case SALTAR:
+                    pc = c[pc + 1];
+                    break;
+                case MOVER_E:
+                    e[c[pc + 1]] = e[c[pc + 2]];
+                    pc += 3;
+                    break;
+                case MOVER_D:
+                    d[c[pc + 1]] = d[c[pc + 2]];
+                    pc += 3;
+                    break;
+                case MOVER_S:
+                    s[c[pc + 1]] = s[c[pc + 2]];
+                    pc += 3;
+                    break;
+                case A_DECIMAL:
+                    d[c[pc + 1]] = e[c[pc + 2]];
+                    pc += 3;
+                    break;
+
+                case SUMAR_E:
+                    e[c[pc + 1]] = e[c[pc + 2]] + e[c[pc + 3]];
+                    pc += 4;
+                    break;
+                case RESTAR_E:
+                    e[c[pc + 1]] = e[c[pc + 2]] - e[c[pc + 3]];
+                    pc += 4;
+                    break;
+                case MULTIPLICAR_E:
+                    e[c[pc + 1]] = e[c[pc + 2]] * e[c[pc + 3]];
+                    pc += 4;
+                    break;
+                case DIVIDIR_E: {
+                    long divisor = e[c[pc + 3]];
+                    if (divisor == 0) {
+                        int posicion = 2 * c[pc + 4];
+                        throw new ErrorEjecucion("Division entera entre cero",
+                            programa.posiciones[posicion], programa.posiciones[posicion + 1]);
+                    }
+                    e[c[pc + 1]] = e[c[pc + 2]] / divisor;
+                    pc += 5;
+                    break;
+                }
+                case SUMAR_D:
+                    d[c[pc + 1]] = d[c[pc + 2]] + d[c[pc + 3]];
+                    pc += 4;
+                    break;
+                case RESTAR_D:
+                    d[c[pc + 1]] = d[c[pc + 2]] - d[c[pc + 3]];
+                    pc += 4;
+                    break;
+                case MULTIPLICAR_D:
+                    d[c[pc + 1]] = d[c[pc + 2]] * d[c[pc + 3]];
+                    pc += 4;
+                    break;
+                case DIVIDIR_D:
+                    d[c[pc + 1]] = d[c[pc + 2]] / d[c[pc + 3]];
+                    pc += 4;
+                    break;
+
+                case TEXTO_E:
+                    s[c[pc + 1]] = Long.toString(e[c[pc + 2]]);
+                    pc += 3;
+                    break;
+                case TEXTO_D:
+                    s[c[pc + 1]] = Double.toString(d[c[pc + 2]]);
+                    pc += 3;
+                    break;
+                case TEXTO_C:
+                    s[c[pc + 1]] = String.valueOf((char) e[c[pc + 2]]);
+                    pc += 3;
+                    break;
+                case CONCATENAR_S:
+                    s[c[pc + 1]] = s[c[pc + 2]].concat(s[c[pc + 3]]);
+                    pc += 4;
+                    break;
+
+                case IMPRIMIR_E:
+                    salida.escribir(e[c[pc + 1]]);
+                    pc += 2;
+                    break;
+                case IMPRIMIR_D:
+                    salida.escribir(d[c[pc + 1]]);
+                    pc += 2;
+                    break;
+                case IMPRIMIR_C:
+                    salida.escribir((char) e[c[pc + 1]]);
+                    pc += 2;
+                    break;
+                case IMPRIMIR_S:
+                    salida.escribir(s[c[pc + 1]]);
+                    pc += 2;
+                    break;
+                case NUEVA_LINEA:
+                    salida.nuevaLinea();
+                    pc += 1;
+                    break;
+
+                case SI_E + MENOR:
+                    pc = e[c[pc + 1]] < e[c[pc + 2]] ? c[pc + 3] : pc + 4;
+                    break;
+                case SI_E + MAYOR:
+                    pc = e[c[pc + 1]] > e[c[pc + 2]] ? c[pc + 3] : pc + 4;
+                    break;
+                case SI_E + MENOR_IGUAL:
+                    pc = e[c[pc + 1]] <= e[c[pc + 2]] ? c[pc + 3] : pc + 4;
+                    break;
+                case SI_E + MAYOR_IGUAL:
+                    pc = e[c[pc + 1]] >= e[c[pc + 2]] ? c[pc + 3] : pc + 4;
+                    break;
+                case SI_E + IGUAL:
+                    pc = e[c[pc + 1]] == e[c[pc + 2]] ? c[pc + 3] : pc + 4;
+                    break;
+                case SI_E + DISTINTO:
+                    pc = e[c[pc + 1]] != e[c[pc + 2]] ? c[pc + 3] : pc + 4;
+                    break;
+
+                case SI_D + MENOR:
+                    pc = d[c[pc + 1]] < d[c[pc + 2]] ? c[pc + 3] : pc + 4;
+                    break;
+                case SI_D + MAYOR:
+                    pc = d[c[pc + 1]] > d[c[pc + 2]] ? c[pc + 3] : pc + 4;
+                    break;
+                case SI_D + MENOR_IGUAL:
+                    pc = d[c[pc + 1]] <= d[c[pc + 2]] ? c[pc + 3] : pc + 4;
+                    break;
+                case SI_D + MAYOR_IGUAL:
+                    pc = d[c[pc + 1]] >= d[c[pc + 2]] ? c[pc + 3] : pc + 4;
+                    break;
+                case SI_D + IGUAL:
+                    pc = d[c[pc + 1]] == d[c[pc + 2]] ? c[pc + 3] : pc + 4;
+                    break;
+                case SI_D + DISTINTO:
+                    pc = d[c[pc + 1]] != d[c[pc + 2]] ? c[pc + 3] : pc + 4;
+                    break;
+                case NO_D + MENOR:
+                    pc = !(d[c[pc + 1]] < d[c[pc + 2]]) ? c[pc + 3] : pc + 4;
+                    break;
+                case NO_D + MAYOR:
+                    pc = !(d[c[pc + 1]] > d[c[pc + 2]]) ? c[pc + 3] : pc + 4;
+                    break;
+                case NO_D + MENOR_IGUAL:
+                    pc = !(d[c[pc + 1]] <= d[c[pc + 2]]) ? c[pc + 3] : pc + 4;
+                    break;
+                case NO_D + MAYOR_IGUAL:
+                    pc = !(d[c[pc + 1]] >= d[c[pc + 2]]) ? c[pc + 3] : pc + 4;
+                    break;
+                case NO_D + IGUAL:
+                    pc = !(d[c[pc + 1]] == d[c[pc + 2]]) ? c[pc + 3] : pc + 4;
+                    break;
+                case NO_D + DISTINTO:
+                    pc = !(d[c[pc + 1]] != d[c[pc + 2]]) ? c[pc + 3] : pc + 4;
+                    break;
+
+                case SI_S + MENOR:
+                    pc = s[c[pc + 1]].compareTo(s[c[pc + 2]]) < 0 ? c[pc + 3] : pc + 4;
+                    break;
+                case SI_S + MAYOR:
+                    pc = s[c[pc + 1]].compareTo(s[c[pc + 2]]) > 0 ? c[pc + 3] : pc + 4;
+                    break;
+                case SI_S + MENOR_IGUAL:
+                    pc = s[c[pc + 1]].compareTo(s[c[pc + 2]]) <= 0 ? c[pc + 3] : pc + 4;
+                    break;
+                case SI_S + MAYOR_IGUAL:
+                    pc = s[c[pc + 1]].compareTo(s[c[pc + 2]]) >= 0 ? c[pc + 3] : pc + 4;
+                    break;
+                case SI_S + IGUAL:
+                    pc = s[c[pc + 1]].equals(s[c[pc + 2]]) ? c[pc + 3] : pc + 4;
+                    break;
+                case SI_S + DISTINTO:
+                    pc = !s[c[pc + 1]].equals(s[c[pc + 2]]) ? c[pc + 3] : pc + 4;
+                    break;
+
+                default:
+                    throw new IllegalStateException("Instruccion invalida " + c[pc] + " en " + pc);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package Interprete;
+
+/**
+ * Tipos de valor y operaciones de un programa resuelto (ProgramaResuelto),
+ * compartidos por el intérprete y el compilador a bytecode.
+ */
+interface Operaciones {
+
+    // Tipos de valor de variables y expresiones
+    int ENTERO = 0;
+    int DECIMAL = 1;
+    int CADENA = 2;
+    int CARACTER = 3;
+
+    String[] NOMBRES_TIPO = {"intCHELADA", "granito", "cadena", "caracter"};
+
+    // Operaciones de los nodos, ya especializadas por tipo al cargar
+    int SECUENCIA = 1;          // Hijos en orden (programa, bloque, declaración)
+    int ASIGNAR_ENTERO = 2;     // dato: casillero, primero: valor o NINGUNO
+    int ASIGNAR_DECIMAL = 3;
+    int ASIGNAR_CADENA = 4;
+    int SI = 5;                 // condición, bloque y bloque opcional
+    int MIENTRAS = 6;           // condición y bloque
+    int PARA = 7;               // inicialización, condición, incremento y bloque
+    int IMPRIMIR = 8;           // argumentos
+
+    int CONSTANTE_ENTERO = 10;  // dato: índice en constantesEnteras
+    int VARIABLE_ENTERO = 11;   // dato: casillero
+    int SUMA_ENTERO = 12;
+    int RESTA_ENTERO = 13;
+    int PRODUCTO_ENTERO = 14;
+    int DIVISION_ENTERO = 15;
+
+    int CONSTANTE_DECIMAL = 20;
+    int VARIABLE_DECIMAL = 21;
+    int SUMA_DECIMAL = 22;
+    int RESTA_DECIMAL = 23;
+    int PRODUCTO_DECIMAL = 24;
+    int DIVISION_DECIMAL = 25;
+
+    int CONSTANTE_CADENA = 30;
+    int VARIABLE_CADENA = 31;
+    int CONCATENAR = 32;
+
+    int Y = 40;
+    int O = 41;
+    int COMPARAR_ENTERO = 42;   // dato: tipo de token del operador
+    int COMPARAR_DECIMAL = 43;
+    int COMPARAR_CADENA = 44;
+}
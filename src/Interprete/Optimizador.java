@@ -0,0 +1,436 @@
+package Interprete;
+
+import AnalizadorSintactico.CarumaLangParserConstants;
+import java.util.Arrays;
+
+/**
+ * Optimización del programa resuelto, antes de interpretarlo o compilarlo.
+ *
+ *   - Pliega las operaciones cuyos operandos son constantes, incluida la
+ *     concatenación. Una división entera entre cero no se pliega: el error
+ *     sigue saliendo al ejecutar, en su posición.
+ *   - Propaga las constantes de las declaraciones: una variable que solo se
+ *     escribe en su declaración y con un valor constante se reemplaza por
+ *     ese valor en cada uso, y su asignación desaparece.
+ *   - Quita las ramas de CaeCliente cuya condición es constante, los papoi
+ *     que nunca entran y los paraPapoi que solo ejecutan la inicialización.
+ *     En las condiciones con DIOS y DIOSNO se descarta el lado que ya no
+ *     decide, si evaluarlo no puede fallar.
+ *
+ * Cada casillero de variable corresponde a una sola declaración, y una
+ * declaración siempre se ejecuta antes que los usos que la ven, así que
+ * basta un recorrido en el orden del programa. Los nodos quitados quedan en
+ * los arreglos pero ya no se alcanzan desde la raíz.
+ */
+class Optimizador implements Operaciones {
+
+    private static final int NINGUNO = ProgramaResuelto.NINGUNO;
+
+    // Resultado de plegar una condición
+    private static final int FALSA = 0;
+    private static final int VERDADERA = 1;
+    private static final int VARIABLE = 2;
+
+    private final ProgramaResuelto programa;
+    private final int[] operacion;
+    private final int[] dato;
+    private final int[] primero;
+    private final int[] siguiente;
+    private final int[] tipo;
+
+    // Por casillero de cada marco: cuántas asignaciones lo escriben y, si
+    // su único valor es constante, su índice en el pool (o NINGUNO)
+    private final int[] escriturasEnteros;
+    private final int[] escriturasDecimales;
+    private final int[] escriturasCadenas;
+    private final int[] constanteEnteros;
+    private final int[] constanteDecimales;
+    private final int[] constanteCadenas;
+
+    private int eliminados = 0;
+
+    private Optimizador(ProgramaResuelto programa) {
+        this.programa = programa;
+        operacion = programa.operacion;
+        dato = programa.dato;
+        primero = programa.primero;
+        siguiente = programa.siguiente;
+        tipo = programa.tipo;
+        escriturasEnteros = new int[programa.totalEnteros];
+        escriturasDecimales = new int[programa.totalDecimales];
+        escriturasCadenas = new int[programa.totalCadenas];
+        constanteEnteros = new int[programa.totalEnteros];
+        constanteDecimales = new int[programa.totalDecimales];
+        constanteCadenas = new int[programa.totalCadenas];
+        Arrays.fill(constanteEnteros, NINGUNO);
+        Arrays.fill(constanteDecimales, NINGUNO);
+        Arrays.fill(constanteCadenas, NINGUNO);
+    }
+
+    /**
+     * Optimiza el programa en su lugar y devuelve cuántos nodos dejaron de
+     * ejecutarse o evaluarse.
+     */
+    static int optimizar(ProgramaResuelto programa) {
+        Optimizador optimizador = new Optimizador(programa);
+        if (programa.raiz != NINGUNO) {
+            optimizador.contarEscrituras();
+            optimizador.sentencia(programa.raiz);
+        }
+        return optimizador.eliminados;
+    }
+
+    // Solo los nodos cargados tienen operación de asignación
+    private void contarEscrituras() {
+        for (int n = 0; n < operacion.length; n++) {
+            switch (operacion[n]) {
+                case ASIGNAR_ENTERO:  escriturasEnteros[dato[n]]++; break;
+                case ASIGNAR_DECIMAL: escriturasDecimales[dato[n]]++; break;
+                case ASIGNAR_CADENA:  escriturasCadenas[dato[n]]++; break;
+                default:              break;
+            }
+        }
+    }
+
+    // -------------------------------------------------------
+    // Sentencias
+    // -------------------------------------------------------
+
+    private void sentencia(int n) {
+        switch (operacion[n]) {
+            case SECUENCIA:
+                for (int s = primero[n]; s != NINGUNO; s = siguiente[s]) {
+                    sentencia(s);
+                }
+                break;
+            case ASIGNAR_ENTERO:
+            case ASIGNAR_DECIMAL:
+            case ASIGNAR_CADENA:
+                asignacion(n);
+                break;
+            case SI: {
+                int condicion = primero[n];
+                int entonces = siguiente[condicion];
+                int otro = siguiente[entonces];
+                int valor = condicion(condicion);
+                if (valor == VARIABLE) {
+                    sentencia(entonces);
+                    if (otro != NINGUNO) {
+                        sentencia(otro);
+                    }
+                    break;
+                }
+                // Queda como la secuencia de la rama que se ejecuta
+                int rama = valor == VERDADERA ? entonces : otro;
+                eliminados += contar(condicion) + contar(entonces)
+                    + (otro != NINGUNO ? contar(otro) : 0);
+                operacion[n] = SECUENCIA;
+                primero[n] = NINGUNO;
+                if (rama != NINGUNO) {
+                    eliminados -= contar(rama) - 1;
+                    sentencia(rama);
+                    primero[n] = primero[rama];
+                }
+                break;
+            }
+            case MIENTRAS: {
+                int condicion = primero[n];
+                if (condicion(condicion) == FALSA) {
+                    eliminados += contar(condicion) + contar(siguiente[condicion]);
+                    operacion[n] = SECUENCIA;
+                    primero[n] = NINGUNO;
+                } else {
+                    sentencia(siguiente[condicion]);
+                }
+                break;
+            }
+            case PARA: {
+                int inicio = primero[n];
+                int condicion = siguiente[inicio];
+                int incremento = siguiente[condicion];
+                sentencia(inicio);
+                if (condicion(condicion) == FALSA) {
+                    // Solo queda la inicialización
+                    eliminados += contar(condicion) + contar(incremento) + contar(siguiente[incremento]);
+                    operacion[n] = SECUENCIA;
+                    siguiente[inicio] = NINGUNO;
+                } else {
+                    sentencia(incremento);
+                    sentencia(siguiente[incremento]);
+                }
+                break;
+            }
+            case IMPRIMIR:
+                for (int a = primero[n]; a != NINGUNO; a = siguiente[a]) {
+                    expresion(a);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Una asignación que es la única escritura de su casillero y tiene valor
+    // constante hace constante a la variable; sus usos ya no la leen, así
+    // que la asignación se quita
+    private void asignacion(int n) {
+        int valor = primero[n];
+        if (valor != NINGUNO) {
+            expresion(valor);
+        }
+        int casillero = dato[n];
+        int constante;
+        switch (operacion[n]) {
+            case ASIGNAR_ENTERO:
+                if (escriturasEnteros[casillero] != 1) {
+                    return;
+                }
+                constante = valor == NINGUNO ? programa.constanteEntera(0)
+                    : operacion[valor] == CONSTANTE_ENTERO ? dato[valor] : NINGUNO;
+                constanteEnteros[casillero] = constante;
+                break;
+            case ASIGNAR_DECIMAL:
+                if (escriturasDecimales[casillero] != 1) {
+                    return;
+                }
+                constante = valor == NINGUNO ? programa.constanteDecimal(0)
+                    : operacion[valor] == CONSTANTE_DECIMAL ? dato[valor]
+                    : operacion[valor] == CONSTANTE_ENTERO
+                        ? programa.constanteDecimal(programa.constantesEnteras[dato[valor]])
+                    : NINGUNO;
+                constanteDecimales[casillero] = constante;
+                break;
+            default:
+                if (escriturasCadenas[casillero] != 1) {
+                    return;
+                }
+                constante = valor == NINGUNO ? programa.constanteCadena("")
+                    : operacion[valor] == CONSTANTE_CADENA ? dato[valor] : NINGUNO;
+                constanteCadenas[casillero] = constante;
+                break;
+        }
+        if (constante != NINGUNO) {
+            eliminados += contar(n);
+            operacion[n] = SECUENCIA;
+            primero[n] = NINGUNO;
+        }
+    }
+
+    // -------------------------------------------------------
+    // Expresiones
+    // -------------------------------------------------------
+
+    // Pliega la expresión; devuelve si quedó como constante
+    private boolean expresion(int n) {
+        switch (operacion[n]) {
+            case CONSTANTE_ENTERO:
+            case CONSTANTE_DECIMAL:
+            case CONSTANTE_CADENA:
+                return true;
+            case VARIABLE_ENTERO:
+                return reemplazar(n, CONSTANTE_ENTERO, constanteEnteros[dato[n]]);
+            case VARIABLE_DECIMAL:
+                return reemplazar(n, CONSTANTE_DECIMAL, constanteDecimales[dato[n]]);
+            case VARIABLE_CADENA:
+                return reemplazar(n, CONSTANTE_CADENA, constanteCadenas[dato[n]]);
+            default:
+                break;
+        }
+
+        int izquierdo = primero[n];
+        int derecho = siguiente[izquierdo];
+        boolean constante = expresion(izquierdo);
+        constante &= expresion(derecho);
+        if (!constante) {
+            return false;
+        }
+        switch (operacion[n]) {
+            case SUMA_ENTERO:
+                return plegar(n, CONSTANTE_ENTERO, programa.constanteEntera(entero(izquierdo) + entero(derecho)));
+            case RESTA_ENTERO:
+                return plegar(n, CONSTANTE_ENTERO, programa.constanteEntera(entero(izquierdo) - entero(derecho)));
+            case PRODUCTO_ENTERO:
+                return plegar(n, CONSTANTE_ENTERO, programa.constanteEntera(entero(izquierdo) * entero(derecho)));
+            case DIVISION_ENTERO:
+                if (entero(derecho) == 0) {
+                    return false;
+                }
+                return plegar(n, CONSTANTE_ENTERO, programa.constanteEntera(entero(izquierdo) / entero(derecho)));
+            case SUMA_DECIMAL:
+                return plegar(n, CONSTANTE_DECIMAL, programa.constanteDecimal(decimal(izquierdo) + decimal(derecho)));
+            case RESTA_DECIMAL:
+                return plegar(n, CONSTANTE_DECIMAL, programa.constanteDecimal(decimal(izquierdo) - decimal(derecho)));
+            case PRODUCTO_DECIMAL:
+                return plegar(n, CONSTANTE_DECIMAL, programa.constanteDecimal(decimal(izquierdo) * decimal(derecho)));
+            case DIVISION_DECIMAL:
+                return plegar(n, CONSTANTE_DECIMAL, programa.constanteDecimal(decimal(izquierdo) / decimal(derecho)));
+            case CONCATENAR:
+                return plegar(n, CONSTANTE_CADENA, programa.constanteCadena(texto(izquierdo).concat(texto(derecho))));
+            default:
+                return false;
+        }
+    }
+
+    // Uso de una variable constante: queda el valor (el tipo no cambia, un
+    // caracter sigue siendo caracter)
+    private boolean reemplazar(int n, int operacionConstante, int constante) {
+        if (constante == NINGUNO) {
+            return false;
+        }
+        operacion[n] = operacionConstante;
+        dato[n] = constante;
+        return true;
+    }
+
+    // Operación con operandos constantes: queda como hoja
+    private boolean plegar(int n, int operacionConstante, int constante) {
+        eliminados += 2;
+        operacion[n] = operacionConstante;
+        dato[n] = constante;
+        primero[n] = NINGUNO;
+        return true;
+    }
+
+    private long entero(int n) {
+        return programa.constantesEnteras[dato[n]];
+    }
+
+    private double decimal(int n) {
+        return operacion[n] == CONSTANTE_DECIMAL ? programa.constantesDecimales[dato[n]] : entero(n);
+    }
+
+    // Como Interprete.texto
+    private String texto(int n) {
+        switch (tipo[n]) {
+            case ENTERO:   return Long.toString(entero(n));
+            case DECIMAL:  return Double.toString(decimal(n));
+            case CARACTER: return String.valueOf((char) entero(n));
+            default:       return programa.constantesCadenas[dato[n]];
+        }
+    }
+
+    // -------------------------------------------------------
+    // Condiciones
+    // -------------------------------------------------------
+
+    // Pliega la condición y devuelve FALSA, VERDADERA o VARIABLE. Un Y u O
+    // con un lado que ya no decide queda como el otro lado
+    private int condicion(int n) {
+        int izquierdo = primero[n];
+        int derecho = siguiente[izquierdo];
+        switch (operacion[n]) {
+            case Y:
+            case O: {
+                // El lado que decide solo: FALSA en un Y, VERDADERA en un O
+                int decide = operacion[n] == Y ? FALSA : VERDADERA;
+                int a = condicion(izquierdo);
+                if (a == decide) {
+                    return a;
+                }
+                int b = condicion(derecho);
+                if (a != VARIABLE) {
+                    absorber(n, derecho);
+                    return b;
+                }
+                if (b == VARIABLE) {
+                    return VARIABLE;
+                }
+                if (b != decide) {
+                    absorber(n, izquierdo);
+                    return VARIABLE;
+                }
+                return puedeFallar(izquierdo) ? VARIABLE : decide;
+            }
+            case COMPARAR_ENTERO:
+            case COMPARAR_DECIMAL:
+            case COMPARAR_CADENA: {
+                boolean constante = expresion(izquierdo);
+                constante &= expresion(derecho);
+                if (!constante) {
+                    return VARIABLE;
+                }
+                int orden;
+                if (operacion[n] == COMPARAR_ENTERO) {
+                    orden = Long.compare(entero(izquierdo), entero(derecho));
+                } else if (operacion[n] == COMPARAR_CADENA) {
+                    orden = programa.constantesCadenas[dato[izquierdo]]
+                        .compareTo(programa.constantesCadenas[dato[derecho]]);
+                } else {
+                    double x = decimal(izquierdo);
+                    double y = decimal(derecho);
+                    // Con NaN todas las comparaciones son falsas
+                    if (x != x || y != y) {
+                        return FALSA;
+                    }
+                    orden = x < y ? -1 : x > y ? 1 : 0;
+                }
+                return comparar(orden, dato[n]) ? VERDADERA : FALSA;
+            }
+            default:
+                return VARIABLE;
+        }
+    }
+
+    // El nodo pasa a ser su hijo; el otro lado se descarta
+    private void absorber(int n, int hijo) {
+        eliminados += contar(n) - contar(hijo);
+        operacion[n] = operacion[hijo];
+        dato[n] = dato[hijo];
+        primero[n] = primero[hijo];
+        programa.lineas[n] = programa.lineas[hijo];
+        programa.columnas[n] = programa.columnas[hijo];
+    }
+
+    // Si evaluar la condición puede lanzar un error (una división entera
+    // que no se pudo plegar)
+    private boolean puedeFallar(int n) {
+        if (operacion[n] == DIVISION_ENTERO) {
+            return true;
+        }
+        switch (operacion[n]) {
+            case CONSTANTE_ENTERO:
+            case CONSTANTE_DECIMAL:
+            case CONSTANTE_CADENA:
+            case VARIABLE_ENTERO:
+            case VARIABLE_DECIMAL:
+            case VARIABLE_CADENA:
+                return false;
+            default:
+                return puedeFallar(primero[n]) || puedeFallar(siguiente[primero[n]]);
+        }
+    }
+
+    private static boolean comparar(int orden, int operador) {
+        switch (operador) {
+            case CarumaLangParserConstants.MENORQUE:         return orden < 0;
+            case CarumaLangParserConstants.MAYORQUE:         return orden > 0;
+            case CarumaLangParserConstants.MENORIGUALITOQUE: return orden <= 0;
+            case CarumaLangParserConstants.MAYORIGUALITOQUE: return orden >= 0;
+            default:                                         return orden == 0;
+        }
+    }
+
+    // Nodos del subárbol que se alcanzan al ejecutar
+    private int contar(int n) {
+        switch (operacion[n]) {
+            case CONSTANTE_ENTERO:
+            case CONSTANTE_DECIMAL:
+            case CONSTANTE_CADENA:
+            case VARIABLE_ENTERO:
+            case VARIABLE_DECIMAL:
+            case VARIABLE_CADENA:
+                return 1;
+            case ASIGNAR_ENTERO:
+            case ASIGNAR_DECIMAL:
+            case ASIGNAR_CADENA:
+                return primero[n] == NINGUNO ? 1 : 1 + contar(primero[n]);
+            default: {
+                int total = 1;
+                for (int h = primero[n]; h != NINGUNO; h = siguiente[h]) {
+                    total += contar(h);
+                }
+                return total;
+            }
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package Interprete;
+
+import AnalizadorSintactico.HuellaClases;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+/**
+ * Programa CarumaLang compilado a bytecode (ver Instrucciones): el código,
+ * los pools de constantes de cada banco de registros, el tamaño de cada
+ * banco y las posiciones del fuente para los errores.
+ *
+ * Se puede guardar como archivo .crmc junto al .crm. El encabezado lleva
+ * la huella del compilador y del analizador (los bytes de sus clases, ver
+ * AnalizadorSintactico.HuellaClases) y la fecha de modificación y el
+ * tamaño del fuente, y leerCache() solo devuelve el programa si siguen
+ * coincidiendo: una ejecución repetida no vuelve a pasar por el análisis
+ * léxico ni sintáctico, y un cambio en las verificaciones o en el código
+ * que se genera descarta los .crmc anteriores. El código leído
+ * se verifica antes de usarlo: un .crmc dañado se descarta y se recompila.
+ */
+public class ProgramaCompilado implements Instrucciones {
+
+    private static final int MAGICO = 0x43524D43;   // "CRMC"
+    private static final int VERSION = 2;
+
+    // Clases de las que depende el código compilado, como prefijos de sus
+    // recursos: el compilador y el optimizador con sus clases anidadas, el
+    // juego de instrucciones y el analizador que verifica el programa
+    private static final String[] CLASES_COMPILADOR = {
+        "Interprete/Compilador",
+        "Interprete/Optimizador",
+        "Interprete/Instrucciones",
+        "Interprete/ProgramaCompilado",
+        "AnalizadorSintactico/",
+        "Escaneo/",
+        "AnalisisSintactico.class",
+        "AnalisisSintactico$",
+    };
+
+    // Se calcula la primera vez que se lee o guarda un .crmc
+    private static byte[] huella;
+
+    final int[] codigo;
+    final long[] constantesEnteras;
+    final double[] constantesDecimales;
+    final String[] constantesCadenas;
+    final int registrosEnteros;
+    final int registrosDecimales;
+    final int registrosCadenas;
+    final int[] posiciones;        // Línea y columna de cada posición
+
+    // Nodos que quitó el Optimizador al compilar; no se guarda en el .crmc,
+    // así que un programa leído de ahí no lo sabe (-1)
+    int nodosEliminados = -1;
+
+    ProgramaCompilado(int[] codigo, long[] constantesEnteras, double[] constantesDecimales,
+                      String[] constantesCadenas, int registrosEnteros, int registrosDecimales,
+                      int registrosCadenas, int[] posiciones) {
+        this.codigo = codigo;
+        this.constantesEnteras = constantesEnteras;
+        this.constantesDecimales = constantesDecimales;
+        this.constantesCadenas = constantesCadenas;
+        this.registrosEnteros = registrosEnteros;
+        this.registrosDecimales = registrosDecimales;
+        this.registrosCadenas = registrosCadenas;
+        this.posiciones = posiciones;
+    }
+
+    private static synchronized byte[] huella() throws IOException {
+        if (huella == null) {
+            huella = HuellaClases.de(ProgramaCompilado.class, VERSION, CLASES_COMPILADOR);
+        }
+        return huella;
+    }
+
+    /** Archivo .crmc que corresponde a un fuente .crm. */
+    public static Path archivoCache(Path fuente) {
+        String nombre = fuente.getFileName().toString();
+        if (nombre.toLowerCase().endsWith(".crm")) {
+            nombre = nombre.substring(0, nombre.length() - 4);
+        }
+        return fuente.resolveSibling(nombre + ".crmc");
+    }
+
+    /**
+     * Programa guardado para el fuente, o null si no hay .crmc, si el fuente
+     * cambió desde que se guardó o si el archivo no es válido.
+     */
+    public static ProgramaCompilado leerCache(Path fuente) throws IOException {
+        Path cache = archivoCache(fuente);
+        if (!Files.isRegularFile(cache)) {
+            return null;
+        }
+        BasicFileAttributes atributos = Files.readAttributes(fuente, BasicFileAttributes.class);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(cache)))) {
+            byte[] guardada = new byte[huella().length];
+            if (in.readInt() != MAGICO || in.readInt() != VERSION) {
+                return null;
+            }
+            in.readFully(guardada);
+            if (!Arrays.equals(guardada, huella())
+                    || in.readLong() != atributos.lastModifiedTime().toMillis()
+                    || in.readLong() != atributos.size()) {
+                return null;
+            }
+            ProgramaCompilado programa = leer(in, Files.size(cache));
+            return programa.verificar() ? programa : null;
+        } catch (IOException | RuntimeException e) {
+            // Truncado o con tamaños imposibles: se recompila
+            return null;
+        }
+    }
+
+    /**
+     * Guarda el programa como .crmc del fuente. Se escribe en un temporal y
+     * se renombra, así otra ejecución nunca lee un archivo a medias.
+     */
+    public void guardarCache(Path fuente) throws IOException {
+        BasicFileAttributes atributos = Files.readAttributes(fuente, BasicFileAttributes.class);
+        Path cache = archivoCache(fuente);
+        Path temporal = cache.resolveSibling(cache.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporal)))) {
+            out.writeInt(MAGICO);
+            out.writeInt(VERSION);
+            out.write(huella());
+            out.writeLong(atributos.lastModifiedTime().toMillis());
+            out.writeLong(atributos.size());
+            escribir(out);
+        }
+        Files.move(temporal, cache, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void escribir(DataOutputStream out) throws IOException {
+        out.writeInt(registrosEnteros);
+        out.writeInt(registrosDecimales);
+        out.writeInt(registrosCadenas);
+        out.writeInt(constantesEnteras.length);
+        for (long valor : constantesEnteras) {
+            out.writeLong(valor);
+        }
+        out.writeInt(constantesDecimales.length);
+        for (double valor : constantesDecimales) {
+            out.writeDouble(valor);
+        }
+        out.writeInt(constantesCadenas.length);
+        for (String valor : constantesCadenas) {
+            byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        escribirEnteros(out, posiciones);
+        escribirEnteros(out, codigo);
+    }
+
+    // Ninguna cantidad puede superar el tamaño del archivo: así un .crmc
+    // dañado no pide arreglos gigantes
+    private static ProgramaCompilado leer(DataInputStream in, long limite) throws IOException {
+        int registrosEnteros = in.readInt();
+        int registrosDecimales = in.readInt();
+        int registrosCadenas = in.readInt();
+        long[] constantesEnteras = new long[cantidad(in, limite)];
+        for (int i = 0; i < constantesEnteras.length; i++) {
+            constantesEnteras[i] = in.readLong();
+        }
+        double[] constantesDecimales = new double[cantidad(in, limite)];
+        for (int i = 0; i < constantesDecimales.length; i++) {
+            constantesDecimales[i] = in.readDouble();
+        }
+        String[] constantesCadenas = new String[cantidad(in, limite)];
+        for (int i = 0; i < constantesCadenas.length; i++) {
+            byte[] bytes = new byte[cantidad(in, limite)];
+            in.readFully(bytes);
+            constantesCadenas[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        int[] posiciones = leerEnteros(in, limite);
+        int[] codigo = leerEnteros(in, limite);
+        return new ProgramaCompilado(codigo, constantesEnteras, constantesDecimales, constantesCadenas,
+            registrosEnteros, registrosDecimales, registrosCadenas, posiciones);
+    }
+
+    private static void escribirEnteros(DataOutputStream out, int[] valores) throws IOException {
+        out.writeInt(valores.length);
+        for (int valor : valores) {
+            out.writeInt(valor);
+        }
+    }
+
+    private static int[] leerEnteros(DataInputStream in, long limite) throws IOException {
+        int[] valores = new int[cantidad(in, limite)];
+        for (int i = 0; i < valores.length; i++) {
+            valores[i] = in.readInt();
+        }
+        return valores;
+    }
+
+    private static int cantidad(DataInputStream in, long limite) throws IOException {
+        int cantidad = in.readInt();
+        if (cantidad < 0 || cantidad > limite) {
+            throw new IOException("Cantidad invalida en el archivo .crmc: " + cantidad);
+        }
+        return cantidad;
+    }
+
+    /**
+     * Comprueba que cada instrucción exista, que sus registros estén dentro
+     * de su banco, que los saltos caigan en el inicio de una instrucción y
+     * que la última sea FIN. La máquina virtual no revisa nada de esto al
+     * ejecutar.
+     */
+    boolean verificar() {
+        if (registrosEnteros < constantesEnteras.length
+                || registrosDecimales < constantesDecimales.length
+                || registrosCadenas < constantesCadenas.length
+                || (posiciones.length & 1) != 0) {
+            return false;
+        }
+        boolean[] inicios = new boolean[codigo.length];
+        int ultima = -1;
+        for (int pc = 0; pc < codigo.length; pc += 1 + FORMATO[codigo[ultima]].length()) {
+            int instruccion = codigo[pc];
+            if (instruccion < 0 || instruccion >= TOTAL_INSTRUCCIONES
+                    || pc + FORMATO[instruccion].length() >= codigo.length) {
+                return false;
+            }
+            inicios[pc] = true;
+            ultima = pc;
+            String formato = FORMATO[instruccion];
+            for (int i = 0; i < formato.length(); i++) {
+                if (codigo[pc + 1 + i] < 0 || codigo[pc + 1 + i] >= limite(formato.charAt(i))) {
+                    return false;
+                }
+            }
+        }
+        if (ultima < 0 || codigo[ultima] != FIN) {
+            return false;
+        }
+        for (int pc = 0; pc < codigo.length; pc += 1 + FORMATO[codigo[pc]].length()) {
+            String formato = FORMATO[codigo[pc]];
+            for (int i = 0; i < formato.length(); i++) {
+                if (formato.charAt(i) == 'j' && !inicios[codigo[pc + 1 + i]]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private int limite(char operando) {
+        switch (operando) {
+            case 'e': return registrosEnteros;
+            case 'd': return registrosDecimales;
+            case 's': return registrosCadenas;
+            case 'j': return codigo.length;
+            default:  return posiciones.length / 2;
+        }
+    }
+
+    /** Listado legible del código, una instrucción por línea. */
+    public String desensamblar() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("registros: ").append(registrosEnteros).append(" enteros, ")
+          .append(registrosDecimales).append(" decimales, ")
+          .append(registrosCadenas).append(" cadenas\n");
+        if (nodosEliminados >= 0) {
+            sb.append("optimizacion: ").append(nodosEliminados).append(" nodos eliminados\n");
+        }
+        for (int pc = 0; pc < codigo.length; ) {
+            String formato = FORMATO[codigo[pc]];
+            sb.append(String.format("%5d  %-18s", pc, NOMBRES[codigo[pc]]));
+            for (int i = 0; i < formato.length(); i++) {
+                sb.append(i == 0 ? " " : ", ").append(operando(formato.charAt(i), codigo[pc + 1 + i]));
+            }
+            sb.append('\n');
+            pc += 1 + formato.length();
+        }
+        return sb.toString();
+    }
+
+    // Las constantes se muestran con su valor y los demás registros con su número
+    private String operando(char tipo, int valor) {
+        switch (tipo) {
+            case 'e': {
+                int constante = valor - (registrosEnteros - constantesEnteras.length);
+                return constante >= 0 ? String.valueOf(constantesEnteras[constante]) : "e" + valor;
+            }
+            case 'd': {
+                int constante = valor - (registrosDecimales - constantesDecimales.length);
+                return constante >= 0 ? String.valueOf(constantesDecimales[constante]) : "d" + valor;
+            }
+            case 's': {
+                int constante = valor - (registrosCadenas - constantesCadenas.length);
+                return constante >= 0 ? '"' + constantesCadenas[constante] + '"' : "s" + valor;
+            }
+            case 'j':
+                return "-> " + valor;
+            default:
+                return "linea " + posiciones[2 * valor];
+        }
+    }
+}
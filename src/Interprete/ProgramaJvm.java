@@ -0,0 +1,449 @@
+package Interprete;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+/**
+ * Programa CarumaLang traducido a una clase de la JVM.
+ *
+ * Parte del bytecode de la máquina virtual (ProgramaCompilado), así que
+ * también sirve un .crmc guardado. Cada instrucción se traduce a
+ * instrucciones de la JVM: los registros de variables y temporales pasan
+ * a ser variables locales long, double y String de un único método
+ * estático, y las constantes, a constantes del pool de la clase. La clase
+ * se define como clase oculta (Lookup.defineHiddenClass), sin cargador
+ * propio y descartable junto con este objeto, y el JIT de HotSpot compila
+ * los ciclos papoi y paraPapoi como cualquier ciclo de Java.
+ *
+ * HotSpot no compila métodos de más de 8000 bytes (HugeMethodLimit); un
+ * programa que no cabe correría más lento que en la máquina virtual, así
+ * que compilar() devuelve null y quien llama usa la máquina virtual.
+ */
+public class ProgramaJvm implements Instrucciones {
+
+    static final int LIMITE_CODIGO = 8000;
+
+    private static final String SALIDA = "Interprete/Salida";
+    private static final String ERROR = "Interprete/ErrorEjecucion";
+
+    // Códigos de la JVM que usa la traducción
+    private static final int ACONST_NULL = 0x01, LCONST_0 = 0x09, LCONST_1 = 0x0A;
+    private static final int DCONST_0 = 0x0E, DCONST_1 = 0x0F;
+    private static final int LDC = 0x12, LDC_W = 0x13, LDC2_W = 0x14;
+    private static final int LLOAD = 0x16, DLOAD = 0x18, ALOAD = 0x19, ALOAD_0 = 0x2A;
+    private static final int LSTORE = 0x37, DSTORE = 0x39, ASTORE = 0x3A;
+    private static final int DUP = 0x59;
+    private static final int LADD = 0x61, DADD = 0x63, LSUB = 0x65, DSUB = 0x67;
+    private static final int LMUL = 0x69, DMUL = 0x6B, LDIV = 0x6D, DDIV = 0x6F;
+    private static final int L2I = 0x88, L2D = 0x8A, I2C = 0x92;
+    private static final int LCMP = 0x94, DCMPL = 0x97, DCMPG = 0x98;
+    private static final int IFEQ = 0x99, IFNE = 0x9A, IFLT = 0x9B, IFGE = 0x9C, IFGT = 0x9D, IFLE = 0x9E;
+    private static final int GOTO = 0xA7, RETURN = 0xB1;
+    private static final int INVOKEVIRTUAL = 0xB6, INVOKESPECIAL = 0xB7, INVOKESTATIC = 0xB8;
+    private static final int NEW = 0xBB, ATHROW = 0xBF, WIDE = 0xC4;
+
+    // Salto de la JVM que corresponde a cada relación (MENOR, MAYOR, ...)
+    private static final int[] SALTOS = {IFLT, IFGT, IFLE, IFGE, IFEQ, IFNE};
+
+    private final MethodHandle metodo;
+
+    private ProgramaJvm(MethodHandle metodo) {
+        this.metodo = metodo;
+    }
+
+    /**
+     * Traduce y carga el programa. Devuelve null si no cabe en un método
+     * que HotSpot compile o en los límites del formato .class.
+     */
+    public static ProgramaJvm compilar(ProgramaCompilado programa) {
+        byte[] clase;
+        try {
+            clase = new Traductor(programa).traducir();
+        } catch (IOException e) {
+            // Pool de constantes lleno o cadena demasiado larga
+            return null;
+        }
+        if (clase == null) {
+            return null;
+        }
+        try {
+            MethodHandles.Lookup oculta = MethodHandles.lookup().defineHiddenClass(clase, true);
+            return new ProgramaJvm(oculta.findStatic(oculta.lookupClass(), "ejecutar",
+                MethodType.methodType(void.class, Salida.class)));
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new IllegalStateException("No se pudo cargar la clase generada", e);
+        }
+    }
+
+    /** Ejecuta el programa desde el principio, con todas las variables nuevas. */
+    public void ejecutar(Salida salida) throws IOException {
+        try {
+            metodo.invokeExact(salida);
+        } catch (IOException | RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException(t);
+        } finally {
+            salida.vaciar();
+        }
+    }
+
+    // Traducción de un ProgramaCompilado a los bytes de la clase
+    private static class Traductor {
+
+        private final ProgramaCompilado programa;
+        private final int[] c;
+        private final EscritorClase clase = new EscritorClase();
+
+        // Registros que son variables o temporales (el resto son constantes)
+        private final int enteros;
+        private final int decimales;
+        private final int cadenas;
+
+        private byte[] codigo = new byte[1024];
+        private int total = 0;
+
+        // Posición en el código de la JVM de cada instrucción del programa y
+        // saltos pendientes de completar: posición del salto y destino
+        private final int[] posicion;
+        private int[] saltos = new int[64];
+        private int totalSaltos = 0;
+
+        Traductor(ProgramaCompilado programa) {
+            this.programa = programa;
+            this.c = programa.codigo;
+            enteros = programa.registrosEnteros - programa.constantesEnteras.length;
+            decimales = programa.registrosDecimales - programa.constantesDecimales.length;
+            cadenas = programa.registrosCadenas - programa.constantesCadenas.length;
+            posicion = new int[c.length];
+        }
+
+        byte[] traducir() throws IOException {
+            int locales = 1 + 2 * enteros + 2 * decimales + cadenas;
+            if (locales > 0xFFFF) {
+                return null;
+            }
+            // Todas las locales empiezan asignadas, así la verificación no
+            // depende de por dónde llega cada salto
+            for (int r = 0; r < enteros; r++) {
+                u1(LCONST_0);
+                local(LSTORE, localEntero(r));
+            }
+            for (int r = 0; r < decimales; r++) {
+                u1(DCONST_0);
+                local(DSTORE, localDecimal(r));
+            }
+            for (int r = 0; r < cadenas; r++) {
+                u1(ACONST_NULL);
+                local(ASTORE, localCadena(r));
+            }
+
+            for (int pc = 0; pc < c.length; pc += 1 + FORMATO[c[pc]].length()) {
+                posicion[pc] = total;
+                instruccion(pc);
+                if (total > LIMITE_CODIGO) {
+                    return null;
+                }
+            }
+            for (int i = 0; i < totalSaltos; i += 2) {
+                int desde = saltos[i];
+                int desplazamiento = posicion[saltos[i + 1]] - desde;
+                codigo[desde + 1] = (byte) (desplazamiento >> 8);
+                codigo[desde + 2] = (byte) desplazamiento;
+            }
+            // Con las constantes long y double, la pila llega a 6 palabras
+            // al armar un ErrorEjecucion o comparar dos long
+            return clase.escribir("Interprete/CodigoCarumaLang", "ejecutar", "(L" + SALIDA + ";)V",
+                codigo, total, 6, locales);
+        }
+
+        private void instruccion(int pc) throws IOException {
+            int a = pc + 1 < c.length ? c[pc + 1] : 0;
+            int b = pc + 2 < c.length ? c[pc + 2] : 0;
+            int d = pc + 3 < c.length ? c[pc + 3] : 0;
+            int instruccion = c[pc];
+            switch (instruccion) {
+                case FIN:
+                    u1(RETURN);
+                    return;
+                case SALTAR:
+                    salto(GOTO, a);
+                    return;
+                case MOVER_E:
+                    cargarEntero(b);
+                    guardarEntero(a);
+                    return;
+                case MOVER_D:
+                    cargarDecimal(b);
+                    guardarDecimal(a);
+                    return;
+                case MOVER_S:
+                    cargarCadena(b);
+                    guardarCadena(a);
+                    return;
+                case A_DECIMAL:
+                    cargarEntero(b);
+                    u1(L2D);
+                    guardarDecimal(a);
+                    return;
+                case SUMAR_E:
+                case RESTAR_E:
+                case MULTIPLICAR_E:
+                    cargarEntero(b);
+                    cargarEntero(d);
+                    u1(instruccion == SUMAR_E ? LADD : instruccion == RESTAR_E ? LSUB : LMUL);
+                    guardarEntero(a);
+                    return;
+                case DIVIDIR_E:
+                    if (!esConstante(d, programa.registrosEnteros, programa.constantesEnteras.length)
+                            || constanteEntera(d) == 0) {
+                        // if (divisor == 0) throw new ErrorEjecucion(...)
+                        cargarEntero(d);
+                        u1(LCONST_0);
+                        u1(LCMP);
+                        u1(IFNE);
+                        u2(3 + 3 + 1 + 3 + 3 + 3 + 3 + 1);
+                        u1(NEW);
+                        u2(clase.clase(ERROR));
+                        u1(DUP);
+                        u1(LDC_W);
+                        u2(clase.cadena("Division entera entre cero"));
+                        u1(LDC_W);
+                        u2(clase.entero(programa.posiciones[2 * c[pc + 4]]));
+                        u1(LDC_W);
+                        u2(clase.entero(programa.posiciones[2 * c[pc + 4] + 1]));
+                        u1(INVOKESPECIAL);
+                        u2(clase.metodo(ERROR, "<init>", "(Ljava/lang/String;II)V"));
+                        u1(ATHROW);
+                    }
+                    cargarEntero(b);
+                    cargarEntero(d);
+                    u1(LDIV);
+                    guardarEntero(a);
+                    return;
+                case SUMAR_D:
+                case RESTAR_D:
+                case MULTIPLICAR_D:
+                case DIVIDIR_D:
+                    cargarDecimal(b);
+                    cargarDecimal(d);
+                    u1(new int[] {DADD, DSUB, DMUL, DDIV}[instruccion - SUMAR_D]);
+                    guardarDecimal(a);
+                    return;
+                case TEXTO_E:
+                    cargarEntero(b);
+                    invocar(INVOKESTATIC, "java/lang/Long", "toString", "(J)Ljava/lang/String;");
+                    guardarCadena(a);
+                    return;
+                case TEXTO_D:
+                    cargarDecimal(b);
+                    invocar(INVOKESTATIC, "java/lang/Double", "toString", "(D)Ljava/lang/String;");
+                    guardarCadena(a);
+                    return;
+                case TEXTO_C:
+                    cargarEntero(b);
+                    u1(L2I);
+                    u1(I2C);
+                    invocar(INVOKESTATIC, "java/lang/String", "valueOf", "(C)Ljava/lang/String;");
+                    guardarCadena(a);
+                    return;
+                case CONCATENAR_S:
+                    cargarCadena(b);
+                    cargarCadena(d);
+                    invocar(INVOKEVIRTUAL, "java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;");
+                    guardarCadena(a);
+                    return;
+                case IMPRIMIR_E:
+                    u1(ALOAD_0);
+                    cargarEntero(a);
+                    invocar(INVOKEVIRTUAL, SALIDA, "escribir", "(J)V");
+                    return;
+                case IMPRIMIR_D:
+                    u1(ALOAD_0);
+                    cargarDecimal(a);
+                    invocar(INVOKEVIRTUAL, SALIDA, "escribir", "(D)V");
+                    return;
+                case IMPRIMIR_C:
+                    u1(ALOAD_0);
+                    cargarEntero(a);
+                    u1(L2I);
+                    u1(I2C);
+                    invocar(INVOKEVIRTUAL, SALIDA, "escribir", "(C)V");
+                    return;
+                case IMPRIMIR_S:
+                    u1(ALOAD_0);
+                    cargarCadena(a);
+                    invocar(INVOKEVIRTUAL, SALIDA, "escribir", "(Ljava/lang/String;)V");
+                    return;
+                case NUEVA_LINEA:
+                    u1(ALOAD_0);
+                    invocar(INVOKEVIRTUAL, SALIDA, "nuevaLinea", "()V");
+                    return;
+                default:
+                    break;
+            }
+
+            // Saltos condicionales: a, b, destino
+            if (instruccion < SI_D) {
+                cargarEntero(a);
+                cargarEntero(b);
+                u1(LCMP);
+                salto(SALTOS[instruccion - SI_E], d);
+            } else if (instruccion < SI_S) {
+                // Con NaN, dcmpg da 1 y dcmpl da -1: se elige el que hace
+                // falsa la relación (SI_D) o verdadera su negación (NO_D)
+                boolean negada = instruccion >= NO_D;
+                int relacion = instruccion - (negada ? NO_D : SI_D);
+                cargarDecimal(a);
+                cargarDecimal(b);
+                boolean menor = relacion == MENOR || relacion == MENOR_IGUAL;
+                u1(menor ? DCMPG : DCMPL);
+                salto(SALTOS[negada ? negada(relacion) : relacion], d);
+            } else {
+                int relacion = instruccion - SI_S;
+                cargarCadena(a);
+                cargarCadena(b);
+                if (relacion == IGUAL || relacion == DISTINTO) {
+                    invocar(INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z");
+                    salto(relacion == IGUAL ? IFNE : IFEQ, d);
+                } else {
+                    invocar(INVOKEVIRTUAL, "java/lang/String", "compareTo", "(Ljava/lang/String;)I");
+                    salto(SALTOS[relacion], d);
+                }
+            }
+        }
+
+        private static int negada(int relacion) {
+            switch (relacion) {
+                case MENOR:       return MAYOR_IGUAL;
+                case MAYOR:       return MENOR_IGUAL;
+                case MENOR_IGUAL: return MAYOR;
+                case MAYOR_IGUAL: return MENOR;
+                case IGUAL:       return DISTINTO;
+                default:          return IGUAL;
+            }
+        }
+
+        // Registros: las constantes se cargan del pool y el resto son locales
+
+        private static boolean esConstante(int registro, int total, int constantes) {
+            return registro >= total - constantes;
+        }
+
+        private long constanteEntera(int registro) {
+            return programa.constantesEnteras[registro - enteros];
+        }
+
+        private void cargarEntero(int registro) throws IOException {
+            if (registro < enteros) {
+                local(LLOAD, localEntero(registro));
+                return;
+            }
+            long valor = constanteEntera(registro);
+            if (valor == 0 || valor == 1) {
+                u1(valor == 0 ? LCONST_0 : LCONST_1);
+            } else {
+                u1(LDC2_W);
+                u2(clase.largo(valor));
+            }
+        }
+
+        private void cargarDecimal(int registro) throws IOException {
+            if (registro < decimales) {
+                local(DLOAD, localDecimal(registro));
+                return;
+            }
+            double valor = programa.constantesDecimales[registro - decimales];
+            if (Double.doubleToRawLongBits(valor) == 0) {
+                u1(DCONST_0);
+            } else if (valor == 1.0) {
+                u1(DCONST_1);
+            } else {
+                u1(LDC2_W);
+                u2(clase.doble(valor));
+            }
+        }
+
+        private void cargarCadena(int registro) throws IOException {
+            if (registro < cadenas) {
+                local(ALOAD, localCadena(registro));
+                return;
+            }
+            int indice = clase.cadena(programa.constantesCadenas[registro - cadenas]);
+            if (indice <= 0xFF) {
+                u1(LDC);
+                u1(indice);
+            } else {
+                u1(LDC_W);
+                u2(indice);
+            }
+        }
+
+        private void guardarEntero(int registro) {
+            local(LSTORE, localEntero(registro));
+        }
+
+        private void guardarDecimal(int registro) {
+            local(DSTORE, localDecimal(registro));
+        }
+
+        private void guardarCadena(int registro) {
+            local(ASTORE, localCadena(registro));
+        }
+
+        // La local 0 es la Salida; después, dos palabras por long y double
+        private int localEntero(int registro) {
+            return 1 + 2 * registro;
+        }
+
+        private int localDecimal(int registro) {
+            return 1 + 2 * enteros + 2 * registro;
+        }
+
+        private int localCadena(int registro) {
+            return 1 + 2 * enteros + 2 * decimales + registro;
+        }
+
+        private void local(int instruccion, int indice) {
+            if (indice <= 0xFF) {
+                u1(instruccion);
+                u1(indice);
+            } else {
+                u1(WIDE);
+                u1(instruccion);
+                u2(indice);
+            }
+        }
+
+        private void invocar(int instruccion, String duena, String nombre, String descriptor) throws IOException {
+            u1(instruccion);
+            u2(clase.metodo(duena, nombre, descriptor));
+        }
+
+        // El desplazamiento se completa al final, cuando se conocen todas las posiciones
+        private void salto(int instruccion, int destino) {
+            if (totalSaltos + 2 > saltos.length) {
+                saltos = Arrays.copyOf(saltos, saltos.length * 2);
+            }
+            saltos[totalSaltos++] = total;
+            saltos[totalSaltos++] = destino;
+            u1(instruccion);
+            u2(0);
+        }
+
+        private void u1(int valor) {
+            if (total + 4 > codigo.length) {
+                codigo = Arrays.copyOf(codigo, codigo.length * 2);
+            }
+            codigo[total++] = (byte) valor;
+        }
+
+        private void u2(int valor) {
+            u1(valor >> 8);
+            u1(valor);
+        }
+    }
+}
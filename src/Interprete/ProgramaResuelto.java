@@ -0,0 +1,400 @@
+package Interprete;
+
+import AnalizadorSintactico.ArbolSintactico;
+import AnalizadorSintactico.CarumaLangParserConstants;
+import java.util.Arrays;
+
+/**
+ * Programa CarumaLang cargado desde el árbol sintáctico y resuelto: cada
+ * variable tiene un casillero en el marco de su tipo, cada uso de una
+ * variable apunta a ese casillero y cada nodo tiene una operación ya
+ * especializada por tipo (SUMA_ENTERO, COMPARAR_DECIMAL...). Las reglas de
+ * tipos y de ámbitos están aquí; el intérprete lo recorre tal cual y el
+ * compilador lo traduce a bytecode. El análisis semántico
+ * (AnalisisSintactico.VerificadorSemantico) aplica las mismas reglas antes,
+ * para reportarlas con los demás errores del archivo.
+ */
+class ProgramaResuelto implements Operaciones {
+
+    static final int NINGUNO = ArbolSintactico.NINGUNO;
+
+    // Programa cargado, un elemento por nodo del árbol. Para las operaciones
+    // binarias el operando derecho es siguiente[primero[n]]
+    final int[] operacion;
+    final int[] dato;
+    final int[] primero;
+    final int[] siguiente;
+    final int[] tipo;
+    final int[] lineas;
+    final int[] columnas;
+    final int raiz;
+
+    long[] constantesEnteras = new long[16];
+    int totalConstantesEnteras = 0;
+    double[] constantesDecimales = new double[16];
+    int totalConstantesDecimales = 0;
+    String[] constantesCadenas = new String[16];
+    int totalConstantesCadenas = 0;
+
+    // Tamaño de los marcos de variables. Los caracteres se guardan como
+    // código en el marco de enteros
+    int totalEnteros = 0;
+    int totalDecimales = 0;
+    int totalCadenas = 0;
+
+    // Resolución de nombres durante la carga: por índice de nombre del
+    // árbol, el casillero * 4 + tipo de la declaración visible (o NINGUNO),
+    // y las ligaduras que tapó cada declaración, para restaurarlas al
+    // cerrar su bloque
+    private ArbolSintactico arbol;
+    private int[] ligaduras;
+    private int[] tapadas = new int[64];
+    private int totalTapadas = 0;
+
+    /**
+     * Carga el programa del árbol (que debe venir de un análisis sin
+     * errores). Lanza ErrorEjecucion si usa una variable sin declarar o
+     * combina tipos incompatibles. El árbol se puede reutilizar después.
+     */
+    ProgramaResuelto(ArbolSintactico arbol) {
+        this.arbol = arbol;
+        int nodos = arbol.tamano();
+        operacion = new int[nodos];
+        dato = new int[nodos];
+        primero = new int[nodos];
+        siguiente = new int[nodos];
+        tipo = new int[nodos];
+        lineas = new int[nodos];
+        columnas = new int[nodos];
+        for (int n = 0; n < nodos; n++) {
+            primero[n] = arbol.primerHijo(n);
+            siguiente[n] = arbol.hermano(n);
+            lineas[n] = arbol.linea(n);
+            columnas[n] = arbol.columna(n);
+        }
+        ligaduras = new int[arbol.cantidadNombres()];
+        Arrays.fill(ligaduras, NINGUNO);
+
+        raiz = arbol.raiz();
+        if (raiz != NINGUNO) {
+            cargarSentencias(raiz);
+        }
+        this.arbol = null;
+        ligaduras = null;
+        tapadas = null;
+    }
+
+    // Sentencias hijas de un programa o bloque, en un ámbito propio
+    private void cargarSentencias(int n) {
+        int marca = totalTapadas;
+        operacion[n] = SECUENCIA;
+        for (int s = primero[n]; s != NINGUNO; s = siguiente[s]) {
+            cargarSentencia(s);
+        }
+        cerrarAmbito(marca);
+    }
+
+    private void cargarSentencia(int n) {
+        switch (arbol.tipo(n)) {
+            case ArbolSintactico.DECLARACION:
+                cargarDeclaracion(n);
+                break;
+            case ArbolSintactico.ASIGNACION: {
+                int variable = primero[n];
+                int valor = siguiente[variable];
+                cargarAsignacion(n, variable, valor);
+                break;
+            }
+            case ArbolSintactico.SI: {
+                int condicion = primero[n];
+                cargarCondicion(condicion);
+                cargarSentencias(siguiente[condicion]);
+                if (siguiente[siguiente[condicion]] != NINGUNO) {
+                    cargarSentencias(siguiente[siguiente[condicion]]);
+                }
+                operacion[n] = SI;
+                break;
+            }
+            case ArbolSintactico.MIENTRAS: {
+                int condicion = primero[n];
+                cargarCondicion(condicion);
+                cargarSentencias(siguiente[condicion]);
+                operacion[n] = MIENTRAS;
+                break;
+            }
+            case ArbolSintactico.PARA: {
+                // La variable de la inicialización solo existe en el ciclo
+                int marca = totalTapadas;
+                int inicio = primero[n];
+                int condicion = siguiente[inicio];
+                int incremento = siguiente[condicion];
+                cargarSentencia(inicio);
+                cargarCondicion(condicion);
+                cargarSentencia(incremento);
+                cargarSentencias(siguiente[incremento]);
+                cerrarAmbito(marca);
+                operacion[n] = PARA;
+                break;
+            }
+            case ArbolSintactico.BLOQUE:
+                cargarSentencias(n);
+                break;
+            case ArbolSintactico.IMPRESION:
+                for (int a = primero[n]; a != NINGUNO; a = siguiente[a]) {
+                    cargarExpresion(a);
+                }
+                operacion[n] = IMPRIMIR;
+                break;
+            default:
+                throw error("Sentencia no soportada: " + ArbolSintactico.NOMBRES[arbol.tipo(n)], n);
+        }
+    }
+
+    // Hijos: las variables y luego sus valores, uno por variable o uno para
+    // todas. Cada variable queda como una asignación a su casillero nuevo
+    private void cargarDeclaracion(int n) {
+        int tipoVariable;
+        switch (arbol.tipoToken(n)) {
+            case CarumaLangParserConstants.INTCHELADA: tipoVariable = ENTERO; break;
+            case CarumaLangParserConstants.GRANITO:    tipoVariable = DECIMAL; break;
+            case CarumaLangParserConstants.CADENA:     tipoVariable = CADENA; break;
+            default:                                   tipoVariable = CARACTER; break;
+        }
+
+        int variables = 0;
+        int ultimaVariable = NINGUNO;
+        int valores = primero[n];
+        while (valores != NINGUNO && arbol.tipo(valores) == ArbolSintactico.VARIABLE) {
+            variables++;
+            ultimaVariable = valores;
+            valores = siguiente[valores];
+        }
+        int cantidadValores = 0;
+        for (int v = valores; v != NINGUNO; v = siguiente[v]) {
+            cantidadValores++;
+        }
+        if (cantidadValores > 1 && cantidadValores != variables) {
+            throw error("Se declaran " + variables + " variables con " + cantidadValores + " valores", n);
+        }
+
+        // Los valores se cargan antes de declarar: "intCHELADA x = x" usa la x anterior
+        for (int v = valores; v != NINGUNO; v = siguiente[v]) {
+            cargarExpresion(v);
+        }
+        int valor = valores;
+        for (int v = primero[n]; v != ultimaVariable; v = siguiente[v]) {
+            declarar(v, tipoVariable);
+        }
+        declarar(ultimaVariable, tipoVariable);
+        for (int v = primero[n]; ; v = siguiente[v]) {
+            cargarAsignacion(v, v, valor);
+            if (cantidadValores > 1) {
+                valor = siguiente[valor];
+            }
+            if (v == ultimaVariable) {
+                break;
+            }
+        }
+        // La secuencia recorre solo las variables
+        siguiente[ultimaVariable] = NINGUNO;
+        operacion[n] = SECUENCIA;
+    }
+
+    private void declarar(int variable, int tipoVariable) {
+        int casillero;
+        switch (tipoVariable) {
+            case DECIMAL: casillero = totalDecimales++; break;
+            case CADENA:  casillero = totalCadenas++; break;
+            default:      casillero = totalEnteros++; break;
+        }
+        int nombre = arbol.indiceImagen(variable);
+        if (totalTapadas + 2 > tapadas.length) {
+            tapadas = Arrays.copyOf(tapadas, tapadas.length * 2);
+        }
+        tapadas[totalTapadas++] = nombre;
+        tapadas[totalTapadas++] = ligaduras[nombre];
+        ligaduras[nombre] = casillero * 4 + tipoVariable;
+    }
+
+    private void cerrarAmbito(int marca) {
+        while (totalTapadas > marca) {
+            int anterior = tapadas[--totalTapadas];
+            ligaduras[tapadas[--totalTapadas]] = anterior;
+        }
+    }
+
+    // Asignación en el nodo n de la variable al valor (NINGUNO: valor por defecto)
+    private void cargarAsignacion(int n, int variable, int valor) {
+        int ligadura = resolver(variable);
+        int tipoVariable = ligadura & 3;
+        if (valor != NINGUNO) {
+            if (arbol.tipo(n) != ArbolSintactico.VARIABLE) {
+                cargarExpresion(valor);
+            }
+            int tipoValor = tipo[valor];
+            boolean compatible = tipoValor == tipoVariable
+                || tipoVariable == DECIMAL && tipoValor == ENTERO;
+            if (!compatible) {
+                throw error("No se puede asignar un valor " + NOMBRES_TIPO[tipoValor]
+                    + " a la variable " + NOMBRES_TIPO[tipoVariable] + " " + arbol.imagen(variable), n);
+            }
+        }
+        switch (tipoVariable) {
+            case DECIMAL: operacion[n] = ASIGNAR_DECIMAL; break;
+            case CADENA:  operacion[n] = ASIGNAR_CADENA; break;
+            default:      operacion[n] = ASIGNAR_ENTERO; break;
+        }
+        dato[n] = ligadura >> 2;
+        primero[n] = valor;
+    }
+
+    private int resolver(int n) {
+        int nombre = arbol.indiceImagen(n);
+        int ligadura = ligaduras[nombre];
+        if (ligadura == NINGUNO) {
+            throw error("Variable no declarada: " + arbol.imagen(n), n);
+        }
+        return ligadura;
+    }
+
+    // Deja en tipo[n] el tipo de la expresión y en operacion[n] su operación
+    private void cargarExpresion(int n) {
+        switch (arbol.tipo(n)) {
+            case ArbolSintactico.NUMERO: {
+                String texto = arbol.imagen(n);
+                if (texto.indexOf('.') >= 0) {
+                    tipo[n] = DECIMAL;
+                    operacion[n] = CONSTANTE_DECIMAL;
+                    dato[n] = constanteDecimal(Double.parseDouble(texto));
+                } else {
+                    long valor;
+                    try {
+                        valor = Long.parseLong(texto);
+                    } catch (NumberFormatException e) {
+                        throw error("Numero fuera de rango: " + texto, n);
+                    }
+                    tipo[n] = ENTERO;
+                    operacion[n] = CONSTANTE_ENTERO;
+                    dato[n] = constanteEntera(valor);
+                }
+                break;
+            }
+            case ArbolSintactico.BOOLEANO:
+                tipo[n] = ENTERO;
+                operacion[n] = CONSTANTE_ENTERO;
+                dato[n] = constanteEntera(arbol.tipoToken(n) == CarumaLangParserConstants.DIOS ? 1 : 0);
+                break;
+            case ArbolSintactico.LETRA:
+                tipo[n] = CARACTER;
+                operacion[n] = CONSTANTE_ENTERO;
+                dato[n] = constanteEntera(arbol.imagen(n).charAt(1));
+                break;
+            case ArbolSintactico.TEXTO: {
+                String texto = arbol.imagen(n);
+                tipo[n] = CADENA;
+                operacion[n] = CONSTANTE_CADENA;
+                dato[n] = constanteCadena(texto.substring(1, texto.length() - 1));
+                break;
+            }
+            case ArbolSintactico.IDENTIFICADOR: {
+                int ligadura = resolver(n);
+                tipo[n] = ligadura & 3;
+                switch (tipo[n]) {
+                    case DECIMAL: operacion[n] = VARIABLE_DECIMAL; break;
+                    case CADENA:  operacion[n] = VARIABLE_CADENA; break;
+                    default:      operacion[n] = VARIABLE_ENTERO; break;
+                }
+                dato[n] = ligadura >> 2;
+                break;
+            }
+            case ArbolSintactico.ARITMETICA:
+                cargarAritmetica(n);
+                break;
+            default:
+                throw error("Expresion no soportada: " + ArbolSintactico.NOMBRES[arbol.tipo(n)], n);
+        }
+    }
+
+    private void cargarAritmetica(int n) {
+        int izquierdo = primero[n];
+        int derecho = siguiente[izquierdo];
+        cargarExpresion(izquierdo);
+        cargarExpresion(derecho);
+        int a = tipo[izquierdo];
+        int b = tipo[derecho];
+        int operador = arbol.tipoToken(n);
+
+        if (operador == CarumaLangParserConstants.PONER && (a == CADENA || b == CADENA)) {
+            tipo[n] = CADENA;
+            operacion[n] = CONCATENAR;
+            return;
+        }
+        if (!esNumero(a) || !esNumero(b)) {
+            throw error("No se puede operar " + NOMBRES_TIPO[a] + " " + arbol.imagen(n)
+                + " " + NOMBRES_TIPO[b], n);
+        }
+        int base = a == DECIMAL || b == DECIMAL ? SUMA_DECIMAL : SUMA_ENTERO;
+        tipo[n] = base == SUMA_DECIMAL ? DECIMAL : ENTERO;
+        switch (operador) {
+            case CarumaLangParserConstants.PONER:  operacion[n] = base; break;
+            case CarumaLangParserConstants.QUITAR: operacion[n] = base + 1; break;
+            case CarumaLangParserConstants.SALEMAS: operacion[n] = base + 2; break;
+            default:                               operacion[n] = base + 3; break;
+        }
+    }
+
+    private void cargarCondicion(int n) {
+        int izquierdo = primero[n];
+        int derecho = siguiente[izquierdo];
+        if (arbol.tipo(n) == ArbolSintactico.LOGICA) {
+            cargarCondicion(izquierdo);
+            cargarCondicion(derecho);
+            operacion[n] = arbol.tipoToken(n) == CarumaLangParserConstants.DIOS ? Y : O;
+            return;
+        }
+        cargarExpresion(izquierdo);
+        cargarExpresion(derecho);
+        int a = tipo[izquierdo];
+        int b = tipo[derecho];
+        if (esNumero(a) && esNumero(b)) {
+            operacion[n] = a == DECIMAL || b == DECIMAL ? COMPARAR_DECIMAL : COMPARAR_ENTERO;
+        } else if (a == b) {
+            operacion[n] = a == CADENA ? COMPARAR_CADENA : COMPARAR_ENTERO;
+        } else {
+            throw error("No se puede comparar " + NOMBRES_TIPO[a] + " con " + NOMBRES_TIPO[b], n);
+        }
+        dato[n] = arbol.tipoToken(n);
+    }
+
+    private static boolean esNumero(int tipoValor) {
+        return tipoValor == ENTERO || tipoValor == DECIMAL;
+    }
+
+    int constanteEntera(long valor) {
+        if (totalConstantesEnteras == constantesEnteras.length) {
+            constantesEnteras = Arrays.copyOf(constantesEnteras, totalConstantesEnteras * 2);
+        }
+        constantesEnteras[totalConstantesEnteras] = valor;
+        return totalConstantesEnteras++;
+    }
+
+    int constanteDecimal(double valor) {
+        if (totalConstantesDecimales == constantesDecimales.length) {
+            constantesDecimales = Arrays.copyOf(constantesDecimales, totalConstantesDecimales * 2);
+        }
+        constantesDecimales[totalConstantesDecimales] = valor;
+        return totalConstantesDecimales++;
+    }
+
+    int constanteCadena(String valor) {
+        if (totalConstantesCadenas == constantesCadenas.length) {
+            constantesCadenas = Arrays.copyOf(constantesCadenas, totalConstantesCadenas * 2);
+        }
+        constantesCadenas[totalConstantesCadenas] = valor;
+        return totalConstantesCadenas++;
+    }
+
+    ErrorEjecucion error(String mensaje, int n) {
+        return new ErrorEjecucion(mensaje, lineas[n], columnas[n]);
+    }
+}
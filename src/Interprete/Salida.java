@@ -0,0 +1,122 @@
+package Interprete;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Destino con buffer de lo que imprime holahola.
+ *
+ * Los valores se codifican en UTF-8 directamente en un arreglo de bytes que
+ * se vacía al llenarse o con vaciar(), así cada holahola no pasa por los
+ * bloqueos y la codificación de PrintStream. Los enteros se escriben dígito
+ * a dígito y los decimales con un StringBuilder reutilizado, de modo que
+ * imprimir números no crea objetos.
+ */
+public class Salida {
+
+    private static final byte[] FIN_LINEA = System.lineSeparator().getBytes();
+
+    private final OutputStream destino;
+    private final byte[] buffer = new byte[1 << 16];
+    private int total = 0;
+    private final StringBuilder decimal = new StringBuilder(32);
+
+    public Salida(OutputStream destino) {
+        this.destino = destino;
+    }
+
+    public void escribir(long valor) throws IOException {
+        if (total + 20 > buffer.length) {
+            vaciarBuffer();
+        }
+        if (valor == Long.MIN_VALUE) {
+            escribir("-9223372036854775808");
+            return;
+        }
+        if (valor < 0) {
+            buffer[total++] = '-';
+            valor = -valor;
+        }
+        // Los dígitos salen al revés; se escriben desde el final
+        int digitos = 1;
+        for (long v = valor; v >= 10; v /= 10) {
+            digitos++;
+        }
+        int p = total + digitos;
+        do {
+            buffer[--p] = (byte) ('0' + valor % 10);
+            valor /= 10;
+        } while (valor != 0);
+        total += digitos;
+    }
+
+    /** Igual que Double.toString: 10.0, 3.14, 1.0E10. */
+    public void escribir(double valor) throws IOException {
+        decimal.setLength(0);
+        decimal.append(valor);
+        if (total + decimal.length() > buffer.length) {
+            vaciarBuffer();
+        }
+        for (int i = 0; i < decimal.length(); i++) {
+            buffer[total++] = (byte) decimal.charAt(i);
+        }
+    }
+
+    public void escribir(char c) throws IOException {
+        if (total + 3 > buffer.length) {
+            vaciarBuffer();
+        }
+        if (c < 0x80) {
+            buffer[total++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[total++] = (byte) (0xC0 | c >> 6);
+            buffer[total++] = (byte) (0x80 | c & 0x3F);
+        } else {
+            buffer[total++] = (byte) (0xE0 | c >> 12);
+            buffer[total++] = (byte) (0x80 | c >> 6 & 0x3F);
+            buffer[total++] = (byte) (0x80 | c & 0x3F);
+        }
+    }
+
+    public void escribir(String texto) throws IOException {
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < texto.length()
+                    && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                escribirPar(Character.toCodePoint(c, texto.charAt(++i)));
+            } else {
+                escribir(c);
+            }
+        }
+    }
+
+    public void nuevaLinea() throws IOException {
+        if (total + FIN_LINEA.length > buffer.length) {
+            vaciarBuffer();
+        }
+        System.arraycopy(FIN_LINEA, 0, buffer, total, FIN_LINEA.length);
+        total += FIN_LINEA.length;
+    }
+
+    /** Entrega lo pendiente al destino y lo vacía. */
+    public void vaciar() throws IOException {
+        vaciarBuffer();
+        destino.flush();
+    }
+
+    // Caracteres fuera del plano básico: cuatro bytes
+    private void escribirPar(int codigo) throws IOException {
+        if (total + 4 > buffer.length) {
+            vaciarBuffer();
+        }
+        buffer[total++] = (byte) (0xF0 | codigo >> 18);
+        buffer[total++] = (byte) (0x80 | codigo >> 12 & 0x3F);
+        buffer[total++] = (byte) (0x80 | codigo >> 6 & 0x3F);
+        buffer[total++] = (byte) (0x80 | codigo & 0x3F);
+    }
+
+    private void vaciarBuffer() throws IOException {
+        destino.write(buffer, 0, total);
+        total = 0;
+    }
+}
@@ -0,0 +1,403 @@
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Modo por lotes (sin interfaz gráfica) de AnalisisLexico y AnalisisSintactico.
+ *
+ * Cuando los analizadores reciben argumentos no abren el JFileChooser: cada
+ * argumento puede ser un archivo .crm, un directorio (se recorre completo) o
+ * un patrón glob como "test/**.crm". Todos los archivos se analizan en la
+ * misma JVM y al final se imprime un resumen con el tiempo de cada uno.
+ *
+ * Los archivos se reparten entre los hilos de un ForkJoinPool ("--hilos N"
+ * o "-j N"; por defecto uno por procesador). Cada hilo usa sus propias
+ * instancias de token manager y parser, y las líneas de progreso se
+ * imprimen en el orden de los argumentos, así la salida no depende de qué
+ * hilo termina primero.
+ */
+public class ModoLotes<A> {
+
+    // Analiza un archivo con las instancias del hilo que lo procesa y anota
+    // en el resultado sus tokens y errores
+    interface AnalisisArchivo<T> {
+        void analizar(T analizador, String archivo, Resultado resultado) throws IOException;
+    }
+
+    // Resultado del análisis de un archivo
+    static class Resultado {
+        String archivo;
+        long nanos;
+        int tokens;
+        int erroresLexicos;
+        int erroresSintacticos;
+        int erroresSemanticos;
+        String fallo;          // Mensaje si el archivo no se pudo analizar
+
+        Resultado(String archivo) {
+            this.archivo = archivo;
+        }
+
+        int totalErrores() {
+            return erroresLexicos + erroresSintacticos + erroresSemanticos;
+        }
+    }
+
+    private final String titulo;
+    private final List<Path> archivos;
+    private int argumentosSinArchivos;   // Argumentos que no dieron ningún .crm
+    private final Resultado[] resultados;
+    private int siguienteImpresion = 0;
+
+    // Instancias confinadas a cada hilo: el parser y el token manager
+    // generados (STATIC = false) no se comparten entre hilos
+    private final ThreadLocal<A> analizadores;
+    private final AnalisisArchivo<A> analisis;
+
+    private ModoLotes(String titulo, List<Path> archivos,
+                      Supplier<A> crearAnalizador, AnalisisArchivo<A> analisis) {
+        this.titulo = titulo;
+        this.archivos = archivos;
+        this.resultados = new Resultado[archivos.size()];
+        this.analizadores = ThreadLocal.withInitial(crearAnalizador);
+        this.analisis = analisis;
+    }
+
+    /**
+     * Ejecuta el lote descrito por los argumentos y devuelve el código de
+     * salida del proceso.
+     */
+    static <T> int ejecutar(String titulo, String[] args,
+                            Supplier<T> crearAnalizador, AnalisisArchivo<T> analisis) {
+        List<String> rutas = new ArrayList<>();
+        int hilos = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--hilos") || args[i].equals("-j")) {
+                try {
+                    hilos = Integer.parseInt(args[++i]);
+                } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                    hilos = 0;
+                }
+                if (hilos < 1) {
+                    System.err.println("Error: " + args[i - 1] + " requiere un numero de hilos mayor que cero");
+                    return 2;
+                }
+            } else {
+                rutas.add(args[i]);
+            }
+        }
+
+        List<Path> archivos;
+        List<String> sinArchivos = new ArrayList<>();
+        try {
+            archivos = expandirArgumentos(rutas.toArray(new String[0]), sinArchivos);
+        } catch (IOException e) {
+            System.err.println("Error al buscar archivos: " + e.getMessage());
+            return 2;
+        }
+
+        ModoLotes<T> lote = new ModoLotes<>(titulo, archivos, crearAnalizador, analisis);
+        lote.argumentosSinArchivos = sinArchivos.size();
+        lote.imprimirEncabezado(hilos);
+
+        long inicioLote = System.nanoTime();
+        if (!archivos.isEmpty()) {
+            ForkJoinPool pool = new ForkJoinPool(hilos);
+            try {
+                pool.invoke(lote.new TareaLote(0, archivos.size()));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        lote.imprimirResumen(System.nanoTime() - inicioLote);
+        return lote.codigoSalida();
+    }
+
+    // Divide el rango de archivos a la mitad hasta llegar a uno; los hilos
+    // libres roban las mitades pendientes, así un archivo grande no frena
+    // al resto del lote
+    private class TareaLote extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int desde;
+        private final int hasta;
+
+        TareaLote(int desde, int hasta) {
+            this.desde = desde;
+            this.hasta = hasta;
+        }
+
+        @Override
+        protected void compute() {
+            if (hasta - desde == 1) {
+                analizarArchivo(desde);
+            } else {
+                int medio = (desde + hasta) >>> 1;
+                invokeAll(new TareaLote(desde, medio), new TareaLote(medio, hasta));
+            }
+        }
+    }
+
+    private void analizarArchivo(int indice) {
+        String archivo = archivos.get(indice).toString();
+        Resultado resultado = new Resultado(archivo);
+        long inicio = System.nanoTime();
+
+        try {
+            analisis.analizar(analizadores.get(), archivo, resultado);
+            resultado.nanos = System.nanoTime() - inicio;
+        } catch (IOException | RuntimeException e) {
+            resultado.fallo = e.getMessage() != null ? e.getMessage() : e.toString();
+        } catch (StackOverflowError e) {
+            // Un anidamiento muy profundo agota la pila del parser recursivo;
+            // falla ese archivo y no el lote. El analizador del hilo pudo
+            // quedar a medias, así que el próximo archivo usa uno nuevo
+            resultado.fallo = "anidamiento demasiado profundo (StackOverflowError)";
+            analizadores.remove();
+        }
+
+        registrar(indice, resultado);
+    }
+
+    /**
+     * Expande los argumentos de la línea de comandos a la lista de archivos
+     * .crm a analizar, sin repetidos y en orden estable. Los argumentos que
+     * no corresponden a ningún archivo se informan por System.err.
+     */
+    static List<Path> expandirArgumentos(String[] args) throws IOException {
+        return expandirArgumentos(args, new ArrayList<>());
+    }
+
+    /**
+     * Igual que expandirArgumentos(args), y agrega a sinArchivos los
+     * argumentos que no dieron ningún archivo .crm.
+     */
+    static List<Path> expandirArgumentos(String[] args, List<String> sinArchivos) throws IOException {
+        Set<Path> archivos = new LinkedHashSet<>();
+
+        for (String arg : args) {
+            Path ruta = Paths.get(arg);
+            int antes = archivos.size();
+
+            if (esPatron(arg)) {
+                agregarPorPatron(arg, archivos);
+            } else if (Files.isDirectory(ruta)) {
+                agregarDirectorio(ruta, archivos);
+            } else if (Files.isRegularFile(ruta)) {
+                if (esArchivoCrm(ruta)) {
+                    archivos.add(ruta.normalize());
+                } else {
+                    System.err.println("Error: El archivo no tiene extension .crm: " + arg);
+                    sinArchivos.add(arg);
+                    continue;
+                }
+            }
+
+            if (archivos.size() == antes) {
+                System.err.println("Error: no se encontraron archivos .crm en: " + arg);
+                sinArchivos.add(arg);
+            }
+        }
+
+        return new ArrayList<>(archivos);
+    }
+
+    private static boolean esPatron(String arg) {
+        return arg.indexOf('*') >= 0 || arg.indexOf('?') >= 0
+            || arg.indexOf('[') >= 0 || arg.indexOf('{') >= 0;
+    }
+
+    private static boolean esArchivoCrm(Path ruta) {
+        return ruta.getFileName().toString().toLowerCase().endsWith(".crm");
+    }
+
+    private static void agregarDirectorio(Path directorio, Set<Path> archivos) throws IOException {
+        try (Stream<Path> recorrido = Files.walk(directorio)) {
+            for (Path p : recorrido.filter(Files::isRegularFile)
+                                   .filter(ModoLotes::esArchivoCrm)
+                                   .sorted()
+                                   .collect(Collectors.toList())) {
+                archivos.add(p.normalize());
+            }
+        }
+    }
+
+    /**
+     * El recorrido empieza en la parte fija del patrón (los componentes antes
+     * del primer comodín) para no visitar directorios que no pueden coincidir.
+     */
+    private static void agregarPorPatron(String patron, Set<Path> archivos) throws IOException {
+        String separador = FileSystems.getDefault().getSeparator();
+        String[] partes = patron.split(separador.equals("\\") ? "\\\\" : separador, -1);
+
+        StringBuilder fija = new StringBuilder();
+        for (int i = 0; i < partes.length - 1 && !esPatron(partes[i]); i++) {
+            fija.append(partes[i]).append(separador);
+        }
+
+        // Sin parte fija se recorre el directorio actual; sus rutas llegan como
+        // "./x.crm" y se relativizan porque el patrón no lleva "./"
+        boolean desdeActual = fija.length() == 0;
+        Path base = desdeActual ? Paths.get(".") : Paths.get(fija.toString());
+        if (!Files.isDirectory(base)) {
+            return;
+        }
+
+        PathMatcher coincide = FileSystems.getDefault().getPathMatcher("glob:" + patron);
+        try (Stream<Path> recorrido = Files.walk(base)) {
+            for (Path p : recorrido.filter(Files::isRegularFile)
+                                   .filter(ModoLotes::esArchivoCrm)
+                                   .sorted()
+                                   .collect(Collectors.toList())) {
+                Path candidata = desdeActual ? base.relativize(p) : p;
+                if (coincide.matches(candidata)) {
+                    archivos.add(candidata.normalize());
+                }
+            }
+        }
+    }
+
+    /**
+     * Registra el resultado de un archivo e imprime las líneas de progreso
+     * que ya se pueden mostrar en orden.
+     */
+    private synchronized void registrar(int indice, Resultado resultado) {
+        resultados[indice] = resultado;
+        while (siguienteImpresion < resultados.length && resultados[siguienteImpresion] != null) {
+            imprimirLinea(resultados[siguienteImpresion++]);
+        }
+    }
+
+    private static void imprimirLinea(Resultado resultado) {
+        if (resultado.fallo != null) {
+            System.out.printf("%10s  %9s  %7s  FALLO: %s  %s%n", "-", "-", "-",
+                resultado.fallo, resultado.archivo);
+        } else {
+            System.out.printf("%8.2f ms  %9d  %7d  %s%n",
+                resultado.nanos / 1e6,
+                resultado.tokens,
+                resultado.totalErrores(),
+                resultado.archivo);
+        }
+    }
+
+    private void imprimirEncabezado(int hilos) {
+        System.out.println("========================================");
+        System.out.println("   " + titulo + " - MODO POR LOTES");
+        System.out.println("========================================");
+        System.out.println("Archivos a analizar: " + archivos.size());
+        System.out.println("Hilos: " + hilos);
+        System.out.println();
+        System.out.printf("%11s  %9s  %7s  %s%n", "Tiempo", "Tokens", "Errores", "Archivo");
+        System.out.println("---------------------------------------------------------------------------");
+    }
+
+    /**
+     * Imprime el resumen agregado del lote.
+     */
+    private void imprimirResumen(long nanosTotales) {
+        int analizados = 0;
+        int conErrores = 0;
+        int fallidos = 0;
+        long tokens = 0;
+        long erroresLexicos = 0;
+        long erroresSintacticos = 0;
+        long erroresSemanticos = 0;
+        long nanosArchivos = 0;
+
+        for (Resultado r : resultados) {
+            if (r.fallo != null) {
+                fallidos++;
+                continue;
+            }
+            analizados++;
+            nanosArchivos += r.nanos;
+            tokens += r.tokens;
+            erroresLexicos += r.erroresLexicos;
+            erroresSintacticos += r.erroresSintacticos;
+            erroresSemanticos += r.erroresSemanticos;
+            if (r.totalErrores() > 0) {
+                conErrores++;
+            }
+        }
+
+        double segundos = nanosTotales / 1e9;
+
+        System.out.println("---------------------------------------------------------------------------");
+        System.out.println();
+        System.out.println("========================================");
+        System.out.println("        RESUMEN DEL LOTE");
+        System.out.println("========================================");
+        System.out.println();
+        System.out.println("Archivos analizados: " + analizados);
+        System.out.println("  - Sin errores: " + (analizados - conErrores));
+        System.out.println("  - Con errores: " + conErrores);
+        System.out.println("  - No se pudieron leer: " + fallidos);
+        if (argumentosSinArchivos > 0) {
+            System.out.println("Argumentos sin archivos .crm: " + argumentosSinArchivos);
+        }
+        System.out.println("Tokens: " + tokens);
+        System.out.println("Errores lexicos: " + erroresLexicos);
+        System.out.println("Errores sintacticos: " + erroresSintacticos);
+        System.out.println("Errores semanticos: " + erroresSemanticos);
+        System.out.printf("Tiempo total: %.2f ms (suma por archivo: %.2f ms)%n",
+            nanosTotales / 1e6, nanosArchivos / 1e6);
+        if (segundos > 0) {
+            System.out.printf("Rendimiento: %.0f tokens/s, %.1f archivos/s%n",
+                tokens / segundos, analizados / segundos);
+        }
+
+        // Los archivos más lentos, para ubicar rápido dónde se va el tiempo
+        List<Resultado> lentos = Arrays.stream(resultados)
+            .filter(r -> r.fallo == null)
+            .sorted((a, b) -> Long.compare(b.nanos, a.nanos))
+            .limit(5)
+            .collect(Collectors.toList());
+        if (lentos.size() > 1) {
+            System.out.println();
+            System.out.println("Archivos mas lentos:");
+            for (Resultado r : lentos) {
+                System.out.printf("  %8.2f ms  %s%n", r.nanos / 1e6, r.archivo);
+            }
+        }
+
+        System.out.println();
+        System.out.println("========================================");
+    }
+
+    /**
+     * Código de salida del proceso: 0 sin errores, 1 si algún archivo tiene
+     * errores y 2 si alguno no se pudo analizar o algún argumento no dio
+     * ningún archivo .crm.
+     */
+    private int codigoSalida() {
+        if (argumentosSinArchivos > 0) {
+            return 2;
+        }
+        int codigo = 0;
+        for (Resultado r : resultados) {
+            if (r.fallo != null) {
+                return 2;
+            }
+            if (r.totalErrores() > 0) {
+                codigo = 1;
+            }
+        }
+        return codigo;
+    }
+}
@@ -0,0 +1,872 @@
+import AnalizadorSintactico.LexicoIncremental;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servidor de lenguaje (Language Server Protocol) para editores, por
+ * entrada y salida estándar.
+ *
+ * Publica como diagnósticos los errores léxicos, sintácticos y semánticos
+ * de cada documento abierto, los mismos que AnalisisSintactico escribe en
+ * el .errores. Cada documento guarda un AnalisisSintactico.AnalizadorIncremental,
+ * así que una edición vuelve a leer solo los tokens y las sentencias que
+ * tocó; el editor manda los cambios como rangos (sincronización
+ * incremental).
+ *
+ * Las ediciones solo actualizan el texto y los tokens en cuanto llegan;
+ * los errores de un documento se publican cuando pasa un retardo sin
+ * ediciones nuevas ("--retardo ms", 10 por defecto), y recién entonces se
+ * vuelven a analizar las sentencias, una vez para todos los cambios que se
+ * juntaron. Así mientras se escribe rápido no se reanaliza en cada
+ * pulsación. Se publican en dos pasos: primero los léxicos y sintácticos
+ * junto con los semánticos del análisis anterior corridos por las líneas
+ * agregadas o quitadas; después se repite el análisis semántico, que
+ * vuelve a recorrer solo las sentencias nuevas y las que consultan una
+ * variable cuya declaración cambió, y se vuelve a publicar si cambió algo.
+ * Solo se publican los documentos que cambiaron.
+ *
+ * Los mensajes se atienden en un único hilo, en el orden en que llegan;
+ * otro hilo solo lee la entrada. El análisis semántico corre en un hilo
+ * aparte para no demorar los mensajes siguientes: una edición nueva lo
+ * interrumpe y descarta su resultado. Las posiciones del protocolo (línea y
+ * carácter UTF-16 desde 0) se traducen con los inicios de línea de cada
+ * documento.
+ *
+ * Uso: java ServidorLenguaje [--retardo ms]
+ * Se prueba a mano escribiendo mensajes con su encabezado Content-Length
+ * en la entrada estándar.
+ */
+public class ServidorLenguaje {
+
+    // Códigos de error de JSON-RPC
+    private static final int METODO_NO_ENCONTRADO = -32601;
+    private static final int PARAMETROS_INVALIDOS = -32602;
+    private static final int NO_INICIALIZADO = -32002;
+
+    // Como MAX_ERRORES del parser: un archivo con miles de errores
+    // produciría mensajes de megabytes en cada edición
+    private static final int MAX_DIAGNOSTICOS = 1000;
+
+    // Documento abierto en el editor
+    static class Documento {
+        final String uri;
+        final AnalisisSintactico.AnalizadorIncremental analizador;
+        final LineasTexto lineas;
+        long version;
+        ScheduledFuture<?> publicacion;   // Publicación pendiente
+        Future<?> verificacion;           // Análisis semántico pendiente
+        volatile int ediciones;           // Para descartar análisis viejos
+        // Errores léxicos y sintácticos de la última publicación y
+        // semánticos del último análisis semántico
+        List<AnalisisSintactico.ErrorAnalisis> estructura;
+        List<AnalisisSintactico.ErrorAnalisis> semanticos;
+        List<Object> publicados;          // Últimos diagnósticos publicados
+
+        Documento(String uri, String texto, long version) {
+            this.uri = uri;
+            this.analizador = new AnalisisSintactico.AnalizadorIncremental(texto);
+            this.lineas = new LineasTexto(analizador.lexico());
+            this.version = version;
+            this.estructura = analizador.erroresLexicosYSintacticos();
+            this.semanticos = analizador.erroresSemanticos();
+        }
+
+        // Reemplaza el rango (en offsets) por el texto dado. Los errores
+        // semánticos anteriores se corren con las líneas que siguen a la
+        // edición hasta que se vuelvan a calcular. Si el análisis semántico
+        // está usando el árbol, espera a que lo suelte: hay que cancelarlo
+        // antes (ver cambiar)
+        synchronized void editar(int desde, int hasta, String texto) {
+            int linea = lineas.linea(desde) + 1;
+            int antes = lineas.cantidad();
+            analizador.editar(desde, hasta - desde, texto);
+            lineas.editar(desde, hasta - desde, texto.length());
+            int delta = lineas.cantidad() - antes;
+            if (delta != 0) {
+                for (AnalisisSintactico.ErrorAnalisis error : semanticos) {
+                    if (error.linea > linea) {
+                        error.linea += delta;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Offsets de inicio de cada línea de un documento, para traducir entre
+     * offsets y las posiciones del protocolo. Una línea termina en "\r\n",
+     * "\r" o "\n", igual que para el analizador léxico. Una edición solo
+     * vuelve a buscar saltos en el texto insertado y corre los inicios que
+     * quedan después.
+     */
+    static class LineasTexto {
+        private final LexicoIncremental texto;
+        private int[] inicios;
+        private int total;
+
+        LineasTexto(LexicoIncremental texto) {
+            this.texto = texto;
+            int[] resto = buscarInicios(1, texto.longitud());
+            inicios = new int[resto.length + 16];
+            System.arraycopy(resto, 0, inicios, 1, resto.length);
+            total = resto.length + 1;
+        }
+
+        int cantidad() {
+            return total;
+        }
+
+        int inicio(int linea) {
+            return inicios[linea];
+        }
+
+        // Offset siguiente al último carácter de la línea, sin el salto
+        int fin(int linea) {
+            int fin = linea + 1 < total ? inicios[linea + 1] : texto.longitud();
+            while (fin > inicios[linea]
+                    && (texto.caracter(fin - 1) == '\n' || texto.caracter(fin - 1) == '\r')) {
+                fin--;
+            }
+            return fin;
+        }
+
+        // Línea que contiene el offset
+        int linea(int offset) {
+            int bajo = 0;
+            int alto = total - 1;
+            while (bajo < alto) {
+                int medio = (bajo + alto + 1) >>> 1;
+                if (inicios[medio] <= offset) {
+                    bajo = medio;
+                } else {
+                    alto = medio - 1;
+                }
+            }
+            return bajo;
+        }
+
+        // Primera línea cuyo inicio es mayor o igual que el offset
+        private int primeraDesde(int offset) {
+            int bajo = 0;
+            int alto = total;
+            while (bajo < alto) {
+                int medio = (bajo + alto) >>> 1;
+                if (inicios[medio] < offset) {
+                    bajo = medio + 1;
+                } else {
+                    alto = medio;
+                }
+            }
+            return bajo;
+        }
+
+        /**
+         * Actualiza los inicios después de reemplazar eliminados caracteres
+         * desde offset por insertados caracteres. Que haya una línea en r
+         * depende de los caracteres r - 1 y r, así que cambian los inicios
+         * desde offset hasta offset + insertados; los que estaban después
+         * de la zona eliminada solo se corren.
+         */
+        void editar(int offset, int eliminados, int insertados) {
+            int desde = primeraDesde(Math.max(offset, 1));
+            int hasta = primeraDesde(offset + eliminados + 1);
+            int[] nuevos = buscarInicios(Math.max(offset, 1), offset + insertados);
+            int cantidad = nuevos.length;
+
+            int finales = total - hasta;
+            int nuevoTotal = desde + cantidad + finales;
+            if (nuevoTotal > inicios.length) {
+                inicios = Arrays.copyOf(inicios, Math.max(nuevoTotal, inicios.length * 2));
+            }
+            System.arraycopy(inicios, hasta, inicios, desde + cantidad, finales);
+            System.arraycopy(nuevos, 0, inicios, desde, cantidad);
+            int delta = insertados - eliminados;
+            for (int i = desde + cantidad; i < nuevoTotal; i++) {
+                inicios[i] += delta;
+            }
+            total = nuevoTotal;
+        }
+
+        // Inicios de línea r con desde <= r <= hasta
+        private int[] buscarInicios(int desde, int hasta) {
+            int longitud = texto.longitud();
+            int[] encontrados = new int[8];
+            int cantidad = 0;
+            for (int r = desde; r <= hasta && r <= longitud; r++) {
+                char anterior = texto.caracter(r - 1);
+                if (anterior == '\n' || (anterior == '\r' && (r == longitud || texto.caracter(r) != '\n'))) {
+                    if (cantidad == encontrados.length) {
+                        encontrados = Arrays.copyOf(encontrados, cantidad * 2);
+                    }
+                    encontrados[cantidad++] = r;
+                }
+            }
+            return Arrays.copyOf(encontrados, cantidad);
+        }
+    }
+
+    private final InputStream entrada;
+    private final OutputStream salida;
+    private final long retardoMs;
+    private final ScheduledExecutorService trabajo = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread hilo = new Thread(r, "servidor-caruma");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    private final ExecutorService semantico = Executors.newSingleThreadExecutor(r -> {
+        Thread hilo = new Thread(r, "servidor-caruma-semantico");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    private final Map<String, Documento> documentos = new HashMap<>();
+    private boolean inicializado = false;
+    private boolean apagado = false;
+
+    ServidorLenguaje(InputStream entrada, OutputStream salida, long retardoMs) {
+        this.entrada = new BufferedInputStream(entrada);
+        this.salida = salida;
+        this.retardoMs = retardoMs;
+    }
+
+    public static void main(String[] args) throws IOException {
+        long retardo = 10;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--retardo") && i + 1 < args.length) {
+                retardo = Long.parseLong(args[++i]);
+            } else {
+                System.err.println("Uso: java ServidorLenguaje [--retardo ms]");
+                System.exit(2);
+            }
+        }
+        // Lo que se imprima por error en System.out rompería el protocolo
+        OutputStream salida = System.out;
+        System.setOut(new PrintStream(System.err, true));
+        new ServidorLenguaje(System.in, salida, retardo).atender();
+    }
+
+    /**
+     * Lee mensajes hasta "exit" o el fin de la entrada y sale del proceso:
+     * código 0 si antes llegó "shutdown" y 1 si no
+     */
+    void atender() throws IOException {
+        String mensaje;
+        while ((mensaje = leerMensaje()) != null) {
+            Object leido;
+            try {
+                leido = Json.leer(mensaje);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Mensaje invalido: " + e.getMessage());
+                continue;
+            }
+            if (!(leido instanceof Map)) {
+                continue;
+            }
+            @SuppressWarnings("unchecked")
+            Map<String, Object> solicitud = (Map<String, Object>) leido;
+            if ("exit".equals(solicitud.get("method"))) {
+                break;
+            }
+            trabajo.execute(() -> despachar(solicitud));
+        }
+        trabajo.shutdown();
+        try {
+            trabajo.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        semantico.shutdownNow();
+        System.exit(apagado ? 0 : 1);
+    }
+
+    // -------------------------------------------------------
+    // Mensajes (en el hilo de trabajo)
+    // -------------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    private void despachar(Map<String, Object> solicitud) {
+        Object id = solicitud.get("id");
+        Object metodo = solicitud.get("method");
+        Map<String, Object> parametros = solicitud.get("params") instanceof Map
+            ? (Map<String, Object>) solicitud.get("params") : new HashMap<>();
+        if (!(metodo instanceof String)) {
+            return;   // Respuesta a algo que no pedimos
+        }
+        try {
+            if (!inicializado && !metodo.equals("initialize")) {
+                if (id != null) {
+                    responderError(id, NO_INICIALIZADO, "El servidor no fue inicializado");
+                }
+                return;
+            }
+            switch ((String) metodo) {
+                case "initialize":
+                    inicializado = true;
+                    responder(id, capacidades());
+                    break;
+                case "shutdown":
+                    apagado = true;
+                    responder(id, null);
+                    break;
+                case "textDocument/didOpen":
+                    abrir((Map<String, Object>) parametros.get("textDocument"));
+                    break;
+                case "textDocument/didChange":
+                    cambiar((Map<String, Object>) parametros.get("textDocument"),
+                            (List<Object>) parametros.get("contentChanges"));
+                    break;
+                case "textDocument/didClose":
+                    cerrar((Map<String, Object>) parametros.get("textDocument"));
+                    break;
+                default:
+                    // Las notificaciones desconocidas (initialized, didSave,
+                    // $/cancelRequest...) se ignoran
+                    if (id != null) {
+                        responderError(id, METODO_NO_ENCONTRADO, "Metodo no soportado: " + metodo);
+                    }
+            }
+        } catch (ClassCastException | NullPointerException | IndexOutOfBoundsException e) {
+            if (id != null) {
+                responderError(id, PARAMETROS_INVALIDOS, "Parametros invalidos para " + metodo);
+            } else {
+                System.err.println("Parametros invalidos para " + metodo + ": " + e);
+            }
+        }
+    }
+
+    private static Map<String, Object> capacidades() {
+        Map<String, Object> sincronizacion = new LinkedHashMap<>();
+        sincronizacion.put("openClose", true);
+        sincronizacion.put("change", 2);   // Incremental
+        Map<String, Object> capacidades = new LinkedHashMap<>();
+        capacidades.put("textDocumentSync", sincronizacion);
+        Map<String, Object> servidor = new LinkedHashMap<>();
+        servidor.put("name", "CarumaLang");
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("capabilities", capacidades);
+        resultado.put("serverInfo", servidor);
+        return resultado;
+    }
+
+    private void abrir(Map<String, Object> textDocument) {
+        String uri = (String) textDocument.get("uri");
+        Documento documento = new Documento(uri, (String) textDocument.get("text"),
+                                            numero(textDocument.get("version")));
+        Documento anterior = documentos.put(uri, documento);
+        if (anterior != null) {
+            cancelarPendientes(anterior);
+        }
+        enviarDiagnosticos(documento);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void cambiar(Map<String, Object> textDocument, List<Object> cambios) {
+        Documento documento = documentos.get((String) textDocument.get("uri"));
+        if (documento == null) {
+            return;
+        }
+        // Antes de tomar el documento se descarta el análisis semántico
+        // pendiente; si ya empezó, la interrupción lo hace soltar el árbol
+        // en la próxima sentencia en vez de esperar a que lo recorra entero
+        documento.ediciones++;
+        cancelarPendientes(documento);
+        for (Object c : cambios) {
+            Map<String, Object> cambio = (Map<String, Object>) c;
+            String texto = (String) cambio.get("text");
+            Map<String, Object> rango = (Map<String, Object>) cambio.get("range");
+            if (rango == null) {
+                documento.editar(0, documento.analizador.longitud(), texto);
+            } else {
+                int desde = offset(documento, (Map<String, Object>) rango.get("start"));
+                int hasta = offset(documento, (Map<String, Object>) rango.get("end"));
+                documento.editar(desde, Math.max(desde, hasta), texto);
+            }
+        }
+        documento.version = numero(textDocument.get("version"));
+
+        // Publicar cuando pase el retardo sin otra edición
+        documento.publicacion = trabajo.schedule(() -> publicar(documento), retardoMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void cerrar(Map<String, Object> textDocument) {
+        String uri = (String) textDocument.get("uri");
+        Documento documento = documentos.remove(uri);
+        if (documento == null) {
+            return;
+        }
+        cancelarPendientes(documento);
+        // Al cerrar se borran sus diagnósticos del editor
+        Map<String, Object> parametros = new LinkedHashMap<>();
+        parametros.put("uri", uri);
+        parametros.put("diagnostics", new ArrayList<>());
+        notificar("textDocument/publishDiagnostics", parametros);
+    }
+
+    private void cancelarPendientes(Documento documento) {
+        if (documento.publicacion != null) {
+            documento.publicacion.cancel(false);
+            documento.publicacion = null;
+        }
+        if (documento.verificacion != null) {
+            // Interrumpe el análisis si ya empezó, para que suelte el árbol
+            documento.verificacion.cancel(true);
+            documento.verificacion = null;
+        }
+    }
+
+    // Primer paso después de editar: se analizan las sentencias que
+    // cambiaron y se publican los errores léxicos y sintácticos nuevos con
+    // los semánticos anteriores; el análisis semántico queda en su hilo
+    private void publicar(Documento documento) {
+        if (documentos.get(documento.uri) != documento) {
+            return;   // Se cerró o se volvió a abrir mientras esperaba
+        }
+        documento.publicacion = null;
+        int ediciones;
+        synchronized (documento) {
+            documento.estructura = documento.analizador.erroresLexicosYSintacticos();
+            ediciones = documento.ediciones;
+        }
+        enviarDiagnosticos(documento);
+        documento.verificacion = semantico.submit(() -> verificar(documento, ediciones));
+    }
+
+    // Segundo paso, en el hilo del análisis semántico: recorre el árbol de
+    // las ediciones dadas, si no llegó otra, y entrega el resultado al
+    // hilo de trabajo. Tiene tomado el documento mientras recorre, pero
+    // mira la interrupción en cada sentencia y bloque: una edición que
+    // llega lo cancela (ver cambiar) y lo hace soltarlo enseguida
+    private void verificar(Documento documento, int ediciones) {
+        List<AnalisisSintactico.ErrorAnalisis> semanticos;
+        synchronized (documento) {
+            if (documento.ediciones != ediciones || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            try {
+                semanticos = documento.analizador.erroresSemanticos();
+            } catch (CancellationException e) {
+                return;   // Llegó una edición mientras recorría el árbol
+            }
+        }
+        trabajo.execute(() -> {
+            if (documentos.get(documento.uri) != documento || documento.ediciones != ediciones) {
+                return;
+            }
+            documento.verificacion = null;
+            documento.semanticos = semanticos;
+            enviarDiagnosticos(documento);
+        });
+    }
+
+    // Publica los errores guardados del documento si cambiaron desde la
+    // última publicación
+    private void enviarDiagnosticos(Documento documento) {
+        List<AnalisisSintactico.ErrorAnalisis> errores = new ArrayList<>(documento.estructura);
+        errores.addAll(documento.semanticos);
+        AnalisisSintactico.ordenarErrores(errores);
+        List<Object> diagnosticos = new ArrayList<>();
+        for (int i = 0; i < errores.size() && i < MAX_DIAGNOSTICOS; i++) {
+            diagnosticos.add(diagnostico(documento, errores.get(i)));
+        }
+        if (diagnosticos.equals(documento.publicados)) {
+            return;
+        }
+        documento.publicados = diagnosticos;
+
+        Map<String, Object> parametros = new LinkedHashMap<>();
+        parametros.put("uri", documento.uri);
+        parametros.put("version", documento.version);
+        parametros.put("diagnostics", diagnosticos);
+        notificar("textDocument/publishDiagnostics", parametros);
+    }
+
+    // Un error como Diagnostic: el rango es el token donde se detectó, si
+    // hay uno que empiece en esa línea y columna, o la posición sola
+    private static Map<String, Object> diagnostico(Documento documento, AnalisisSintactico.ErrorAnalisis error) {
+        LexicoIncremental lexico = documento.analizador.lexico();
+        int token = error.linea > 0 ? lexico.buscar(error.linea, error.columna) : -1;
+        Map<String, Object> inicio;
+        Map<String, Object> fin;
+        if (token >= 0) {
+            inicio = posicion(documento, lexico.inicio(token));
+            fin = posicion(documento, lexico.fin(token));
+        } else {
+            int linea = Math.min(Math.max(error.linea - 1, 0), documento.lineas.cantidad() - 1);
+            int offset = Math.min(documento.lineas.inicio(linea) + Math.max(error.columna - 1, 0),
+                                  documento.lineas.fin(linea));
+            inicio = posicion(documento, offset);
+            fin = inicio;
+        }
+        Map<String, Object> rango = new LinkedHashMap<>();
+        rango.put("start", inicio);
+        rango.put("end", fin);
+
+        Map<String, Object> diagnostico = new LinkedHashMap<>();
+        diagnostico.put("range", rango);
+        diagnostico.put("severity", 1);   // Error
+        diagnostico.put("code", error.tipo.name());
+        diagnostico.put("source", "CarumaLang");
+        diagnostico.put("message", error.mensaje);
+        return diagnostico;
+    }
+
+    // Offset de una Position; un carácter más allá del fin de la línea
+    // cuenta como el fin de la línea
+    private static int offset(Documento documento, Map<String, Object> posicion) {
+        int linea = (int) numero(posicion.get("line"));
+        int caracter = (int) numero(posicion.get("character"));
+        LineasTexto lineas = documento.lineas;
+        if (linea >= lineas.cantidad()) {
+            return documento.analizador.longitud();
+        }
+        return Math.min(lineas.inicio(linea) + caracter, lineas.fin(linea));
+    }
+
+    private static Map<String, Object> posicion(Documento documento, int offset) {
+        int linea = documento.lineas.linea(offset);
+        Map<String, Object> posicion = new LinkedHashMap<>();
+        posicion.put("line", linea);
+        posicion.put("character", offset - documento.lineas.inicio(linea));
+        return posicion;
+    }
+
+    private static long numero(Object valor) {
+        return valor instanceof Number ? ((Number) valor).longValue() : 0;
+    }
+
+    // -------------------------------------------------------
+    // JSON-RPC
+    // -------------------------------------------------------
+
+    private void responder(Object id, Object resultado) {
+        Map<String, Object> respuesta = new LinkedHashMap<>();
+        respuesta.put("jsonrpc", "2.0");
+        respuesta.put("id", id);
+        respuesta.put("result", resultado);
+        escribirMensaje(respuesta);
+    }
+
+    private void responderError(Object id, int codigo, String mensaje) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("code", codigo);
+        error.put("message", mensaje);
+        Map<String, Object> respuesta = new LinkedHashMap<>();
+        respuesta.put("jsonrpc", "2.0");
+        respuesta.put("id", id);
+        respuesta.put("error", error);
+        escribirMensaje(respuesta);
+    }
+
+    private void notificar(String metodo, Object parametros) {
+        Map<String, Object> notificacion = new LinkedHashMap<>();
+        notificacion.put("jsonrpc", "2.0");
+        notificacion.put("method", metodo);
+        notificacion.put("params", parametros);
+        escribirMensaje(notificacion);
+    }
+
+    private void escribirMensaje(Object mensaje) {
+        byte[] cuerpo = Json.escribir(mensaje).getBytes(StandardCharsets.UTF_8);
+        byte[] encabezado = ("Content-Length: " + cuerpo.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        try {
+            salida.write(encabezado);
+            salida.write(cuerpo);
+            salida.flush();
+        } catch (IOException e) {
+            System.err.println("No se pudo escribir la respuesta: " + e.getMessage());
+        }
+    }
+
+    // Lee un mensaje con su encabezado; null al terminar la entrada
+    private String leerMensaje() throws IOException {
+        int largo = -1;
+        while (true) {
+            String linea = leerLineaEncabezado();
+            if (linea == null) {
+                return null;
+            }
+            if (linea.isEmpty()) {
+                if (largo >= 0) {
+                    break;
+                }
+                continue;
+            }
+            int dosPuntos = linea.indexOf(':');
+            if (dosPuntos > 0 && linea.substring(0, dosPuntos).trim().equalsIgnoreCase("Content-Length")) {
+                largo = Integer.parseInt(linea.substring(dosPuntos + 1).trim());
+            }
+        }
+        byte[] cuerpo = entrada.readNBytes(largo);
+        if (cuerpo.length < largo) {
+            return null;
+        }
+        return new String(cuerpo, StandardCharsets.UTF_8);
+    }
+
+    private String leerLineaEncabezado() throws IOException {
+        ByteArrayOutputStream linea = new ByteArrayOutputStream();
+        int b;
+        while ((b = entrada.read()) != -1 && b != '\n') {
+            if (b != '\r') {
+                linea.write(b);
+            }
+        }
+        if (b == -1 && linea.size() == 0) {
+            return null;
+        }
+        return linea.toString(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Lectura y escritura del JSON de los mensajes: objetos como Map,
+     * arreglos como List, números como Long o Double.
+     */
+    static class Json {
+        private final String texto;
+        private int posicion = 0;
+
+        private Json(String texto) {
+            this.texto = texto;
+        }
+
+        static Object leer(String texto) {
+            Json json = new Json(texto);
+            Object valor = json.valor();
+            json.espacios();
+            if (json.posicion != texto.length()) {
+                throw json.error("contenido después del valor");
+            }
+            return valor;
+        }
+
+        static String escribir(Object valor) {
+            StringBuilder sb = new StringBuilder();
+            escribir(valor, sb);
+            return sb.toString();
+        }
+
+        private static void escribir(Object valor, StringBuilder sb) {
+            if (valor == null) {
+                sb.append("null");
+            } else if (valor instanceof String) {
+                escribirCadena((String) valor, sb);
+            } else if (valor instanceof Number || valor instanceof Boolean) {
+                sb.append(valor);
+            } else if (valor instanceof Map) {
+                sb.append('{');
+                boolean primero = true;
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) valor).entrySet()) {
+                    if (!primero) {
+                        sb.append(',');
+                    }
+                    primero = false;
+                    escribirCadena(e.getKey().toString(), sb);
+                    sb.append(':');
+                    escribir(e.getValue(), sb);
+                }
+                sb.append('}');
+            } else if (valor instanceof List) {
+                sb.append('[');
+                boolean primero = true;
+                for (Object elemento : (List<?>) valor) {
+                    if (!primero) {
+                        sb.append(',');
+                    }
+                    primero = false;
+                    escribir(elemento, sb);
+                }
+                sb.append(']');
+            } else {
+                throw new IllegalArgumentException("No se puede escribir como JSON: " + valor.getClass());
+            }
+        }
+
+        private static void escribirCadena(String s, StringBuilder sb) {
+            sb.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"': sb.append("\\\""); break;
+                    case '\\': sb.append("\\\\"); break;
+                    case '\n': sb.append("\\n"); break;
+                    case '\r': sb.append("\\r"); break;
+                    case '\t': sb.append("\\t"); break;
+                    default:
+                        if (c < 0x20) {
+                            sb.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            sb.append(c);
+                        }
+                }
+            }
+            sb.append('"');
+        }
+
+        private Object valor() {
+            espacios();
+            if (posicion >= texto.length()) {
+                throw error("fin inesperado");
+            }
+            char c = texto.charAt(posicion);
+            switch (c) {
+                case '{': return objeto();
+                case '[': return arreglo();
+                case '"': return cadena();
+                case 't': return literal("true", Boolean.TRUE);
+                case 'f': return literal("false", Boolean.FALSE);
+                case 'n': return literal("null", null);
+                default:
+                    if (c == '-' || (c >= '0' && c <= '9')) {
+                        return numero();
+                    }
+                    throw error("caracter inesperado '" + c + "'");
+            }
+        }
+
+        private Map<String, Object> objeto() {
+            Map<String, Object> objeto = new LinkedHashMap<>();
+            posicion++;
+            espacios();
+            if (consumir('}')) {
+                return objeto;
+            }
+            do {
+                espacios();
+                if (posicion >= texto.length() || texto.charAt(posicion) != '"') {
+                    throw error("se esperaba una clave");
+                }
+                String clave = cadena();
+                espacios();
+                if (!consumir(':')) {
+                    throw error("se esperaba ':'");
+                }
+                objeto.put(clave, valor());
+                espacios();
+            } while (consumir(','));
+            if (!consumir('}')) {
+                throw error("se esperaba '}'");
+            }
+            return objeto;
+        }
+
+        private List<Object> arreglo() {
+            List<Object> arreglo = new ArrayList<>();
+            posicion++;
+            espacios();
+            if (consumir(']')) {
+                return arreglo;
+            }
+            do {
+                arreglo.add(valor());
+                espacios();
+            } while (consumir(','));
+            if (!consumir(']')) {
+                throw error("se esperaba ']'");
+            }
+            return arreglo;
+        }
+
+        private String cadena() {
+            StringBuilder sb = new StringBuilder();
+            posicion++;
+            while (posicion < texto.length()) {
+                char c = texto.charAt(posicion++);
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                if (posicion >= texto.length()) {
+                    break;
+                }
+                char escape = texto.charAt(posicion++);
+                switch (escape) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'u':
+                        if (posicion + 4 > texto.length()) {
+                            throw error("escape \\u incompleto");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(texto.substring(posicion, posicion + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("escape \\u invalido");
+                        }
+                        posicion += 4;
+                        break;
+                    default:
+                        sb.append(escape);   // \" \\ \/
+                }
+            }
+            throw error("cadena sin cerrar");
+        }
+
+        private Number numero() {
+            int inicio = posicion;
+            boolean decimal = false;
+            while (posicion < texto.length()) {
+                char c = texto.charAt(posicion);
+                if (c == '.' || c == 'e' || c == 'E') {
+                    decimal = true;
+                } else if (!(c == '-' || c == '+' || (c >= '0' && c <= '9'))) {
+                    break;
+                }
+                posicion++;
+            }
+            String numero = texto.substring(inicio, posicion);
+            try {
+                return decimal ? (Number) Double.parseDouble(numero) : (Number) Long.parseLong(numero);
+            } catch (NumberFormatException e) {
+                throw error("numero invalido " + numero);
+            }
+        }
+
+        private Object literal(String palabra, Object valor) {
+            if (!texto.startsWith(palabra, posicion)) {
+                throw error("se esperaba " + palabra);
+            }
+            posicion += palabra.length();
+            return valor;
+        }
+
+        private boolean consumir(char c) {
+            if (posicion < texto.length() && texto.charAt(posicion) == c) {
+                posicion++;
+                return true;
+            }
+            return false;
+        }
+
+        private void espacios() {
+            while (posicion < texto.length() && Character.isWhitespace(texto.charAt(posicion))) {
+                posicion++;
+            }
+        }
+
+        private IllegalArgumentException error(String mensaje) {
+            return new IllegalArgumentException("JSON en la posicion " + posicion + ": " + mensaje);
+        }
+    }
+}